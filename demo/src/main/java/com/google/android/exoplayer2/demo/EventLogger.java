@@ -275,7 +275,7 @@ import java.util.Locale;
 
   @Override
   public void onRenderedFirstFrame(Surface surface) {
-    // Do nothing.
+    Log.d(TAG, "renderedFirstFrame [" + getSessionTimeString() + "]");
   }
 
   // StreamingDrmSessionManager.EventListener
@@ -325,7 +325,11 @@ import java.util.Locale;
   public void onLoadCompleted(DataSpec dataSpec, int dataType, int trackType, Format trackFormat,
       int trackSelectionReason, Object trackSelectionData, long mediaStartTimeMs,
       long mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs, long bytesLoaded) {
-    // Do nothing.
+    if (dataType != C.DATA_TYPE_MEDIA) {
+      // Log loads that precede playback of the media, so that startup can be broken down.
+      Log.d(TAG, "loadCompleted [" + getSessionTimeString() + ", " + getDataTypeString(dataType)
+          + ", " + loadDurationMs + "ms]");
+    }
   }
 
   @Override
@@ -368,6 +372,21 @@ import java.util.Locale;
     }
   }
 
+  private static String getDataTypeString(int dataType) {
+    switch (dataType) {
+      case C.DATA_TYPE_MANIFEST:
+        return "manifest";
+      case C.DATA_TYPE_MEDIA_INITIALIZATION:
+        return "initialization";
+      case C.DATA_TYPE_DRM:
+        return "drm";
+      case C.DATA_TYPE_TIME_SYNCHRONIZATION:
+        return "timeSynchronization";
+      default:
+        return "?";
+    }
+  }
+
   private static String getFormatSupportString(int formatSupport) {
     switch (formatSupport) {
       case RendererCapabilities.FORMAT_HANDLED:
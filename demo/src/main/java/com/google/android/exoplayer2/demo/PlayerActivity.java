@@ -68,6 +68,7 @@ import com.google.android.exoplayer2.ui.DebugTextViewHelper;
 import com.google.android.exoplayer2.ui.PlaybackControlView;
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
@@ -92,6 +93,7 @@ public class PlayerActivity extends Activity implements OnClickListener, ExoPlay
   public static final String DRM_LICENSE_URL = "drm_license_url";
   public static final String DRM_KEY_REQUEST_PROPERTIES = "drm_key_request_properties";
   public static final String PREFER_EXTENSION_DECODERS = "prefer_extension_decoders";
+  public static final String USE_DIRECT_MEMORY = "use_direct_memory";
 
   public static final String ACTION_VIEW = "com.google.android.exoplayer.demo.action.VIEW";
   public static final String EXTENSION_EXTRA = "extension";
@@ -273,7 +275,10 @@ public class PlayerActivity extends Activity implements OnClickListener, ExoPlay
       trackSelector.addListener(this);
       trackSelector.addListener(eventLogger);
       trackSelectionHelper = new TrackSelectionHelper(trackSelector, videoTrackSelectionFactory);
-      player = ExoPlayerFactory.newSimpleInstance(this, trackSelector, new DefaultLoadControl(),
+      boolean useDirectMemory = intent.getBooleanExtra(USE_DIRECT_MEMORY, false);
+      DefaultLoadControl loadControl = new DefaultLoadControl(
+          new DefaultAllocator(C.DEFAULT_BUFFER_SEGMENT_SIZE, 0, useDirectMemory));
+      player = ExoPlayerFactory.newSimpleInstance(this, trackSelector, loadControl,
           drmSessionManager, preferExtensionDecoders);
       player.addListener(this);
       player.addListener(eventLogger);
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link PlaybackLoopStatsTracker}.
+ */
+public final class PlaybackLoopStatsTrackerTest extends TestCase {
+
+  private static final long REPORT_INTERVAL_MS = 1000;
+  private static final long WAKEUP_INTERVAL_MS = 10;
+
+  private PlaybackLoopStatsTracker tracker;
+
+  @Override
+  protected void setUp() throws Exception {
+    tracker = new PlaybackLoopStatsTracker();
+    tracker.setReportIntervalMs(REPORT_INTERVAL_MS, 0);
+  }
+
+  public void testWakeupLaterThanIntervalIsLate() {
+    tracker.onWakeupScheduled(100, WAKEUP_INTERVAL_MS);
+    tracker.onWakeup(150);
+    PlaybackLoopStats stats = tracker.maybeCreateReport(REPORT_INTERVAL_MS);
+    assertEquals(1, stats.lateWakeupCount);
+    assertEquals(1, stats.wakeupLatenessesUs.getCount());
+    assertEquals(50000, stats.wakeupLatenessesUs.getMax());
+  }
+
+  public void testWakeupWithinIntervalIsNotLate() {
+    tracker.onWakeupScheduled(100, WAKEUP_INTERVAL_MS);
+    tracker.onWakeup(105);
+    tracker.onWakeupScheduled(200, WAKEUP_INTERVAL_MS);
+    // Lateness equal to the interval isn't late either.
+    tracker.onWakeup(210);
+    PlaybackLoopStats stats = tracker.maybeCreateReport(REPORT_INTERVAL_MS);
+    assertEquals(0, stats.lateWakeupCount);
+    assertEquals(2, stats.wakeupLatenessesUs.getCount());
+  }
+
+  public void testEarlyOrCancelledWakeupIsIgnored() {
+    tracker.onWakeupScheduled(100, WAKEUP_INTERVAL_MS);
+    tracker.onWakeup(50);
+    tracker.onWakeupScheduled(200, WAKEUP_INTERVAL_MS);
+    tracker.onWakeupCancelled();
+    tracker.onWakeup(300);
+    PlaybackLoopStats stats = tracker.maybeCreateReport(REPORT_INTERVAL_MS);
+    assertEquals(0, stats.lateWakeupCount);
+    assertEquals(0, stats.wakeupLatenessesUs.getCount());
+  }
+
+  public void testReportStartsNewInterval() {
+    tracker.onWakeupScheduled(100, WAKEUP_INTERVAL_MS);
+    tracker.onWakeup(150);
+    assertNull(tracker.maybeCreateReport(REPORT_INTERVAL_MS - 1));
+    PlaybackLoopStats stats = tracker.maybeCreateReport(REPORT_INTERVAL_MS);
+    assertEquals(REPORT_INTERVAL_MS, stats.intervalDurationMs);
+    assertEquals(1, stats.lateWakeupCount);
+
+    assertNull(tracker.maybeCreateReport(2 * REPORT_INTERVAL_MS - 1));
+    stats = tracker.maybeCreateReport(2 * REPORT_INTERVAL_MS);
+    assertEquals(0, stats.lateWakeupCount);
+    assertEquals(0, stats.wakeupLatenessesUs.getCount());
+  }
+
+  public void testNothingIsRecordedWhenDisabled() {
+    tracker.setReportIntervalMs(C.TIME_UNSET, 0);
+    assertFalse(tracker.isEnabled());
+    tracker.onWakeupScheduled(100, WAKEUP_INTERVAL_MS);
+    tracker.onWakeup(150);
+    assertNull(tracker.maybeCreateReport(REPORT_INTERVAL_MS));
+
+    tracker.setReportIntervalMs(REPORT_INTERVAL_MS, 0);
+    PlaybackLoopStats stats = tracker.maybeCreateReport(REPORT_INTERVAL_MS);
+    assertEquals(0, stats.lateWakeupCount);
+    assertEquals(0, stats.wakeupLatenessesUs.getCount());
+  }
+
+}
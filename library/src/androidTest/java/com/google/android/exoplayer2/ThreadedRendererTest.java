@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import android.os.Process;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.SampleStream;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ThreadedRenderer}.
+ */
+public final class ThreadedRendererTest extends TestCase {
+
+  private static final int SAMPLE_COUNT = 100;
+  private static final long SAMPLE_DURATION_US = 10000;
+
+  private FakeSampleStream stream;
+  private FakeRenderer renderer;
+  private ThreadedRenderer threadedRenderer;
+
+  @Override
+  protected void setUp() throws Exception {
+    stream = new FakeSampleStream();
+    renderer = new FakeRenderer();
+    threadedRenderer = new ThreadedRenderer(renderer, "ThreadedRendererTest",
+        Process.THREAD_PRIORITY_DEFAULT);
+    threadedRenderer.enable(new Format[0], stream, 0, false, 0);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    threadedRenderer.disable();
+  }
+
+  public void testStateReflectsMostRecentRender() throws ExoPlaybackException {
+    assertFalse(threadedRenderer.isReady());
+    threadedRenderer.render(0, 0);
+    assertTrue(threadedRenderer.isReady());
+    assertEquals(0, renderer.lastSampleTimeUs);
+    for (int i = 1; i < SAMPLE_COUNT; i++) {
+      threadedRenderer.render(0, 0);
+      assertFalse(threadedRenderer.hasReadStreamToEnd());
+      assertEquals(i * SAMPLE_DURATION_US, renderer.lastSampleTimeUs);
+    }
+    threadedRenderer.render(0, 0);
+    assertTrue(threadedRenderer.hasReadStreamToEnd());
+    assertFalse(stream.accessedFromOtherThread);
+  }
+
+  public void testSeekWhileRendering() throws ExoPlaybackException {
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      // Access the stream while the render is in progress, as the player does when rendering other
+      // renderers whose streams share state with it.
+      threadedRenderer.render(0, 0);
+      stream.isReady();
+      threadedRenderer.isEnded();
+      // Seek as the player does, by seeking the period and then resetting the renderer.
+      int sampleIndex = (i * 37) % SAMPLE_COUNT;
+      stream.seekTo(sampleIndex);
+      threadedRenderer.resetPosition(sampleIndex * SAMPLE_DURATION_US);
+      assertFalse(threadedRenderer.isReady());
+      threadedRenderer.render(0, 0);
+      assertTrue(threadedRenderer.isReady());
+      assertEquals(sampleIndex * SAMPLE_DURATION_US, renderer.lastSampleTimeUs);
+    }
+    assertFalse(stream.accessedFromOtherThread);
+  }
+
+  /**
+   * A {@link SampleStream} of {@link #SAMPLE_COUNT} samples that records whether it is accessed
+   * from a thread other than the one that created it.
+   */
+  private static final class FakeSampleStream implements SampleStream {
+
+    private final Thread playbackThread;
+
+    public volatile boolean accessedFromOtherThread;
+
+    private int readIndex;
+
+    public FakeSampleStream() {
+      playbackThread = Thread.currentThread();
+    }
+
+    public void seekTo(int sampleIndex) {
+      checkThread();
+      readIndex = sampleIndex;
+    }
+
+    @Override
+    public boolean isReady() {
+      checkThread();
+      return true;
+    }
+
+    @Override
+    public void maybeThrowError() throws IOException {
+      checkThread();
+    }
+
+    @Override
+    public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer) {
+      checkThread();
+      if (readIndex == SAMPLE_COUNT) {
+        buffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+      } else {
+        buffer.setFlags(C.BUFFER_FLAG_KEY_FRAME);
+        buffer.timeUs = readIndex++ * SAMPLE_DURATION_US;
+      }
+      return C.RESULT_BUFFER_READ;
+    }
+
+    @Override
+    public void skipToKeyframeBefore(long timeUs) {
+      checkThread();
+    }
+
+    private void checkThread() {
+      if (Thread.currentThread() != playbackThread) {
+        accessedFromOtherThread = true;
+      }
+    }
+
+  }
+
+  /**
+   * A {@link Renderer} that reads one sample from its stream each time it renders, and is ready once
+   * it has read a sample since being enabled or reset.
+   */
+  private static final class FakeRenderer extends BaseRenderer {
+
+    private final FormatHolder formatHolder;
+    private final DecoderInputBuffer buffer;
+
+    public long lastSampleTimeUs;
+
+    public FakeRenderer() {
+      super(C.TRACK_TYPE_VIDEO);
+      formatHolder = new FormatHolder();
+      buffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DISABLED);
+      lastSampleTimeUs = C.TIME_UNSET;
+    }
+
+    @Override
+    public int supportsFormat(Format format) {
+      return FORMAT_HANDLED;
+    }
+
+    @Override
+    protected void onPositionReset(long positionUs, boolean joining) {
+      lastSampleTimeUs = C.TIME_UNSET;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) {
+      buffer.clear();
+      if (readSource(formatHolder, buffer) == C.RESULT_BUFFER_READ) {
+        lastSampleTimeUs = buffer.timeUs;
+      }
+      // Check readiness while rendering, as renderers do before feeding their decoders.
+      isSourceReady();
+    }
+
+    @Override
+    public boolean isReady() {
+      return lastSampleTimeUs != C.TIME_UNSET;
+    }
+
+    @Override
+    public boolean isEnded() {
+      return hasReadStreamToEnd();
+    }
+
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.SlicingAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link DefaultTrackOutput}.
+ */
+public final class DefaultTrackOutputTest extends TestCase {
+
+  private static final int ALLOCATION_SIZE = 16;
+  private static final Format FORMAT = Format.createSampleFormat(null, MimeTypes.VIDEO_H264, null,
+      Format.NO_VALUE, null);
+
+  public void testReadDirectAllocationsIntoHeapBuffer() throws IOException, InterruptedException {
+    assertSampleDataRoundTrip(true, DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  public void testReadDirectAllocationsIntoDirectBuffer()
+      throws IOException, InterruptedException {
+    assertSampleDataRoundTrip(true, DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+  }
+
+  public void testReadHeapAllocations() throws IOException, InterruptedException {
+    assertSampleDataRoundTrip(false, DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  public void testSeekBackIntoBackBuffer() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE);
+    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator);
+    trackOutput.setBackBufferDurationUs(1000000);
+    byte[][] samples = writeBackBufferTestSamples(trackOutput);
+
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    assertEquals(C.RESULT_FORMAT_READ, trackOutput.readData(formatHolder, buffer, false, 0));
+    for (byte[] sample : samples) {
+      assertReadSample(trackOutput, formatHolder, buffer, sample);
+    }
+    assertEquals(40, trackOutput.getReadIndex());
+    // The back-buffer was last trimmed on reading the keyframe at 3.5s, so it starts from the
+    // keyframe at 2.5s.
+    assertEquals(25, trackOutput.getFirstIndex());
+    // Bytes [250, 400) are retained. The allocations holding bytes [240, 400) are wholly behind the
+    // read position.
+    assertEquals(10 * ALLOCATION_SIZE, allocator.getTotalBackBufferBytes());
+
+    assertTrue(trackOutput.seekToKeyframeBefore(3200000));
+    assertEquals(30, trackOutput.getReadIndex());
+    // The read position moved back to byte 300.
+    assertEquals(3 * ALLOCATION_SIZE, allocator.getTotalBackBufferBytes());
+    for (int i = 30; i < samples.length; i++) {
+      assertReadSample(trackOutput, formatHolder, buffer, samples[i]);
+    }
+    assertFalse(trackOutput.seekToKeyframeBefore(1000000));
+
+    trackOutput.disable();
+    assertEquals(0, allocator.getTotalBackBufferBytes());
+  }
+
+  public void testBackBufferDiscardedWhenBudgetUsedUp() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE);
+    allocator.setTargetBackBufferSize(4 * ALLOCATION_SIZE);
+    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator);
+    trackOutput.setBackBufferDurationUs(1000000);
+    byte[][] samples = writeBackBufferTestSamples(trackOutput);
+
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    assertEquals(C.RESULT_FORMAT_READ, trackOutput.readData(formatHolder, buffer, false, 0));
+    for (byte[] sample : samples) {
+      assertReadSample(trackOutput, formatHolder, buffer, sample);
+      // The budget can be exceeded by at most the group of pictures read since the last trim.
+      assertTrue(allocator.getTotalBackBufferBytes() <= 8 * ALLOCATION_SIZE);
+    }
+    // Less than the back-buffer duration is retained, since its memory budget was used up.
+    assertTrue(trackOutput.getFirstIndex() > 25);
+    assertFalse(trackOutput.seekToKeyframeBefore(2500000));
+  }
+
+  public void testSparseTrackUsesSparseTrackAllocator() {
+    assertSparseTrackAllocatorUsed(false);
+  }
+
+  public void testSparseTrackUsesSparseTrackAllocatorIfDisabledWhenFormatReceived() {
+    assertSparseTrackAllocatorUsed(true);
+  }
+
+  private static void assertSparseTrackAllocatorUsed(boolean disableBeforeFormat) {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE * 16);
+    SlicingAllocator sparseTrackAllocator = new SlicingAllocator(allocator, 16);
+    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator, sparseTrackAllocator);
+    if (disableBeforeFormat) {
+      trackOutput.disable();
+    }
+    trackOutput.format(Format.createSampleFormat(null, MimeTypes.TEXT_VTT, null, Format.NO_VALUE,
+        null));
+    if (disableBeforeFormat) {
+      trackOutput.reset(true);
+    }
+    byte[] sample = TestUtil.buildTestData(ALLOCATION_SIZE / 2, 1);
+    trackOutput.sampleData(new ParsableByteArray(sample), sample.length);
+    trackOutput.sampleMetadata(0, C.BUFFER_FLAG_KEY_FRAME, sample.length, 0, null);
+    assertEquals(ALLOCATION_SIZE, trackOutput.getAllocatedBytes());
+    assertEquals(ALLOCATION_SIZE, sparseTrackAllocator.getTotalBytesAllocated());
+  }
+
+  /**
+   * Writes 40 samples of 100ms each with a keyframe every 5 samples, spanning 25 allocations.
+   */
+  private static byte[][] writeBackBufferTestSamples(DefaultTrackOutput trackOutput) {
+    byte[][] samples = new byte[40][];
+    trackOutput.format(FORMAT);
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = TestUtil.buildTestData(10, i);
+      trackOutput.sampleData(new ParsableByteArray(samples[i]), samples[i].length);
+      trackOutput.sampleMetadata(i * 100000, i % 5 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          samples[i].length, 0, null);
+    }
+    return samples;
+  }
+
+  /**
+   * Writes two samples spanning several allocations, one from an {@link ExtractorInput} and one
+   * from a {@link ParsableByteArray}, and asserts that they are read back unchanged.
+   */
+  private static void assertSampleDataRoundTrip(boolean useDirectMemory,
+      int bufferReplacementMode) throws IOException, InterruptedException {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE, 0, useDirectMemory);
+    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator);
+    byte[] firstSample = TestUtil.buildTestData(5 * ALLOCATION_SIZE + 3, 1);
+    byte[] secondSample = TestUtil.buildTestData(2 * ALLOCATION_SIZE + 7, 2);
+
+    trackOutput.format(FORMAT);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(firstSample).build();
+    int bytesWritten = 0;
+    while (bytesWritten < firstSample.length) {
+      bytesWritten += trackOutput.sampleData(input, firstSample.length - bytesWritten, false);
+    }
+    trackOutput.sampleMetadata(0, C.BUFFER_FLAG_KEY_FRAME, firstSample.length, 0, null);
+    trackOutput.sampleData(new ParsableByteArray(secondSample), secondSample.length);
+    trackOutput.sampleMetadata(1000, C.BUFFER_FLAG_KEY_FRAME, secondSample.length, 0, null);
+
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer = new DecoderInputBuffer(bufferReplacementMode);
+    assertEquals(C.RESULT_FORMAT_READ, trackOutput.readData(formatHolder, buffer, false, 0));
+    assertReadSample(trackOutput, formatHolder, buffer, firstSample);
+    assertReadSample(trackOutput, formatHolder, buffer, secondSample);
+    assertEquals(C.RESULT_NOTHING_READ, trackOutput.readData(formatHolder, buffer, false, 0));
+    // Only the allocation that is partially filled by the second sample should still be held.
+    assertEquals(ALLOCATION_SIZE, allocator.getTotalBytesAllocated());
+  }
+
+  private static void assertReadSample(DefaultTrackOutput trackOutput, FormatHolder formatHolder,
+      DecoderInputBuffer buffer, byte[] expectedData) {
+    buffer.clear();
+    assertEquals(C.RESULT_BUFFER_READ, trackOutput.readData(formatHolder, buffer, false, 0));
+    buffer.flip();
+    byte[] data = new byte[buffer.data.limit()];
+    buffer.data.get(data);
+    assertTrue(Arrays.equals(expectedData, data));
+  }
+
+}
@@ -16,7 +16,10 @@
 package com.google.android.exoplayer2.extractor.mkv;
 
 import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.extractor.ChunkIndex;
 import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
 
 /**
@@ -24,6 +27,8 @@ import com.google.android.exoplayer2.testutil.TestUtil;
  */
 public final class MatroskaExtractorTest extends InstrumentationTestCase {
 
+  private static final int SEEK_INDEX_SCAN_INTERVAL = 8 * 1024;
+
   public void testMkvSample() throws Exception {
     TestUtil.assertOutput(new TestUtil.ExtractorFactory() {
       @Override
@@ -33,6 +38,52 @@ public final class MatroskaExtractorTest extends InstrumentationTestCase {
     }, "mkv/sample.mkv", getInstrumentation());
   }
 
+  public void testMkvSampleWithoutCuesReference() throws Exception {
+    byte[] fileData = removeCuesReference(
+        TestUtil.getByteArray(getInstrumentation(), "mkv/sample.mkv"));
+    FakeExtractorOutput output = TestUtil.consumeTestData(new MatroskaExtractor(), fileData);
+    assertFalse(output.seekMap.isSeekable());
+  }
+
+  public void testMkvSampleWithoutCuesReferenceBuildsSeekIndex() throws Exception {
+    byte[] originalFileData = TestUtil.getByteArray(getInstrumentation(), "mkv/sample.mkv");
+    ChunkIndex cuesIndex = (ChunkIndex) TestUtil.consumeTestData(new MatroskaExtractor(),
+        originalFileData).seekMap;
+    byte[] fileData = removeCuesReference(originalFileData);
+    for (int i = 0; i < 4; i++) {
+      FakeExtractorInput input = new FakeExtractorInput.Builder().setData(fileData)
+          .setSimulateIOErrors((i & 1) != 0).setSimulatePartialReads((i & 2) != 0).build();
+      // The sample is small, so scan for clusters more often than by default.
+      Extractor extractor = new MatroskaExtractor(new DefaultEbmlReader(),
+          MatroskaExtractor.FLAG_BUILD_SEEK_INDEX, SEEK_INDEX_SCAN_INTERVAL);
+      FakeExtractorOutput output = TestUtil.consumeTestData(extractor, input, true);
+
+      // Scanning for clusters doesn't affect the extracted samples.
+      output.assertOutput(getInstrumentation(), "mkv/sample.mkv.0.dump");
+      // The seek index consists of clusters referenced by the Cues, in order.
+      ChunkIndex seekIndex = (ChunkIndex) output.seekMap;
+      assertTrue(seekIndex.length > 1);
+      for (int j = 0; j < seekIndex.length; j++) {
+        assertTrue(indexOf(cuesIndex.offsets, seekIndex.offsets[j]) != -1);
+        if (j > 0) {
+          assertTrue(seekIndex.offsets[j] > seekIndex.offsets[j - 1]);
+          assertTrue(seekIndex.timesUs[j] > seekIndex.timesUs[j - 1]);
+        }
+      }
+    }
+  }
+
+  public void testMkvSampleWithoutCuesReferenceAndUnknownLength() throws Exception {
+    byte[] fileData = removeCuesReference(
+        TestUtil.getByteArray(getInstrumentation(), "mkv/sample.mkv"));
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(fileData)
+        .setSimulateUnknownLength(true).build();
+    Extractor extractor = new MatroskaExtractor(new DefaultEbmlReader(),
+        MatroskaExtractor.FLAG_BUILD_SEEK_INDEX, SEEK_INDEX_SCAN_INTERVAL);
+    FakeExtractorOutput output = TestUtil.consumeTestData(extractor, input);
+    assertFalse(output.seekMap.isSeekable());
+  }
+
   public void testWebmSubsampleEncryption() throws Exception {
     TestUtil.assertOutput(new TestUtil.ExtractorFactory() {
       @Override
@@ -51,4 +102,34 @@ public final class MatroskaExtractorTest extends InstrumentationTestCase {
     }, "mkv/subsample_encrypted_altref.webm", getInstrumentation());
   }
 
+  private static int indexOf(long[] array, long value) {
+    for (int i = 0; i < array.length; i++) {
+      if (array[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a copy of {@code fileData} in which the SeekHead entry referencing the Cues element
+   * references a Tags element instead.
+   */
+  private static byte[] removeCuesReference(byte[] fileData) {
+    byte[] cuesSeekId = new byte[] {0x53, (byte) 0xAB, (byte) 0x84, 0x1C, 0x53, (byte) 0xBB, 0x6B};
+    byte[] tagsId = new byte[] {0x12, 0x54, (byte) 0xC3, 0x67};
+    byte[] data = fileData.clone();
+    for (int i = 0; i <= data.length - cuesSeekId.length; i++) {
+      boolean matches = true;
+      for (int j = 0; j < cuesSeekId.length && matches; j++) {
+        matches = data[i + j] == cuesSeekId[j];
+      }
+      if (matches) {
+        System.arraycopy(tagsId, 0, data, i + 3, tagsId.length);
+        return data;
+      }
+    }
+    throw new IllegalArgumentException("Cues reference not found");
+  }
+
 }
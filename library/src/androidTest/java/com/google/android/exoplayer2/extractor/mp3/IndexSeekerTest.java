@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import com.google.android.exoplayer2.C;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link IndexSeeker}.
+ */
+public final class IndexSeekerTest extends TestCase {
+
+  private static final long FIRST_FRAME_POSITION = 157;
+  private static final int FIRST_FRAME_BITRATE = 128000;
+  private static final int SAMPLE_RATE = 44100;
+  private static final int SAMPLES_PER_FRAME = 1152;
+  private static final int FRAME_COUNT = 1000;
+  private static final int SEEK_COUNT = 500;
+
+  private Random random;
+  private long[] framePositions;
+  private long[] frameTimesUs;
+  private long endPosition;
+  private long endTimeUs;
+
+  @Override
+  protected void setUp() throws Exception {
+    random = new Random(0);
+    // Frames of a variable bitrate stream, whose sizes correspond to bitrates from 32 to 320 kbps.
+    framePositions = new long[FRAME_COUNT];
+    frameTimesUs = new long[FRAME_COUNT];
+    long position = FIRST_FRAME_POSITION;
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      framePositions[i] = position;
+      frameTimesUs[i] = getFrameTimeUs(i);
+      position += 104 + random.nextInt(941);
+    }
+    endPosition = position;
+    endTimeUs = getFrameTimeUs(FRAME_COUNT);
+  }
+
+  public void testUsesFirstFrameBitrateBeforeIndexing() {
+    IndexSeeker seeker = createSeeker(endPosition);
+    // 128 kbps is 16000 bytes per second.
+    assertEquals(0, seeker.getTimeUs(FIRST_FRAME_POSITION));
+    assertEquals(C.MICROS_PER_SECOND, seeker.getTimeUs(FIRST_FRAME_POSITION + 16000));
+    assertEquals(FIRST_FRAME_POSITION, seeker.getPosition(0));
+    assertEquals(FIRST_FRAME_POSITION + 16000, seeker.getPosition(C.MICROS_PER_SECOND));
+    assertTrue(seeker.isExact(FIRST_FRAME_POSITION));
+    assertFalse(seeker.isExact(framePositions[1]));
+  }
+
+  public void testUnseekableWithoutInputLength() {
+    IndexSeeker seeker = createSeeker(C.LENGTH_UNSET);
+    assertFalse(seeker.isSeekable());
+    assertEquals(C.TIME_UNSET, seeker.getDurationUs());
+    assertEquals(0, seeker.getPosition(C.MICROS_PER_SECOND));
+  }
+
+  public void testIndexedFramesAreExact() {
+    IndexSeeker seeker = createSeeker(endPosition);
+    addFrames(seeker, 0, FRAME_COUNT);
+    int exactFrameCount = 0;
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      if (seeker.isExact(framePositions[i])) {
+        assertEquals(frameTimesUs[i], seeker.getTimeUs(framePositions[i]));
+        assertEquals(framePositions[i], seeker.getPosition(frameTimesUs[i]));
+        exactFrameCount++;
+      }
+    }
+    assertTrue(exactFrameCount >= FRAME_COUNT / 16);
+    assertTrue(exactFrameCount <= FRAME_COUNT / 16 + 1);
+  }
+
+  public void testSeekWithinIndexLandsOnEarlierIndexedFrame() {
+    IndexSeeker seeker = createSeeker(endPosition);
+    addFrames(seeker, 0, FRAME_COUNT);
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      long timeUs = (long) (random.nextDouble() * endTimeUs);
+      long position = seeker.getPosition(timeUs);
+      assertTrue(seeker.isExact(position));
+      int frameIndex = getFrameIndex(position);
+      assertEquals(framePositions[frameIndex], position);
+      assertTrue(frameTimesUs[frameIndex] <= timeUs);
+      // The seek lands no further before the target than the spacing between indexed frames.
+      assertTrue(frameIndex + 16 >= getFrameIndex(getPositionOfTime(timeUs)));
+    }
+  }
+
+  public void testTimesWithinIndexAreAccurate() {
+    IndexSeeker seeker = createSeeker(endPosition);
+    addFrames(seeker, 0, FRAME_COUNT);
+    long frameDurationUs = getFrameTimeUs(1);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      long errorUs = Math.abs(seeker.getTimeUs(framePositions[i]) - frameTimesUs[i]);
+      assertTrue(errorUs < 16 * frameDurationUs);
+    }
+  }
+
+  public void testEstimatesBeyondIndexUseAverageBitrate() {
+    int indexedFrameCount = FRAME_COUNT / 2;
+    IndexSeeker seeker = createSeeker(endPosition);
+    addFrames(seeker, 0, indexedFrameCount);
+    long indexedEndPosition = framePositions[indexedFrameCount];
+    long indexedEndTimeUs = frameTimesUs[indexedFrameCount];
+    long averageBytesPerSecond = ((indexedEndPosition - FIRST_FRAME_POSITION) * C.MICROS_PER_SECOND)
+        / indexedEndTimeUs;
+
+    assertEquals(indexedEndTimeUs, seeker.getTimeUs(indexedEndPosition));
+    assertEquals(indexedEndPosition, seeker.getPosition(indexedEndTimeUs));
+    long position = seeker.getPosition(indexedEndTimeUs + C.MICROS_PER_SECOND);
+    assertTrue(Math.abs(position - (indexedEndPosition + averageBytesPerSecond)) <= 1);
+    long timeUs = seeker.getTimeUs(indexedEndPosition + averageBytesPerSecond);
+    assertTrue(Math.abs(timeUs - (indexedEndTimeUs + C.MICROS_PER_SECOND)) < 1000);
+    assertFalse(seeker.isExact(framePositions[indexedFrameCount + 16]));
+  }
+
+  public void testFramesAlreadyIndexedAreIgnored() {
+    IndexSeeker seeker = createSeeker(endPosition);
+    addFrames(seeker, 0, FRAME_COUNT / 2);
+    long positionBefore = seeker.getPosition(endTimeUs);
+    // Reading again from an indexed frame mustn't change the index.
+    addFrames(seeker, 0, FRAME_COUNT / 4);
+    assertEquals(positionBefore, seeker.getPosition(endTimeUs));
+    // Resuming from the end of the index extends it as if reading had continued.
+    addFrames(seeker, FRAME_COUNT / 2, FRAME_COUNT);
+    IndexSeeker continuousSeeker = createSeeker(endPosition);
+    addFrames(continuousSeeker, 0, FRAME_COUNT);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      assertEquals(continuousSeeker.isExact(framePositions[i]), seeker.isExact(framePositions[i]));
+      assertEquals(continuousSeeker.getTimeUs(framePositions[i]),
+          seeker.getTimeUs(framePositions[i]));
+    }
+  }
+
+  private IndexSeeker createSeeker(long inputLength) {
+    return new IndexSeeker(FIRST_FRAME_POSITION, FIRST_FRAME_BITRATE, inputLength);
+  }
+
+  private void addFrames(IndexSeeker seeker, int fromIndex, int toIndex) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      long frameEndPosition = i + 1 < FRAME_COUNT ? framePositions[i + 1] : endPosition;
+      seeker.maybeAddFrame(framePositions[i], frameTimesUs[i], frameEndPosition,
+          getFrameTimeUs(i + 1));
+    }
+  }
+
+  /**
+   * Returns the position of the frame that contains {@code timeUs}.
+   */
+  private long getPositionOfTime(long timeUs) {
+    int index = 0;
+    while (index + 1 < FRAME_COUNT && frameTimesUs[index + 1] <= timeUs) {
+      index++;
+    }
+    return framePositions[index];
+  }
+
+  /**
+   * Returns the index of the frame at {@code position}, or -1 if no frame starts there.
+   */
+  private int getFrameIndex(long position) {
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      if (framePositions[i] == position) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static long getFrameTimeUs(int frameIndex) {
+    return (long) frameIndex * SAMPLES_PER_FRAME * C.MICROS_PER_SECOND / SAMPLE_RATE;
+  }
+
+}
@@ -17,8 +17,19 @@ package com.google.android.exoplayer2.extractor.mp4;
 
 import android.annotation.TargetApi;
 import android.test.InstrumentationTestCase;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * Tests for {@link Mp4Extractor}.
@@ -26,6 +37,13 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 @TargetApi(16)
 public final class Mp4ExtractorTest extends InstrumentationTestCase {
 
+  private static final int DURATION_S = 60;
+  private static final int VIDEO_SAMPLES_PER_S = 30;
+  private static final int VIDEO_SAMPLE_SIZE = 20000;
+  private static final int AUDIO_SAMPLES_PER_S = 50;
+  private static final int AUDIO_SAMPLE_SIZE = 400;
+  private static final long MAXIMUM_READ_AHEAD_BYTES = 10 * 1024 * 1024;
+
   public void testMp4Sample() throws Exception {
     TestUtil.assertOutput(new TestUtil.ExtractorFactory() {
       @Override
@@ -35,4 +53,332 @@ public final class Mp4ExtractorTest extends InstrumentationTestCase {
     }, "mp4/sample.mp4", getInstrumentation());
   }
 
+  public void testInterleavedMediaIsReadWithoutReloading() throws Exception {
+    // One second chunks of video and audio alternate.
+    int videoChunkSize = VIDEO_SAMPLES_PER_S * VIDEO_SAMPLE_SIZE;
+    int audioChunkSize = AUDIO_SAMPLES_PER_S * AUDIO_SAMPLE_SIZE;
+    int chunkStride = videoChunkSize + audioChunkSize;
+    SyntheticMp4 mp4 = new SyntheticMp4(buildChunkOffsets(0, chunkStride),
+        buildChunkOffsets(videoChunkSize, chunkStride));
+    mp4.extract();
+
+    assertEquals(0, mp4.reloadCount);
+    mp4.assertAllSamplesOutput();
+  }
+
+  public void testPoorlyInterleavedAudioIsNotStarved() throws Exception {
+    // All of the audio is muxed after all of the video.
+    int videoChunkSize = VIDEO_SAMPLES_PER_S * VIDEO_SAMPLE_SIZE;
+    int audioChunkSize = AUDIO_SAMPLES_PER_S * AUDIO_SAMPLE_SIZE;
+    SyntheticMp4 mp4 = new SyntheticMp4(buildChunkOffsets(0, videoChunkSize),
+        buildChunkOffsets(DURATION_S * videoChunkSize, audioChunkSize));
+    mp4.extract();
+
+    // Reading seeks to the audio once the video has been read far enough ahead, and back again.
+    assertEquals(2, mp4.reloadCount);
+    mp4.assertAllSamplesOutput();
+    assertTrue(mp4.videoSampleCountBeforeFirstAudioSample
+        <= MAXIMUM_READ_AHEAD_BYTES / VIDEO_SAMPLE_SIZE + 1);
+  }
+
+  private static int[] buildChunkOffsets(int firstChunkOffset, int chunkStride) {
+    int[] chunkOffsets = new int[DURATION_S];
+    for (int i = 0; i < DURATION_S; i++) {
+      chunkOffsets[i] = firstChunkOffset + i * chunkStride;
+    }
+    return chunkOffsets;
+  }
+
+  /**
+   * An MP4 file with a video track and an audio track, each split into one second chunks, whose
+   * sample data is not stored. The moov atom is at the start of the file, and sample data follows
+   * it.
+   */
+  private static final class SyntheticMp4 implements ExtractorOutput {
+
+    private final byte[] moov;
+    private final CountingTrackOutput videoOutput;
+    private final CountingTrackOutput audioOutput;
+
+    public int reloadCount;
+    public int videoSampleCountBeforeFirstAudioSample;
+
+    /**
+     * @param videoChunkOffsets The offsets of video chunks, relative to the end of the moov atom.
+     * @param audioChunkOffsets The offsets of audio chunks, relative to the end of the moov atom.
+     */
+    public SyntheticMp4(int[] videoChunkOffsets, int[] audioChunkOffsets) {
+      // The moov atom's size doesn't depend on the offsets, so build it twice to find its size.
+      int moovSize = buildMoov(videoChunkOffsets, audioChunkOffsets, 0).length;
+      moov = buildMoov(videoChunkOffsets, audioChunkOffsets, moovSize);
+      videoOutput = new CountingTrackOutput();
+      audioOutput = new CountingTrackOutput();
+    }
+
+    public void extract() throws Exception {
+      Mp4Extractor extractor = new Mp4Extractor();
+      extractor.init(this);
+      PositionHolder positionHolder = new PositionHolder();
+      ExtractorInput input = new SyntheticInput(0);
+      int result = Extractor.RESULT_CONTINUE;
+      while (result != Extractor.RESULT_END_OF_INPUT) {
+        result = extractor.read(input, positionHolder);
+        if (result == Extractor.RESULT_SEEK) {
+          reloadCount++;
+          input = new SyntheticInput(positionHolder.position);
+        }
+        if (audioOutput.sampleCount == 0) {
+          videoSampleCountBeforeFirstAudioSample = videoOutput.sampleCount;
+        }
+      }
+    }
+
+    public void assertAllSamplesOutput() {
+      videoOutput.assertAllSamplesOutput(DURATION_S * VIDEO_SAMPLES_PER_S, VIDEO_SAMPLE_SIZE);
+      audioOutput.assertAllSamplesOutput(DURATION_S * AUDIO_SAMPLES_PER_S, AUDIO_SAMPLE_SIZE);
+    }
+
+    // ExtractorOutput implementation.
+
+    @Override
+    public TrackOutput track(int trackId) {
+      return trackId == 0 ? videoOutput : audioOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      // Do nothing.
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      // Do nothing.
+    }
+
+    private static byte[] buildMoov(int[] videoChunkOffsets, int[] audioChunkOffsets,
+        int moovSize) {
+      byte[] mvhd = buildAtom(Atom.TYPE_mvhd, buildInts(0, 0, 0, 1000, DURATION_S * 1000));
+      byte[] videoSampleEntry = buildAtom(Atom.TYPE_s263, new byte[24],
+          buildShorts(1280, 720), new byte[50], buildAtom(Atom.TYPE_d263));
+      byte[] videoTrak = buildTrak(1, "vide", VIDEO_SAMPLES_PER_S, videoSampleEntry,
+          VIDEO_SAMPLES_PER_S, VIDEO_SAMPLE_SIZE, videoChunkOffsets, moovSize);
+      byte[] audioSampleEntry = buildAtom(Atom.TYPE_samr, new byte[16], buildShorts(1),
+          new byte[6], buildInts(8000 << 16));
+      byte[] audioTrak = buildTrak(2, "soun", 8000, audioSampleEntry, AUDIO_SAMPLES_PER_S,
+          AUDIO_SAMPLE_SIZE, audioChunkOffsets, moovSize);
+      return buildAtom(Atom.TYPE_moov, mvhd, videoTrak, audioTrak);
+    }
+
+    private static byte[] buildTrak(int trackId, String handlerType, int timescale,
+        byte[] sampleEntry, int samplesPerChunk, int sampleSize, int[] chunkOffsets,
+        int moovSize) {
+      byte[] tkhd = buildAtom(Atom.TYPE_tkhd,
+          buildInts(0, 0, 0, trackId, 0, DURATION_S * 1000), new byte[36]);
+      byte[] mdhd = buildAtom(Atom.TYPE_mdhd, buildInts(0, 0, 0, timescale, 0), new byte[4]);
+      byte[] hdlr = buildAtom(Atom.TYPE_hdlr,
+          buildInts(0, 0, Util.getIntegerCodeForString(handlerType)));
+      int sampleCount = chunkOffsets.length * samplesPerChunk;
+      int[] stcoValues = new int[chunkOffsets.length + 2];
+      stcoValues[1] = chunkOffsets.length;
+      for (int i = 0; i < chunkOffsets.length; i++) {
+        stcoValues[i + 2] = moovSize + chunkOffsets[i];
+      }
+      byte[] stbl = buildAtom(Atom.TYPE_stbl,
+          buildAtom(Atom.TYPE_stsd, buildInts(0, 1), sampleEntry),
+          buildAtom(Atom.TYPE_stts, buildInts(0, 1, sampleCount, timescale / samplesPerChunk)),
+          buildAtom(Atom.TYPE_stsc, buildInts(0, 1, 1, samplesPerChunk, 1)),
+          buildAtom(Atom.TYPE_stsz, buildInts(0, sampleSize, sampleCount)),
+          buildAtom(Atom.TYPE_stco, buildInts(stcoValues)));
+      byte[] mdia = buildAtom(Atom.TYPE_mdia, mdhd, hdlr,
+          buildAtom(Atom.TYPE_minf, stbl));
+      return buildAtom(Atom.TYPE_trak, tkhd, mdia);
+    }
+
+    private static byte[] buildAtom(int type, byte[]... payloads) {
+      byte[] payload = TestUtil.joinByteArrays(payloads);
+      ParsableByteArray header = new ParsableByteArray(Atom.HEADER_SIZE);
+      header.data[0] = (byte) ((payload.length + Atom.HEADER_SIZE) >> 24);
+      header.data[1] = (byte) ((payload.length + Atom.HEADER_SIZE) >> 16);
+      header.data[2] = (byte) ((payload.length + Atom.HEADER_SIZE) >> 8);
+      header.data[3] = (byte) (payload.length + Atom.HEADER_SIZE);
+      System.arraycopy(buildInts(type), 0, header.data, 4, 4);
+      return TestUtil.joinByteArrays(header.data, payload);
+    }
+
+    private static byte[] buildInts(int... values) {
+      byte[] data = new byte[4 * values.length];
+      for (int i = 0; i < values.length; i++) {
+        data[4 * i] = (byte) (values[i] >> 24);
+        data[4 * i + 1] = (byte) (values[i] >> 16);
+        data[4 * i + 2] = (byte) (values[i] >> 8);
+        data[4 * i + 3] = (byte) values[i];
+      }
+      return data;
+    }
+
+    private static byte[] buildShorts(int... values) {
+      byte[] data = new byte[2 * values.length];
+      for (int i = 0; i < values.length; i++) {
+        data[2 * i] = (byte) (values[i] >> 8);
+        data[2 * i + 1] = (byte) values[i];
+      }
+      return data;
+    }
+
+    /**
+     * An {@link ExtractorInput} reading the file from a given position, whose sample data is all
+     * zeros.
+     */
+    private final class SyntheticInput implements ExtractorInput {
+
+      private long position;
+
+      public SyntheticInput(long position) {
+        this.position = position;
+      }
+
+      @Override
+      public int read(byte[] target, int offset, int length) {
+        readFully(target, offset, length);
+        return length;
+      }
+
+      @Override
+      public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput) {
+        readFully(target, offset, length);
+        return true;
+      }
+
+      @Override
+      public void readFully(byte[] target, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+          target[offset + i] = position < moov.length ? moov[(int) position] : 0;
+          position++;
+        }
+      }
+
+      @Override
+      public int skip(int length) {
+        position += length;
+        return length;
+      }
+
+      @Override
+      public boolean skipFully(int length, boolean allowEndOfInput) {
+        position += length;
+        return true;
+      }
+
+      @Override
+      public void skipFully(int length) {
+        position += length;
+      }
+
+      @Override
+      public boolean peekFully(byte[] target, int offset, int length, boolean allowEndOfInput) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void peekFully(byte[] target, int offset, int length) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean advancePeekPosition(int length, boolean allowEndOfInput) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void advancePeekPosition(int length) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void resetPeekPosition() {
+        // Do nothing.
+      }
+
+      @Override
+      public long getPeekPosition() {
+        return position;
+      }
+
+      @Override
+      public long getPosition() {
+        return position;
+      }
+
+      @Override
+      public long getLength() {
+        return C.LENGTH_UNSET;
+      }
+
+      @Override
+      public <E extends Throwable> void setRetryPosition(long position, E e) throws E {
+        throw e;
+      }
+
+    }
+
+  }
+
+  /**
+   * A {@link TrackOutput} that discards sample data, and records sample sizes and timestamps.
+   */
+  private static final class CountingTrackOutput implements TrackOutput {
+
+    private final ArrayList<Integer> sampleSizes;
+    private final ArrayList<Long> sampleTimesUs;
+
+    public int sampleCount;
+
+    private int sampleDataLength;
+
+    public CountingTrackOutput() {
+      sampleSizes = new ArrayList<>();
+      sampleTimesUs = new ArrayList<>();
+    }
+
+    public void assertAllSamplesOutput(int expectedSampleCount, int expectedSampleSize) {
+      assertEquals(expectedSampleCount, sampleCount);
+      for (int i = 0; i < sampleCount; i++) {
+        assertEquals(expectedSampleSize, (int) sampleSizes.get(i));
+        if (i > 0) {
+          assertTrue(sampleTimesUs.get(i) > sampleTimesUs.get(i - 1));
+        }
+      }
+    }
+
+    @Override
+    public void format(Format format) {
+      // Do nothing.
+    }
+
+    @Override
+    public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput)
+        throws IOException, InterruptedException {
+      int bytesSkipped = input.skip(length);
+      sampleDataLength += bytesSkipped;
+      return bytesSkipped;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length) {
+      data.skipBytes(length);
+      sampleDataLength += length;
+    }
+
+    @Override
+    public void sampleMetadata(long timeUs, int flags, int size, int offset,
+        byte[] encryptionKey) {
+      // Record the amount of data output for the sample, rather than its declared size.
+      sampleSizes.add(sampleDataLength);
+      sampleDataLength = 0;
+      sampleTimesUs.add(timeUs);
+      sampleCount++;
+    }
+
+  }
+
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.GaplessInfoHolder;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link WindowedTrackSampleTable}, comparing it against the
+ * {@link ArrayTrackSampleTable} parsed from the same randomly generated sample table boxes.
+ */
+public final class WindowedTrackSampleTableTest extends TestCase {
+
+  private static final int TABLE_COUNT = 50;
+  private static final int MAX_SAMPLE_COUNT = 4 * WindowedTrackSampleTable.WINDOW_SIZE + 100;
+  private static final int SEEK_COUNT = 200;
+  private static final long TIMESCALE = 90000;
+
+  private Random random;
+
+  @Override
+  protected void setUp() throws Exception {
+    random = new Random(0);
+  }
+
+  public void testMatchesArrayTableWithoutCtts() throws ParserException {
+    for (int i = 0; i < TABLE_COUNT; i++) {
+      assertTablesMatch(random.nextBoolean(), random.nextBoolean(), false, random.nextBoolean());
+    }
+  }
+
+  public void testMatchesArrayTableWithCtts() throws ParserException {
+    for (int i = 0; i < TABLE_COUNT; i++) {
+      assertTablesMatch(random.nextBoolean(), random.nextBoolean(), true, random.nextBoolean());
+    }
+  }
+
+  private void assertTablesMatch(boolean fixedSampleSize, boolean chunkOffsetsAreLongs,
+      boolean hasCtts, boolean hasStss) throws ParserException {
+    int sampleCount = 1 + random.nextInt(MAX_SAMPLE_COUNT);
+    ParsableByteArray stsz = buildStsz(sampleCount, fixedSampleSize);
+    int[] chunkSampleCounts = buildChunkSampleCounts(sampleCount);
+    ParsableByteArray chunkOffsets = buildChunkOffsets(chunkSampleCounts.length,
+        chunkOffsetsAreLongs);
+    ParsableByteArray stsc = buildStsc(chunkSampleCounts);
+    ParsableByteArray stts = buildStts(sampleCount);
+    ParsableByteArray ctts = hasCtts ? buildCtts(sampleCount) : null;
+    ParsableByteArray stss = hasStss ? buildStss(sampleCount) : null;
+
+    Atom.ContainerAtom stbl = new Atom.ContainerAtom(Atom.TYPE_stbl, C.POSITION_UNSET);
+    stbl.add(new Atom.LeafAtom(Atom.TYPE_stsz, stsz));
+    stbl.add(new Atom.LeafAtom(chunkOffsetsAreLongs ? Atom.TYPE_co64 : Atom.TYPE_stco,
+        chunkOffsets));
+    stbl.add(new Atom.LeafAtom(Atom.TYPE_stsc, stsc));
+    stbl.add(new Atom.LeafAtom(Atom.TYPE_stts, stts));
+    if (ctts != null) {
+      stbl.add(new Atom.LeafAtom(Atom.TYPE_ctts, ctts));
+    }
+    if (stss != null) {
+      stbl.add(new Atom.LeafAtom(Atom.TYPE_stss, stss));
+    }
+    Format format = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null,
+        Format.NO_VALUE, Format.NO_VALUE, 1280, 720, Format.NO_VALUE, null, null);
+    Track track = new Track(1, C.TRACK_TYPE_VIDEO, TIMESCALE, TIMESCALE, C.TIME_UNSET, format,
+        Track.TRANSFORMATION_NONE, null, 4, null, null);
+    // The tables are shorter than the minimum length for which parseStbl returns a windowed table.
+    ArrayTrackSampleTable expected = (ArrayTrackSampleTable) AtomParsers.parseStbl(track, stbl,
+        new GaplessInfoHolder());
+    WindowedTrackSampleTable actual = new WindowedTrackSampleTable(TIMESCALE, stsz, chunkOffsets,
+        chunkOffsetsAreLongs, stsc, stts, ctts, stss);
+
+    assertEquals(expected.sampleCount, actual.sampleCount);
+    assertEquals(expected.maximumSize, actual.maximumSize);
+    // Visit the samples in a random order of windows, so that windows are decoded repeatedly.
+    for (int i = 0; i < 2 * sampleCount; i++) {
+      int sampleIndex = random.nextInt(sampleCount);
+      assertSampleMatches(expected, actual, sampleIndex);
+    }
+    for (int i = 0; i < sampleCount; i++) {
+      assertSampleMatches(expected, actual, i);
+    }
+
+    if (!hasCtts) {
+      // Synchronization sample lookups are only well defined when timestamps are sorted.
+      long durationUs = expected.timestampsUs[sampleCount - 1];
+      for (int i = 0; i < SEEK_COUNT; i++) {
+        long timeUs = (long) (random.nextDouble() * (durationUs + 2 * C.MICROS_PER_SECOND))
+            - C.MICROS_PER_SECOND;
+        assertEquals(expected.getIndexOfEarlierOrEqualSynchronizationSample(timeUs),
+            actual.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+        assertEquals(expected.getIndexOfLaterOrEqualSynchronizationSample(timeUs),
+            actual.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+      }
+    }
+  }
+
+  private static void assertSampleMatches(ArrayTrackSampleTable expected,
+      WindowedTrackSampleTable actual, int sampleIndex) {
+    assertEquals(expected.getOffset(sampleIndex), actual.getOffset(sampleIndex));
+    assertEquals(expected.getSize(sampleIndex), actual.getSize(sampleIndex));
+    assertEquals(expected.getTimestampUs(sampleIndex), actual.getTimestampUs(sampleIndex));
+    assertEquals(expected.getFlags(sampleIndex), actual.getFlags(sampleIndex));
+  }
+
+  private ParsableByteArray buildStsz(int sampleCount, boolean fixedSampleSize) {
+    if (fixedSampleSize) {
+      return buildFullAtom(1 + random.nextInt(1000), sampleCount);
+    }
+    int[] values = new int[sampleCount + 2];
+    values[1] = sampleCount;
+    for (int i = 0; i < sampleCount; i++) {
+      values[i + 2] = 1 + random.nextInt(100000);
+    }
+    return buildFullAtom(values);
+  }
+
+  private int[] buildChunkSampleCounts(int sampleCount) {
+    ArrayList<Integer> chunkSampleCounts = new ArrayList<>();
+    int remainingSampleCount = sampleCount;
+    while (remainingSampleCount > 0) {
+      // Runs of chunks with the same number of samples.
+      int samplesPerChunk = 1 + random.nextInt(30);
+      int runLength = 1 + random.nextInt(20);
+      for (int i = 0; i < runLength && remainingSampleCount > 0; i++) {
+        int chunkSampleCount = Math.min(samplesPerChunk, remainingSampleCount);
+        chunkSampleCounts.add(chunkSampleCount);
+        remainingSampleCount -= chunkSampleCount;
+      }
+    }
+    int[] result = new int[chunkSampleCounts.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = chunkSampleCounts.get(i);
+    }
+    return result;
+  }
+
+  private ParsableByteArray buildChunkOffsets(int chunkCount, boolean chunkOffsetsAreLongs) {
+    long offset = chunkOffsetsAreLongs ? (1L << 32) + random.nextInt(1000) : random.nextInt(1000);
+    int[] values = new int[1 + (chunkOffsetsAreLongs ? 2 : 1) * chunkCount];
+    values[0] = chunkCount;
+    int position = 1;
+    for (int i = 0; i < chunkCount; i++) {
+      offset += random.nextInt(1000000);
+      if (chunkOffsetsAreLongs) {
+        values[position++] = (int) (offset >>> 32);
+      }
+      values[position++] = (int) offset;
+    }
+    return buildFullAtom(values);
+  }
+
+  private static ParsableByteArray buildStsc(int[] chunkSampleCounts) {
+    ArrayList<Integer> entries = new ArrayList<>();
+    for (int i = 0; i < chunkSampleCounts.length; i++) {
+      if (i == 0 || chunkSampleCounts[i] != chunkSampleCounts[i - 1]) {
+        entries.add(i + 1);
+        entries.add(chunkSampleCounts[i]);
+        entries.add(1);
+      }
+    }
+    return buildFullAtom(toEntryArray(entries, 3));
+  }
+
+  private ParsableByteArray buildStts(int sampleCount) {
+    ArrayList<Integer> entries = new ArrayList<>();
+    int remainingSampleCount = sampleCount;
+    while (remainingSampleCount > 0) {
+      int entrySampleCount = Math.min(1 + random.nextInt(500), remainingSampleCount);
+      entries.add(entrySampleCount);
+      entries.add(1 + random.nextInt(6000));
+      remainingSampleCount -= entrySampleCount;
+    }
+    return buildFullAtom(toEntryArray(entries, 2));
+  }
+
+  private ParsableByteArray buildCtts(int sampleCount) {
+    ArrayList<Integer> entries = new ArrayList<>();
+    int remainingSampleCount = sampleCount;
+    while (remainingSampleCount > 0) {
+      int entrySampleCount = Math.min(1 + random.nextInt(5), remainingSampleCount);
+      entries.add(entrySampleCount);
+      entries.add(random.nextInt(12000) - 3000);
+      remainingSampleCount -= entrySampleCount;
+    }
+    return buildFullAtom(toEntryArray(entries, 2));
+  }
+
+  private ParsableByteArray buildStss(int sampleCount) {
+    ArrayList<Integer> entries = new ArrayList<>();
+    // Start without a synchronization sample at times, so that earlier lookups can fail.
+    int sampleNumber = 1 + random.nextInt(3);
+    while (sampleNumber <= sampleCount) {
+      entries.add(sampleNumber);
+      sampleNumber += 1 + random.nextInt(100);
+    }
+    return buildFullAtom(toEntryArray(entries, 1));
+  }
+
+  private static int[] toEntryArray(ArrayList<Integer> entries, int entryLength) {
+    int[] values = new int[entries.size() + 1];
+    values[0] = entries.size() / entryLength;
+    for (int i = 0; i < entries.size(); i++) {
+      values[i + 1] = entries.get(i);
+    }
+    return values;
+  }
+
+  /**
+   * Returns the data of a full atom whose payload consists of the given 32-bit values.
+   */
+  private static ParsableByteArray buildFullAtom(int... values) {
+    byte[] data = new byte[Atom.FULL_HEADER_SIZE + 4 * values.length];
+    for (int i = 0; i < values.length; i++) {
+      int position = Atom.FULL_HEADER_SIZE + 4 * i;
+      data[position] = (byte) (values[i] >> 24);
+      data[position + 1] = (byte) (values[i] >> 16);
+      data[position + 2] = (byte) (values[i] >> 8);
+      data[position + 3] = (byte) values[i];
+    }
+    return new ParsableByteArray(data);
+  }
+
+}
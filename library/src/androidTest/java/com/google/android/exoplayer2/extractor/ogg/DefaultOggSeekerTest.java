@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor.ogg;
 
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
@@ -115,6 +116,48 @@ public final class DefaultOggSeekerTest extends TestCase {
     }
   }
 
+  public void testSeekingUsesIndexedPages() throws IOException, InterruptedException {
+    Random random = new Random(0);
+    OggTestFile testFile = OggTestFile.generate(random, 1000);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(testFile.data).build();
+    DefaultOggSeeker oggSeeker = new DefaultOggSeeker(0, testFile.data.length,
+        new TestStreamReader());
+    while (true) {
+      long nextSeekPosition = oggSeeker.read(input);
+      if (nextSeekPosition == -1) {
+        break;
+      }
+      input.setPosition((int) nextSeekPosition);
+    }
+    SeekMap seekMap = oggSeeker.createSeekMap();
+
+    for (int i = 0; i < 10; i++) {
+      long targetGranule = (long) (random.nextDouble() * testFile.lastGranule);
+      long currentGranule = seekThroughSeekMap(input, oggSeeker, seekMap, targetGranule, 100);
+      long currentPosition = input.getPosition();
+      // Seeking to the same granule again shouldn't require the input to be repositioned.
+      assertEquals(currentGranule,
+          seekThroughSeekMap(input, oggSeeker, seekMap, targetGranule, 0));
+      assertEquals(currentPosition, input.getPosition());
+    }
+  }
+
+  private long seekThroughSeekMap(FakeExtractorInput input, DefaultOggSeeker oggSeeker,
+      SeekMap seekMap, long targetGranule, int maxSeekCount)
+      throws IOException, InterruptedException {
+    input.setPosition((int) seekMap.getPosition(targetGranule));
+    oggSeeker.startSeek();
+    int count = 0;
+    long nextSeekPosition;
+    while ((nextSeekPosition = oggSeeker.read(input)) >= 0) {
+      if (count++ >= maxSeekCount) {
+        fail("Too many seeks.");
+      }
+      input.setPosition((int) nextSeekPosition);
+    }
+    return -(nextSeekPosition + 2);
+  }
+
   private long seekTo(FakeExtractorInput input, DefaultOggSeeker oggSeeker, long targetGranule,
       int initialPosition) throws IOException, InterruptedException {
     long nextSeekPosition = initialPosition;
@@ -134,6 +177,11 @@ public final class DefaultOggSeekerTest extends TestCase {
   }
 
   private static class TestStreamReader extends StreamReader {
+    @Override
+    protected long convertTimeToGranule(long timeUs) {
+      return timeUs;
+    }
+
     @Override
     protected long preparePayload(ParsableByteArray packet) {
       return 0;
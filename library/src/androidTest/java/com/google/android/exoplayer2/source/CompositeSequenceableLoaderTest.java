@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link CompositeSequenceableLoader}.
+ */
+public final class CompositeSequenceableLoaderTest extends TestCase {
+
+  private static final long CHUNK_DURATION_US = 1000000;
+  private static final int[] TRACK_TYPES = new int[] {C.TRACK_TYPE_AUDIO, C.TRACK_TYPE_VIDEO};
+
+  private FakeLoader audioLoader;
+  private FakeLoader videoLoader;
+
+  @Override
+  protected void setUp() throws Exception {
+    audioLoader = new FakeLoader();
+    videoLoader = new FakeLoader();
+  }
+
+  public void testEarliestDeadlineLoadsInParallel() {
+    CompositeSequenceableLoader compositeLoader = newCompositeLoader(
+        EarliestDeadlineLoadSchedulingPolicy.INSTANCE);
+    assertTrue(compositeLoader.continueLoading(0));
+    assertTrue(audioLoader.isLoading());
+    assertTrue(videoLoader.isLoading());
+  }
+
+  public void testEarliestDeadlineHoldsBackLoaderAhead() {
+    CompositeSequenceableLoader compositeLoader = newCompositeLoader(
+        EarliestDeadlineLoadSchedulingPolicy.INSTANCE);
+    audioLoader.nextLoadPositionUs = 2 * CHUNK_DURATION_US;
+    assertTrue(compositeLoader.continueLoading(0));
+    assertFalse(audioLoader.isLoading());
+    assertTrue(videoLoader.isLoading());
+  }
+
+  public void testWeightedFairStartsOneLoadAtATime() {
+    CompositeSequenceableLoader compositeLoader = newCompositeLoader(
+        new WeightedFairLoadSchedulingPolicy.Factory().createPolicy(TRACK_TYPES));
+    assertTrue(compositeLoader.continueLoading(0));
+    assertTrue(audioLoader.isLoading());
+    assertFalse(videoLoader.isLoading());
+
+    // The video loader is held back until the audio load finishes, but the audio loader is still
+    // told to continue its current load.
+    int continueLoadingCallsWhileLoading = audioLoader.continueLoadingCallsWhileLoading;
+    assertFalse(compositeLoader.continueLoading(0));
+    assertFalse(videoLoader.isLoading());
+    assertEquals(continueLoadingCallsWhileLoading + 1,
+        audioLoader.continueLoadingCallsWhileLoading);
+
+    audioLoader.finishLoad();
+    assertTrue(compositeLoader.continueLoading(0));
+    assertFalse(audioLoader.isLoading());
+    assertTrue(videoLoader.isLoading());
+  }
+
+  public void testEarliestDeadlineSharesLoadsEqually() {
+    runLoads(newCompositeLoader(EarliestDeadlineLoadSchedulingPolicy.INSTANCE), 30);
+    assertEquals(15, audioLoader.startedLoadCount);
+    assertEquals(15, videoLoader.startedLoadCount);
+  }
+
+  public void testWeightedFairSharesLoadsByWeight() {
+    runLoads(newCompositeLoader(new WeightedFairLoadSchedulingPolicy.Factory(2, 1, 1, 60000, 1)
+        .createPolicy(TRACK_TYPES)), 30);
+    assertEquals(20, audioLoader.startedLoadCount);
+    assertEquals(10, videoLoader.startedLoadCount);
+  }
+
+  private CompositeSequenceableLoader newCompositeLoader(LoadSchedulingPolicy policy) {
+    return new CompositeSequenceableLoader(new SequenceableLoader[] {audioLoader, videoLoader},
+        policy);
+  }
+
+  private void runLoads(CompositeSequenceableLoader compositeLoader, int loadCount) {
+    while (audioLoader.startedLoadCount + videoLoader.startedLoadCount < loadCount) {
+      assertTrue(compositeLoader.continueLoading(0));
+      audioLoader.finishLoad();
+      videoLoader.finishLoad();
+    }
+  }
+
+  private static final class FakeLoader implements SequenceableLoader {
+
+    public long nextLoadPositionUs;
+    public int startedLoadCount;
+    public int continueLoadingCallsWhileLoading;
+
+    private boolean loading;
+
+    public void finishLoad() {
+      loading = false;
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return nextLoadPositionUs;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return loading;
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      if (loading) {
+        continueLoadingCallsWhileLoading++;
+        return false;
+      }
+      loading = true;
+      startedLoadCount++;
+      nextLoadPositionUs += CHUNK_DURATION_US;
+      return true;
+    }
+
+  }
+
+}
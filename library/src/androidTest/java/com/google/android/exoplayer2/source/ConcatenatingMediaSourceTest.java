@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ConcatenatingMediaSource}.
+ */
+public final class ConcatenatingMediaSourceTest extends TestCase {
+
+  private static final long DURATION_A_US = 1000000;
+  private static final long DURATION_B_US = 2000000;
+  private static final long UPDATED_DURATION_A_US = 3000000;
+
+  private FakeMediaSource sourceA;
+  private FakeMediaSource sourceB;
+  private ConcatenatingMediaSource concatenatingSource;
+  private RecordingListener listener;
+
+  @Override
+  protected void setUp() throws Exception {
+    sourceA = new FakeMediaSource();
+    sourceB = new FakeMediaSource();
+    // Source A is repeated, including consecutively.
+    concatenatingSource = new ConcatenatingMediaSource(sourceA, sourceB, sourceA, sourceA);
+    listener = new RecordingListener();
+    concatenatingSource.prepareSource(listener);
+  }
+
+  public void testRepeatedSourcesArePreparedOnce() {
+    assertEquals(1, sourceA.prepareCount);
+    assertEquals(1, sourceB.prepareCount);
+  }
+
+  public void testListenerWaitsForAllDistinctSources() {
+    Object manifestA = new Object();
+    sourceA.refresh(new SinglePeriodTimeline(DURATION_A_US, true), manifestA);
+    assertEquals(0, listener.refreshCount);
+
+    Object manifestB = new Object();
+    sourceB.refresh(new SinglePeriodTimeline(DURATION_B_US, true), manifestB);
+    assertEquals(1, listener.refreshCount);
+    assertWindowDurations(DURATION_A_US, DURATION_B_US, DURATION_A_US, DURATION_A_US);
+    Object[] manifests = (Object[]) listener.manifest;
+    assertSame(manifestA, manifests[0]);
+    assertSame(manifestB, manifests[1]);
+    assertSame(manifestA, manifests[2]);
+    assertSame(manifestA, manifests[3]);
+  }
+
+  public void testRepeatedRefreshDoesNotCountTwice() {
+    sourceA.refresh(new SinglePeriodTimeline(DURATION_A_US, true), null);
+    // A second refresh of the same source mustn't stand in for the source that hasn't reported.
+    sourceA.refresh(new SinglePeriodTimeline(UPDATED_DURATION_A_US, true), null);
+    assertEquals(0, listener.refreshCount);
+
+    sourceB.refresh(new SinglePeriodTimeline(DURATION_B_US, true), null);
+    assertEquals(1, listener.refreshCount);
+    assertWindowDurations(UPDATED_DURATION_A_US, DURATION_B_US, UPDATED_DURATION_A_US,
+        UPDATED_DURATION_A_US);
+  }
+
+  public void testRefreshAfterPreparationUpdatesAllEntries() {
+    sourceA.refresh(new SinglePeriodTimeline(DURATION_A_US, true), null);
+    sourceB.refresh(new SinglePeriodTimeline(DURATION_B_US, true), null);
+    Object updatedManifestA = new Object();
+    sourceA.refresh(new SinglePeriodTimeline(UPDATED_DURATION_A_US, true), updatedManifestA);
+    assertEquals(2, listener.refreshCount);
+    assertWindowDurations(UPDATED_DURATION_A_US, DURATION_B_US, UPDATED_DURATION_A_US,
+        UPDATED_DURATION_A_US);
+    Object[] manifests = (Object[]) listener.manifest;
+    assertSame(updatedManifestA, manifests[0]);
+    assertNull(manifests[1]);
+    assertSame(updatedManifestA, manifests[2]);
+    assertSame(updatedManifestA, manifests[3]);
+  }
+
+  public void testPeriodsOfRepeatedSourceAreCreatedAndReleasedByThatSource() {
+    sourceA.refresh(new SinglePeriodTimeline(DURATION_A_US, true), null);
+    sourceB.refresh(new SinglePeriodTimeline(DURATION_B_US, true), null);
+    MediaPeriod period = concatenatingSource.createPeriod(3, null, null, 0);
+    assertSame(sourceA.lastCreatedPeriod, period);
+    assertEquals(0, sourceA.lastCreatedPeriodIndex);
+    concatenatingSource.releasePeriod(period);
+    assertSame(period, sourceA.lastReleasedPeriod);
+    assertNull(sourceB.lastReleasedPeriod);
+
+    concatenatingSource.releaseSource();
+    assertEquals(1, sourceA.releaseCount);
+    assertEquals(1, sourceB.releaseCount);
+  }
+
+  private void assertWindowDurations(long... durationsUs) {
+    Timeline timeline = listener.timeline;
+    assertEquals(durationsUs.length, timeline.getWindowCount());
+    assertEquals(durationsUs.length, timeline.getPeriodCount());
+    Timeline.Window window = new Timeline.Window();
+    for (int i = 0; i < durationsUs.length; i++) {
+      assertEquals(durationsUs[i], timeline.getWindow(i, window).getDurationUs());
+    }
+  }
+
+  private static final class RecordingListener implements MediaSource.Listener {
+
+    public int refreshCount;
+    public Timeline timeline;
+    public Object manifest;
+
+    @Override
+    public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+      refreshCount++;
+      this.timeline = timeline;
+      this.manifest = manifest;
+    }
+
+  }
+
+  /**
+   * A source whose timeline is refreshed by the test.
+   */
+  private static final class FakeMediaSource implements MediaSource {
+
+    public int prepareCount;
+    public int releaseCount;
+    public MediaPeriod lastCreatedPeriod;
+    public int lastCreatedPeriodIndex;
+    public MediaPeriod lastReleasedPeriod;
+
+    private Listener listener;
+
+    public void refresh(Timeline timeline, Object manifest) {
+      listener.onSourceInfoRefreshed(timeline, manifest);
+    }
+
+    @Override
+    public void prepareSource(Listener listener) {
+      prepareCount++;
+      this.listener = listener;
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() {
+      // Do nothing.
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, MediaPeriod.Callback callback, Allocator allocator,
+        long positionUs) {
+      lastCreatedPeriodIndex = index;
+      lastCreatedPeriod = new FakeMediaPeriod();
+      return lastCreatedPeriod;
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      lastReleasedPeriod = mediaPeriod;
+    }
+
+    @Override
+    public void releaseSource() {
+      releaseCount++;
+    }
+
+  }
+
+  private static final class FakeMediaPeriod implements MediaPeriod {
+
+    @Override
+    public void maybeThrowPrepareError() {
+      // Do nothing.
+    }
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return new TrackGroupArray();
+    }
+
+    @Override
+    public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+        SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public long readDiscontinuity() {
+      return C.TIME_UNSET;
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public void setBackBufferDurationUs(long backBufferDurationUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      return false;
+    }
+
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the extractor sniffing order of {@link ExtractorMediaPeriod}.
+ */
+public final class ExtractorMediaPeriodTest extends TestCase {
+
+  private Extractor matroskaExtractor;
+  private Extractor fragmentedMp4Extractor;
+  private Extractor mp4Extractor;
+  private Extractor mp3Extractor;
+  private Extractor adtsExtractor;
+  private Extractor tsExtractor;
+  private Extractor oggExtractor;
+  private Extractor[] extractors;
+
+  @Override
+  protected void setUp() throws Exception {
+    matroskaExtractor = new MatroskaExtractor();
+    fragmentedMp4Extractor = new FragmentedMp4Extractor();
+    mp4Extractor = new Mp4Extractor();
+    mp3Extractor = new Mp3Extractor();
+    adtsExtractor = new AdtsExtractor();
+    tsExtractor = new TsExtractor();
+    oggExtractor = new OggExtractor();
+    // The same order as DefaultExtractorsFactory.
+    extractors = new Extractor[] {matroskaExtractor, fragmentedMp4Extractor, mp4Extractor,
+        mp3Extractor, adtsExtractor, tsExtractor, oggExtractor};
+  }
+
+  public void testNoHintKeepsOriginalOrder() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(null);
+    assertSniffingOrder(extractors, holder.getSniffingOrder(null));
+    assertSniffingOrder(extractors, holder.getSniffingOrder("file"));
+    assertSniffingOrder(extractors, holder.getSniffingOrder("file.unknown"));
+    assertSniffingOrder(extractors, holder.getSniffingOrder("file."));
+  }
+
+  public void testExtensionHintComesFirst() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(null);
+    assertSniffingOrder(new Extractor[] {fragmentedMp4Extractor, mp4Extractor, matroskaExtractor,
+        mp3Extractor, adtsExtractor, tsExtractor, oggExtractor}, holder.getSniffingOrder("a.mp4"));
+    assertSniffingOrder(new Extractor[] {mp3Extractor, matroskaExtractor, fragmentedMp4Extractor,
+        mp4Extractor, adtsExtractor, tsExtractor, oggExtractor}, holder.getSniffingOrder("a.MP3"));
+    assertSniffingOrder(new Extractor[] {oggExtractor, matroskaExtractor, fragmentedMp4Extractor,
+        mp4Extractor, mp3Extractor, adtsExtractor, tsExtractor}, holder.getSniffingOrder("a.opus"));
+  }
+
+  public void testHintForMissingExtractorKeepsOriginalOrder() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(null);
+    assertSniffingOrder(extractors, holder.getSniffingOrder("a.wav"));
+  }
+
+  public void testPreferredClassComesFirst() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(TsExtractor.class);
+    assertSniffingOrder(new Extractor[] {tsExtractor, matroskaExtractor, fragmentedMp4Extractor,
+        mp4Extractor, mp3Extractor, adtsExtractor, oggExtractor}, holder.getSniffingOrder(null));
+  }
+
+  public void testPreferredClassComesBeforeExtensionHint() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(Mp4Extractor.class);
+    assertSniffingOrder(new Extractor[] {mp4Extractor, fragmentedMp4Extractor, matroskaExtractor,
+        mp3Extractor, adtsExtractor, tsExtractor, oggExtractor}, holder.getSniffingOrder("a.mp4"));
+    assertSniffingOrder(new Extractor[] {mp4Extractor, adtsExtractor, matroskaExtractor,
+        fragmentedMp4Extractor, mp3Extractor, tsExtractor, oggExtractor},
+        holder.getSniffingOrder("a.aac"));
+  }
+
+  public void testUnavailablePreferredClassKeepsOriginalOrder() {
+    ExtractorMediaPeriod.ExtractorHolder holder = createHolder(Extractor.class);
+    assertSniffingOrder(extractors, holder.getSniffingOrder(null));
+  }
+
+  public void testHintedExtractorClassesAreShared() {
+    Class<?>[] hintedExtractorClasses = DefaultExtractorsFactory.getHintedExtractorClasses("a.mkv");
+    assertEquals(1, hintedExtractorClasses.length);
+    assertEquals(MatroskaExtractor.class, hintedExtractorClasses[0]);
+    assertSame(hintedExtractorClasses,
+        DefaultExtractorsFactory.getHintedExtractorClasses("b.webm"));
+    assertSame(DefaultExtractorsFactory.getHintedExtractorClasses(null),
+        DefaultExtractorsFactory.getHintedExtractorClasses("file.unknown"));
+  }
+
+  private ExtractorMediaPeriod.ExtractorHolder createHolder(
+      Class<? extends Extractor> preferredExtractorClass) {
+    return new ExtractorMediaPeriod.ExtractorHolder(extractors, null, preferredExtractorClass);
+  }
+
+  private void assertSniffingOrder(Extractor[] expected, Extractor[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertSame(expected[i], actual[i]);
+    }
+    // Every extractor is sniffed exactly once.
+    for (Extractor extractor : extractors) {
+      int count = 0;
+      for (Extractor orderedExtractor : actual) {
+        if (orderedExtractor == extractor) {
+          count++;
+        }
+      }
+      assertEquals(1, count);
+    }
+  }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link MediaPeriodPool}.
+ */
+public final class MediaPeriodPoolTest extends TestCase {
+
+  private static final int ALLOCATION_LENGTH = 1024;
+  private static final int MAX_BYTES = 4 * ALLOCATION_LENGTH;
+  private static final int MAX_PERIOD_COUNT = 2;
+
+  private DefaultAllocator allocator;
+  private LoadControl loadControl;
+  private MediaPeriodPool pool;
+
+  @Override
+  protected void setUp() throws Exception {
+    allocator = new DefaultAllocator(ALLOCATION_LENGTH);
+    allocator.setTargetBufferSize(8 * ALLOCATION_LENGTH);
+    pool = new MediaPeriodPool(new DefaultLoadControl(allocator), allocator, MAX_BYTES,
+        MAX_PERIOD_COUNT);
+    loadControl = pool.getLoadControl();
+  }
+
+  public void testReleasedPeriodIsReused() {
+    FakeMediaSource source = new FakeMediaSource();
+    MediaSource wrappedSource = pool.wrap(source);
+    MediaPeriod period = preparePeriod(wrappedSource, 2);
+    releasePeriod(wrappedSource, period);
+
+    wrappedSource = pool.wrap(source);
+    assertSame(period, preparePeriod(wrappedSource, 0));
+    assertEquals(1, source.createdPeriods.size());
+    assertEquals(0, pool.getPooledPeriodCount());
+    assertEquals(2, source.createdPeriods.get(0).allocations.size());
+  }
+
+  public void testPooledBytesExcludeActivePeriods() {
+    MediaSource wrappedSource = pool.wrap(new FakeMediaSource());
+    MediaPeriod period = preparePeriod(wrappedSource, 2);
+    MediaSource otherWrappedSource = pool.wrap(new FakeMediaSource());
+    preparePeriod(otherWrappedSource, 1);
+    assertEquals(0, pool.getPooledBytes());
+
+    releasePeriod(wrappedSource, period);
+    assertEquals(1, pool.getPooledPeriodCount());
+    assertEquals(2 * ALLOCATION_LENGTH, pool.getPooledBytes());
+    assertEquals(3 * ALLOCATION_LENGTH, allocator.getTotalBytesAllocated());
+  }
+
+  public void testLeastRecentlyUsedPeriodReleasedOverBudget() {
+    FakeMediaSource source = new FakeMediaSource();
+    FakeMediaSource otherSource = new FakeMediaSource();
+    MediaSource wrappedSource = pool.wrap(source);
+    MediaSource otherWrappedSource = pool.wrap(otherSource);
+    MediaPeriod period = preparePeriod(wrappedSource, 3);
+    MediaPeriod otherPeriod = preparePeriod(otherWrappedSource, 2);
+
+    releasePeriod(wrappedSource, period);
+    assertEquals(1, pool.getPooledPeriodCount());
+    releasePeriod(otherWrappedSource, otherPeriod);
+    assertEquals(1, pool.getPooledPeriodCount());
+    assertEquals(2 * ALLOCATION_LENGTH, pool.getPooledBytes());
+    assertTrue(source.createdPeriods.get(0).released);
+    assertTrue(source.released);
+    assertFalse(otherSource.createdPeriods.get(0).released);
+    assertFalse(otherSource.released);
+  }
+
+  public void testPooledPeriodsReleasedWhenLoadingNeedsRoom() {
+    FakeMediaSource source = new FakeMediaSource();
+    MediaSource wrappedSource = pool.wrap(source);
+    releasePeriod(wrappedSource, preparePeriod(wrappedSource, 2));
+
+    MediaSource otherWrappedSource = pool.wrap(new FakeMediaSource());
+    MediaPeriod otherPeriod = preparePeriod(otherWrappedSource, 5);
+    loadControl.shouldContinueLoading(0);
+    assertEquals(1, pool.getPooledPeriodCount());
+
+    otherPeriod.continueLoading(0);
+    loadControl.shouldContinueLoading(0);
+    assertEquals(0, pool.getPooledPeriodCount());
+    assertTrue(source.createdPeriods.get(0).released);
+    assertEquals(6 * ALLOCATION_LENGTH, allocator.getTotalBytesAllocated());
+  }
+
+  private MediaPeriod preparePeriod(MediaSource wrappedSource, int loadCount) {
+    wrappedSource.prepareSource(new MediaSource.Listener() {
+      @Override
+      public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        // Do nothing.
+      }
+    });
+    MediaPeriod period = wrappedSource.createPeriod(0, new MediaPeriod.Callback() {
+      @Override
+      public void onPrepared(MediaPeriod mediaPeriod) {
+        // Do nothing.
+      }
+      @Override
+      public void onContinueLoadingRequested(MediaPeriod source) {
+        // Do nothing.
+      }
+    }, loadControl.getAllocator(), 0);
+    for (int i = 0; i < loadCount; i++) {
+      period.continueLoading(0);
+    }
+    return period;
+  }
+
+  private static void releasePeriod(MediaSource wrappedSource, MediaPeriod period) {
+    wrappedSource.releasePeriod(period);
+    wrappedSource.releaseSource();
+  }
+
+  private static final class FakeMediaSource implements MediaSource {
+
+    public final ArrayList<FakeMediaPeriod> createdPeriods = new ArrayList<>();
+    public boolean released;
+
+    @Override
+    public void prepareSource(Listener listener) {
+      listener.onSourceInfoRefreshed(new SinglePeriodTimeline(C.TIME_UNSET, false), null);
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() {
+      // Do nothing.
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, MediaPeriod.Callback callback, Allocator allocator,
+        long positionUs) {
+      FakeMediaPeriod period = new FakeMediaPeriod(allocator);
+      createdPeriods.add(period);
+      callback.onPrepared(period);
+      return period;
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      ((FakeMediaPeriod) mediaPeriod).release();
+    }
+
+    @Override
+    public void releaseSource() {
+      released = true;
+    }
+
+  }
+
+  /**
+   * A prepared period without tracks, which obtains one allocation each time it continues loading.
+   */
+  private static final class FakeMediaPeriod implements MediaPeriod {
+
+    public final ArrayList<Allocation> allocations = new ArrayList<>();
+    public boolean released;
+
+    private final Allocator allocator;
+
+    public FakeMediaPeriod(Allocator allocator) {
+      this.allocator = allocator;
+    }
+
+    public void release() {
+      allocator.release(allocations.toArray(new Allocation[allocations.size()]));
+      allocations.clear();
+      released = true;
+    }
+
+    @Override
+    public void maybeThrowPrepareError() {
+      // Do nothing.
+    }
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return new TrackGroupArray();
+    }
+
+    @Override
+    public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+        SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public long readDiscontinuity() {
+      return C.TIME_UNSET;
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return positionUs;
+    }
+
+    @Override
+    public void setBackBufferDurationUs(long backBufferDurationUs) {
+      // Do nothing.
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return C.TIME_END_OF_SOURCE;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      allocations.add(allocator.allocate());
+      return true;
+    }
+
+  }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.chunk;
+
+import android.net.Uri;
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.SequenceableLoader;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ChunkSampleStream}.
+ */
+public final class ChunkSampleStreamTest extends TestCase {
+
+  private static final int CHUNK_COUNT = 5;
+  private static final int CHUNK_SIZE = 100;
+  private static final long CHUNK_DURATION_US = 1000000;
+  private static final Format FORMAT = Format.createSampleFormat(null, MimeTypes.TEXT_VTT, null,
+      Format.NO_VALUE, null);
+
+  private HandlerThread playbackThread;
+  private Handler playbackHandler;
+
+  @Override
+  protected void setUp() throws Exception {
+    playbackThread = new HandlerThread("ChunkSampleStreamTest");
+    playbackThread.start();
+    playbackHandler = new Handler(playbackThread.getLooper());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    playbackThread.quit();
+  }
+
+  public void testSeekBackIntoBackBufferDoesNotReload() {
+    FakeChunkSource chunkSource = new FakeChunkSource();
+    ChunkSampleStream<FakeChunkSource> stream = loadAndReadAllChunks(chunkSource,
+        CHUNK_COUNT * CHUNK_DURATION_US);
+
+    seekToUs(stream, CHUNK_DURATION_US + CHUNK_DURATION_US / 2);
+    assertTrue(stream.isReady());
+    assertReadChunkSample(stream, 1);
+    assertReadChunkSample(stream, 2);
+    assertEquals(CHUNK_COUNT, chunkSource.chunkCount);
+    release(stream);
+  }
+
+  public void testSeekBackWithoutBackBufferReloads() {
+    FakeChunkSource chunkSource = new FakeChunkSource();
+    ChunkSampleStream<FakeChunkSource> stream = loadAndReadAllChunks(chunkSource, 0);
+
+    seekToUs(stream, CHUNK_DURATION_US + CHUNK_DURATION_US / 2);
+    assertFalse(stream.isReady());
+    release(stream);
+  }
+
+  /**
+   * Creates a stream with the specified back-buffer duration, loads all of the chunks provided by
+   * {@code chunkSource} and reads all of their samples.
+   */
+  private ChunkSampleStream<FakeChunkSource> loadAndReadAllChunks(FakeChunkSource chunkSource,
+      final long backBufferDurationUs) {
+    final ConditionVariable loadingFinished = new ConditionVariable();
+    SequenceableLoader.Callback<ChunkSampleStream<FakeChunkSource>> callback =
+        new SequenceableLoader.Callback<ChunkSampleStream<FakeChunkSource>>() {
+          @Override
+          public void onContinueLoadingRequested(ChunkSampleStream<FakeChunkSource> source) {
+            source.continueLoading(0);
+            if (source.getBufferedPositionUs() == C.TIME_END_OF_SOURCE) {
+              loadingFinished.open();
+            }
+          }
+        };
+    final ChunkSampleStream<FakeChunkSource> stream = new ChunkSampleStream<>(C.TRACK_TYPE_TEXT,
+        chunkSource, callback, new DefaultAllocator(CHUNK_SIZE / 4), 0, 0,
+        new EventDispatcher(null, null), new LoaderThreadPool("ChunkSampleStreamTest", 1));
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        stream.setBackBufferDurationUs(backBufferDurationUs);
+        stream.continueLoading(0);
+      }
+    });
+    assertTrue(loadingFinished.block(10000));
+
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    assertEquals(C.RESULT_FORMAT_READ, readData(stream, formatHolder, buffer));
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      assertReadChunkSample(stream, i);
+    }
+    return stream;
+  }
+
+  private void assertReadChunkSample(ChunkSampleStream<FakeChunkSource> stream, int chunkIndex) {
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    assertEquals(C.RESULT_BUFFER_READ, readData(stream, new FormatHolder(), buffer));
+    assertEquals(chunkIndex * CHUNK_DURATION_US, buffer.timeUs);
+    buffer.flip();
+    byte[] data = new byte[buffer.data.limit()];
+    buffer.data.get(data);
+    assertTrue(Arrays.equals(TestUtil.buildTestData(CHUNK_SIZE, chunkIndex), data));
+  }
+
+  private int readData(final ChunkSampleStream<FakeChunkSource> stream,
+      final FormatHolder formatHolder, final DecoderInputBuffer buffer) {
+    final int[] result = new int[1];
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        result[0] = stream.readData(formatHolder, buffer);
+      }
+    });
+    return result[0];
+  }
+
+  private void seekToUs(final ChunkSampleStream<FakeChunkSource> stream, final long positionUs) {
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        stream.seekToUs(positionUs);
+      }
+    });
+  }
+
+  private void release(final ChunkSampleStream<FakeChunkSource> stream) {
+    runOnPlaybackThread(new Runnable() {
+      @Override
+      public void run() {
+        stream.release();
+      }
+    });
+  }
+
+  private void runOnPlaybackThread(final Runnable runnable) {
+    final ConditionVariable finished = new ConditionVariable();
+    playbackHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        runnable.run();
+        finished.open();
+      }
+    });
+    assertTrue(finished.block(10000));
+  }
+
+  /**
+   * A {@link ChunkSource} providing {@link #CHUNK_COUNT} single sample chunks, each of which holds
+   * a keyframe whose data is generated from the chunk index.
+   */
+  private static final class FakeChunkSource implements ChunkSource {
+
+    public volatile int chunkCount;
+
+    @Override
+    public void maybeThrowError() {
+      // Do nothing.
+    }
+
+    @Override
+    public int getPreferredQueueSize(long playbackPositionUs, List<? extends MediaChunk> queue) {
+      return queue.size();
+    }
+
+    @Override
+    public void getNextChunk(MediaChunk previous, long playbackPositionUs, ChunkHolder out) {
+      int chunkIndex = previous == null ? (int) (playbackPositionUs / CHUNK_DURATION_US)
+          : previous.chunkIndex + 1;
+      if (chunkIndex == CHUNK_COUNT) {
+        out.endOfStream = true;
+        return;
+      }
+      FakeDataSource dataSource = new FakeDataSource.Builder()
+          .appendReadData(TestUtil.buildTestData(CHUNK_SIZE, chunkIndex)).build();
+      out.chunk = new SingleSampleMediaChunk(dataSource, new DataSpec(Uri.parse("chunk")), FORMAT,
+          C.SELECTION_REASON_UNKNOWN, null, chunkIndex * CHUNK_DURATION_US,
+          (chunkIndex + 1) * CHUNK_DURATION_US, chunkIndex, FORMAT);
+      chunkCount++;
+    }
+
+    @Override
+    public void onChunkLoadCompleted(Chunk chunk) {
+      // Do nothing.
+    }
+
+    @Override
+    public boolean onChunkLoadError(Chunk chunk, boolean cancelable, Exception e) {
+      return false;
+    }
+
+  }
+
+}
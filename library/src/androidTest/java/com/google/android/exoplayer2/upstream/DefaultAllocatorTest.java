@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link DefaultAllocator}.
+ */
+public final class DefaultAllocatorTest extends TestCase {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  public void testDirectAllocationsHaveOwnBuffers() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE, 0, true);
+    Allocation first = allocator.allocate();
+    Allocation second = allocator.allocate();
+    assertTrue(first.isDirect());
+    assertTrue(first.directData.isDirect());
+    assertEquals(ALLOCATION_SIZE, first.directData.capacity());
+    assertTrue(first.directData != second.directData);
+    assertEquals(2 * ALLOCATION_SIZE, allocator.getTotalBytesAllocated());
+  }
+
+  public void testDirectAllocationsAreReused() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE, 0, true);
+    allocator.setTargetBufferSize(4 * ALLOCATION_SIZE);
+    Allocation allocation = allocator.allocate();
+    allocator.release(allocation);
+    assertEquals(0, allocator.getTotalBytesAllocated());
+    assertTrue(allocator.allocate() == allocation);
+  }
+
+  public void testTrimDiscardsDirectAllocationsBeyondTarget() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE, 0, true);
+    Allocation[] allocations = new Allocation[4];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+    allocator.setTargetBufferSize(ALLOCATION_SIZE);
+    allocator.trim();
+    // Only a single allocation should be held for reuse, so later allocations are new.
+    Allocation reused = allocator.allocate();
+    Allocation created = allocator.allocate();
+    int retainedCount = 0;
+    for (Allocation allocation : allocations) {
+      if (allocation == reused || allocation == created) {
+        retainedCount++;
+      }
+    }
+    assertEquals(1, retainedCount);
+  }
+
+  public void testInitialDirectAllocationsAreNotTrimmed() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE, 2, true);
+    Allocation first = allocator.allocate();
+    Allocation second = allocator.allocate();
+    assertTrue(first.directData == second.directData);
+    allocator.release(new Allocation[] {first, second});
+    allocator.setTargetBufferSize(0);
+    allocator.trim();
+    Allocation allocation = allocator.allocate();
+    assertTrue(allocation == first || allocation == second);
+  }
+
+  public void testBackBufferFullOnlyOnceBudgetReached() {
+    DefaultAllocator allocator = new DefaultAllocator(ALLOCATION_SIZE);
+    allocator.onBackBufferSizeChanged(4 * ALLOCATION_SIZE);
+    // Without a budget the back-buffer is limited only by its duration.
+    assertFalse(allocator.isBackBufferFull());
+    allocator.setTargetBackBufferSize(4 * ALLOCATION_SIZE);
+    assertTrue(allocator.isBackBufferFull());
+    allocator.onBackBufferSizeChanged(-ALLOCATION_SIZE);
+    assertFalse(allocator.isBackBufferFull());
+    assertEquals(3 * ALLOCATION_SIZE, allocator.getTotalBackBufferBytes());
+  }
+
+}
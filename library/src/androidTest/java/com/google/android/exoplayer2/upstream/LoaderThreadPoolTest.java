@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.SingleSampleMediaSource;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link LoaderThreadPool}.
+ */
+public final class LoaderThreadPoolTest extends TestCase {
+
+  private static final int TIMEOUT_MS = 10000;
+  private static final int MEDIA_PERIOD_COUNT = 50;
+  private static final int SAMPLE_SIZE = 1000;
+  private static final int READ_LENGTH = 100;
+
+  private HandlerThread callbackThread;
+  private Handler callbackHandler;
+  private AtomicInteger activeLoadCount;
+  private AtomicInteger maxActiveLoadCount;
+
+  @Override
+  protected void setUp() throws Exception {
+    callbackThread = new HandlerThread("LoaderThreadPoolTest");
+    callbackThread.start();
+    callbackHandler = new Handler(callbackThread.getLooper());
+    activeLoadCount = new AtomicInteger();
+    maxActiveLoadCount = new AtomicInteger();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    callbackThread.quit();
+  }
+
+  public void testThreadCountStaysBoundedAcrossManyLoaders() throws InterruptedException {
+    LoaderThreadPool threadPool = new LoaderThreadPool("LoaderThreadPoolTest", 2);
+    assertEquals(2, threadPool.getMaxThreadCount());
+    Loader[] loaders = new Loader[20];
+    BlockingLoadable[] loadables = new BlockingLoadable[loaders.length];
+    for (int i = 0; i < loaders.length; i++) {
+      loaders[i] = new Loader(threadPool, LoaderThreadPool.PRIORITY_DEFAULT);
+      loadables[i] = new BlockingLoadable(null);
+      startLoading(loaders[i], loadables[i]);
+    }
+    assertTrue(loadables[0].started.block(TIMEOUT_MS));
+    assertTrue(loadables[1].started.block(TIMEOUT_MS));
+    // Give any further threads the chance to start loads, which they must not do.
+    Thread.sleep(100);
+    assertEquals(2, activeLoadCount.get());
+    assertEquals(2, threadPool.getThreadCount());
+
+    for (BlockingLoadable loadable : loadables) {
+      loadable.unblock.open();
+    }
+    for (BlockingLoadable loadable : loadables) {
+      assertTrue(loadable.finished.block(TIMEOUT_MS));
+    }
+    assertEquals(2, maxActiveLoadCount.get());
+    assertTrue(threadPool.getThreadCount() <= 2);
+    for (Loader loader : loaders) {
+      release(loader);
+    }
+  }
+
+  public void testQueuedLoadsStartByPriority() {
+    LoaderThreadPool threadPool = new LoaderThreadPool("LoaderThreadPoolTest", 1);
+    Loader blockingLoader = new Loader(threadPool, LoaderThreadPool.PRIORITY_DEFAULT);
+    BlockingLoadable blockingLoadable = new BlockingLoadable(null);
+    startLoading(blockingLoader, blockingLoadable);
+    assertTrue(blockingLoadable.started.block(TIMEOUT_MS));
+
+    // Queue loads behind the blocked load, alternating between default and high priority.
+    List<Integer> startOrder = Collections.synchronizedList(new ArrayList<Integer>());
+    Loader[] loaders = new Loader[4];
+    BlockingLoadable[] loadables = new BlockingLoadable[loaders.length];
+    for (int i = 0; i < loaders.length; i++) {
+      loaders[i] = new Loader(threadPool, i % 2 == 0 ? LoaderThreadPool.PRIORITY_DEFAULT
+          : LoaderThreadPool.PRIORITY_HIGH);
+      loadables[i] = new BlockingLoadable(startOrder);
+      loadables[i].id = i;
+      loadables[i].unblock.open();
+      startLoading(loaders[i], loadables[i]);
+    }
+    blockingLoadable.unblock.open();
+    for (BlockingLoadable loadable : loadables) {
+      assertTrue(loadable.finished.block(TIMEOUT_MS));
+    }
+    assertEquals(Arrays.asList(1, 3, 0, 2), startOrder);
+
+    release(blockingLoader);
+    for (Loader loader : loaders) {
+      release(loader);
+    }
+  }
+
+  public void testManyMediaPeriodsLoadOnBoundedPool() {
+    LoaderThreadPool threadPool = new LoaderThreadPool("LoaderThreadPoolTest",
+        LoaderThreadPool.DEFAULT_MAX_THREAD_COUNT);
+    final Set<Thread> loadingThreads = Collections.synchronizedSet(new HashSet<Thread>());
+    DataSource.Factory dataSourceFactory = new DataSource.Factory() {
+      @Override
+      public DataSource createDataSource() {
+        return new SlowDataSource(loadingThreads);
+      }
+    };
+    final SingleSampleMediaSource mediaSource = new SingleSampleMediaSource(Uri.parse("sample"),
+        dataSourceFactory, Format.createSampleFormat(null, MimeTypes.TEXT_VTT, null,
+        Format.NO_VALUE, null), C.TIME_UNSET, 0, null, null, 0, threadPool);
+    final MediaPeriod[] mediaPeriods = new MediaPeriod[MEDIA_PERIOD_COUNT];
+    runOnCallbackThread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < mediaPeriods.length; i++) {
+          mediaPeriods[i] = mediaSource.createPeriod(0, new NoOpMediaPeriodCallback(), null, 0);
+          assertTrue(mediaPeriods[i].continueLoading(0));
+        }
+      }
+    });
+
+    long endTimeMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!haveFinishedLoading(mediaPeriods)) {
+      assertTrue(System.currentTimeMillis() < endTimeMs);
+      assertTrue(threadPool.getThreadCount() <= LoaderThreadPool.DEFAULT_MAX_THREAD_COUNT);
+    }
+    assertEquals(LoaderThreadPool.DEFAULT_MAX_THREAD_COUNT, maxActiveLoadCount.get());
+    assertTrue(loadingThreads.size() <= LoaderThreadPool.DEFAULT_MAX_THREAD_COUNT);
+
+    runOnCallbackThread(new Runnable() {
+      @Override
+      public void run() {
+        for (MediaPeriod mediaPeriod : mediaPeriods) {
+          mediaSource.releasePeriod(mediaPeriod);
+        }
+      }
+    });
+  }
+
+  private boolean haveFinishedLoading(final MediaPeriod[] mediaPeriods) {
+    final boolean[] finished = new boolean[1];
+    runOnCallbackThread(new Runnable() {
+      @Override
+      public void run() {
+        finished[0] = true;
+        for (MediaPeriod mediaPeriod : mediaPeriods) {
+          finished[0] &= mediaPeriod.getBufferedPositionUs() == C.TIME_END_OF_SOURCE;
+        }
+      }
+    });
+    return finished[0];
+  }
+
+  private void startLoading(final Loader loader, final BlockingLoadable loadable) {
+    runOnCallbackThread(new Runnable() {
+      @Override
+      public void run() {
+        loader.startLoading(loadable, new NoOpCallback(), 0);
+      }
+    });
+  }
+
+  private void release(final Loader loader) {
+    runOnCallbackThread(new Runnable() {
+      @Override
+      public void run() {
+        loader.release();
+      }
+    });
+  }
+
+  private void runOnCallbackThread(final Runnable runnable) {
+    final ConditionVariable finished = new ConditionVariable();
+    callbackHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        runnable.run();
+        finished.open();
+      }
+    });
+    assertTrue(finished.block(TIMEOUT_MS));
+  }
+
+  private void onLoadStarted() {
+    int count = activeLoadCount.incrementAndGet();
+    int maxCount;
+    do {
+      maxCount = maxActiveLoadCount.get();
+    } while (count > maxCount && !maxActiveLoadCount.compareAndSet(maxCount, count));
+  }
+
+  private void onLoadFinished() {
+    activeLoadCount.decrementAndGet();
+  }
+
+  /**
+   * A {@link Loader.Loadable} whose load blocks until {@link #unblock} is opened.
+   */
+  private final class BlockingLoadable implements Loader.Loadable {
+
+    public final ConditionVariable started = new ConditionVariable();
+    public final ConditionVariable unblock = new ConditionVariable();
+    public final ConditionVariable finished = new ConditionVariable();
+    public int id;
+
+    private final List<Integer> startOrder;
+
+    private volatile boolean canceled;
+
+    /**
+     * @param startOrder A list to which {@link #id} is appended when the load starts, or null.
+     */
+    public BlockingLoadable(List<Integer> startOrder) {
+      this.startOrder = startOrder;
+    }
+
+    @Override
+    public void cancelLoad() {
+      canceled = true;
+    }
+
+    @Override
+    public boolean isLoadCanceled() {
+      return canceled;
+    }
+
+    @Override
+    public void load() throws IOException, InterruptedException {
+      onLoadStarted();
+      if (startOrder != null) {
+        startOrder.add(id);
+      }
+      started.open();
+      unblock.block();
+      onLoadFinished();
+      finished.open();
+    }
+
+  }
+
+  /**
+   * A {@link DataSource} that reads {@link #SAMPLE_SIZE} bytes slowly, so that loads overlap.
+   */
+  private final class SlowDataSource implements DataSource {
+
+    private final Set<Thread> loadingThreads;
+
+    private int bytesRead;
+
+    public SlowDataSource(Set<Thread> loadingThreads) {
+      this.loadingThreads = loadingThreads;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      onLoadStarted();
+      loadingThreads.add(Thread.currentThread());
+      bytesRead = 0;
+      return SAMPLE_SIZE;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      if (bytesRead == SAMPLE_SIZE) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      int length = Math.min(Math.min(readLength, READ_LENGTH), SAMPLE_SIZE - bytesRead);
+      bytesRead += length;
+      return length;
+    }
+
+    @Override
+    public Uri getUri() {
+      return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      onLoadFinished();
+    }
+
+  }
+
+  private static final class NoOpCallback implements Loader.Callback<BlockingLoadable> {
+
+    @Override
+    public void onLoadCompleted(BlockingLoadable loadable, long elapsedRealtimeMs,
+        long loadDurationMs) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onLoadCanceled(BlockingLoadable loadable, long elapsedRealtimeMs,
+        long loadDurationMs, boolean released) {
+      // Do nothing.
+    }
+
+    @Override
+    public int onLoadError(BlockingLoadable loadable, long elapsedRealtimeMs,
+        long loadDurationMs, IOException error) {
+      return Loader.DONT_RETRY;
+    }
+
+  }
+
+  private static final class NoOpMediaPeriodCallback implements MediaPeriod.Callback {
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {
+      // Do nothing.
+    }
+
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link SlicingAllocator}.
+ */
+public final class SlicingAllocatorTest extends TestCase {
+
+  private static final int UPSTREAM_ALLOCATION_SIZE = 64;
+  private static final int SLICE_COUNT = 4;
+  private static final int SLICE_SIZE = UPSTREAM_ALLOCATION_SIZE / SLICE_COUNT;
+
+  public void testSlicesShareUpstreamAllocation() {
+    DefaultAllocator upstream = new DefaultAllocator(UPSTREAM_ALLOCATION_SIZE);
+    SlicingAllocator allocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    assertEquals(SLICE_SIZE, allocator.getIndividualAllocationLength());
+    Allocation[] slices = allocateSlices(allocator, SLICE_COUNT);
+    boolean[] offsetUsed = new boolean[SLICE_COUNT];
+    for (Allocation slice : slices) {
+      assertTrue(slice.data == slices[0].data);
+      offsetUsed[slice.translateOffset(0) / SLICE_SIZE] = true;
+    }
+    for (boolean used : offsetUsed) {
+      assertTrue(used);
+    }
+    assertEquals(UPSTREAM_ALLOCATION_SIZE, upstream.getTotalBytesAllocated());
+    assertEquals(UPSTREAM_ALLOCATION_SIZE, allocator.getTotalBytesAllocated());
+  }
+
+  public void testDirectSlices() {
+    DefaultAllocator upstream = new DefaultAllocator(UPSTREAM_ALLOCATION_SIZE, 0, true);
+    SlicingAllocator allocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    Allocation first = allocator.allocate();
+    Allocation second = allocator.allocate();
+    assertTrue(first.isDirect());
+    assertTrue(first.directData == second.directData);
+    allocator.release(new Allocation[] {first, second});
+    assertEquals(0, upstream.getTotalBytesAllocated());
+  }
+
+  public void testUpstreamAllocationReleasedOnceAllSlicesReleased() {
+    DefaultAllocator upstream = new DefaultAllocator(UPSTREAM_ALLOCATION_SIZE);
+    SlicingAllocator allocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    Allocation[] slices = allocateSlices(allocator, SLICE_COUNT);
+    for (int i = 0; i < SLICE_COUNT - 1; i++) {
+      allocator.release(slices[i]);
+      assertEquals(UPSTREAM_ALLOCATION_SIZE, upstream.getTotalBytesAllocated());
+    }
+    allocator.release(slices[SLICE_COUNT - 1]);
+    assertEquals(0, upstream.getTotalBytesAllocated());
+    assertEquals(0, allocator.getTotalBytesAllocated());
+  }
+
+  public void testReleasedSlicesReusedBeforeNewUpstreamAllocation() {
+    DefaultAllocator upstream = new DefaultAllocator(UPSTREAM_ALLOCATION_SIZE);
+    SlicingAllocator allocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    Allocation[] slices = allocateSlices(allocator, 2 * SLICE_COUNT + 1);
+    assertEquals(3 * UPSTREAM_ALLOCATION_SIZE, upstream.getTotalBytesAllocated());
+    // Free a slice in each of the first two upstream allocations, which are otherwise full.
+    allocator.release(slices[0]);
+    allocator.release(slices[SLICE_COUNT]);
+    Allocation[] reallocated = allocateSlices(allocator, 3);
+    assertEquals(3 * UPSTREAM_ALLOCATION_SIZE, upstream.getTotalBytesAllocated());
+    for (Allocation slice : reallocated) {
+      assertTrue(slice == slices[0] || slice == slices[SLICE_COUNT]
+          || slice.data == slices[2 * SLICE_COUNT].data);
+    }
+  }
+
+  public void testReleaseOfForeignAllocationFails() {
+    DefaultAllocator upstream = new DefaultAllocator(UPSTREAM_ALLOCATION_SIZE);
+    SlicingAllocator allocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    SlicingAllocator otherAllocator = new SlicingAllocator(upstream, SLICE_COUNT);
+    allocator.allocate();
+    try {
+      allocator.release(new Allocation(new byte[SLICE_SIZE], 0));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    try {
+      allocator.release(otherAllocator.allocate());
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  private static Allocation[] allocateSlices(Allocator allocator, int count) {
+    Allocation[] slices = new Allocation[count];
+    for (int i = 0; i < count; i++) {
+      slices[i] = allocator.allocate();
+    }
+    return slices;
+  }
+
+}
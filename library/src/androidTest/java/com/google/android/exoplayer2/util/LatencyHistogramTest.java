@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link LatencyHistogram}.
+ */
+public final class LatencyHistogramTest extends TestCase {
+
+  private static final int RANDOM_VALUE_COUNT = 10000;
+  private static final long OVERFLOW_VALUE = 1L << 35;
+
+  private LatencyHistogram histogram;
+
+  @Override
+  protected void setUp() throws Exception {
+    histogram = new LatencyHistogram();
+  }
+
+  public void testEmpty() {
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getMean());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+  }
+
+  public void testSmallValuesAreExact() {
+    for (long value = 0; value < 8; value++) {
+      histogram.reset();
+      // Record a larger value too, so that the result isn't bounded by the maximum.
+      histogram.record(value);
+      histogram.record(1000);
+      assertEquals(value, histogram.getValueAtPercentile(50));
+    }
+  }
+
+  public void testNegativeValuesAreRecordedAsZero() {
+    histogram.record(-5);
+    histogram.record(1000);
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(500, histogram.getMean());
+  }
+
+  public void testBucketBoundaries() {
+    // From 8, buckets are an eighth of the power of two below them wide.
+    assertValueAtMedian(8, 8);
+    assertValueAtMedian(15, 15);
+    assertValueAtMedian(16, 17);
+    assertValueAtMedian(17, 17);
+    assertValueAtMedian(18, 19);
+    assertValueAtMedian(31, 31);
+    assertValueAtMedian(32, 35);
+    assertValueAtMedian(35, 35);
+    assertValueAtMedian(36, 39);
+    assertValueAtMedian(1000, 1023);
+    assertValueAtMedian(1024, 1151);
+    assertValueAtMedian((1L << 34) - 1, (1L << 34) - 1);
+  }
+
+  public void testPercentileIsBoundedByMax() {
+    histogram.record(1000);
+    assertEquals(1000, histogram.getValueAtPercentile(50));
+    assertEquals(1000, histogram.getValueAtPercentile(100));
+  }
+
+  public void testPercentileErrorIsBounded() {
+    Random random = new Random(0);
+    long[] values = new long[RANDOM_VALUE_COUNT];
+    for (int i = 0; i < values.length; i++) {
+      // Spread values over several orders of magnitude.
+      values[i] = (long) Math.pow(10, random.nextDouble() * 7);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    double[] percentiles = new double[] {0, 1, 10, 25, 50, 75, 90, 99, 99.9, 100};
+    for (double percentile : percentiles) {
+      int index = Math.max(0, (int) Math.ceil(values.length * percentile / 100) - 1);
+      long expectedValue = values[index];
+      long value = histogram.getValueAtPercentile(percentile);
+      assertTrue(value >= expectedValue);
+      assertTrue(value - expectedValue <= expectedValue / 8);
+    }
+    assertEquals(values[values.length - 1], histogram.getMax());
+  }
+
+  public void testOverflowValuesReturnMax() {
+    histogram.record(1);
+    histogram.record(OVERFLOW_VALUE);
+    histogram.record(OVERFLOW_VALUE * 3);
+    assertEquals(1, histogram.getValueAtPercentile(30));
+    // Values in the highest bucket are unbounded, so the maximum is the only upper bound.
+    assertEquals(OVERFLOW_VALUE * 3, histogram.getValueAtPercentile(50));
+    assertEquals(OVERFLOW_VALUE * 3, histogram.getValueAtPercentile(100));
+    assertEquals(OVERFLOW_VALUE * 3, histogram.getMax());
+  }
+
+  public void testCountMeanAndMax() {
+    histogram.record(10);
+    histogram.record(20);
+    histogram.record(60);
+    assertEquals(3, histogram.getCount());
+    assertEquals(30, histogram.getMean());
+    assertEquals(60, histogram.getMax());
+  }
+
+  public void testReset() {
+    histogram.record(10);
+    histogram.record(OVERFLOW_VALUE);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getMean());
+    assertEquals(0, histogram.getValueAtPercentile(100));
+
+    histogram.record(5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(5, histogram.getValueAtPercentile(100));
+  }
+
+  public void testAddAndCopy() {
+    histogram.record(10);
+    LatencyHistogram other = new LatencyHistogram();
+    other.record(1000);
+    other.record(1000);
+    histogram.add(other);
+    assertEquals(3, histogram.getCount());
+    assertEquals(670, histogram.getMean());
+    assertEquals(1000, histogram.getMax());
+    assertEquals(10, histogram.getValueAtPercentile(30));
+
+    LatencyHistogram copy = histogram.copy();
+    histogram.reset();
+    assertEquals(3, copy.getCount());
+    assertEquals(1000, copy.getValueAtPercentile(100));
+  }
+
+  private void assertValueAtMedian(long value, long expectedUpperBound) {
+    histogram.reset();
+    // Record a larger value too, so that the result isn't bounded by the maximum.
+    histogram.record(value);
+    histogram.record(OVERFLOW_VALUE);
+    assertEquals(expectedUpperBound, histogram.getValueAtPercentile(50));
+  }
+
+}
@@ -19,6 +19,7 @@ import static com.google.android.exoplayer2.testutil.TestUtil.createByteArray;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -116,6 +117,33 @@ public class NalUnitUtilTest extends TestCase {
     assertPrefixFlagsCleared(prefixFlags);
   }
 
+  public void testFindNalUnitMatchesBytewiseSearch() {
+    Random random = new Random(0);
+    for (int i = 0; i < 2000; i++) {
+      // Vary the density of zero bytes, so that start codes and near misses are common.
+      byte[] data = new byte[random.nextInt(1000)];
+      int zeroProbability = 1 + random.nextInt(8);
+      for (int j = 0; j < data.length; j++) {
+        int value = random.nextInt(16);
+        data[j] = value < zeroProbability ? 0 : (value < zeroProbability + 2 ? 1 : (byte) value);
+      }
+      boolean[] prefixFlags = new boolean[3];
+      boolean[] expectedPrefixFlags = new boolean[3];
+      boolean usePrefixFlags = random.nextBoolean();
+      int offset = 0;
+      while (offset < data.length) {
+        int endOffset = offset + random.nextInt(Math.min(200, data.length - offset) + 1);
+        int result = NalUnitUtil.findNalUnit(data, offset, endOffset,
+            usePrefixFlags ? prefixFlags : null);
+        int expectedResult = findNalUnitBytewise(data, offset, endOffset,
+            usePrefixFlags ? expectedPrefixFlags : null);
+        assertEquals(expectedResult, result);
+        assertTrue(Arrays.equals(expectedPrefixFlags, prefixFlags));
+        offset = result >= endOffset ? endOffset : Math.max(offset, result + 1);
+      }
+    }
+  }
+
   public void testParseSpsNalUnit() {
     NalUnitUtil.SpsData data = NalUnitUtil.parseSpsNalUnit(SPS_TEST_DATA, SPS_TEST_DATA_OFFSET,
         SPS_TEST_DATA.length);
@@ -175,6 +203,48 @@ public class NalUnitUtilTest extends TestCase {
     return data;
   }
 
+  /**
+   * Byte by byte implementation of {@link NalUnitUtil#findNalUnit(byte[], int, int, boolean[])}.
+   */
+  private static int findNalUnitBytewise(byte[] data, int startOffset, int endOffset,
+      boolean[] prefixFlags) {
+    int length = endOffset - startOffset;
+    if (length == 0) {
+      return endOffset;
+    }
+    if (prefixFlags != null) {
+      if (prefixFlags[0]) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 3;
+      } else if (length > 1 && prefixFlags[1] && data[startOffset] == 1) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 2;
+      } else if (length > 2 && prefixFlags[2] && data[startOffset] == 0
+          && data[startOffset + 1] == 1) {
+        NalUnitUtil.clearPrefixFlags(prefixFlags);
+        return startOffset - 1;
+      }
+    }
+    for (int i = startOffset; i < endOffset - 3; i++) {
+      if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+        if (prefixFlags != null) {
+          NalUnitUtil.clearPrefixFlags(prefixFlags);
+        }
+        return i;
+      }
+    }
+    if (prefixFlags != null) {
+      prefixFlags[0] = length > 2
+          ? (data[endOffset - 3] == 0 && data[endOffset - 2] == 0 && data[endOffset - 1] == 1)
+          : length == 2 ? (prefixFlags[2] && data[endOffset - 2] == 0 && data[endOffset - 1] == 1)
+          : (prefixFlags[1] && data[endOffset - 1] == 1);
+      prefixFlags[1] = length > 1 ? data[endOffset - 2] == 0 && data[endOffset - 1] == 0
+          : prefixFlags[2] && data[endOffset - 1] == 0;
+      prefixFlags[2] = data[endOffset - 1] == 0;
+    }
+    return endOffset;
+  }
+
   private static void assertPrefixFlagsCleared(boolean[] flags) {
     assertEquals(false, flags[0] || flags[1] || flags[2]);
   }
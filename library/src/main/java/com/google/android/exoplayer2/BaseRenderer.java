@@ -138,6 +138,11 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     streamIsFinal = false;
   }
 
+  @Override
+  public long getMaxRenderDelayUs() {
+    return C.TIME_UNSET;
+  }
+
   // RendererCapabilities implementation.
 
   @Override
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2;
 
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
@@ -23,6 +24,14 @@ import com.google.android.exoplayer2.util.Util;
 
 /**
  * The default {@link LoadControl} implementation.
+ * <p>
+ * The memory budget of the {@link DefaultAllocator} is derived from the types of the renderers for
+ * which tracks are selected. Each selected renderer contributes the default buffer size for its
+ * track type to the budget for buffering ahead, and an amount in proportion to the ratio of the
+ * back-buffer duration to the maximum buffer duration to a separate budget for media retained
+ * behind the playback position. The two budgets are enforced independently: retained media does not
+ * count towards the decision to continue loading, and is discarded early if it exceeds its own
+ * budget.
  */
 public final class DefaultLoadControl implements LoadControl {
 
@@ -50,6 +59,18 @@ public final class DefaultLoadControl implements LoadControl {
    */
   public static final int DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS  = 5000;
 
+  /**
+   * The default duration of media behind the playback position that is retained, in milliseconds.
+   */
+  public static final int DEFAULT_BACK_BUFFER_MS = 0;
+
+  /**
+   * The default duration before the end of the loading period at which preparation of the next
+   * period starts, in milliseconds. Zero, meaning the next period is only prepared once the loading
+   * period is fully buffered.
+   */
+  public static final int DEFAULT_PREPARE_AHEAD_MS = 0;
+
   private static final int ABOVE_HIGH_WATERMARK = 0;
   private static final int BETWEEN_WATERMARKS = 1;
   private static final int BELOW_LOW_WATERMARK = 2;
@@ -60,8 +81,11 @@ public final class DefaultLoadControl implements LoadControl {
   private final long maxBufferUs;
   private final long bufferForPlaybackUs;
   private final long bufferForPlaybackAfterRebufferUs;
+  private final long backBufferUs;
+  private final long prepareAheadUs;
 
   private int targetBufferSize;
+  private int targetBackBufferSize;
   private boolean isBuffering;
 
   /**
@@ -97,28 +121,87 @@ public final class DefaultLoadControl implements LoadControl {
    */
   public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
       long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs) {
+    this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+        DEFAULT_BACK_BUFFER_MS);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+   *     buffered at all times, in milliseconds.
+   * @param maxBufferMs The maximum duration of media that the player will attempt buffer, in
+   *     milliseconds.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param backBufferMs The duration of media behind the playback position that is retained, so
+   *     that seeks back into it can be performed without reloading, in milliseconds. Memory for the
+   *     retained media is reserved in addition to the memory used for buffering ahead.
+   */
+  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs, int backBufferMs) {
+    this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs,
+        backBufferMs, DEFAULT_PREPARE_AHEAD_MS);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param allocator The {@link DefaultAllocator} used by the loader.
+   * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+   *     buffered at all times, in milliseconds.
+   * @param maxBufferMs The maximum duration of media that the player will attempt buffer, in
+   *     milliseconds.
+   * @param bufferForPlaybackMs The duration of media that must be buffered for playback to start or
+   *     resume following a user action such as a seek, in milliseconds.
+   * @param bufferForPlaybackAfterRebufferMs The default duration of media that must be buffered for
+   *     playback to resume after a rebuffer, in milliseconds. A rebuffer is defined to be caused by
+   *     buffer depletion rather than a user action.
+   * @param backBufferMs The duration of media behind the playback position that is retained, so
+   *     that seeks back into it can be performed without reloading, in milliseconds. Memory for the
+   *     retained media is reserved in addition to the memory used for buffering ahead.
+   * @param prepareAheadMs The duration before the end of the loading period at which preparation
+   *     of the next period starts, in milliseconds. Zero if the next period should only be prepared
+   *     once the loading period is fully buffered. Note that periods that load media in order to
+   *     prepare, such as those of an {@link ExtractorMediaSource}, load it into the shared
+   *     allocator while the loading period is still buffering.
+   */
+  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
+      long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs, int backBufferMs,
+      int prepareAheadMs) {
     this.allocator = allocator;
     minBufferUs = minBufferMs * 1000L;
     maxBufferUs = maxBufferMs * 1000L;
     bufferForPlaybackUs = bufferForPlaybackMs * 1000L;
     bufferForPlaybackAfterRebufferUs = bufferForPlaybackAfterRebufferMs * 1000L;
+    backBufferUs = backBufferMs * 1000L;
+    prepareAheadUs = prepareAheadMs * 1000L;
   }
 
   @Override
   public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
       TrackSelectionArray trackSelections) {
     targetBufferSize = 0;
+    targetBackBufferSize = 0;
     for (int i = 0; i < renderers.length; i++) {
       if (trackSelections.get(i) != null) {
-        targetBufferSize += Util.getDefaultBufferSize(renderers[i].getTrackType());
+        int trackType = renderers[i].getTrackType();
+        targetBufferSize += Util.getDefaultBufferSize(trackType);
+        targetBackBufferSize += getBackBufferSize(trackType);
       }
     }
-    allocator.setTargetBufferSize(targetBufferSize);
+    allocator.setTargetBackBufferSize(targetBackBufferSize);
+    allocator.setTargetBufferSize(targetBufferSize + targetBackBufferSize);
   }
 
   @Override
   public void onTracksDisabled() {
     targetBufferSize = 0;
+    targetBackBufferSize = 0;
     isBuffering = false;
   }
 
@@ -127,6 +210,16 @@ public final class DefaultLoadControl implements LoadControl {
     return allocator;
   }
 
+  @Override
+  public long getBackBufferDurationUs() {
+    return backBufferUs;
+  }
+
+  @Override
+  public long getPrepareAheadDurationUs() {
+    return prepareAheadUs;
+  }
+
   @Override
   public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
     long minBufferDurationUs = rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
@@ -136,7 +229,9 @@ public final class DefaultLoadControl implements LoadControl {
   @Override
   public boolean shouldContinueLoading(long bufferedDurationUs) {
     int bufferTimeState = getBufferTimeState(bufferedDurationUs);
-    boolean targetBufferSizeReached = allocator.getTotalBytesAllocated() >= targetBufferSize;
+    // Memory holding retained media has its own budget, so doesn't count towards the target.
+    boolean targetBufferSizeReached = targetBufferSize == 0
+        || allocator.isTargetBufferSizeReached();
     isBuffering = bufferTimeState == BELOW_LOW_WATERMARK
         || (bufferTimeState == BETWEEN_WATERMARKS && isBuffering && !targetBufferSizeReached);
     return isBuffering;
@@ -147,4 +242,18 @@ public final class DefaultLoadControl implements LoadControl {
         : (bufferedDurationUs < minBufferUs ? BELOW_LOW_WATERMARK : BETWEEN_WATERMARKS);
   }
 
+  /**
+   * Returns the memory budget for media retained behind the playback position, for a renderer of
+   * the specified track type.
+   *
+   * @param trackType The track type of the renderer.
+   * @return The budget for the back-buffer, in bytes.
+   */
+  private int getBackBufferSize(int trackType) {
+    if (backBufferUs <= 0 || maxBufferUs <= 0) {
+      return 0;
+    }
+    return (int) (Util.getDefaultBufferSize(trackType) * backBufferUs / maxBufferUs);
+  }
+
 }
@@ -353,6 +353,15 @@ public interface ExoPlayer {
    */
   void blockingSendMessages(ExoPlayerMessage... messages);
 
+  /**
+   * Sets a listener to receive {@link PlaybackLoopStats} describing the work done on the player's
+   * internal playback thread. Statistics are only collected while a listener is set.
+   *
+   * @param listener The listener, or null to stop collecting statistics.
+   * @param reportIntervalMs The interval at which statistics are reported, in milliseconds.
+   */
+  void setPlaybackLoopStatsListener(PlaybackLoopStats.Listener listener, long reportIntervalMs);
+
   /**
    * Returns the current manifest. The type depends on the {@link MediaSource} passed to
    * {@link #prepare}.
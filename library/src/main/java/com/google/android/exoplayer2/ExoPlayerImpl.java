@@ -19,6 +19,7 @@ import android.annotation.SuppressLint;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 import com.google.android.exoplayer2.ExoPlayerImplInternal.PlaybackInfo;
@@ -47,6 +48,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
   private boolean isLoading;
   private Timeline timeline;
   private Object manifest;
+  private PlaybackLoopStats.Listener playbackLoopStatsListener;
 
   // Playback information when there is no pending seek/set source operation.
   private PlaybackInfo playbackInfo;
@@ -205,6 +207,14 @@ import java.util.concurrent.CopyOnWriteArraySet;
     internalPlayer.blockingSendMessages(messages);
   }
 
+  @Override
+  public void setPlaybackLoopStatsListener(PlaybackLoopStats.Listener listener,
+      long reportIntervalMs) {
+    playbackLoopStatsListener = listener;
+    internalPlayer.setPlaybackLoopStatsReportInterval(listener == null ? C.TIME_UNSET
+        : reportIntervalMs);
+  }
+
   @Override
   public int getCurrentPeriodIndex() {
     return playbackInfo.periodIndex;
@@ -233,7 +243,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
       return maskingWindowPositionMs;
     } else {
       timeline.getPeriod(playbackInfo.periodIndex, period);
-      return period.getPositionInWindowMs() + C.usToMs(playbackInfo.positionUs);
+      long positionUs = playbackInfo.getPublishedPositionUs(SystemClock.elapsedRealtime() * 1000);
+      return period.getPositionInWindowMs() + C.usToMs(positionUs);
     }
   }
 
@@ -333,6 +344,12 @@ import java.util.concurrent.CopyOnWriteArraySet;
         }
         break;
       }
+      case ExoPlayerImplInternal.MSG_PLAYBACK_LOOP_STATS: {
+        if (playbackLoopStatsListener != null) {
+          playbackLoopStatsListener.onPlaybackLoopStats((PlaybackLoopStats) msg.obj);
+        }
+        break;
+      }
     }
   }
 
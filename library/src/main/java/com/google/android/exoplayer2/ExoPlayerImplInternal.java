@@ -44,28 +44,97 @@ import java.io.IOException;
     TrackSelector.InvalidationListener, MediaSource.Listener {
 
   /**
-   * Playback position information which is read on the application's thread by
-   * {@link ExoPlayerImpl} and read/written internally on the player's thread.
+   * Playback position information. The current position is read/written internally on the
+   * player's thread, and is published for reading on the application's thread by
+   * {@link ExoPlayerImpl} as a {@link PlaybackPosition}. The buffered position is read on the
+   * application's thread directly.
    */
   public static final class PlaybackInfo {
 
     public final int periodIndex;
     public final long startPositionUs;
 
-    public volatile long positionUs;
+    public long positionUs;
     public volatile long bufferedPositionUs;
 
+    public volatile PlaybackPosition publishedPosition;
+
     public PlaybackInfo(int periodIndex, long startPositionUs) {
       this.periodIndex = periodIndex;
       this.startPositionUs = startPositionUs;
       positionUs = startPositionUs;
       bufferedPositionUs = startPositionUs;
+      publishedPosition = new PlaybackPosition(startPositionUs, 0, 0);
+    }
+
+    /**
+     * Returns the estimated playback position at the specified time, extrapolated from the
+     * published {@link PlaybackPosition} but not beyond the buffered position.
+     *
+     * @param elapsedRealtimeUs {@link SystemClock#elapsedRealtime()} in microseconds.
+     * @return The estimated playback position in microseconds.
+     */
+    public long getPublishedPositionUs(long elapsedRealtimeUs) {
+      PlaybackPosition publishedPosition = this.publishedPosition;
+      long positionUs = publishedPosition.getPositionUs(elapsedRealtimeUs);
+      long bufferedPositionUs = this.bufferedPositionUs;
+      if (positionUs != publishedPosition.positionUs && bufferedPositionUs != C.TIME_UNSET
+          && bufferedPositionUs >= publishedPosition.positionUs) {
+        positionUs = Math.min(positionUs, bufferedPositionUs);
+      }
+      return positionUs;
+    }
+
+  }
+
+  /**
+   * An immutable snapshot of the playback position within a period, from which the position at a
+   * later time can be estimated without communicating with the player's thread.
+   */
+  public static final class PlaybackPosition {
+
+    public final long positionUs;
+    public final long elapsedRealtimeUs;
+    public final float playbackSpeed;
+
+    /**
+     * @param positionUs The playback position in microseconds.
+     * @param elapsedRealtimeUs {@link SystemClock#elapsedRealtime()} in microseconds at the time the
+     *     position was measured.
+     * @param playbackSpeed The speed at which the position was advancing relative to real time when
+     *     measured, or zero if it was not advancing.
+     */
+    public PlaybackPosition(long positionUs, long elapsedRealtimeUs, float playbackSpeed) {
+      this.positionUs = positionUs;
+      this.elapsedRealtimeUs = elapsedRealtimeUs;
+      this.playbackSpeed = playbackSpeed;
+    }
+
+    /**
+     * Returns the estimated playback position at the specified time. If the position was advancing
+     * when measured then it's extrapolated at the measured playback speed.
+     *
+     * @param elapsedRealtimeUs {@link SystemClock#elapsedRealtime()} in microseconds.
+     * @return The estimated playback position in microseconds.
+     */
+    public long getPositionUs(long elapsedRealtimeUs) {
+      if (playbackSpeed == 0 || positionUs == C.TIME_UNSET
+          || elapsedRealtimeUs <= this.elapsedRealtimeUs) {
+        return positionUs;
+      }
+      return positionUs + (long) ((elapsedRealtimeUs - this.elapsedRealtimeUs) * playbackSpeed);
     }
 
   }
 
   private static final String TAG = "ExoPlayerImplInternal";
 
+  /**
+   * The maximum difference between the current position and the position extrapolated from the
+   * published {@link PlaybackPosition} before a new one is published, in microseconds.
+   */
+  private static final long MAX_PUBLISHED_POSITION_DRIFT_US = 20000;
+
   // External messages
   public static final int MSG_STATE_CHANGED = 1;
   public static final int MSG_LOADING_CHANGED = 2;
@@ -73,6 +142,7 @@ import java.io.IOException;
   public static final int MSG_POSITION_DISCONTINUITY = 4;
   public static final int MSG_SOURCE_INFO_REFRESHED = 5;
   public static final int MSG_ERROR = 6;
+  public static final int MSG_PLAYBACK_LOOP_STATS = 7;
 
   // Internal messages
   private static final int MSG_SET_MEDIA_SOURCE = 0;
@@ -86,9 +156,15 @@ import java.io.IOException;
   private static final int MSG_SOURCE_CONTINUE_LOADING_REQUESTED = 8;
   private static final int MSG_TRACK_SELECTION_INVALIDATED = 9;
   private static final int MSG_CUSTOM = 10;
+  private static final int MSG_SET_PLAYBACK_LOOP_STATS_INTERVAL = 11;
 
   private static final int PREPARING_SOURCE_INTERVAL_MS = 10;
   private static final int RENDERING_INTERVAL_MS = 10;
+  /**
+   * The maximum interval between renders during playback, however long the renderers allow. Bounds
+   * the staleness of the reported playback position and of loading decisions.
+   */
+  private static final int MAX_RENDERING_INTERVAL_MS = 100;
   private static final int IDLE_INTERVAL_MS = 1000;
 
   /**
@@ -108,6 +184,7 @@ import java.io.IOException;
   private final Handler eventHandler;
   private final Timeline.Window window;
   private final Timeline.Period period;
+  private final PlaybackLoopStatsTracker playbackLoopStatsTracker;
 
   private PlaybackInfo playbackInfo;
   private Renderer rendererMediaClockSource;
@@ -132,6 +209,13 @@ import java.io.IOException;
   private MediaPeriodHolder readingPeriodHolder;
   private MediaPeriodHolder loadingPeriodHolder;
 
+  // The period after the loading period, if it's being prepared ahead of time.
+  private MediaPeriod prepareAheadMediaPeriod;
+  private Object prepareAheadPeriodUid;
+  private int prepareAheadPeriodIndex;
+  private long prepareAheadPeriodStartPositionUs;
+  private boolean prepareAheadPeriodPrepared;
+
   private Timeline timeline;
 
   public ExoPlayerImplInternal(Renderer[] renderers, TrackSelector trackSelector,
@@ -151,6 +235,7 @@ import java.io.IOException;
       rendererCapabilities[i] = renderers[i].getCapabilities();
     }
     standaloneMediaClock = new StandaloneMediaClock();
+    playbackLoopStatsTracker = new PlaybackLoopStatsTracker();
     enabledRenderers = new Renderer[0];
     window = new Timeline.Window();
     period = new Timeline.Period();
@@ -181,6 +266,10 @@ import java.io.IOException;
     handler.sendEmptyMessage(MSG_STOP);
   }
 
+  public void setPlaybackLoopStatsReportInterval(long reportIntervalMs) {
+    handler.obtainMessage(MSG_SET_PLAYBACK_LOOP_STATS_INTERVAL, reportIntervalMs).sendToTarget();
+  }
+
   public void sendMessages(ExoPlayerMessage... messages) {
     if (released) {
       Log.w(TAG, "Ignoring messages sent after release.");
@@ -290,13 +379,21 @@ import java.io.IOException;
           return true;
         }
         case MSG_TRACK_SELECTION_INVALIDATED: {
+          long stageStartTimeNs = playbackLoopStatsTracker.getStageStartTimeNs();
           reselectTracksInternal();
+          playbackLoopStatsTracker.onStageEnded(PlaybackLoopStatsTracker.STAGE_TRACK_RESELECTION,
+              stageStartTimeNs);
           return true;
         }
         case MSG_CUSTOM: {
           sendMessagesInternal((ExoPlayerMessage[]) msg.obj);
           return true;
         }
+        case MSG_SET_PLAYBACK_LOOP_STATS_INTERVAL: {
+          playbackLoopStatsTracker.setReportIntervalMs((Long) msg.obj,
+              SystemClock.elapsedRealtime());
+          return true;
+        }
         default:
           return false;
       }
@@ -324,6 +421,7 @@ import java.io.IOException;
   private void setState(int state) {
     if (this.state != state) {
       this.state = state;
+      publishPlaybackPosition();
       eventHandler.obtainMessage(MSG_STATE_CHANGED, state, 0).sendToTarget();
     }
   }
@@ -405,12 +503,41 @@ import java.io.IOException;
     playbackInfo.bufferedPositionUs = bufferedPositionUs == C.TIME_END_OF_SOURCE
         ? timeline.getPeriod(playingPeriodHolder.index, period).getDurationUs()
         : bufferedPositionUs;
+    publishPlaybackPosition();
+  }
+
+  /**
+   * Publishes the current position to the application's thread, if it can't be extrapolated from
+   * the previously published {@link PlaybackPosition}. This is the case following a discontinuity,
+   * or if playback has started, stopped or changed speed.
+   */
+  private void publishPlaybackPosition() {
+    float playbackSpeed = state == ExoPlayer.STATE_READY && playWhenReady ? getPlaybackSpeed() : 0;
+    PlaybackPosition publishedPosition = playbackInfo.publishedPosition;
+    if (publishedPosition.playbackSpeed == playbackSpeed) {
+      long driftUs = Math.abs(publishedPosition.getPositionUs(elapsedRealtimeUs)
+          - playbackInfo.positionUs);
+      if (playbackSpeed == 0 ? driftUs == 0 : driftUs <= MAX_PUBLISHED_POSITION_DRIFT_US) {
+        return;
+      }
+    }
+    playbackInfo.publishedPosition = new PlaybackPosition(playbackInfo.positionUs,
+        elapsedRealtimeUs, playbackSpeed);
+  }
+
+  private float getPlaybackSpeed() {
+    return rendererMediaClockSource != null && !rendererMediaClockSource.isEnded()
+        ? rendererMediaClock.getPlaybackSpeed() : standaloneMediaClock.getPlaybackSpeed();
   }
 
   private void doSomeWork() throws ExoPlaybackException, IOException {
     long operationStartTimeMs = SystemClock.elapsedRealtime();
+    playbackLoopStatsTracker.onWakeup(operationStartTimeMs);
+    long operationStartTimeNs = playbackLoopStatsTracker.getStageStartTimeNs();
 
     updatePeriods();
+    playbackLoopStatsTracker.onStageEnded(PlaybackLoopStatsTracker.STAGE_UPDATE_PERIODS,
+        operationStartTimeNs);
     if (playingPeriodHolder == null) {
       // We're still waiting for the first period to be prepared.
       maybeThrowPeriodPrepareError();
@@ -423,12 +550,21 @@ import java.io.IOException;
     updatePlaybackPositions();
     boolean allRenderersEnded = true;
     boolean allRenderersReadyOrEnded = true;
+    long renderingIntervalMs = MAX_RENDERING_INTERVAL_MS;
+    long renderStartTimeNs = playbackLoopStatsTracker.getStageStartTimeNs();
+    // Start rendering all renderers before querying their state, so that renderers that render on
+    // their own thread can do so in parallel.
     for (Renderer renderer : enabledRenderers) {
-      // TODO: Each renderer should return the maximum delay before which it wishes to be called
-      // again. The minimum of these values should then be used as the delay before the next
-      // invocation of this method.
       renderer.render(rendererPositionUs, elapsedRealtimeUs);
-      allRenderersEnded = allRenderersEnded && renderer.isEnded();
+    }
+    for (Renderer renderer : enabledRenderers) {
+      boolean rendererEnded = renderer.isEnded();
+      allRenderersEnded = allRenderersEnded && rendererEnded;
+      if (!rendererEnded) {
+        long maxRenderDelayUs = renderer.getMaxRenderDelayUs();
+        renderingIntervalMs = Math.min(renderingIntervalMs,
+            maxRenderDelayUs == C.TIME_UNSET ? RENDERING_INTERVAL_MS : maxRenderDelayUs / 1000);
+      }
       // Determine whether the renderer is ready (or ended). If it's not, throw an error that's
       // preventing the renderer from making progress, if such an error exists.
       boolean rendererReadyOrEnded = renderer.isReady() || renderer.isEnded();
@@ -437,6 +573,8 @@ import java.io.IOException;
       }
       allRenderersReadyOrEnded = allRenderersReadyOrEnded && rendererReadyOrEnded;
     }
+    playbackLoopStatsTracker.onStageEnded(PlaybackLoopStatsTracker.STAGE_RENDER,
+        renderStartTimeNs);
 
     if (!allRenderersReadyOrEnded) {
       maybeThrowPeriodPrepareError();
@@ -472,12 +610,24 @@ import java.io.IOException;
       }
     }
 
-    if ((playWhenReady && state == ExoPlayer.STATE_READY) || state == ExoPlayer.STATE_BUFFERING) {
+    if (playWhenReady && state == ExoPlayer.STATE_READY) {
+      scheduleNextWork(operationStartTimeMs,
+          Math.max(RENDERING_INTERVAL_MS, renderingIntervalMs));
+    } else if (state == ExoPlayer.STATE_BUFFERING) {
       scheduleNextWork(operationStartTimeMs, RENDERING_INTERVAL_MS);
     } else if (enabledRenderers.length != 0) {
       scheduleNextWork(operationStartTimeMs, IDLE_INTERVAL_MS);
     } else {
       handler.removeMessages(MSG_DO_SOME_WORK);
+      playbackLoopStatsTracker.onWakeupCancelled();
+    }
+
+    playbackLoopStatsTracker.onStageEnded(PlaybackLoopStatsTracker.STAGE_PLAYBACK_LOOP,
+        operationStartTimeNs);
+    PlaybackLoopStats playbackLoopStats =
+        playbackLoopStatsTracker.maybeCreateReport(SystemClock.elapsedRealtime());
+    if (playbackLoopStats != null) {
+      eventHandler.obtainMessage(MSG_PLAYBACK_LOOP_STATS, playbackLoopStats).sendToTarget();
     }
 
     TraceUtil.endSection();
@@ -486,6 +636,7 @@ import java.io.IOException;
   private void scheduleNextWork(long thisOperationStartTimeMs, long intervalMs) {
     handler.removeMessages(MSG_DO_SOME_WORK);
     long nextOperationStartTimeMs = thisOperationStartTimeMs + intervalMs;
+    playbackLoopStatsTracker.onWakeupScheduled(nextOperationStartTimeMs, intervalMs);
     long nextOperationDelayMs = nextOperationStartTimeMs - SystemClock.elapsedRealtime();
     if (nextOperationDelayMs <= 0) {
       handler.sendEmptyMessage(MSG_DO_SOME_WORK);
@@ -529,6 +680,7 @@ import java.io.IOException;
     stopRenderers();
     rebuffering = false;
     setState(ExoPlayer.STATE_BUFFERING);
+    releasePrepareAheadPeriod();
 
     if (periodPositionUs == C.TIME_UNSET
         || (readingPeriodHolder != playingPeriodHolder && (periodIndex == playingPeriodHolder.index
@@ -612,6 +764,7 @@ import java.io.IOException;
 
   private void resetInternal() {
     handler.removeMessages(MSG_DO_SOME_WORK);
+    playbackLoopStatsTracker.onWakeupCancelled();
     rebuffering = false;
     standaloneMediaClock.stop();
     rendererMediaClock = null;
@@ -628,6 +781,7 @@ import java.io.IOException;
     enabledRenderers = new Renderer[0];
     releasePeriodHoldersFrom(playingPeriodHolder != null ? playingPeriodHolder
         : loadingPeriodHolder);
+    releasePrepareAheadPeriod();
     if (mediaSource != null) {
       mediaSource.releaseSource();
       mediaSource = null;
@@ -707,6 +861,8 @@ import java.io.IOException;
       if (periodPositionUs != playbackInfo.positionUs) {
         playbackInfo.positionUs = periodPositionUs;
         resetRendererPosition(periodPositionUs);
+        elapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
+        publishPlaybackPosition();
       }
 
       int enabledRendererCount = 0;
@@ -941,20 +1097,27 @@ import java.io.IOException;
         mediaSource.maybeThrowSourceInfoRefreshError();
       } else {
         int windowIndex = timeline.getPeriod(newLoadingPeriodIndex, period).windowIndex;
-        boolean isFirstPeriodInWindow = newLoadingPeriodIndex
-            == timeline.getWindow(windowIndex, window).firstPeriodIndex;
-        long periodStartPositionUs = loadingPeriodHolder == null ? playbackInfo.positionUs
-            : (isFirstPeriodInWindow ? C.TIME_UNSET : 0);
-        if (periodStartPositionUs == C.TIME_UNSET) {
-          // This is the first period of a new window or we don't have a start position, so seek to
-          // the default position for the window.
-          Pair<Integer, Long> defaultPosition = getDefaultPosition(newLoadingPeriodIndex);
-          newLoadingPeriodIndex = defaultPosition.first;
-          periodStartPositionUs = defaultPosition.second;
-        }
+        Pair<Integer, Long> newLoadingPeriodPosition =
+            getLoadingPeriodStartPosition(newLoadingPeriodIndex);
+        newLoadingPeriodIndex = newLoadingPeriodPosition.first;
+        long periodStartPositionUs = newLoadingPeriodPosition.second;
         Object newPeriodUid = timeline.getPeriod(newLoadingPeriodIndex, period, true).uid;
-        MediaPeriod newMediaPeriod = mediaSource.createPeriod(newLoadingPeriodIndex, this,
-            loadControl.getAllocator(), periodStartPositionUs);
+        MediaPeriod newMediaPeriod;
+        boolean newMediaPeriodPrepared = false;
+        if (prepareAheadMediaPeriod != null && prepareAheadPeriodIndex == newLoadingPeriodIndex
+            && prepareAheadPeriodStartPositionUs == periodStartPositionUs
+            && prepareAheadPeriodUid.equals(newPeriodUid)) {
+          // The period was prepared ahead of time, so use it.
+          newMediaPeriod = prepareAheadMediaPeriod;
+          newMediaPeriodPrepared = prepareAheadPeriodPrepared;
+          prepareAheadMediaPeriod = null;
+          prepareAheadPeriodUid = null;
+        } else {
+          releasePrepareAheadPeriod();
+          newMediaPeriod = mediaSource.createPeriod(newLoadingPeriodIndex, this,
+              loadControl.getAllocator(), periodStartPositionUs);
+        }
+        newMediaPeriod.setBackBufferDurationUs(loadControl.getBackBufferDurationUs());
         MediaPeriodHolder newPeriodHolder = new MediaPeriodHolder(renderers, rendererCapabilities,
             trackSelector, mediaSource, newMediaPeriod, newPeriodUid, periodStartPositionUs);
         timeline.getWindow(windowIndex, window);
@@ -967,7 +1130,12 @@ import java.io.IOException;
         bufferAheadPeriodCount++;
         loadingPeriodHolder = newPeriodHolder;
         setIsLoading(true);
+        if (newMediaPeriodPrepared) {
+          handlePeriodPrepared(newMediaPeriod);
+        }
       }
+    } else if (prepareAheadMediaPeriod == null) {
+      maybePrepareNextPeriodAhead();
     }
 
     if (loadingPeriodHolder == null || loadingPeriodHolder.isFullyBuffered()) {
@@ -1038,6 +1206,11 @@ import java.io.IOException;
   }
 
   private void handlePeriodPrepared(MediaPeriod period) throws ExoPlaybackException {
+    if (prepareAheadMediaPeriod != null && prepareAheadMediaPeriod == period) {
+      // The period will be handled when it becomes the loading period.
+      prepareAheadPeriodPrepared = true;
+      return;
+    }
     if (loadingPeriodHolder == null || loadingPeriodHolder.mediaPeriod != period) {
       // Stale event.
       return;
@@ -1060,6 +1233,61 @@ import java.io.IOException;
     maybeContinueLoading();
   }
 
+  /**
+   * Returns the index and position at which a period that follows the loading period, or is the
+   * first period if there is no loading period, should start.
+   */
+  private Pair<Integer, Long> getLoadingPeriodStartPosition(int periodIndex) {
+    int windowIndex = timeline.getPeriod(periodIndex, period).windowIndex;
+    boolean isFirstPeriodInWindow = periodIndex
+        == timeline.getWindow(windowIndex, window).firstPeriodIndex;
+    long periodStartPositionUs = loadingPeriodHolder == null ? playbackInfo.positionUs
+        : (isFirstPeriodInWindow ? C.TIME_UNSET : 0);
+    if (periodStartPositionUs == C.TIME_UNSET) {
+      // This is the first period of a new window or we don't have a start position, so seek to the
+      // default position for the window.
+      return getDefaultPosition(periodIndex);
+    }
+    return Pair.create(periodIndex, periodStartPositionUs);
+  }
+
+  private void maybePrepareNextPeriodAhead() {
+    long prepareAheadUs = loadControl.getPrepareAheadDurationUs();
+    if (prepareAheadUs <= 0 || loadingPeriodHolder == null || !loadingPeriodHolder.prepared
+        || loadingPeriodHolder.isLast || bufferAheadPeriodCount >= MAXIMUM_BUFFER_AHEAD_PERIODS
+        || loadingPeriodHolder.index + 1 >= timeline.getPeriodCount()) {
+      return;
+    }
+    long periodDurationUs = timeline.getPeriod(loadingPeriodHolder.index, period).getDurationUs();
+    if (periodDurationUs == C.TIME_UNSET || loadingPeriodHolder.rendererPositionOffsetUs
+        + periodDurationUs - rendererPositionUs > prepareAheadUs) {
+      return;
+    }
+    // Playback is close enough to the end of the loading period to start preparing the next one,
+    // which will only start loading media once the loading period is fully buffered.
+    Pair<Integer, Long> position = getLoadingPeriodStartPosition(loadingPeriodHolder.index + 1);
+    prepareAheadPeriodIndex = position.first;
+    prepareAheadPeriodStartPositionUs = position.second;
+    prepareAheadPeriodUid = timeline.getPeriod(prepareAheadPeriodIndex, period, true).uid;
+    prepareAheadPeriodPrepared = false;
+    prepareAheadMediaPeriod = mediaSource.createPeriod(prepareAheadPeriodIndex, this,
+        loadControl.getAllocator(), prepareAheadPeriodStartPositionUs);
+  }
+
+  private void releasePrepareAheadPeriod() {
+    if (prepareAheadMediaPeriod == null) {
+      return;
+    }
+    try {
+      mediaSource.releasePeriod(prepareAheadMediaPeriod);
+    } catch (RuntimeException e) {
+      // There's nothing we can do.
+      Log.e(TAG, "Period release failed.", e);
+    }
+    prepareAheadMediaPeriod = null;
+    prepareAheadPeriodUid = null;
+  }
+
   private void handleContinueLoadingRequested(MediaPeriod period) {
     if (loadingPeriodHolder == null || loadingPeriodHolder.mediaPeriod != period) {
       return;
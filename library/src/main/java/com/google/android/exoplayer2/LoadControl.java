@@ -46,6 +46,27 @@ public interface LoadControl {
    */
   Allocator getAllocator();
 
+  /**
+   * Returns the duration of media behind the playback position that should be retained, so that
+   * seeks back into it can be performed without reloading the media.
+   *
+   * @return The back-buffer duration in microseconds. Zero if media should be discarded once it has
+   *     been read.
+   */
+  long getBackBufferDurationUs();
+
+  /**
+   * Returns how far ahead of the end of the loading period the player should start preparing the
+   * next period, so that its preparation overlaps with playback of the periods before it. A period
+   * prepared in this way is not given track selections until the loading period is fully buffered,
+   * but may load the media it needs in order to prepare before then. Any error preparing it is
+   * thrown once it becomes the loading period.
+   *
+   * @return The prepare-ahead duration in microseconds, measured in playback time. Zero if the next
+   *     period should only be prepared once the loading period is fully buffered.
+   */
+  long getPrepareAheadDurationUs();
+
   /**
    * Called by the player to determine whether sufficient media is buffered for playback to be
    * started or resumed.
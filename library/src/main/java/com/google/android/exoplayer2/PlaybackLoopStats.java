@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.util.LatencyHistogram;
+
+/**
+ * Statistics describing the work done on the player's internal playback thread over a reporting
+ * interval, which can be used to detect stalls in the rendering loop.
+ * <p>
+ * The histograms are owned by the instance, and must not be modified.
+ */
+public final class PlaybackLoopStats {
+
+  /**
+   * Listener of {@link PlaybackLoopStats}.
+   */
+  public interface Listener {
+
+    /**
+     * Called on the application's thread at the end of each reporting interval.
+     *
+     * @param stats The statistics for the interval.
+     */
+    void onPlaybackLoopStats(PlaybackLoopStats stats);
+
+  }
+
+  /**
+   * The duration of the reporting interval in milliseconds.
+   */
+  public final long intervalDurationMs;
+  /**
+   * Durations of iterations of the playback loop, in microseconds.
+   */
+  public final LatencyHistogram playbackLoopDurationsUs;
+  /**
+   * Durations of updates to the loading, reading and playing periods, in microseconds.
+   */
+  public final LatencyHistogram updatePeriodsDurationsUs;
+  /**
+   * Durations of render passes over the enabled renderers, in microseconds.
+   */
+  public final LatencyHistogram renderDurationsUs;
+  /**
+   * Durations of track reselections, in microseconds.
+   */
+  public final LatencyHistogram trackReselectionDurationsUs;
+  /**
+   * How late iterations of the playback loop started relative to when they were scheduled, in
+   * microseconds.
+   */
+  public final LatencyHistogram wakeupLatenessesUs;
+  /**
+   * The number of iterations of the playback loop that started later than they were scheduled by
+   * more than the interval at which they were scheduled.
+   */
+  public final int lateWakeupCount;
+
+  /* package */ PlaybackLoopStats(long intervalDurationMs,
+      LatencyHistogram playbackLoopDurationsUs, LatencyHistogram updatePeriodsDurationsUs,
+      LatencyHistogram renderDurationsUs, LatencyHistogram trackReselectionDurationsUs,
+      LatencyHistogram wakeupLatenessesUs, int lateWakeupCount) {
+    this.intervalDurationMs = intervalDurationMs;
+    this.playbackLoopDurationsUs = playbackLoopDurationsUs;
+    this.updatePeriodsDurationsUs = updatePeriodsDurationsUs;
+    this.renderDurationsUs = renderDurationsUs;
+    this.trackReselectionDurationsUs = trackReselectionDurationsUs;
+    this.wakeupLatenessesUs = wakeupLatenessesUs;
+    this.lateWakeupCount = lateWakeupCount;
+  }
+
+}
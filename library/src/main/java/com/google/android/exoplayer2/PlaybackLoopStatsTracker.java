@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.util.LatencyHistogram;
+
+/**
+ * Collects {@link PlaybackLoopStats} on the player's internal playback thread.
+ */
+/* package */ final class PlaybackLoopStatsTracker {
+
+  public static final int STAGE_PLAYBACK_LOOP = 0;
+  public static final int STAGE_UPDATE_PERIODS = 1;
+  public static final int STAGE_RENDER = 2;
+  public static final int STAGE_TRACK_RESELECTION = 3;
+
+  private static final int STAGE_COUNT = 4;
+
+  private final LatencyHistogram[] stageDurationsUs;
+  private final LatencyHistogram wakeupLatenessesUs;
+
+  private long reportIntervalMs;
+  private long intervalStartTimeMs;
+  private long scheduledWakeupTimeMs;
+  private long scheduledWakeupIntervalMs;
+  private int lateWakeupCount;
+
+  public PlaybackLoopStatsTracker() {
+    stageDurationsUs = new LatencyHistogram[STAGE_COUNT];
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      stageDurationsUs[i] = new LatencyHistogram();
+    }
+    wakeupLatenessesUs = new LatencyHistogram();
+    reportIntervalMs = C.TIME_UNSET;
+    scheduledWakeupTimeMs = C.TIME_UNSET;
+  }
+
+  /**
+   * Sets the interval at which statistics are reported, discarding any collected so far.
+   *
+   * @param reportIntervalMs The interval in milliseconds, or {@link C#TIME_UNSET} to stop
+   *     collecting statistics.
+   * @param nowMs The current time in milliseconds.
+   */
+  public void setReportIntervalMs(long reportIntervalMs, long nowMs) {
+    this.reportIntervalMs = reportIntervalMs;
+    reset(nowMs);
+  }
+
+  /**
+   * Returns whether statistics are being collected.
+   */
+  public boolean isEnabled() {
+    return reportIntervalMs != C.TIME_UNSET;
+  }
+
+  /**
+   * Returns a timestamp marking the start of a stage, to be passed to
+   * {@link #onStageEnded(int, long)}.
+   */
+  public long getStageStartTimeNs() {
+    return isEnabled() ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the duration of a stage.
+   *
+   * @param stage The stage.
+   * @param stageStartTimeNs The value returned by {@link #getStageStartTimeNs()} when the stage
+   *     started.
+   */
+  public void onStageEnded(int stage, long stageStartTimeNs) {
+    if (isEnabled()) {
+      stageDurationsUs[stage].record((System.nanoTime() - stageStartTimeNs) / 1000);
+    }
+  }
+
+  /**
+   * Called when the next iteration of the playback loop is scheduled.
+   *
+   * @param wakeupTimeMs The time at which the iteration is scheduled, in milliseconds.
+   * @param intervalMs The interval at which the iteration was scheduled, in milliseconds.
+   */
+  public void onWakeupScheduled(long wakeupTimeMs, long intervalMs) {
+    scheduledWakeupTimeMs = wakeupTimeMs;
+    scheduledWakeupIntervalMs = intervalMs;
+  }
+
+  /**
+   * Called when the scheduled iteration of the playback loop is cancelled.
+   */
+  public void onWakeupCancelled() {
+    scheduledWakeupTimeMs = C.TIME_UNSET;
+  }
+
+  /**
+   * Called when an iteration of the playback loop starts.
+   *
+   * @param nowMs The current time in milliseconds.
+   */
+  public void onWakeup(long nowMs) {
+    if (scheduledWakeupTimeMs == C.TIME_UNSET) {
+      return;
+    }
+    long latenessMs = nowMs - scheduledWakeupTimeMs;
+    scheduledWakeupTimeMs = C.TIME_UNSET;
+    if (!isEnabled() || latenessMs < 0) {
+      // The iteration was requested before the scheduled time, for example by a message.
+      return;
+    }
+    wakeupLatenessesUs.record(latenessMs * 1000);
+    if (latenessMs > scheduledWakeupIntervalMs) {
+      lateWakeupCount++;
+    }
+  }
+
+  /**
+   * Returns the statistics for the reporting interval and starts a new one if the interval has
+   * elapsed, or returns null otherwise.
+   *
+   * @param nowMs The current time in milliseconds.
+   */
+  public PlaybackLoopStats maybeCreateReport(long nowMs) {
+    if (!isEnabled() || nowMs - intervalStartTimeMs < reportIntervalMs) {
+      return null;
+    }
+    PlaybackLoopStats stats = new PlaybackLoopStats(nowMs - intervalStartTimeMs,
+        stageDurationsUs[STAGE_PLAYBACK_LOOP].copy(), stageDurationsUs[STAGE_UPDATE_PERIODS].copy(),
+        stageDurationsUs[STAGE_RENDER].copy(), stageDurationsUs[STAGE_TRACK_RESELECTION].copy(),
+        wakeupLatenessesUs.copy(), lateWakeupCount);
+    reset(nowMs);
+    return stats;
+  }
+
+  private void reset(long nowMs) {
+    for (LatencyHistogram histogram : stageDurationsUs) {
+      histogram.reset();
+    }
+    wakeupLatenessesUs.reset();
+    lateWakeupCount = 0;
+    intervalStartTimeMs = nowMs;
+  }
+
+}
@@ -200,6 +200,21 @@ public interface Renderer extends ExoPlayerComponent {
    */
   void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException;
 
+  /**
+   * Returns the maximum delay before {@link #render(long, long)} should next be called, or
+   * {@link C#TIME_UNSET} if the renderer should be called again at the player's default rendering
+   * interval. The player may call {@link #render(long, long)} sooner than requested, for example
+   * because another renderer requires it, and may also enforce its own minimum interval.
+   * <p>
+   * This method is called after each call to {@link #render(long, long)}.
+   * <p>
+   * This method may be called when the renderer is in the following states:
+   * {@link #STATE_ENABLED}, {@link #STATE_STARTED}.
+   *
+   * @return The maximum delay in microseconds, or {@link C#TIME_UNSET}.
+   */
+  long getMaxRenderDelayUs();
+
   /**
    * Whether the renderer is able to immediately render media from the current position.
    * <p>
@@ -489,6 +489,12 @@ public final class SimpleExoPlayer implements ExoPlayer {
     player.blockingSendMessages(messages);
   }
 
+  @Override
+  public void setPlaybackLoopStatsListener(PlaybackLoopStats.Listener listener,
+      long reportIntervalMs) {
+    player.setPlaybackLoopStatsListener(listener, reportIntervalMs);
+  }
+
   @Override
   public int getCurrentPeriodIndex() {
     return player.getCurrentPeriodIndex();
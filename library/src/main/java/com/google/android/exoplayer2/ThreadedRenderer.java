@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MediaClock;
+import com.google.android.exoplayer2.util.PriorityHandlerThread;
+import java.io.IOException;
+
+/**
+ * A {@link Renderer} that wraps another {@link Renderer}, performing its rendering work on a
+ * dedicated thread so that it runs in parallel with that of the player's other renderers.
+ * <p>
+ * Calls to {@link #render(long, long)} request that the wrapped renderer be rendered using the
+ * specified positions, and return without waiting for it to do so. Since the positions are those
+ * measured at the start of the player's rendering loop, the wrapped renderer remains synchronized
+ * with the player's media clock. Any subsequent call that depends on the state of the wrapped
+ * renderer, such as {@link #isReady()}, {@link #isEnded()} and {@link #hasReadStreamToEnd()},
+ * blocks until the requested render has completed, and so reflects its outcome. Any error thrown by
+ * a render is thrown from the next call to {@link #render(long, long)}. Other calls that change the
+ * state of the wrapped renderer block until the wrapped renderer has handled them on the rendering
+ * thread.
+ * <p>
+ * The wrapped renderer does not access its {@link SampleStream} from the rendering thread. Instead,
+ * each call it makes to the stream is handed to the thread that calls this renderer, which performs
+ * it while waiting for the rendering thread. Sample streams are therefore only ever accessed from
+ * the player's playback thread. Work that the wrapped renderer does without accessing its stream,
+ * such as dequeuing and releasing decoder output, runs in parallel with the player's other work.
+ * The player queries the state of every renderer in the same iteration of its rendering loop, so a
+ * render always completes before the player seeks or otherwise modifies the stream.
+ * <p>
+ * The rendering thread is started when the renderer is enabled, and exits when it is disabled.
+ * Renderers that provide a {@link MediaClock} cannot be wrapped, since the player reads the clock
+ * from its own thread.
+ */
+public final class ThreadedRenderer implements Renderer {
+
+  private static final int STREAM_CALL_NONE = 0;
+  private static final int STREAM_CALL_IS_READY = 1;
+  private static final int STREAM_CALL_MAYBE_THROW_ERROR = 2;
+  private static final int STREAM_CALL_READ_DATA = 3;
+  private static final int STREAM_CALL_SKIP_TO_KEYFRAME_BEFORE = 4;
+
+  private final Renderer renderer;
+  private final String threadName;
+  private final int threadPriority;
+  private final Runnable renderRunnable;
+
+  private HandlerThread renderThread;
+  private Handler renderHandler;
+  private SampleStream stream;
+
+  // Guarded by this.
+  private boolean renderPending;
+  private long pendingPositionUs;
+  private long pendingElapsedRealtimeUs;
+  private ExoPlaybackException renderError;
+  private boolean operationPending;
+  private ExoPlaybackException operationError;
+  private RuntimeException operationRuntimeError;
+  private int pendingStreamCall;
+  private SampleStream streamCallStream;
+  private FormatHolder streamCallFormatHolder;
+  private DecoderInputBuffer streamCallBuffer;
+  private long streamCallTimeUs;
+  private int streamCallResult;
+  private IOException streamCallError;
+  private RuntimeException streamCallRuntimeError;
+
+  /**
+   * @param renderer The {@link Renderer} to wrap. Must not provide a {@link MediaClock}.
+   * @param threadName The name of the rendering thread.
+   * @param threadPriority The priority of the rendering thread. See
+   *     {@link Process#setThreadPriority(int)} for details.
+   */
+  public ThreadedRenderer(Renderer renderer, String threadName, int threadPriority) {
+    Assertions.checkArgument(renderer.getMediaClock() == null);
+    this.renderer = renderer;
+    this.threadName = threadName;
+    this.threadPriority = threadPriority;
+    renderRunnable = new Runnable() {
+      @Override
+      public void run() {
+        renderInternal();
+      }
+    };
+  }
+
+  /**
+   * Returns the wrapped {@link Renderer}.
+   */
+  public Renderer getRenderer() {
+    return renderer;
+  }
+
+  // Renderer implementation.
+
+  @Override
+  public int getTrackType() {
+    return renderer.getTrackType();
+  }
+
+  @Override
+  public RendererCapabilities getCapabilities() {
+    return renderer.getCapabilities();
+  }
+
+  @Override
+  public void setIndex(int index) {
+    renderer.setIndex(index);
+  }
+
+  @Override
+  public MediaClock getMediaClock() {
+    return null;
+  }
+
+  @Override
+  public int getState() {
+    waitForRenderThread();
+    return renderer.getState();
+  }
+
+  @Override
+  public void enable(final Format[] formats, SampleStream stream, final long positionUs,
+      final boolean joining, final long offsetUs) throws ExoPlaybackException {
+    renderThread = new PriorityHandlerThread(threadName, threadPriority);
+    renderThread.start();
+    renderHandler = new Handler(renderThread.getLooper());
+    synchronized (this) {
+      renderPending = false;
+      renderError = null;
+    }
+    this.stream = stream;
+    final SampleStream confinedStream = new ConfinedSampleStream(stream);
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.enable(formats, confinedStream, positionUs, joining, offsetUs);
+      }
+    });
+  }
+
+  @Override
+  public void start() throws ExoPlaybackException {
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.start();
+      }
+    });
+  }
+
+  @Override
+  public void replaceStream(final Format[] formats, SampleStream stream,
+      final long offsetUs) throws ExoPlaybackException {
+    this.stream = stream;
+    final SampleStream confinedStream = new ConfinedSampleStream(stream);
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.replaceStream(formats, confinedStream, offsetUs);
+      }
+    });
+  }
+
+  @Override
+  public SampleStream getStream() {
+    return stream;
+  }
+
+  @Override
+  public boolean hasReadStreamToEnd() {
+    waitForRenderThread();
+    return renderer.hasReadStreamToEnd();
+  }
+
+  @Override
+  public void setCurrentStreamIsFinal() {
+    runOnRenderThreadUnchecked(new RendererOperation() {
+      @Override
+      public void run() {
+        renderer.setCurrentStreamIsFinal();
+      }
+    });
+  }
+
+  @Override
+  public void maybeThrowStreamError() throws IOException {
+    waitForRenderThread();
+    renderer.maybeThrowStreamError();
+  }
+
+  @Override
+  public void resetPosition(final long positionUs) throws ExoPlaybackException {
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.resetPosition(positionUs);
+      }
+    });
+  }
+
+  @Override
+  public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+    waitForRenderThread();
+    ExoPlaybackException error;
+    synchronized (this) {
+      error = renderError;
+      renderError = null;
+      if (error == null) {
+        pendingPositionUs = positionUs;
+        pendingElapsedRealtimeUs = elapsedRealtimeUs;
+        renderPending = true;
+        renderHandler.post(renderRunnable);
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  @Override
+  public long getMaxRenderDelayUs() {
+    waitForRenderThread();
+    return renderer.getMaxRenderDelayUs();
+  }
+
+  @Override
+  public boolean isReady() {
+    waitForRenderThread();
+    return renderer.isReady();
+  }
+
+  @Override
+  public boolean isEnded() {
+    waitForRenderThread();
+    return renderer.isEnded();
+  }
+
+  @Override
+  public void stop() throws ExoPlaybackException {
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.stop();
+      }
+    });
+  }
+
+  @Override
+  public void disable() {
+    runOnRenderThreadUnchecked(new RendererOperation() {
+      @Override
+      public void run() {
+        renderer.disable();
+      }
+    });
+    renderThread.quit();
+    renderThread = null;
+    renderHandler = null;
+    stream = null;
+  }
+
+  // ExoPlayerComponent implementation.
+
+  @Override
+  public void handleMessage(final int messageType, final Object message)
+      throws ExoPlaybackException {
+    if (renderHandler == null) {
+      // The rendering thread isn't running, so the message can be handled directly.
+      renderer.handleMessage(messageType, message);
+      return;
+    }
+    runOnRenderThread(new RendererOperation() {
+      @Override
+      public void run() throws ExoPlaybackException {
+        renderer.handleMessage(messageType, message);
+      }
+    });
+  }
+
+  // Internal methods.
+
+  private void renderInternal() {
+    long positionUs;
+    long elapsedRealtimeUs;
+    synchronized (this) {
+      positionUs = pendingPositionUs;
+      elapsedRealtimeUs = pendingElapsedRealtimeUs;
+    }
+    ExoPlaybackException error = null;
+    int state = renderer.getState();
+    // The renderer may have been disabled after the render was requested.
+    if (state == STATE_ENABLED || state == STATE_STARTED) {
+      try {
+        renderer.render(positionUs, elapsedRealtimeUs);
+      } catch (ExoPlaybackException e) {
+        error = e;
+      }
+    }
+    synchronized (this) {
+      renderError = error;
+      renderPending = false;
+      notifyAll();
+    }
+  }
+
+  private void runOnRenderThread(final RendererOperation operation) throws ExoPlaybackException {
+    waitForRenderThread();
+    synchronized (this) {
+      operationPending = true;
+      operationError = null;
+      operationRuntimeError = null;
+    }
+    renderHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        ExoPlaybackException error = null;
+        RuntimeException runtimeError = null;
+        try {
+          operation.run();
+        } catch (ExoPlaybackException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          runtimeError = e;
+        }
+        synchronized (ThreadedRenderer.this) {
+          operationError = error;
+          operationRuntimeError = runtimeError;
+          operationPending = false;
+          ThreadedRenderer.this.notifyAll();
+        }
+      }
+    });
+    waitForRenderThread();
+    synchronized (this) {
+      if (operationRuntimeError != null) {
+        throw operationRuntimeError;
+      } else if (operationError != null) {
+        throw operationError;
+      }
+    }
+  }
+
+  private void runOnRenderThreadUnchecked(RendererOperation operation) {
+    try {
+      runOnRenderThread(operation);
+    } catch (ExoPlaybackException e) {
+      // Operations run using this method do not throw ExoPlaybackException.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Blocks until the rendering thread has finished any pending render or operation, performing the
+   * stream calls that the wrapped renderer hands over in the meantime.
+   */
+  private synchronized void waitForRenderThread() {
+    boolean wasInterrupted = false;
+    while (renderPending || operationPending) {
+      if (pendingStreamCall != STREAM_CALL_NONE) {
+        performStreamCall();
+        notifyAll();
+        continue;
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        wasInterrupted = true;
+      }
+    }
+    if (wasInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Performs the pending stream call. Called with the lock held, on the thread calling this
+   * renderer.
+   */
+  private void performStreamCall() {
+    SampleStream stream = streamCallStream;
+    try {
+      switch (pendingStreamCall) {
+        case STREAM_CALL_IS_READY:
+          streamCallResult = stream.isReady() ? 1 : 0;
+          break;
+        case STREAM_CALL_MAYBE_THROW_ERROR:
+          stream.maybeThrowError();
+          break;
+        case STREAM_CALL_READ_DATA:
+          streamCallResult = stream.readData(streamCallFormatHolder, streamCallBuffer);
+          break;
+        case STREAM_CALL_SKIP_TO_KEYFRAME_BEFORE:
+          stream.skipToKeyframeBefore(streamCallTimeUs);
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    } catch (IOException e) {
+      streamCallError = e;
+    } catch (RuntimeException e) {
+      streamCallRuntimeError = e;
+    }
+    pendingStreamCall = STREAM_CALL_NONE;
+    streamCallStream = null;
+    streamCallFormatHolder = null;
+    streamCallBuffer = null;
+  }
+
+  /**
+   * Hands a stream call to the thread calling this renderer, and blocks until it has been
+   * performed. Called on the rendering thread, with the arguments of the call already set.
+   */
+  private synchronized void handOverStreamCall(SampleStream stream, int streamCall)
+      throws IOException {
+    streamCallStream = stream;
+    streamCallError = null;
+    streamCallRuntimeError = null;
+    pendingStreamCall = streamCall;
+    notifyAll();
+    boolean wasInterrupted = false;
+    while (pendingStreamCall != STREAM_CALL_NONE) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        wasInterrupted = true;
+      }
+    }
+    if (wasInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (streamCallRuntimeError != null) {
+      throw streamCallRuntimeError;
+    } else if (streamCallError != null) {
+      throw streamCallError;
+    }
+  }
+
+  private void handOverStreamCallUnchecked(SampleStream stream, int streamCall) {
+    try {
+      handOverStreamCall(stream, streamCall);
+    } catch (IOException e) {
+      // Only STREAM_CALL_MAYBE_THROW_ERROR throws IOException.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private interface RendererOperation {
+
+    void run() throws ExoPlaybackException;
+
+  }
+
+  /**
+   * A {@link SampleStream} that is passed to the wrapped renderer in place of the player's stream.
+   * Calls made on the rendering thread are handed to the thread calling this renderer. Other calls
+   * are made on the player's stream directly.
+   */
+  private final class ConfinedSampleStream implements SampleStream {
+
+    private final SampleStream stream;
+
+    public ConfinedSampleStream(SampleStream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public boolean isReady() {
+      if (!isRenderThread()) {
+        return stream.isReady();
+      }
+      synchronized (ThreadedRenderer.this) {
+        handOverStreamCallUnchecked(stream, STREAM_CALL_IS_READY);
+        return streamCallResult != 0;
+      }
+    }
+
+    @Override
+    public void maybeThrowError() throws IOException {
+      if (!isRenderThread()) {
+        stream.maybeThrowError();
+        return;
+      }
+      handOverStreamCall(stream, STREAM_CALL_MAYBE_THROW_ERROR);
+    }
+
+    @Override
+    public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer) {
+      if (!isRenderThread()) {
+        return stream.readData(formatHolder, buffer);
+      }
+      synchronized (ThreadedRenderer.this) {
+        streamCallFormatHolder = formatHolder;
+        streamCallBuffer = buffer;
+        handOverStreamCallUnchecked(stream, STREAM_CALL_READ_DATA);
+        return streamCallResult;
+      }
+    }
+
+    @Override
+    public void skipToKeyframeBefore(long timeUs) {
+      if (!isRenderThread()) {
+        stream.skipToKeyframeBefore(timeUs);
+        return;
+      }
+      synchronized (ThreadedRenderer.this) {
+        streamCallTimeUs = timeUs;
+        handOverStreamCallUnchecked(stream, STREAM_CALL_SKIP_TO_KEYFRAME_BEFORE);
+      }
+    }
+
+    private boolean isRenderThread() {
+      return Thread.currentThread() == renderThread;
+    }
+
+  }
+
+}
@@ -509,6 +509,19 @@ public final class AudioTrack {
     return bufferSizeUs;
   }
 
+  /**
+   * Returns the duration of audio that has been written to the track but not yet played out, in
+   * microseconds, or {@link C#TIME_UNSET} if the track is not initialized or is a passthrough
+   * {@link AudioTrack}.
+   */
+  public long getBufferedDurationUs() {
+    if (!isInitialized() || passthrough) {
+      return C.TIME_UNSET;
+    }
+    long bufferedFrames = getSubmittedFrames() - audioTrackUtil.getPlaybackHeadPosition();
+    return framesToDurationUs(Math.max(0, bufferedFrames));
+  }
+
   /**
    * Starts or resumes playing audio if the audio track has been initialized.
    */
@@ -681,6 +694,16 @@ public final class AudioTrack {
         || overrideHasPendingData());
   }
 
+  /**
+   * Returns the speed at which the {@link android.media.AudioTrack} plays its audio, relative to
+   * real time.
+   *
+   * @return The playback speed.
+   */
+  public float getPlaybackSpeed() {
+    return audioTrackUtil.getPlaybackSpeed();
+  }
+
   /**
    * Sets the playback parameters. Only available for {@link Util#SDK_INT} &gt;= 23
    *
@@ -292,6 +292,17 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     }
   }
 
+  @Override
+  public long getMaxRenderDelayUs() {
+    if (getState() != STATE_STARTED) {
+      return C.TIME_UNSET;
+    }
+    // Allow half of the buffered audio to play out before feeding the track again, leaving margin
+    // for playback at increased speed and for delays in scheduling.
+    long bufferedDurationUs = audioTrack.getBufferedDurationUs();
+    return bufferedDurationUs == C.TIME_UNSET ? C.TIME_UNSET : bufferedDurationUs / 2;
+  }
+
   @Override
   public boolean isEnded() {
     return super.isEnded() && !audioTrack.hasPendingData();
@@ -313,6 +324,11 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     return currentPositionUs;
   }
 
+  @Override
+  public float getPlaybackSpeed() {
+    return audioTrack.getPlaybackSpeed();
+  }
+
   @Override
   protected boolean processOutputBuffer(long positionUs, long elapsedRealtimeUs, MediaCodec codec,
       ByteBuffer buffer, int bufferIndex, int bufferFlags, long bufferPresentationTimeUs,
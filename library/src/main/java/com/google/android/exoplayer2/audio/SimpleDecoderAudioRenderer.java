@@ -270,6 +270,17 @@ public abstract class SimpleDecoderAudioRenderer extends BaseRenderer implements
     decoder.flush();
   }
 
+  @Override
+  public long getMaxRenderDelayUs() {
+    if (getState() != STATE_STARTED) {
+      return C.TIME_UNSET;
+    }
+    // Allow half of the buffered audio to play out before feeding the track again, leaving margin
+    // for playback at increased speed and for delays in scheduling.
+    long bufferedDurationUs = audioTrack.getBufferedDurationUs();
+    return bufferedDurationUs == C.TIME_UNSET ? C.TIME_UNSET : bufferedDurationUs / 2;
+  }
+
   @Override
   public boolean isEnded() {
     return outputStreamEnded && !audioTrack.hasPendingData();
@@ -292,6 +303,11 @@ public abstract class SimpleDecoderAudioRenderer extends BaseRenderer implements
     return currentPositionUs;
   }
 
+  @Override
+  public float getPlaybackSpeed() {
+    return audioTrack.getPlaybackSpeed();
+  }
+
   /**
    * Called when the audio session id becomes known. Once the id is known it will not change (and
    * hence this method will not be called again) unless the renderer is disabled and then
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.extractor;
 
+import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,8 +39,38 @@ import java.util.List;
  */
 public final class DefaultExtractorsFactory implements ExtractorsFactory {
 
+  // Classes of the available extractors that usually read files with each extension.
+  private static final Class<?>[] NO_EXTRACTOR_CLASSES = new Class<?>[0];
+  private static final Class<?>[] MP4_EXTRACTOR_CLASSES = getExtractorClasses(
+      "com.google.android.exoplayer2.extractor.mp4.Mp4Extractor",
+      "com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor");
+  private static final Class<?>[] MATROSKA_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor");
+  private static final Class<?>[] MP3_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.mp3.Mp3Extractor");
+  private static final Class<?>[] ADTS_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.ts.AdtsExtractor");
+  private static final Class<?>[] AC3_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.ts.Ac3Extractor");
+  private static final Class<?>[] TS_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.ts.TsExtractor");
+  private static final Class<?>[] FLV_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.flv.FlvExtractor");
+  private static final Class<?>[] OGG_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.ogg.OggExtractor");
+  private static final Class<?>[] PS_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.ts.PsExtractor");
+  private static final Class<?>[] WAV_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.extractor.wav.WavExtractor");
+  private static final Class<?>[] FLAC_EXTRACTOR_CLASSES =
+      getExtractorClasses("com.google.android.exoplayer2.ext.flac.FlacExtractor");
+
   // Lazily initialized default extractor classes in priority order.
   private static List<Class<? extends Extractor>> defaultExtractorClasses;
+  // The Matroska extractor class, if it's one of the default extractor classes.
+  private static Class<? extends Extractor> matroskaExtractorClass;
+
+  private int matroskaFlags;
 
   /**
    * Creates a new factory for the default extractors.
@@ -53,9 +84,10 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
         // Class.forName is used so that automated tools like proguard can detect the use of
         // reflection (see http://proguard.sourceforge.net/FAQ.html#forname).
         try {
-          extractorClasses.add(
+          matroskaExtractorClass =
               Class.forName("com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor")
-                  .asSubclass(Extractor.class));
+                  .asSubclass(Extractor.class);
+          extractorClasses.add(matroskaExtractorClass);
         } catch (ClassNotFoundException e) {
           // Extractor not found.
         }
@@ -141,12 +173,30 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     }
   }
 
+  /**
+   * Sets flags for {@link com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor} instances
+   * created by the factory.
+   *
+   * @see com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor#MatroskaExtractor(int)
+   * @param flags The flags to use.
+   * @return The factory, for convenience.
+   */
+  public synchronized DefaultExtractorsFactory setMatroskaExtractorFlags(int flags) {
+    this.matroskaFlags = flags;
+    return this;
+  }
+
   @Override
-  public Extractor[] createExtractors() {
+  public synchronized Extractor[] createExtractors() {
     Extractor[] extractors = new Extractor[defaultExtractorClasses.size()];
     for (int i = 0; i < extractors.length; i++) {
       try {
-        extractors[i] = defaultExtractorClasses.get(i).getConstructor().newInstance();
+        Class<? extends Extractor> extractorClass = defaultExtractorClasses.get(i);
+        if (extractorClass == matroskaExtractorClass) {
+          extractors[i] = extractorClass.getConstructor(int.class).newInstance(matroskaFlags);
+        } else {
+          extractors[i] = extractorClass.getConstructor().newInstance();
+        }
       } catch (Exception e) {
         // Should never happen.
         throw new IllegalStateException("Unexpected error creating default extractor", e);
@@ -155,4 +205,80 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     return extractors;
   }
 
+  /**
+   * Returns the classes of the default extractors that usually read files with the extension of
+   * {@code fileName}. Extractors that aren't available are omitted. The returned array is shared
+   * and must not be modified.
+   *
+   * @param fileName The name of the file, or null if unknown.
+   * @return The classes of the extractors, or an empty array if the extension isn't recognized.
+   */
+  public static Class<?>[] getHintedExtractorClasses(String fileName) {
+    int extensionIndex = fileName == null ? -1 : fileName.lastIndexOf('.');
+    if (extensionIndex == -1) {
+      return NO_EXTRACTOR_CLASSES;
+    }
+    switch (Util.toLowerInvariant(fileName.substring(extensionIndex + 1))) {
+      case "mp4":
+      case "m4a":
+      case "m4v":
+      case "mov":
+      case "3gp":
+        return MP4_EXTRACTOR_CLASSES;
+      case "webm":
+      case "mkv":
+      case "mka":
+        return MATROSKA_EXTRACTOR_CLASSES;
+      case "mp3":
+        return MP3_EXTRACTOR_CLASSES;
+      case "aac":
+        return ADTS_EXTRACTOR_CLASSES;
+      case "ac3":
+      case "ec3":
+        return AC3_EXTRACTOR_CLASSES;
+      case "ts":
+        return TS_EXTRACTOR_CLASSES;
+      case "flv":
+        return FLV_EXTRACTOR_CLASSES;
+      case "ogg":
+      case "oga":
+      case "opus":
+        return OGG_EXTRACTOR_CLASSES;
+      case "mpg":
+      case "mpeg":
+      case "ps":
+      case "vob":
+        return PS_EXTRACTOR_CLASSES;
+      case "wav":
+        return WAV_EXTRACTOR_CLASSES;
+      case "flac":
+        return FLAC_EXTRACTOR_CLASSES;
+      default:
+        return NO_EXTRACTOR_CLASSES;
+    }
+  }
+
+  private static Class<?>[] getExtractorClasses(String... classNames) {
+    List<Class<? extends Extractor>> extractorClasses = new ArrayList<>();
+    for (String className : classNames) {
+      Class<? extends Extractor> extractorClass = getExtractorClass(className);
+      if (extractorClass != null) {
+        extractorClasses.add(extractorClass);
+      }
+    }
+    return extractorClasses.toArray(new Class<?>[extractorClasses.size()]);
+  }
+
+  /**
+   * Returns the extractor class with the specified name, or null if it isn't available.
+   */
+  private static Class<? extends Extractor> getExtractorClass(String className) {
+    try {
+      return Class.forName(className).asSubclass(Extractor.class);
+    } catch (ClassNotFoundException e) {
+      // Extractor not found.
+      return null;
+    }
+  }
+
 }
@@ -22,12 +22,12 @@ import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.upstream.Allocation;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -50,24 +50,44 @@ public final class DefaultTrackOutput implements TrackOutput {
 
   }
 
+  /**
+   * The number of slices into which full size allocations should be divided when creating an
+   * {@link Allocator} to pass as the {@code sparseTrackAllocator} argument of
+   * {@link #DefaultTrackOutput(Allocator, Allocator)}.
+   */
+  public static final int SPARSE_TRACK_ALLOCATION_SLICE_COUNT = 16;
+
   private static final int INITIAL_SCRATCH_SIZE = 32;
 
+  /**
+   * The maximum number of bytes transferred from an {@link ExtractorInput} into a direct
+   * {@link Allocation} per call to {@link #sampleData(ExtractorInput, int, boolean)}. Inputs can
+   * only be read into arrays, so the data passes through a heap array of this size.
+   */
+  private static final int DIRECT_WRITE_BUFFER_SIZE = 4096;
+
   private static final int STATE_ENABLED = 0;
   private static final int STATE_ENABLED_WRITING = 1;
   private static final int STATE_DISABLED = 2;
 
-  private final Allocator allocator;
-  private final int allocationLength;
+  private final Allocator sparseTrackAllocator;
 
   private final InfoQueue infoQueue;
-  private final LinkedBlockingDeque<Allocation> dataQueue;
+  private final AllocationQueue dataQueue;
   private final BufferExtrasHolder extrasHolder;
   private final ParsableByteArray scratch;
   private final AtomicInteger state;
 
+  // Changed only by the loading thread, and only before any sample data has been written.
+  private volatile Allocator allocator;
+  private volatile int allocationLength;
+
   // Accessed only by the consuming thread.
   private long totalBytesDropped;
+  private int backBufferAllocationCount;
   private Format downstreamFormat;
+  private ByteBuffer readDirectBlock;
+  private ByteBuffer readDirectView;
 
   // Accessed only by the loading thread (or the consuming thread when there is no loading thread).
   private long sampleOffsetUs;
@@ -76,16 +96,32 @@ public final class DefaultTrackOutput implements TrackOutput {
   private int lastAllocationOffset;
   private boolean needKeyframe;
   private boolean pendingSplice;
+  private boolean isSparseTrack;
   private UpstreamFormatChangedListener upstreamFormatChangeListener;
+  private ByteBuffer writeDirectBlock;
+  private ByteBuffer writeDirectView;
+  private byte[] directWriteBuffer;
 
   /**
    * @param allocator An {@link Allocator} from which allocations for sample data can be obtained.
    */
   public DefaultTrackOutput(Allocator allocator) {
+    this(allocator, null);
+  }
+
+  /**
+   * @param allocator An {@link Allocator} from which allocations for sample data can be obtained.
+   * @param sparseTrackAllocator An {@link Allocator} with a smaller allocation length from which
+   *     allocations are obtained instead if the output turns out to carry a sparse track, such as
+   *     a text or metadata track. May be null. The same instance may be shared between outputs,
+   *     in which case their sample data is packed into the same underlying memory.
+   */
+  public DefaultTrackOutput(Allocator allocator, Allocator sparseTrackAllocator) {
     this.allocator = allocator;
+    this.sparseTrackAllocator = sparseTrackAllocator;
     allocationLength = allocator.getIndividualAllocationLength();
     infoQueue = new InfoQueue();
-    dataQueue = new LinkedBlockingDeque<>();
+    dataQueue = new AllocationQueue();
     extrasHolder = new BufferExtrasHolder();
     scratch = new ParsableByteArray(INITIAL_SCRATCH_SIZE);
     state = new AtomicInteger();
@@ -194,6 +230,29 @@ public final class DefaultTrackOutput implements TrackOutput {
     return infoQueue.getReadIndex();
   }
 
+  /**
+   * Returns the absolute index of the first sample held by the buffer. This is equal to the read
+   * index unless samples behind the read index are being retained as a back-buffer.
+   */
+  public int getFirstIndex() {
+    return infoQueue.getFirstIndex();
+  }
+
+  /**
+   * Sets the duration of media behind the read position that should be retained, so that seeks
+   * back into that media can be performed by {@link #seekToKeyframeBefore(long)} without reloading
+   * it.
+   * <p>
+   * Samples are retained as whole groups of pictures, starting from a keyframe. The duration is
+   * therefore a lower bound on the media that is retained.
+   *
+   * @param backBufferDurationUs The duration of media to retain, in microseconds. Zero if read
+   *     samples should be discarded immediately.
+   */
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    infoQueue.setBackBufferDurationUs(backBufferDurationUs);
+  }
+
   /**
    * Peeks the source id of the next sample, or the current upstream source id if the buffer is
    * empty.
@@ -204,6 +263,14 @@ public final class DefaultTrackOutput implements TrackOutput {
     return infoQueue.peekSourceId();
   }
 
+  /**
+   * Returns the number of bytes of allocator memory currently held by the output, including any
+   * memory that is allocated but not yet filled with sample data.
+   */
+  public long getAllocatedBytes() {
+    return (long) dataQueue.size() * allocationLength;
+  }
+
   /**
    * Returns the upstream {@link Format} in which samples are being queued.
    */
@@ -232,11 +299,31 @@ public final class DefaultTrackOutput implements TrackOutput {
    * @return Whether the skip was successful.
    */
   public boolean skipToKeyframeBefore(long timeUs) {
-    long nextOffset = infoQueue.skipToKeyframeBefore(timeUs);
+    long nextOffset = infoQueue.skipToKeyframeBefore(timeUs, false);
+    if (nextOffset == C.POSITION_UNSET) {
+      return false;
+    }
+    dropDownstreamTo(nextOffset);
+    updateBackBufferSize(infoQueue.getReadOffset());
+    return true;
+  }
+
+  /**
+   * Attempts to seek to the keyframe before the specified time, if it's present in the buffer.
+   * <p>
+   * Unlike {@link #skipToKeyframeBefore(long)}, the read position may move backwards into samples
+   * retained as a back-buffer. See {@link #setBackBufferDurationUs(long)}.
+   *
+   * @param timeUs The seek time.
+   * @return Whether the seek was successful.
+   */
+  public boolean seekToKeyframeBefore(long timeUs) {
+    long nextOffset = infoQueue.skipToKeyframeBefore(timeUs, true);
     if (nextOffset == C.POSITION_UNSET) {
       return false;
     }
     dropDownstreamTo(nextOffset);
+    updateBackBufferSize(infoQueue.getReadOffset());
     return true;
   }
 
@@ -255,7 +342,7 @@ public final class DefaultTrackOutput implements TrackOutput {
    */
   public int readData(FormatHolder formatHolder, DecoderInputBuffer buffer, boolean loadingFinished,
       long decodeOnlyUntilUs) {
-    switch (infoQueue.readData(formatHolder, buffer, downstreamFormat, extrasHolder)) {
+    switch (infoQueue.readData(formatHolder, buffer, downstreamFormat, extrasHolder, allocator)) {
       case C.RESULT_NOTHING_READ:
         if (loadingFinished) {
           buffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
@@ -278,6 +365,7 @@ public final class DefaultTrackOutput implements TrackOutput {
         readData(extrasHolder.offset, buffer.data, extrasHolder.size);
         // Advance the read head.
         dropDownstreamTo(extrasHolder.nextOffset);
+        updateBackBufferSize(extrasHolder.offset + extrasHolder.size);
         return C.RESULT_BUFFER_READ;
       default:
         throw new IllegalStateException();
@@ -366,11 +454,15 @@ public final class DefaultTrackOutput implements TrackOutput {
   private void readData(long absolutePosition, ByteBuffer target, int length) {
     int remaining = length;
     while (remaining > 0) {
-      dropDownstreamTo(absolutePosition);
-      int positionInAllocation = (int) (absolutePosition - totalBytesDropped);
+      int positionInAllocation = (int) ((absolutePosition - totalBytesDropped) % allocationLength);
       int toCopy = Math.min(remaining, allocationLength - positionInAllocation);
-      Allocation allocation = dataQueue.peek();
-      target.put(allocation.data, allocation.translateOffset(positionInAllocation), toCopy);
+      Allocation allocation = getAllocation(absolutePosition);
+      if (allocation.isDirect()) {
+        // Copy directly between buffers, without going through the heap.
+        target.put(getReadDirectView(allocation, positionInAllocation, toCopy));
+      } else {
+        target.put(allocation.data, allocation.translateOffset(positionInAllocation), toCopy);
+      }
       absolutePosition += toCopy;
       remaining -= toCopy;
     }
@@ -386,17 +478,48 @@ public final class DefaultTrackOutput implements TrackOutput {
   private void readData(long absolutePosition, byte[] target, int length) {
     int bytesRead = 0;
     while (bytesRead < length) {
-      dropDownstreamTo(absolutePosition);
-      int positionInAllocation = (int) (absolutePosition - totalBytesDropped);
+      int positionInAllocation = (int) ((absolutePosition - totalBytesDropped) % allocationLength);
       int toCopy = Math.min(length - bytesRead, allocationLength - positionInAllocation);
-      Allocation allocation = dataQueue.peek();
-      System.arraycopy(allocation.data, allocation.translateOffset(positionInAllocation), target,
-          bytesRead, toCopy);
+      Allocation allocation = getAllocation(absolutePosition);
+      if (allocation.isDirect()) {
+        getReadDirectView(allocation, positionInAllocation, toCopy).get(target, bytesRead, toCopy);
+      } else {
+        System.arraycopy(allocation.data, allocation.translateOffset(positionInAllocation), target,
+            bytesRead, toCopy);
+      }
       absolutePosition += toCopy;
       bytesRead += toCopy;
     }
   }
 
+  /**
+   * Returns the allocation at the front of the rolling buffer that holds the specified absolute
+   * position. Allocations before it may still be held if samples are being retained as a
+   * back-buffer.
+   *
+   * @param absolutePosition The absolute position.
+   * @return The {@link Allocation} holding the position.
+   */
+  private Allocation getAllocation(long absolutePosition) {
+    return dataQueue.get((int) ((absolutePosition - totalBytesDropped) / allocationLength));
+  }
+
+  /**
+   * Returns a view onto a region of a direct {@link Allocation}, for use by the consuming thread.
+   *
+   * @param allocation The direct {@link Allocation}.
+   * @param offset The zero-based offset of the region within the allocation.
+   * @param length The length of the region.
+   * @return A {@link ByteBuffer} whose position and limit delimit the region.
+   */
+  private ByteBuffer getReadDirectView(Allocation allocation, int offset, int length) {
+    if (allocation.directData != readDirectBlock) {
+      readDirectBlock = allocation.directData;
+      readDirectView = readDirectBlock.duplicate();
+    }
+    return setViewRegion(readDirectView, allocation.translateOffset(offset), length);
+  }
+
   /**
    * Discard any allocations that hold data prior to the specified absolute position, returning
    * them to the allocator.
@@ -407,11 +530,26 @@ public final class DefaultTrackOutput implements TrackOutput {
     int relativePosition = (int) (absolutePosition - totalBytesDropped);
     int allocationIndex = relativePosition / allocationLength;
     for (int i = 0; i < allocationIndex; i++) {
-      allocator.release(dataQueue.remove());
+      allocator.release(dataQueue.removeFirst());
       totalBytesDropped += allocationLength;
     }
   }
 
+  /**
+   * Notifies the allocator of any change in the number of allocations that are held only because
+   * they contain media retained behind the read position.
+   *
+   * @param absolutePosition The absolute read position.
+   */
+  private void updateBackBufferSize(long absolutePosition) {
+    int allocationCount = (int) ((absolutePosition - totalBytesDropped) / allocationLength);
+    if (allocationCount != backBufferAllocationCount) {
+      allocator.onBackBufferSizeChanged(
+          (allocationCount - backBufferAllocationCount) * allocationLength);
+      backBufferAllocationCount = allocationCount;
+    }
+  }
+
   /**
    * Ensure that the passed {@link ParsableByteArray} is of at least the specified limit.
    */
@@ -448,6 +586,9 @@ public final class DefaultTrackOutput implements TrackOutput {
 
   @Override
   public void format(Format format) {
+    if (format != null && isSparseTrackMimeType(format.sampleMimeType)) {
+      isSparseTrack = true;
+    }
     Format adjustedFormat = getAdjustedSampleFormat(format, sampleOffsetUs);
     boolean formatChanged = infoQueue.format(adjustedFormat);
     if (upstreamFormatChangeListener != null && formatChanged) {
@@ -470,14 +611,27 @@ public final class DefaultTrackOutput implements TrackOutput {
     }
     try {
       length = prepareForAppend(length);
-      int bytesAppended = input.read(lastAllocation.data,
-          lastAllocation.translateOffset(lastAllocationOffset), length);
+      int bytesAppended;
+      if (lastAllocation.isDirect()) {
+        if (directWriteBuffer == null) {
+          directWriteBuffer = new byte[DIRECT_WRITE_BUFFER_SIZE];
+        }
+        bytesAppended = input.read(directWriteBuffer, 0,
+            Math.min(length, DIRECT_WRITE_BUFFER_SIZE));
+      } else {
+        bytesAppended = input.read(lastAllocation.data,
+            lastAllocation.translateOffset(lastAllocationOffset), length);
+      }
       if (bytesAppended == C.RESULT_END_OF_INPUT) {
         if (allowEndOfInput) {
           return C.RESULT_END_OF_INPUT;
         }
         throw new EOFException();
       }
+      if (lastAllocation.isDirect()) {
+        getWriteDirectView(lastAllocation, lastAllocationOffset, bytesAppended)
+            .put(directWriteBuffer, 0, bytesAppended);
+      }
       lastAllocationOffset += bytesAppended;
       totalBytesWritten += bytesAppended;
       return bytesAppended;
@@ -494,8 +648,14 @@ public final class DefaultTrackOutput implements TrackOutput {
     }
     while (length > 0) {
       int thisAppendLength = prepareForAppend(length);
-      buffer.readBytes(lastAllocation.data, lastAllocation.translateOffset(lastAllocationOffset),
-          thisAppendLength);
+      if (lastAllocation.isDirect()) {
+        getWriteDirectView(lastAllocation, lastAllocationOffset, thisAppendLength)
+            .put(buffer.data, buffer.getPosition(), thisAppendLength);
+        buffer.skipBytes(thisAppendLength);
+      } else {
+        buffer.readBytes(lastAllocation.data, lastAllocation.translateOffset(lastAllocationOffset),
+            thisAppendLength);
+      }
       lastAllocationOffset += thisAppendLength;
       totalBytesWritten += thisAppendLength;
       length -= thisAppendLength;
@@ -544,9 +704,12 @@ public final class DefaultTrackOutput implements TrackOutput {
 
   private void clearSampleData() {
     infoQueue.clearSampleData();
-    allocator.release(dataQueue.toArray(new Allocation[dataQueue.size()]));
-    dataQueue.clear();
+    allocator.release(dataQueue.removeAll());
     allocator.trim();
+    if (backBufferAllocationCount > 0) {
+      allocator.onBackBufferSizeChanged(-backBufferAllocationCount * allocationLength);
+      backBufferAllocationCount = 0;
+    }
     totalBytesDropped = 0;
     totalBytesWritten = 0;
     lastAllocation = null;
@@ -554,12 +717,30 @@ public final class DefaultTrackOutput implements TrackOutput {
     needKeyframe = true;
   }
 
+  /**
+   * Switches to obtaining allocations from {@link #sparseTrackAllocator} if the output carries a
+   * sparse track and no sample data is held. This is done when data is appended rather than when
+   * the format is received, since the output may be disabled at that point and only enabled later.
+   */
+  private void maybeUseSparseTrackAllocator() {
+    if (isSparseTrack && sparseTrackAllocator != null && allocator != sparseTrackAllocator
+        && totalBytesWritten == 0 && dataQueue.isEmpty()) {
+      allocator = sparseTrackAllocator;
+      allocationLength = sparseTrackAllocator.getIndividualAllocationLength();
+    }
+  }
+
+  private static boolean isSparseTrackMimeType(String mimeType) {
+    return mimeType != null && (MimeTypes.isText(mimeType) || MimeTypes.isApplication(mimeType));
+  }
+
   /**
    * Prepares the rolling sample buffer for an append of up to {@code length} bytes, returning the
    * number of bytes that can actually be appended.
    */
   private int prepareForAppend(int length) {
     if (lastAllocationOffset == allocationLength) {
+      maybeUseSparseTrackAllocator();
       lastAllocationOffset = 0;
       lastAllocation = allocator.allocate();
       dataQueue.add(lastAllocation);
@@ -567,6 +748,32 @@ public final class DefaultTrackOutput implements TrackOutput {
     return Math.min(length, allocationLength - lastAllocationOffset);
   }
 
+  /**
+   * Returns a view onto a region of a direct {@link Allocation}, for use by the loading thread.
+   *
+   * @param allocation The direct {@link Allocation}.
+   * @param offset The zero-based offset of the region within the allocation.
+   * @param length The length of the region.
+   * @return A {@link ByteBuffer} whose position and limit delimit the region.
+   */
+  private ByteBuffer getWriteDirectView(Allocation allocation, int offset, int length) {
+    if (allocation.directData != writeDirectBlock) {
+      writeDirectBlock = allocation.directData;
+      writeDirectView = writeDirectBlock.duplicate();
+    }
+    return setViewRegion(writeDirectView, allocation.translateOffset(offset), length);
+  }
+
+  /**
+   * Sets the position and limit of a view so that they delimit the specified region.
+   */
+  private static ByteBuffer setViewRegion(ByteBuffer view, int position, int length) {
+    view.clear();
+    view.limit(position + length);
+    view.position(position);
+    return view;
+  }
+
   /**
    * Adjusts a {@link Format} to incorporate a sample offset into {@link Format#subsampleOffsetUs}.
    *
@@ -586,12 +793,20 @@ public final class DefaultTrackOutput implements TrackOutput {
 
   /**
    * Holds information about the samples in the rolling buffer.
+   * <p>
+   * Sample information is held in parallel arrays that are used as a ring buffer. The capacity of
+   * the ring is always a power of two, so that indices can be wrapped by masking. Methods that only
+   * query the state of the queue do not require the lock, since the fields they read are volatile.
+   * <p>
+   * Samples that have been read may be retained behind the read index as a back-buffer, in which
+   * case they continue to occupy the ring until they fall outside of the back-buffer duration.
    */
   private static final class InfoQueue {
 
-    private static final int SAMPLE_CAPACITY_INCREMENT = 1000;
+    private static final int INITIAL_SAMPLE_CAPACITY = 1024;
 
     private int capacity;
+    private int capacityMask;
 
     private int[] sourceIds;
     private long[] offsets;
@@ -601,19 +816,23 @@ public final class DefaultTrackOutput implements TrackOutput {
     private byte[][] encryptionKeys;
     private Format[] formats;
 
-    private int queueSize;
+    // Written only whilst holding the lock, but may be read without it.
+    private volatile int queueSize;
+    private volatile long largestDequeuedTimestampUs;
+    private volatile long largestQueuedTimestampUs;
+    private volatile boolean upstreamFormatRequired;
+    private volatile Format upstreamFormat;
+
     private int absoluteReadIndex;
     private int relativeReadIndex;
     private int relativeWriteIndex;
-
-    private long largestDequeuedTimestampUs;
-    private long largestQueuedTimestampUs;
-    private boolean upstreamFormatRequired;
-    private Format upstreamFormat;
+    private int retainedCount;
+    private long backBufferDurationUs;
     private int upstreamSourceId;
 
     public InfoQueue() {
-      capacity = SAMPLE_CAPACITY_INCREMENT;
+      capacity = INITIAL_SAMPLE_CAPACITY;
+      capacityMask = capacity - 1;
       sourceIds = new int[capacity];
       offsets = new long[capacity];
       timesUs = new long[capacity];
@@ -630,9 +849,14 @@ public final class DefaultTrackOutput implements TrackOutput {
       absoluteReadIndex = 0;
       relativeReadIndex = 0;
       relativeWriteIndex = 0;
+      retainedCount = 0;
       queueSize = 0;
     }
 
+    public synchronized void setBackBufferDurationUs(long backBufferDurationUs) {
+      this.backBufferDurationUs = backBufferDurationUs;
+    }
+
     // Called by the consuming thread, but only when there is no loading thread.
 
     public void resetLargestParsedTimestamps() {
@@ -667,12 +891,12 @@ public final class DefaultTrackOutput implements TrackOutput {
       }
 
       queueSize -= discardCount;
-      relativeWriteIndex = (relativeWriteIndex + capacity - discardCount) % capacity;
+      relativeWriteIndex = (relativeWriteIndex + capacity - discardCount) & capacityMask;
       // Update the largest queued timestamp, assuming that the timestamps prior to a keyframe are
       // always less than the timestamp of the keyframe itself, and of subsequent frames.
       largestQueuedTimestampUs = Long.MIN_VALUE;
       for (int i = queueSize - 1; i >= 0; i--) {
-        int sampleIndex = (relativeReadIndex + i) % capacity;
+        int sampleIndex = (relativeReadIndex + i) & capacityMask;
         largestQueuedTimestampUs = Math.max(largestQueuedTimestampUs, timesUs[sampleIndex]);
         if ((flags[sampleIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
           break;
@@ -694,6 +918,14 @@ public final class DefaultTrackOutput implements TrackOutput {
       return absoluteReadIndex;
     }
 
+    /**
+     * Returns the absolute index of the first retained sample, or the read index if no samples are
+     * retained.
+     */
+    public synchronized int getFirstIndex() {
+      return absoluteReadIndex - retainedCount;
+    }
+
     /**
      * Peeks the source id of the next sample, or the current upstream source id if the queue is
      * empty.
@@ -705,14 +937,14 @@ public final class DefaultTrackOutput implements TrackOutput {
     /**
      * Returns whether the queue is empty.
      */
-    public synchronized boolean isEmpty() {
+    public boolean isEmpty() {
       return queueSize == 0;
     }
 
     /**
      * Returns the upstream {@link Format} in which samples are being queued.
      */
-    public synchronized Format getUpstreamFormat() {
+    public Format getUpstreamFormat() {
       return upstreamFormatRequired ? null : upstreamFormat;
     }
 
@@ -726,7 +958,7 @@ public final class DefaultTrackOutput implements TrackOutput {
      * @return The largest sample timestamp that has been queued, or {@link Long#MIN_VALUE} if no
      *     samples have been queued.
      */
-    public synchronized long getLargestQueuedTimestampUs() {
+    public long getLargestQueuedTimestampUs() {
       return Math.max(largestDequeuedTimestampUs, largestQueuedTimestampUs);
     }
 
@@ -739,15 +971,17 @@ public final class DefaultTrackOutput implements TrackOutput {
      *     about the sample, but not its data. The size and absolute position of the data in the
      *     rolling buffer is stored in {@code extrasHolder}, along with an encryption id if present
      *     and the absolute position of the first byte that may still be required after the current
-     *     sample has been read.
+     *     sample has been read. This includes data required by samples retained as a back-buffer.
      * @param downstreamFormat The current downstream {@link Format}. If the format of the next
      *     sample is different to the current downstream format then a format will be read.
      * @param extrasHolder The holder into which extra sample information should be written.
+     * @param allocator The {@link Allocator} holding the sample data, which is queried for whether
+     *     the memory budget for the back-buffer has been used up.
      * @return The result, which can be {@link C#RESULT_NOTHING_READ}, {@link C#RESULT_FORMAT_READ}
      *     or {@link C#RESULT_BUFFER_READ}.
      */
     public synchronized int readData(FormatHolder formatHolder, DecoderInputBuffer buffer,
-        Format downstreamFormat, BufferExtrasHolder extrasHolder) {
+        Format downstreamFormat, BufferExtrasHolder extrasHolder, Allocator allocator) {
       if (queueSize == 0) {
         if (upstreamFormat != null && upstreamFormat != downstreamFormat) {
           formatHolder.format = upstreamFormat;
@@ -769,15 +1003,19 @@ public final class DefaultTrackOutput implements TrackOutput {
 
       largestDequeuedTimestampUs = Math.max(largestDequeuedTimestampUs, buffer.timeUs);
       queueSize--;
-      relativeReadIndex++;
+      relativeReadIndex = (relativeReadIndex + 1) & capacityMask;
       absoluteReadIndex++;
-      if (relativeReadIndex == capacity) {
-        // Wrap around.
-        relativeReadIndex = 0;
+      retainedCount++;
+      if (backBufferDurationUs <= 0) {
+        retainedCount = 0;
+      } else if (buffer.isKeyFrame()) {
+        // Retained samples can only be discarded up to a keyframe, so it's sufficient to trim the
+        // back-buffer once per group of pictures rather than after every sample.
+        discardRetainedSamples(buffer.timeUs, allocator.isBackBufferFull());
       }
 
-      extrasHolder.nextOffset = queueSize > 0 ? offsets[relativeReadIndex]
-          : extrasHolder.offset + extrasHolder.size;
+      extrasHolder.nextOffset = retainedCount > 0 ? offsets[getRelativeFirstIndex()]
+          : queueSize > 0 ? offsets[relativeReadIndex] : extrasHolder.offset + extrasHolder.size;
       return C.RESULT_BUFFER_READ;
     }
 
@@ -785,11 +1023,16 @@ public final class DefaultTrackOutput implements TrackOutput {
      * Attempts to locate the keyframe before the specified time, if it's present in the buffer.
      *
      * @param timeUs The seek time.
-     * @return The offset of the keyframe's data if the keyframe was present.
+     * @param allowBackward Whether the keyframe may be located amongst the samples retained behind
+     *     the read index, in which case the read index moves backwards.
+     * @return The offset of the first byte that may still be required if the keyframe was present.
      *     {@link C#POSITION_UNSET} otherwise.
      */
-    public synchronized long skipToKeyframeBefore(long timeUs) {
-      if (queueSize == 0 || timeUs < timesUs[relativeReadIndex]) {
+    public synchronized long skipToKeyframeBefore(long timeUs, boolean allowBackward) {
+      int searchBackCount = allowBackward ? retainedCount : 0;
+      int searchStartIndex = (relativeReadIndex - searchBackCount) & capacityMask;
+      int searchCount = queueSize + searchBackCount;
+      if (searchCount == 0 || timeUs < timesUs[searchStartIndex]) {
         return C.POSITION_UNSET;
       }
 
@@ -799,32 +1042,95 @@ public final class DefaultTrackOutput implements TrackOutput {
         return C.POSITION_UNSET;
       }
 
-      // This could be optimized to use a binary search, however in practice callers to this method
-      // often pass times near to the start of the buffer. Hence it's unclear whether switching to
-      // a binary search would yield any real benefit.
-      int sampleCount = 0;
-      int sampleCountToKeyframe = -1;
-      int searchIndex = relativeReadIndex;
-      while (searchIndex != relativeWriteIndex) {
-        if (timesUs[searchIndex] > timeUs) {
-          // We've gone too far.
-          break;
-        } else if ((flags[searchIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
-          // We've found a keyframe, and we're still before the seek position.
-          sampleCountToKeyframe = sampleCount;
+      int sampleCountToKeyframe = findKeyframeBefore(searchStartIndex, searchCount, timeUs);
+      if (sampleCountToKeyframe == -1) {
+        return C.POSITION_UNSET;
+      }
+
+      // Negative if the read index is moving backwards.
+      int readIndexShift = sampleCountToKeyframe - searchBackCount;
+      queueSize -= readIndexShift;
+      relativeReadIndex = (relativeReadIndex + readIndexShift) & capacityMask;
+      absoluteReadIndex += readIndexShift;
+      // Skipped samples become part of the back-buffer, if one is being retained.
+      retainedCount = backBufferDurationUs > 0 ? retainedCount + readIndexShift : 0;
+      return retainedCount > 0 ? offsets[getRelativeFirstIndex()] : offsets[relativeReadIndex];
+    }
+
+    /**
+     * Finds the last keyframe whose timestamp is less than or equal to the specified time.
+     * <p>
+     * Sample timestamps are binary searched, which assumes that they increase in decode order. This
+     * is not the case for reordered frames, but the keyframes that separate them are ordered. The
+     * search may therefore land on a non-keyframe sample either side of the true position, after
+     * which the queue is scanned backwards to the nearest keyframe whose timestamp does not exceed
+     * the specified time.
+     *
+     * @param startIndex The relative index of the first sample to search.
+     * @param count The number of samples to search.
+     * @param timeUs The seek time.
+     * @return The number of samples between {@code startIndex} and the keyframe, or -1 if no such
+     *     keyframe is held.
+     */
+    private int findKeyframeBefore(int startIndex, int count, long timeUs) {
+      int low = 0;
+      int high = count - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (timesUs[(startIndex + mid) & capacityMask] <= timeUs) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      for (int i = low; i >= 0; i--) {
+        int sampleIndex = (startIndex + i) & capacityMask;
+        if ((flags[sampleIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0 && timesUs[sampleIndex] <= timeUs) {
+          return i;
         }
-        searchIndex = (searchIndex + 1) % capacity;
-        sampleCount++;
       }
+      return -1;
+    }
 
-      if (sampleCountToKeyframe == -1) {
-        return C.POSITION_UNSET;
+    /**
+     * Discards retained samples that are no longer required to satisfy the back-buffer duration.
+     * Samples are discarded up to the last keyframe that is at least the back-buffer duration
+     * behind the specified time, so that the retained samples always start with a keyframe.
+     * <p>
+     * If the memory budget for the back-buffer has been used up then at least the oldest retained
+     * group of pictures is discarded, even if it's within the back-buffer duration.
+     *
+     * @param playbackTimeUs The time of the most recently read sample.
+     * @param backBufferFull Whether the memory budget for the back-buffer has been used up.
+     */
+    private void discardRetainedSamples(long playbackTimeUs, boolean backBufferFull) {
+      long thresholdTimeUs = playbackTimeUs - backBufferDurationUs;
+      int relativeFirstIndex = getRelativeFirstIndex();
+      // The sample at the read index may be the next keyframe, but only if it's been queued.
+      int searchLimit = queueSize > 0 ? retainedCount : retainedCount - 1;
+      int discardCount = 0;
+      for (int i = 1; i <= searchLimit; i++) {
+        int sampleIndex = (relativeFirstIndex + i) & capacityMask;
+        if ((flags[sampleIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+          if (timesUs[sampleIndex] > thresholdTimeUs && (!backBufferFull || discardCount > 0)) {
+            break;
+          }
+          discardCount = i;
+        }
       }
+      retainedCount -= discardCount;
+    }
+
+    /**
+     * Returns the offset of the sample at the read index, or {@link C#POSITION_UNSET} if the queue
+     * is empty.
+     */
+    public synchronized long getReadOffset() {
+      return queueSize > 0 ? offsets[relativeReadIndex] : C.POSITION_UNSET;
+    }
 
-      queueSize -= sampleCountToKeyframe;
-      relativeReadIndex = (relativeReadIndex + sampleCountToKeyframe) % capacity;
-      absoluteReadIndex += sampleCountToKeyframe;
-      return offsets[relativeReadIndex];
+    private int getRelativeFirstIndex() {
+      return (relativeReadIndex - retainedCount) & capacityMask;
     }
 
     // Called by the loading thread.
@@ -857,9 +1163,9 @@ public final class DefaultTrackOutput implements TrackOutput {
       sourceIds[relativeWriteIndex] = upstreamSourceId;
       // Increment the write index.
       queueSize++;
-      if (queueSize == capacity) {
-        // Increase the capacity.
-        int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
+      if (retainedCount + queueSize == capacity) {
+        // Increase the capacity, keeping it a power of two.
+        int newCapacity = capacity * 2;
         int[] newSourceIds = new int[newCapacity];
         long[] newOffsets = new long[newCapacity];
         long[] newTimesUs = new long[newCapacity];
@@ -867,15 +1173,16 @@ public final class DefaultTrackOutput implements TrackOutput {
         int[] newSizes = new int[newCapacity];
         byte[][] newEncryptionKeys = new byte[newCapacity][];
         Format[] newFormats = new Format[newCapacity];
-        int beforeWrap = capacity - relativeReadIndex;
-        System.arraycopy(offsets, relativeReadIndex, newOffsets, 0, beforeWrap);
-        System.arraycopy(timesUs, relativeReadIndex, newTimesUs, 0, beforeWrap);
-        System.arraycopy(flags, relativeReadIndex, newFlags, 0, beforeWrap);
-        System.arraycopy(sizes, relativeReadIndex, newSizes, 0, beforeWrap);
-        System.arraycopy(encryptionKeys, relativeReadIndex, newEncryptionKeys, 0, beforeWrap);
-        System.arraycopy(formats, relativeReadIndex, newFormats, 0, beforeWrap);
-        System.arraycopy(sourceIds, relativeReadIndex, newSourceIds, 0, beforeWrap);
-        int afterWrap = relativeReadIndex;
+        int relativeFirstIndex = getRelativeFirstIndex();
+        int beforeWrap = capacity - relativeFirstIndex;
+        System.arraycopy(offsets, relativeFirstIndex, newOffsets, 0, beforeWrap);
+        System.arraycopy(timesUs, relativeFirstIndex, newTimesUs, 0, beforeWrap);
+        System.arraycopy(flags, relativeFirstIndex, newFlags, 0, beforeWrap);
+        System.arraycopy(sizes, relativeFirstIndex, newSizes, 0, beforeWrap);
+        System.arraycopy(encryptionKeys, relativeFirstIndex, newEncryptionKeys, 0, beforeWrap);
+        System.arraycopy(formats, relativeFirstIndex, newFormats, 0, beforeWrap);
+        System.arraycopy(sourceIds, relativeFirstIndex, newSourceIds, 0, beforeWrap);
+        int afterWrap = relativeFirstIndex;
         System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
         System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
         System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
@@ -890,16 +1197,12 @@ public final class DefaultTrackOutput implements TrackOutput {
         encryptionKeys = newEncryptionKeys;
         formats = newFormats;
         sourceIds = newSourceIds;
-        relativeReadIndex = 0;
+        relativeReadIndex = retainedCount;
         relativeWriteIndex = capacity;
-        queueSize = capacity;
         capacity = newCapacity;
+        capacityMask = newCapacity - 1;
       } else {
-        relativeWriteIndex++;
-        if (relativeWriteIndex == capacity) {
-          // Wrap around.
-          relativeWriteIndex = 0;
-        }
+        relativeWriteIndex = (relativeWriteIndex + 1) & capacityMask;
       }
     }
 
@@ -920,7 +1223,7 @@ public final class DefaultTrackOutput implements TrackOutput {
       }
       int retainCount = queueSize;
       while (retainCount > 0
-          && timesUs[(relativeReadIndex + retainCount - 1) % capacity] >= timeUs) {
+          && timesUs[(relativeReadIndex + retainCount - 1) & capacityMask] >= timeUs) {
         retainCount--;
       }
       discardUpstreamSamples(absoluteReadIndex + retainCount);
@@ -929,6 +1232,94 @@ public final class DefaultTrackOutput implements TrackOutput {
 
   }
 
+  /**
+   * Holds the {@link Allocation}s of the rolling buffer in order, in an array that is used as a ring
+   * buffer so that the allocation holding any position can be found in constant time.
+   * <p>
+   * The queue is appended to and trimmed from its end by the loading thread, and trimmed from its
+   * start and indexed by the consuming thread, so all access is synchronized.
+   */
+  private static final class AllocationQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Allocation[] allocations;
+    private int capacityMask;
+    private int startIndex;
+    private int size;
+
+    public AllocationQueue() {
+      allocations = new Allocation[INITIAL_CAPACITY];
+      capacityMask = INITIAL_CAPACITY - 1;
+    }
+
+    public synchronized int size() {
+      return size;
+    }
+
+    public synchronized boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Returns the allocation at the specified index, where zero is the first allocation.
+     */
+    public synchronized Allocation get(int index) {
+      Assertions.checkIndex(index, 0, size);
+      return allocations[(startIndex + index) & capacityMask];
+    }
+
+    public synchronized Allocation peekLast() {
+      return size == 0 ? null : allocations[(startIndex + size - 1) & capacityMask];
+    }
+
+    public synchronized void add(Allocation allocation) {
+      if (size == allocations.length) {
+        Allocation[] newAllocations = new Allocation[allocations.length * 2];
+        int beforeWrap = allocations.length - startIndex;
+        System.arraycopy(allocations, startIndex, newAllocations, 0, beforeWrap);
+        System.arraycopy(allocations, 0, newAllocations, beforeWrap, startIndex);
+        allocations = newAllocations;
+        capacityMask = newAllocations.length - 1;
+        startIndex = 0;
+      }
+      allocations[(startIndex + size) & capacityMask] = allocation;
+      size++;
+    }
+
+    public synchronized Allocation removeFirst() {
+      Allocation allocation = allocations[startIndex];
+      allocations[startIndex] = null;
+      startIndex = (startIndex + 1) & capacityMask;
+      size--;
+      return allocation;
+    }
+
+    public synchronized Allocation removeLast() {
+      int lastIndex = (startIndex + size - 1) & capacityMask;
+      Allocation allocation = allocations[lastIndex];
+      allocations[lastIndex] = null;
+      size--;
+      return allocation;
+    }
+
+    /**
+     * Removes all of the allocations, returning them in order.
+     */
+    public synchronized Allocation[] removeAll() {
+      Allocation[] removed = new Allocation[size];
+      for (int i = 0; i < size; i++) {
+        int index = (startIndex + i) & capacityMask;
+        removed[i] = allocations[index];
+        allocations[index] = null;
+      }
+      startIndex = 0;
+      size = 0;
+      return removed;
+    }
+
+  }
+
   /**
    * Holds additional buffer information not held by {@link DecoderInputBuffer}.
    */
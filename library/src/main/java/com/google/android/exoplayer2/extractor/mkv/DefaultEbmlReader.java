@@ -21,7 +21,7 @@ import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
  * Default implementation of {@link EbmlReader}.
@@ -39,10 +39,21 @@ import java.util.Stack;
   private static final int VALID_FLOAT32_ELEMENT_SIZE_BYTES = 4;
   private static final int VALID_FLOAT64_ELEMENT_SIZE_BYTES = 8;
 
+  /**
+   * The initial capacity of the master element stack. Matroska files are rarely nested more deeply
+   * than this, but the stack grows if necessary.
+   */
+  private static final int INITIAL_MASTER_ELEMENT_STACK_CAPACITY = 8;
+
   private final byte[] scratch = new byte[8];
-  private final Stack<MasterElement> masterElementsStack = new Stack<>();
   private final VarintReader varintReader = new VarintReader();
 
+  // The ids and end positions of the master elements currently being read, outermost first.
+  private int[] masterElementIds = new int[INITIAL_MASTER_ELEMENT_STACK_CAPACITY];
+  private long[] masterElementEndPositions = new long[INITIAL_MASTER_ELEMENT_STACK_CAPACITY];
+  private int masterElementCount;
+  private byte[] stringBytes = new byte[0];
+
   private EbmlReaderOutput output;
   private int elementState;
   private int elementId;
@@ -56,7 +67,7 @@ import java.util.Stack;
   @Override
   public void reset() {
     elementState = ELEMENT_STATE_READ_ID;
-    masterElementsStack.clear();
+    masterElementCount = 0;
     varintReader.reset();
   }
 
@@ -64,9 +75,9 @@ import java.util.Stack;
   public boolean read(ExtractorInput input) throws IOException, InterruptedException {
     Assertions.checkState(output != null);
     while (true) {
-      if (!masterElementsStack.isEmpty()
-          && input.getPosition() >= masterElementsStack.peek().elementEndPosition) {
-        output.endMasterElement(masterElementsStack.pop().elementId);
+      if (masterElementCount > 0
+          && input.getPosition() >= masterElementEndPositions[masterElementCount - 1]) {
+        output.endMasterElement(masterElementIds[--masterElementCount]);
         return true;
       }
 
@@ -93,7 +104,7 @@ import java.util.Stack;
         case TYPE_MASTER:
           long elementContentPosition = input.getPosition();
           long elementEndPosition = elementContentPosition + elementContentSize;
-          masterElementsStack.add(new MasterElement(elementId, elementEndPosition));
+          pushMasterElement(elementId, elementEndPosition);
           output.startMasterElement(elementId, elementContentPosition, elementContentSize);
           elementState = ELEMENT_STATE_READ_ID;
           return true;
@@ -133,6 +144,23 @@ import java.util.Stack;
     }
   }
 
+  /**
+   * Pushes a master element onto the stack of those currently being read, growing the stack if
+   * necessary.
+   *
+   * @param elementId The id of the element.
+   * @param elementEndPosition The position of the end of the element.
+   */
+  private void pushMasterElement(int elementId, long elementEndPosition) {
+    if (masterElementCount == masterElementIds.length) {
+      masterElementIds = Arrays.copyOf(masterElementIds, masterElementCount * 2);
+      masterElementEndPositions = Arrays.copyOf(masterElementEndPositions, masterElementCount * 2);
+    }
+    masterElementIds[masterElementCount] = elementId;
+    masterElementEndPositions[masterElementCount] = elementEndPosition;
+    masterElementCount++;
+  }
+
   /**
    * Does a byte by byte search to try and find the next level 1 element. This method is called if
    * some invalid data is encountered in the parser.
@@ -215,25 +243,11 @@ import java.util.Stack;
     if (byteLength == 0) {
       return "";
     }
-    byte[] stringBytes = new byte[byteLength];
-    input.readFully(stringBytes, 0, byteLength);
-    return new String(stringBytes);
-  }
-
-  /**
-   * Used in {@link #masterElementsStack} to track when the current master element ends, so that
-   * {@link EbmlReaderOutput#endMasterElement(int)} can be called.
-   */
-  private static final class MasterElement {
-
-    private final int elementId;
-    private final long elementEndPosition;
-
-    private MasterElement(int elementId, long elementEndPosition) {
-      this.elementId = elementId;
-      this.elementEndPosition = elementEndPosition;
+    if (stringBytes.length < byteLength) {
+      stringBytes = new byte[byteLength];
     }
-
+    input.readFully(stringBytes, 0, byteLength);
+    return new String(stringBytes, 0, byteLength);
   }
 
 }
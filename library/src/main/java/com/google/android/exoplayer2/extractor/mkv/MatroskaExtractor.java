@@ -63,6 +63,14 @@ public final class MatroskaExtractor implements Extractor {
 
   };
 
+  /**
+   * Flag to build a seek index by scanning the input for clusters, if the file doesn't reference a
+   * Cues element from its SeekHead and its length is known. The input is read at a number of
+   * positions spread evenly over the file before the first cluster is parsed, which requires a
+   * seek for each position.
+   */
+  public static final int FLAG_BUILD_SEEK_INDEX = 1;
+
   private static final int UNSET_ENTRY_ID = -1;
 
   private static final int BLOCK_STATE_START = 0;
@@ -214,6 +222,29 @@ public final class MatroskaExtractor implements Extractor {
    */
   private static final UUID WAVE_SUBFORMAT_PCM = new UUID(0x0100000000001000L, 0x800000AA00389B71L);
 
+  /**
+   * The maximum number of positions at which the input is scanned for a cluster when building a
+   * seek index.
+   */
+  private static final int MAX_CLUSTER_SCAN_COUNT = 100;
+  /**
+   * The default minimum distance in bytes between positions at which the input is scanned for a
+   * cluster.
+   */
+  private static final int DEFAULT_MIN_CLUSTER_SCAN_INTERVAL = 1024 * 1024;
+  /**
+   * The maximum number of bytes scanned for a cluster from each position.
+   */
+  private static final int MAX_CLUSTER_SCAN_BYTES = 1024 * 1024;
+  /**
+   * The maximum size of a Cluster ID, size and Timecode element, which must be available to check
+   * whether a cluster starts at a position.
+   */
+  private static final int MAX_CLUSTER_HEADER_SIZE = 29;
+  private static final int CLUSTER_SCAN_BUFFER_SIZE = 64 * 1024;
+
+  private final int flags;
+  private final int minClusterScanInterval;
   private final EbmlReader reader;
   private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
@@ -255,6 +286,14 @@ public final class MatroskaExtractor implements Extractor {
   private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
 
+  // Cluster scanning related elements.
+  private boolean scanForClusters;
+  private long clusterScanStartPosition;
+  private long clusterScanEndPosition;
+  private int clusterScanCount;
+  private int clusterScanIndex = C.INDEX_UNSET;
+  private byte[] clusterScanBuffer;
+
   // Block reading state.
   private int blockState;
   private long blockTimeUs;
@@ -283,11 +322,26 @@ public final class MatroskaExtractor implements Extractor {
   private ExtractorOutput extractorOutput;
 
   public MatroskaExtractor() {
-    this(new DefaultEbmlReader());
+    this(0);
   }
 
-  /* package */ MatroskaExtractor(EbmlReader reader) {
+  /**
+   * @param flags Flags that control the extractor's behavior.
+   */
+  public MatroskaExtractor(int flags) {
+    this(new DefaultEbmlReader(), flags, DEFAULT_MIN_CLUSTER_SCAN_INTERVAL);
+  }
+
+  /**
+   * @param reader The {@link EbmlReader} to use.
+   * @param flags Flags that control the extractor's behavior.
+   * @param minClusterScanInterval The minimum distance in bytes between positions at which the
+   *     input is scanned for a cluster, if {@link #FLAG_BUILD_SEEK_INDEX} is set.
+   */
+  /* package */ MatroskaExtractor(EbmlReader reader, int flags, int minClusterScanInterval) {
     this.reader = reader;
+    this.flags = flags;
+    this.minClusterScanInterval = minClusterScanInterval;
     this.reader.init(new InnerEbmlReaderOutput());
     varintReader = new VarintReader();
     tracks = new SparseArray<>();
@@ -314,6 +368,13 @@ public final class MatroskaExtractor implements Extractor {
 
   @Override
   public void seek(long position) {
+    if (clusterScanIndex != C.INDEX_UNSET) {
+      // Abandon the seek index. It will be built again when the first cluster is reached.
+      clusterScanIndex = C.INDEX_UNSET;
+      seekPositionAfterBuildingCues = C.POSITION_UNSET;
+      cueTimesUs = null;
+      cueClusterPositions = null;
+    }
     clusterTimecodeUs = C.TIME_UNSET;
     blockState = BLOCK_STATE_START;
     reader.reset();
@@ -332,7 +393,15 @@ public final class MatroskaExtractor implements Extractor {
     sampleRead = false;
     boolean continueReading = true;
     while (continueReading && !sampleRead) {
+      if (clusterScanIndex != C.INDEX_UNSET) {
+        scanForCluster(input, seekPosition);
+        return Extractor.RESULT_SEEK;
+      }
       continueReading = reader.read(input);
+      if (continueReading && scanForClusters) {
+        scanForClusters = false;
+        maybeStartClusterScan(input);
+      }
       if (continueReading && maybeSeekForCues(seekPosition, input.getPosition())) {
         return Extractor.RESULT_SEEK;
       }
@@ -442,6 +511,11 @@ public final class MatroskaExtractor implements Extractor {
           if (cuesContentPosition != C.POSITION_UNSET) {
             // We know where the Cues element is located. Seek to request it.
             seekForCues = true;
+          } else if ((flags & FLAG_BUILD_SEEK_INDEX) != 0) {
+            // Build the seek index by scanning the input for clusters, starting from this one.
+            scanForClusters = true;
+            clusterScanStartPosition =
+                Math.max(segmentContentPosition, contentPosition - MAX_CLUSTER_HEADER_SIZE);
           } else {
             // We don't know where the Cues element is located. It's most likely omitted. Allow
             // playback, but disable seeking.
@@ -488,7 +562,8 @@ public final class MatroskaExtractor implements Extractor {
         return;
       case ID_CUES:
         if (!sentSeekMap) {
-          extractorOutput.seekMap(buildSeekMap());
+          extractorOutput.seekMap(
+              buildSeekMap(segmentContentPosition + segmentContentSize, durationUs));
           sentSeekMap = true;
         } else {
           // We have already built the cues. Ignore.
@@ -950,7 +1025,7 @@ public final class MatroskaExtractor implements Extractor {
               samplePartitionCountRead = true;
             }
             int samplePartitionDataSize = samplePartitionCount * 4;
-            if (scratch.limit() < samplePartitionDataSize) {
+            if (scratch.capacity() < samplePartitionDataSize) {
               scratch.reset(new byte[samplePartitionDataSize], samplePartitionDataSize);
             }
             input.readFully(scratch.data, 0, samplePartitionDataSize);
@@ -1115,10 +1190,12 @@ public final class MatroskaExtractor implements Extractor {
   /**
    * Builds a {@link SeekMap} from the recently gathered Cues information.
    *
+   * @param endPosition The position of the end of the last cluster.
+   * @param durationUs The duration of the media, in microseconds.
    * @return The built {@link SeekMap}. The returned {@link SeekMap} may be unseekable if cues
    *     information was missing or incomplete.
    */
-  private SeekMap buildSeekMap() {
+  private SeekMap buildSeekMap(long endPosition, long durationUs) {
     if (segmentContentPosition == C.POSITION_UNSET || durationUs == C.TIME_UNSET
         || cueTimesUs == null || cueTimesUs.size() == 0
         || cueClusterPositions == null || cueClusterPositions.size() != cueTimesUs.size()) {
@@ -1140,8 +1217,7 @@ public final class MatroskaExtractor implements Extractor {
       sizes[i] = (int) (offsets[i + 1] - offsets[i]);
       durationsUs[i] = timesUs[i + 1] - timesUs[i];
     }
-    sizes[cuePointsSize - 1] =
-        (int) (segmentContentPosition + segmentContentSize - offsets[cuePointsSize - 1]);
+    sizes[cuePointsSize - 1] = (int) (endPosition - offsets[cuePointsSize - 1]);
     durationsUs[cuePointsSize - 1] = durationUs - timesUs[cuePointsSize - 1];
     cueTimesUs = null;
     cueClusterPositions = null;
@@ -1174,6 +1250,159 @@ public final class MatroskaExtractor implements Extractor {
     return false;
   }
 
+  /**
+   * Starts scanning the input for clusters from {@link #clusterScanStartPosition}, if the length of
+   * the input is known. Otherwise the file is made unseekable.
+   *
+   * @param input The {@link ExtractorInput}, which is positioned at the content of the first
+   *     cluster.
+   */
+  private void maybeStartClusterScan(ExtractorInput input) {
+    long inputLength = input.getLength();
+    if (inputLength == C.LENGTH_UNSET) {
+      extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+      sentSeekMap = true;
+      return;
+    }
+    // The size of the segment may be unknown, in which case it's the maximum varint value.
+    clusterScanEndPosition = Math.min(segmentContentPosition + segmentContentSize, inputLength);
+    long scanLength = clusterScanEndPosition - clusterScanStartPosition;
+    clusterScanCount = (int) Math.max(1,
+        Math.min(MAX_CLUSTER_SCAN_COUNT, scanLength / minClusterScanInterval));
+    clusterScanIndex = 0;
+    if (clusterScanBuffer == null) {
+      clusterScanBuffer = new byte[CLUSTER_SCAN_BUFFER_SIZE];
+    }
+    cueTimesUs = new LongArray();
+    cueClusterPositions = new LongArray();
+    seekPositionAfterBuildingCues = input.getPosition();
+  }
+
+  /**
+   * Scans the input for the first cluster after the current scan position, adding its time and
+   * position to the seek index. Updates the holder's position to the next scan position, or if the
+   * seek index is complete, outputs the {@link SeekMap} and updates the holder's position back to
+   * where it was before scanning started.
+   *
+   * @param input The {@link ExtractorInput} from which to read data.
+   * @param seekPosition The holder whose position will be updated.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  private void scanForCluster(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
+    long scanPosition = getClusterScanPosition(clusterScanIndex);
+    if (input.getPosition() != scanPosition) {
+      seekPosition.position = scanPosition;
+      return;
+    }
+    long scanLimitPosition = Math.min(getClusterScanPosition(clusterScanIndex + 1),
+        scanPosition + MAX_CLUSTER_SCAN_BYTES);
+    byte[] buffer = clusterScanBuffer;
+    long bufferPosition = scanPosition;
+    int bufferLength = 0;
+    boolean endOfInput = false;
+    while (!endOfInput && bufferPosition < scanLimitPosition) {
+      int bytesRead = input.read(buffer, bufferLength, buffer.length - bufferLength);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        endOfInput = true;
+      } else {
+        bufferLength += bytesRead;
+      }
+      // Unless the input has ended, only check positions from which a full cluster header could be
+      // in the buffer.
+      int checkLength = (int) Math.min(scanLimitPosition - bufferPosition,
+          endOfInput ? bufferLength : bufferLength - MAX_CLUSTER_HEADER_SIZE);
+      for (int i = 0; i < checkLength; i++) {
+        long timecode = parseClusterTimecode(buffer, i, bufferLength);
+        if (timecode != C.TIME_UNSET) {
+          addClusterToSeekIndex(bufferPosition + i, scaleTimecodeToUs(timecode));
+          bufferPosition = scanLimitPosition;
+          break;
+        }
+      }
+      if (checkLength > 0 && bufferPosition < scanLimitPosition) {
+        // Keep the bytes that haven't been checked.
+        bufferLength -= checkLength;
+        System.arraycopy(buffer, checkLength, buffer, 0, bufferLength);
+        bufferPosition += checkLength;
+      }
+    }
+
+    clusterScanIndex++;
+    if (clusterScanIndex < clusterScanCount) {
+      seekPosition.position = getClusterScanPosition(clusterScanIndex);
+      return;
+    }
+    // The seek index is complete. If the duration is unknown, the last cluster found defines it.
+    long seekMapDurationUs = durationUs != C.TIME_UNSET || cueTimesUs.size() == 0 ? durationUs
+        : cueTimesUs.get(cueTimesUs.size() - 1);
+    extractorOutput.seekMap(buildSeekMap(clusterScanEndPosition, seekMapDurationUs));
+    sentSeekMap = true;
+    clusterScanIndex = C.INDEX_UNSET;
+    seekPosition.position = seekPositionAfterBuildingCues;
+    seekPositionAfterBuildingCues = C.POSITION_UNSET;
+  }
+
+  private long getClusterScanPosition(int index) {
+    return clusterScanStartPosition
+        + (clusterScanEndPosition - clusterScanStartPosition) * index / clusterScanCount;
+  }
+
+  private void addClusterToSeekIndex(long position, long timeUs) {
+    int size = cueTimesUs.size();
+    long relativePosition = position - segmentContentPosition;
+    if (size == 0 || (timeUs > cueTimesUs.get(size - 1)
+        && relativePosition > cueClusterPositions.get(size - 1))) {
+      cueTimesUs.add(timeUs);
+      cueClusterPositions.add(relativePosition);
+    }
+  }
+
+  /**
+   * Returns the timecode of the cluster starting at {@code offset} in {@code data}, or
+   * {@link C#TIME_UNSET} if a cluster whose first child is its Timecode element doesn't start
+   * there.
+   *
+   * @param data The array to check.
+   * @param offset The offset in {@code data} to check.
+   * @param limit The limit of valid data in {@code data}.
+   */
+  private static long parseClusterTimecode(byte[] data, int offset, int limit) {
+    if (limit - offset < 4 || data[offset] != 0x1F || data[offset + 1] != 0x43
+        || data[offset + 2] != (byte) 0xB6 || data[offset + 3] != 0x75) {
+      return C.TIME_UNSET;
+    }
+    int position = offset + 4;
+    if (position >= limit) {
+      return C.TIME_UNSET;
+    }
+    int clusterSizeLength = VarintReader.parseUnsignedVarintLength(data[position] & 0xFF);
+    position += clusterSizeLength;
+    if (clusterSizeLength == C.LENGTH_UNSET || position + 1 >= limit
+        || (data[position] & 0xFF) != ID_TIME_CODE) {
+      return C.TIME_UNSET;
+    }
+    position++;
+    int timecodeSizeLength = VarintReader.parseUnsignedVarintLength(data[position] & 0xFF);
+    if (timecodeSizeLength == C.LENGTH_UNSET || position + timecodeSizeLength > limit) {
+      return C.TIME_UNSET;
+    }
+    long timecodeSize = data[position] & (0xFF >> timecodeSizeLength);
+    for (int i = 1; i < timecodeSizeLength; i++) {
+      timecodeSize = (timecodeSize << 8) | (data[position + i] & 0xFF);
+    }
+    position += timecodeSizeLength;
+    if (timecodeSize < 1 || timecodeSize > 8 || position + timecodeSize > limit) {
+      return C.TIME_UNSET;
+    }
+    long timecode = 0;
+    for (int i = 0; i < timecodeSize; i++) {
+      timecode = (timecode << 8) | (data[position + i] & 0xFF);
+    }
+    return timecode;
+  }
+
   private long scaleTimecodeToUs(long unscaledTimecode) throws ParserException {
     if (timecodeScale == C.TIME_UNSET) {
       throw new ParserException("Can't scale timecode prior to timecodeScale being set.");
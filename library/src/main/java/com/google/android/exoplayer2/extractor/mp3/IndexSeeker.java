@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.LongArray;
+
+/**
+ * MP3 seeker that doesn't rely on metadata, and which indexes the positions of frames as they are
+ * read. Seeking within the indexed part of the stream is exact. Positions beyond it are estimated
+ * from the average bitrate of the indexed part, or from the bitrate of the first frame if nothing
+ * has been indexed yet.
+ * <p>
+ * Frames are added on the loading thread, whereas positions may be looked up on other threads, so
+ * all methods are synchronized.
+ */
+/* package */ final class IndexSeeker implements Mp3Extractor.Seeker {
+
+  /**
+   * The number of frames read between each indexed frame.
+   */
+  private static final int FRAMES_PER_INDEX_ENTRY = 16;
+  private static final int BITS_PER_BYTE = 8;
+
+  private final long firstFramePosition;
+  private final int firstFrameBitrate;
+  private final long durationUs;
+  private final LongArray timesUs;
+  private final LongArray positions;
+
+  private long indexedEndPosition;
+  private long indexedEndTimeUs;
+  private int framesSinceLastEntry;
+
+  /**
+   * @param firstFramePosition The position of the first frame in the stream.
+   * @param firstFrameBitrate The bitrate of the first frame, in bits per second.
+   * @param inputLength The length of the stream in bytes, or {@link C#LENGTH_UNSET} if unknown.
+   */
+  public IndexSeeker(long firstFramePosition, int firstFrameBitrate, long inputLength) {
+    this.firstFramePosition = firstFramePosition;
+    this.firstFrameBitrate = firstFrameBitrate;
+    timesUs = new LongArray();
+    positions = new LongArray();
+    timesUs.add(0);
+    positions.add(firstFramePosition);
+    indexedEndPosition = firstFramePosition;
+    durationUs = inputLength == C.LENGTH_UNSET ? C.TIME_UNSET : getTimeUs(inputLength);
+  }
+
+  /**
+   * Adds a frame that has been read to the index, if it is beyond the indexed part of the stream.
+   * Must only be called for frames whose timestamps are exact, which is the case if they have been
+   * read continuously from the start of the stream or from a position for which
+   * {@link #isExact(long)} returns true.
+   *
+   * @param position The position of the frame.
+   * @param timeUs The timestamp of the frame, in microseconds.
+   * @param endPosition The position of the end of the frame.
+   * @param endTimeUs The timestamp of the end of the frame, in microseconds.
+   */
+  public synchronized void maybeAddFrame(long position, long timeUs, long endPosition,
+      long endTimeUs) {
+    if (position < indexedEndPosition) {
+      // The frame is already indexed.
+      return;
+    }
+    if (++framesSinceLastEntry == FRAMES_PER_INDEX_ENTRY) {
+      timesUs.add(timeUs);
+      positions.add(position);
+      framesSinceLastEntry = 0;
+    }
+    indexedEndPosition = endPosition;
+    indexedEndTimeUs = endTimeUs;
+  }
+
+  /**
+   * Returns whether {@link #getTimeUs(long)} is exact for a position, which is the case if it's
+   * the position of an indexed frame or the start of the stream.
+   *
+   * @param position A position (byte offset) relative to the start of the stream.
+   */
+  public synchronized boolean isExact(long position) {
+    return position <= firstFramePosition || (position < indexedEndPosition
+        && positions.get(getIndexOfPosition(position)) == position);
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return durationUs != C.TIME_UNSET;
+  }
+
+  @Override
+  public synchronized long getPosition(long timeUs) {
+    if (durationUs == C.TIME_UNSET) {
+      return 0;
+    }
+    if (timeUs < indexedEndTimeUs) {
+      // Seek to the last indexed frame at or before the requested time.
+      int low = 0;
+      int high = timesUs.size() - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (timesUs.get(mid) <= timeUs) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return positions.get(low);
+    }
+    return indexedEndPosition
+        + ((timeUs - indexedEndTimeUs) * getBitrate()) / (C.MICROS_PER_SECOND * BITS_PER_BYTE);
+  }
+
+  @Override
+  public synchronized long getTimeUs(long position) {
+    long basisPosition;
+    long basisTimeUs;
+    if (position < indexedEndPosition) {
+      int index = getIndexOfPosition(position);
+      basisPosition = positions.get(index);
+      basisTimeUs = timesUs.get(index);
+    } else {
+      basisPosition = indexedEndPosition;
+      basisTimeUs = indexedEndTimeUs;
+    }
+    return basisTimeUs + (Math.max(0, position - basisPosition) * C.MICROS_PER_SECOND
+        * BITS_PER_BYTE) / getBitrate();
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  /**
+   * Returns the index of the last indexed frame at or before {@code position}, or 0 if there is
+   * none.
+   */
+  private int getIndexOfPosition(long position) {
+    int low = 0;
+    int high = positions.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (positions.get(mid) <= position) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the average bitrate of the indexed part of the stream in bits per second, or the
+   * bitrate of the first frame if nothing has been indexed.
+   */
+  private long getBitrate() {
+    return indexedEndTimeUs == 0 ? firstFrameBitrate
+        : ((indexedEndPosition - firstFramePosition) * BITS_PER_BYTE * C.MICROS_PER_SECOND)
+            / indexedEndTimeUs;
+  }
+
+}
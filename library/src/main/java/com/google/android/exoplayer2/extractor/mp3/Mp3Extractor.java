@@ -78,6 +78,10 @@ public final class Mp3Extractor implements Extractor {
   private int synchronizedHeaderData;
 
   private Seeker seeker;
+  // Non-null if the seeker indexes frames as they are read.
+  private IndexSeeker indexSeeker;
+  // Whether the timestamps of frames being read are exact, so that they can be indexed.
+  private boolean indexingFrames;
   private long basisTimeUs;
   private long samplesRead;
   private int sampleBytesRemaining;
@@ -121,6 +125,7 @@ public final class Mp3Extractor implements Extractor {
     basisTimeUs = C.TIME_UNSET;
     samplesRead = 0;
     sampleBytesRemaining = 0;
+    indexingFrames = indexSeeker != null && indexSeeker.isExact(position);
   }
 
   @Override
@@ -172,6 +177,13 @@ public final class Mp3Extractor implements Extractor {
         null);
     samplesRead += synchronizedHeader.samplesPerFrame;
     sampleBytesRemaining = 0;
+    if (indexingFrames) {
+      long endPosition = extractorInput.getPosition();
+      long endTimeUs = basisTimeUs + (samplesRead * C.MICROS_PER_SECOND
+          / synchronizedHeader.sampleRate);
+      indexSeeker.maybeAddFrame(endPosition - synchronizedHeader.frameSize, timeUs, endPosition,
+          endTimeUs);
+    }
     return RESULT_CONTINUE;
   }
 
@@ -329,7 +341,17 @@ public final class Mp3Extractor implements Extractor {
       input.peekFully(scratch.data, 0, 4);
       scratch.setPosition(0);
       MpegAudioHeader.populateHeader(scratch.readInt(), synchronizedHeader);
-      seeker = new ConstantBitrateSeeker(input.getPosition(), synchronizedHeader.bitrate, length);
+      IndexSeeker indexSeeker = new IndexSeeker(input.getPosition(), synchronizedHeader.bitrate,
+          length);
+      // A stream of unknown length isn't seekable, so it isn't indexed. Otherwise the index of a
+      // live stream would grow without bound.
+      if (length != C.LENGTH_UNSET) {
+        this.indexSeeker = indexSeeker;
+        // Frames are read from the start of the stream, so their timestamps are exact. If the
+        // first sample timestamp is forced then they're offset, so aren't indexed.
+        indexingFrames = forcedFirstSampleTimestampUs == C.TIME_UNSET;
+      }
+      seeker = indexSeeker;
     }
 
     return seeker;
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * A {@link TrackSampleTable} that holds the properties of all samples in arrays.
+ */
+/* package */ final class ArrayTrackSampleTable extends TrackSampleTable {
+
+  /**
+   * Sample offsets in bytes.
+   */
+  public final long[] offsets;
+  /**
+   * Sample sizes in bytes.
+   */
+  public final int[] sizes;
+  /**
+   * Sample timestamps in microseconds.
+   */
+  public final long[] timestampsUs;
+  /**
+   * Sample flags.
+   */
+  public final int[] flags;
+
+  ArrayTrackSampleTable(long[] offsets, int[] sizes, int maximumSize, long[] timestampsUs,
+      int[] flags) {
+    super(offsets.length, maximumSize);
+    Assertions.checkArgument(sizes.length == timestampsUs.length);
+    Assertions.checkArgument(offsets.length == timestampsUs.length);
+    Assertions.checkArgument(flags.length == timestampsUs.length);
+
+    this.offsets = offsets;
+    this.sizes = sizes;
+    this.timestampsUs = timestampsUs;
+    this.flags = flags;
+  }
+
+  @Override
+  public long getOffset(int sampleIndex) {
+    return offsets[sampleIndex];
+  }
+
+  @Override
+  public int getSize(int sampleIndex) {
+    return sizes[sampleIndex];
+  }
+
+  @Override
+  public long getTimestampUs(int sampleIndex) {
+    return timestampsUs[sampleIndex];
+  }
+
+  @Override
+  public int getFlags(int sampleIndex) {
+    return flags[sampleIndex];
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
+    // Frames are not reordered past synchronization samples so this works in practice.
+    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
+    for (int i = startIndex; i >= 0; i--) {
+      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
+    for (int i = startIndex; i < timestampsUs.length; i++) {
+      if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+}
@@ -45,6 +45,12 @@ import java.util.List;
   private static final int TYPE_subt = Util.getIntegerCodeForString("subt");
   private static final int TYPE_clcp = Util.getIntegerCodeForString("clcp");
 
+  /**
+   * The minimum number of samples in a track for which {@link #parseStbl} may return a
+   * {@link WindowedTrackSampleTable}.
+   */
+  private static final int MIN_WINDOWED_SAMPLE_TABLE_SAMPLE_COUNT = 32768;
+
   /**
    * Parses a trak atom (defined in 14496-12).
    *
@@ -113,7 +119,7 @@ import java.util.List;
 
     int sampleCount = sampleSizeBox.getSampleCount();
     if (sampleCount == 0) {
-      return new TrackSampleTable(new long[0], new int[0], 0, new long[0], new int[0]);
+      return new ArrayTrackSampleTable(new long[0], new int[0], 0, new long[0], new int[0]);
     }
 
     // Entries are byte offsets of chunks.
@@ -135,6 +141,21 @@ import java.util.List;
     Atom.LeafAtom cttsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_ctts);
     ParsableByteArray ctts = cttsAtom != null ? cttsAtom.data : null;
 
+    if (sampleCount >= MIN_WINDOWED_SAMPLE_TABLE_SAMPLE_COUNT && stszAtom != null
+        && !MimeTypes.AUDIO_RAW.equals(track.format.sampleMimeType)) {
+      // Avoid decoding the properties of every sample up front for long tracks, if the edit list
+      // (if any) doesn't need to be applied to the samples.
+      WindowedTrackSampleTable sampleTable = new WindowedTrackSampleTable(track.timescale,
+          stszAtom.data, chunkOffsets, chunkOffsetsAreLongs, stsc, stts, ctts, stss);
+      if (track.editListDurations == null || gaplessInfoHolder.hasGaplessInfo()
+          || (track.editListDurations.length == 1 && track.type == C.TRACK_TYPE_AUDIO
+          && maybeApplyEditAsGaplessInfo(track, sampleTable.getTimestamp(0),
+          sampleTable.getTimestamp(1), sampleTable.getTimestamp(sampleCount - 1),
+          sampleTable.durationTimeUnits, gaplessInfoHolder))) {
+        return sampleTable;
+      }
+    }
+
     // Prepare to read chunk information.
     ChunkIterator chunkIterator = new ChunkIterator(stsc, chunkOffsets, chunkOffsetsAreLongs);
 
@@ -274,7 +295,7 @@ import java.util.List;
       // There is no edit list, or we are ignoring it as we already have gapless metadata to apply.
       // This implementation does not support applying both gapless metadata and an edit list.
       Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
-      return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     // See the BMFF spec (ISO 14496-12) subsection 8.6.6. Edit lists that require prerolling from a
@@ -284,29 +305,10 @@ import java.util.List;
     // of samples. The extractor may place further restrictions on what edited streams are playable.
 
     if (track.editListDurations.length == 1 && track.type == C.TRACK_TYPE_AUDIO
-        && timestamps.length >= 2) {
-      // Handle the edit by setting gapless playback metadata, if possible. This implementation
-      // assumes that only one "roll" sample is needed, which is the case for AAC, so the start/end
-      // points of the edit must lie within the first/last samples respectively.
-      long editStartTime = track.editListMediaTimes[0];
-      long editEndTime = editStartTime + Util.scaleLargeTimestamp(track.editListDurations[0],
-          track.timescale, track.movieTimescale);
-      long lastSampleEndTime = timestampTimeUnits;
-      if (timestamps[0] <= editStartTime && editStartTime < timestamps[1]
-          && timestamps[timestamps.length - 1] < editEndTime && editEndTime <= lastSampleEndTime) {
-        long paddingTimeUnits = lastSampleEndTime - editEndTime;
-        long encoderDelay = Util.scaleLargeTimestamp(editStartTime - timestamps[0],
-            track.format.sampleRate, track.timescale);
-        long encoderPadding = Util.scaleLargeTimestamp(paddingTimeUnits,
-            track.format.sampleRate, track.timescale);
-        if ((encoderDelay != 0 || encoderPadding != 0) && encoderDelay <= Integer.MAX_VALUE
-            && encoderPadding <= Integer.MAX_VALUE) {
-          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
-          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
-          Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
-          return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
-        }
-      }
+        && timestamps.length >= 2 && maybeApplyEditAsGaplessInfo(track, timestamps[0],
+        timestamps[1], timestamps[timestamps.length - 1], timestampTimeUnits, gaplessInfoHolder)) {
+      Util.scaleLargeTimestampsInPlace(timestamps, C.MICROS_PER_SECOND, track.timescale);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     if (track.editListDurations.length == 1 && track.editListDurations[0] == 0) {
@@ -317,7 +319,7 @@ import java.util.List;
         timestamps[i] = Util.scaleLargeTimestamp(timestamps[i] - track.editListMediaTimes[0],
             C.MICROS_PER_SECOND, track.timescale);
       }
-      return new TrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
+      return new ArrayTrackSampleTable(offsets, sizes, maximumSize, timestamps, flags);
     }
 
     // Count the number of samples after applying edits.
@@ -382,10 +384,47 @@ import java.util.List;
       throw new ParserException("The edited sample sequence does not contain a sync sample.");
     }
 
-    return new TrackSampleTable(editedOffsets, editedSizes, editedMaximumSize, editedTimestamps,
+    return new ArrayTrackSampleTable(editedOffsets, editedSizes, editedMaximumSize, editedTimestamps,
         editedFlags);
   }
 
+  /**
+   * Sets gapless playback information in {@code gaplessInfoHolder} to implement the single edit in
+   * an audio track's edit list, if possible. This implementation assumes that only one "roll"
+   * sample is needed, which is the case for AAC, so the start/end points of the edit must lie
+   * within the first/last samples respectively.
+   *
+   * @param track The track.
+   * @param firstTimestamp The timestamp of the first sample, in the track's timescale.
+   * @param secondTimestamp The timestamp of the second sample, in the track's timescale.
+   * @param lastTimestamp The timestamp of the last sample, in the track's timescale.
+   * @param lastSampleEndTime The end time of the last sample, in the track's timescale.
+   * @param gaplessInfoHolder The {@link GaplessInfoHolder} to populate.
+   * @return Whether gapless playback information was set.
+   */
+  private static boolean maybeApplyEditAsGaplessInfo(Track track, long firstTimestamp,
+      long secondTimestamp, long lastTimestamp, long lastSampleEndTime,
+      GaplessInfoHolder gaplessInfoHolder) {
+    long editStartTime = track.editListMediaTimes[0];
+    long editEndTime = editStartTime + Util.scaleLargeTimestamp(track.editListDurations[0],
+        track.timescale, track.movieTimescale);
+    if (firstTimestamp <= editStartTime && editStartTime < secondTimestamp
+        && lastTimestamp < editEndTime && editEndTime <= lastSampleEndTime) {
+      long paddingTimeUnits = lastSampleEndTime - editEndTime;
+      long encoderDelay = Util.scaleLargeTimestamp(editStartTime - firstTimestamp,
+          track.format.sampleRate, track.timescale);
+      long encoderPadding = Util.scaleLargeTimestamp(paddingTimeUnits,
+          track.format.sampleRate, track.timescale);
+      if ((encoderDelay != 0 || encoderPadding != 0) && encoderDelay <= Integer.MAX_VALUE
+          && encoderPadding <= Integer.MAX_VALUE) {
+        gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+        gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Parses a udta atom.
    *
@@ -110,12 +110,15 @@ public final class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray atomHeader;
   private final byte[] extendedTypeScratch;
   private final Stack<ContainerAtom> containerAtoms;
+  // Holders for the data of leaf atoms in moof atoms, reused for each moof.
+  private final ArrayList<ParsableByteArray> fragmentAtomData;
 
   private int parserState;
   private int atomType;
   private long atomSize;
   private int atomHeaderBytesRead;
   private ParsableByteArray atomData;
+  private int fragmentAtomDataCount;
   private long endOfMdatPosition;
 
   private long durationUs;
@@ -155,6 +158,7 @@ public final class FragmentedMp4Extractor implements Extractor {
     encryptionSignalByte = new ParsableByteArray(1);
     extendedTypeScratch = new byte[16];
     containerAtoms = new Stack<>();
+    fragmentAtomData = new ArrayList<>();
     trackBundles = new SparseArray<>();
     durationUs = C.TIME_UNSET;
     enterReadingAtomHeaderState();
@@ -183,6 +187,7 @@ public final class FragmentedMp4Extractor implements Extractor {
       trackBundles.valueAt(i).reset();
     }
     containerAtoms.clear();
+    fragmentAtomDataCount = 0;
     enterReadingAtomHeaderState();
   }
 
@@ -279,7 +284,7 @@ public final class FragmentedMp4Extractor implements Extractor {
       if (atomSize > Integer.MAX_VALUE) {
         throw new ParserException("Leaf atom with length > 2147483647 (unsupported).");
       }
-      atomData = new ParsableByteArray((int) atomSize);
+      atomData = obtainAtomData((int) atomSize);
       System.arraycopy(atomHeader.data, 0, atomData.data, 0, Atom.HEADER_SIZE);
       parserState = STATE_READING_ATOM_PAYLOAD;
     } else {
@@ -293,6 +298,25 @@ public final class FragmentedMp4Extractor implements Extractor {
     return true;
   }
 
+  /**
+   * Returns a holder for the data of the leaf atom being read, whose size is {@code size}. Holders
+   * for atoms in a moof are reused once the moof has been parsed, so that parsing a fragment does
+   * not allocate if it's no larger than those before it.
+   */
+  private ParsableByteArray obtainAtomData(int size) {
+    if (containerAtoms.isEmpty() || containerAtoms.firstElement().type != Atom.TYPE_moof
+        || atomType == Atom.TYPE_pssh) {
+      // The data of pssh atoms is retained in DrmInitData.
+      return new ParsableByteArray(size);
+    }
+    if (fragmentAtomDataCount == fragmentAtomData.size()) {
+      fragmentAtomData.add(new ParsableByteArray(size));
+    }
+    ParsableByteArray data = fragmentAtomData.get(fragmentAtomDataCount++);
+    data.reset(size);
+    return data;
+  }
+
   private void readAtomPayload(ExtractorInput input) throws IOException, InterruptedException {
     int atomPayloadSize = (int) atomSize - atomHeaderBytesRead;
     if (atomData != null) {
@@ -326,6 +350,7 @@ public final class FragmentedMp4Extractor implements Extractor {
       onMoovContainerAtomRead(container);
     } else if (container.type == Atom.TYPE_moof) {
       onMoofContainerAtomRead(container);
+      fragmentAtomDataCount = 0;
     } else if (!containerAtoms.isEmpty()) {
       containerAtoms.peek().add(container);
     }
@@ -614,8 +639,14 @@ public final class FragmentedMp4Extractor implements Extractor {
         ? tfhd.readUnsignedIntToInt() : defaultSampleValues.size;
     int defaultSampleFlags = ((atomFlags & 0x20 /* default_sample_flags_present */) != 0)
         ? tfhd.readUnsignedIntToInt() : defaultSampleValues.flags;
-    trackBundle.fragment.header = new DefaultSampleValues(defaultSampleDescriptionIndex,
-        defaultSampleDuration, defaultSampleSize, defaultSampleFlags);
+    DefaultSampleValues header = trackBundle.fragment.header;
+    if (header == null || header.sampleDescriptionIndex != defaultSampleDescriptionIndex
+        || header.duration != defaultSampleDuration || header.size != defaultSampleSize
+        || header.flags != defaultSampleFlags) {
+      // Fragments usually share their defaults, so the previous fragment's are reused if possible.
+      trackBundle.fragment.header = new DefaultSampleValues(defaultSampleDescriptionIndex,
+          defaultSampleDuration, defaultSampleSize, defaultSampleFlags);
+    }
     return trackBundle;
   }
 
@@ -68,6 +68,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private static final long RELOAD_MINIMUM_SEEK_DISTANCE = 256 * 1024;
 
+  /**
+   * The number of bytes of samples that may be read from other tracks since a track was last read
+   * from, before the track is read from even though this requires the source to be reloaded.
+   */
+  private static final long MAXIMUM_READ_AHEAD_BYTES = 10 * 1024 * 1024;
+
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
   private final ParsableByteArray nalLength;
@@ -81,8 +87,10 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private int atomHeaderBytesRead;
   private ParsableByteArray atomData;
 
+  private int sampleTrackIndex;
   private int sampleBytesWritten;
   private int sampleCurrentNalBytesRemaining;
+  private long totalSampleBytesRead;
 
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
@@ -95,6 +103,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     containerAtoms = new Stack<>();
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
     nalLength = new ParsableByteArray(4);
+    sampleTrackIndex = C.INDEX_UNSET;
     enterReadingAtomHeaderState();
   }
 
@@ -112,8 +121,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   public void seek(long position) {
     containerAtoms.clear();
     atomHeaderBytesRead = 0;
+    sampleTrackIndex = C.INDEX_UNSET;
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
+    if (tracks != null) {
+      for (Mp4Track track : tracks) {
+        track.totalSampleBytesReadAtLastSample = totalSampleBytesRead;
+      }
+    }
     parserState = STATE_AFTER_SEEK;
   }
 
@@ -174,7 +189,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
       track.sampleIndex = sampleIndex;
 
-      long offset = sampleTable.offsets[sampleIndex];
+      long offset = sampleTable.getOffset(sampleIndex);
       if (offset < earliestSamplePosition) {
         earliestSamplePosition = offset;
       }
@@ -349,7 +364,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       durationUs = Math.max(durationUs, track.durationUs);
       tracks.add(mp4Track);
 
-      long firstSampleOffset = trackSampleTable.offsets[0];
+      long firstSampleOffset = trackSampleTable.getOffset(0);
       if (firstSampleOffset < earliestSampleOffset) {
         earliestSampleOffset = firstSampleOffset;
       }
@@ -378,15 +393,17 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private int readSample(ExtractorInput input, PositionHolder positionHolder)
       throws IOException, InterruptedException {
-    int trackIndex = getTrackIndexOfEarliestCurrentSample();
-    if (trackIndex == C.INDEX_UNSET) {
-      return RESULT_END_OF_INPUT;
+    if (sampleTrackIndex == C.INDEX_UNSET) {
+      sampleTrackIndex = getTrackIndexOfNextReadSample(input.getPosition());
+      if (sampleTrackIndex == C.INDEX_UNSET) {
+        return RESULT_END_OF_INPUT;
+      }
     }
-    Mp4Track track = tracks[trackIndex];
+    Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     if (track.track.sampleTransformation == Track.TRANSFORMATION_CEA608_CDAT) {
       // The sample information is contained in a cdat atom. The header must be discarded for
       // committing.
@@ -436,21 +453,38 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         sampleCurrentNalBytesRemaining -= writtenBytes;
       }
     }
-    trackOutput.sampleMetadata(track.sampleTable.timestampsUs[sampleIndex],
-        track.sampleTable.flags[sampleIndex], sampleSize, 0, null);
+    trackOutput.sampleMetadata(track.sampleTable.getTimestampUs(sampleIndex),
+        track.sampleTable.getFlags(sampleIndex), sampleSize, 0, null);
     track.sampleIndex++;
+    totalSampleBytesRead += sampleSize;
+    track.totalSampleBytesReadAtLastSample = totalSampleBytesRead;
+    sampleTrackIndex = C.INDEX_UNSET;
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
     return RESULT_CONTINUE;
   }
 
   /**
-   * Returns the index of the track that contains the earliest current sample, or
-   * {@link C#INDEX_UNSET} if no samples remain.
+   * Returns the index of the track that contains the next sample to read, or {@link C#INDEX_UNSET}
+   * if no samples remain.
+   * <p>
+   * The track whose next sample is nearest to and after the current position is preferred, since it
+   * can be read without reloading the source. If the file's tracks are poorly interleaved, this
+   * means reading ahead in one track, with the read samples being buffered by its
+   * {@link TrackOutput}. So that this doesn't starve other tracks, the track whose next sample is
+   * earliest in time is read instead, even if this requires the source to be reloaded, once more
+   * than {@link #MAXIMUM_READ_AHEAD_BYTES} have been read since it was last read from, unless its
+   * next sample is less than {@link #MAXIMUM_READ_AHEAD_BYTES} ahead of the current position.
+   *
+   * @param inputPosition The current position in the input.
    */
-  private int getTrackIndexOfEarliestCurrentSample() {
-    int earliestSampleTrackIndex = C.INDEX_UNSET;
-    long earliestSampleOffset = Long.MAX_VALUE;
+  private int getTrackIndexOfNextReadSample(long inputPosition) {
+    int preferredTrackIndex = C.INDEX_UNSET;
+    long preferredSkipAmount = Long.MAX_VALUE;
+    boolean preferredRequiresReload = true;
+    int earliestTrackIndex = C.INDEX_UNSET;
+    long earliestTimestampUs = Long.MAX_VALUE;
+    long earliestSkipAmount = 0;
     for (int trackIndex = 0; trackIndex < tracks.length; trackIndex++) {
       Mp4Track track = tracks[trackIndex];
       int sampleIndex = track.sampleIndex;
@@ -458,14 +492,34 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         continue;
       }
 
-      long trackSampleOffset = track.sampleTable.offsets[sampleIndex];
-      if (trackSampleOffset < earliestSampleOffset) {
-        earliestSampleOffset = trackSampleOffset;
-        earliestSampleTrackIndex = trackIndex;
+      long skipAmount = track.sampleTable.getOffset(sampleIndex) - inputPosition;
+      boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
+      if ((!requiresReload && preferredRequiresReload)
+          || (requiresReload == preferredRequiresReload && skipAmount < preferredSkipAmount)) {
+        preferredTrackIndex = trackIndex;
+        preferredSkipAmount = skipAmount;
+        preferredRequiresReload = requiresReload;
+      }
+      long timestampUs = track.sampleTable.getTimestampUs(sampleIndex);
+      if (timestampUs < earliestTimestampUs) {
+        earliestTimestampUs = timestampUs;
+        earliestTrackIndex = trackIndex;
+        earliestSkipAmount = skipAmount;
       }
     }
 
-    return earliestSampleTrackIndex;
+    if (preferredRequiresReload || preferredTrackIndex == earliestTrackIndex) {
+      // If every track requires a reload then the one whose next sample is earliest in the file is
+      // preferred, as for well interleaved files.
+      return preferredTrackIndex;
+    }
+    long bytesReadSinceEarliestTrackRead = totalSampleBytesRead
+        - tracks[earliestTrackIndex].totalSampleBytesReadAtLastSample;
+    // Keep reading sequentially if the earliest track's next sample will be reached soon anyway.
+    boolean earliestSampleIsNear = earliestSkipAmount >= 0
+        && earliestSkipAmount < MAXIMUM_READ_AHEAD_BYTES;
+    return bytesReadSinceEarliestTrackRead > MAXIMUM_READ_AHEAD_BYTES && !earliestSampleIsNear
+        ? earliestTrackIndex : preferredTrackIndex;
   }
 
   /**
@@ -495,6 +549,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     public final TrackOutput trackOutput;
 
     public int sampleIndex;
+    public long totalSampleBytesReadAtLastSample;
 
     public Mp4Track(Track track, TrackSampleTable sampleTable, TrackOutput trackOutput) {
       this.track = track;
@@ -0,0 +1,448 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * A {@link TrackSampleTable} that keeps a track's stsz, stco/co64, stsc, stts, ctts and stss boxes
+ * in their compact encoded form, and decodes the properties of samples on demand.
+ * <p>
+ * Samples are decoded in windows of {@link #WINDOW_SIZE} samples, of which only the most recently
+ * accessed is retained. The state required to start decoding each window is recorded in a single
+ * pass over the boxes when the table is created. The retained boxes are dominated by the stsz box,
+ * which takes four bytes per sample unless all samples have the same size, so the table's memory
+ * usage is around a sixth of that of an {@link ArrayTrackSampleTable}, which takes 24 bytes per
+ * sample.
+ * <p>
+ * Only stsz sample size boxes are supported. Edit lists are not applied.
+ */
+/* package */ final class WindowedTrackSampleTable extends TrackSampleTable {
+
+  /**
+   * The number of samples in each window.
+   */
+  public static final int WINDOW_SIZE = 1024;
+
+  /**
+   * The sum of the durations of all samples, in the track's timescale.
+   */
+  public final long durationTimeUnits;
+
+  private final long timescale;
+  private final int fixedSampleSize;
+  private final ParsableByteArray stsz;
+  private final ParsableByteArray chunkOffsets;
+  private final boolean chunkOffsetsAreLongs;
+  private final int chunkCount;
+  private final ParsableByteArray stsc;
+  private final ParsableByteArray stts;
+  private final ParsableByteArray ctts;
+  private final ParsableByteArray stss;
+  private final int synchronizationSampleCount;
+  private final DecodingState[] windowStartStates;
+  private final long[] windowStartTimestampsUs;
+
+  private volatile Window window;
+
+  /**
+   * @param timescale The track's timescale.
+   * @param stsz The stsz atom data.
+   * @param chunkOffsets The stco or co64 atom data.
+   * @param chunkOffsetsAreLongs Whether {@code chunkOffsets} is co64 atom data.
+   * @param stsc The stsc atom data.
+   * @param stts The stts atom data.
+   * @param ctts The ctts atom data, or null if the track has no ctts atom.
+   * @param stss The stss atom data, or null if the track has no stss atom.
+   */
+  public WindowedTrackSampleTable(long timescale, ParsableByteArray stsz,
+      ParsableByteArray chunkOffsets, boolean chunkOffsetsAreLongs, ParsableByteArray stsc,
+      ParsableByteArray stts, ParsableByteArray ctts, ParsableByteArray stss) {
+    super(readUnsignedIntToInt(copy(stsz), Atom.FULL_HEADER_SIZE + 4),
+        getMaximumSampleSize(copy(stsz)));
+    this.timescale = timescale;
+    // Use separate instances, so that reading doesn't affect the positions of those passed in.
+    this.stsz = copy(stsz);
+    this.chunkOffsets = copy(chunkOffsets);
+    this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+    this.stsc = copy(stsc);
+    this.stts = copy(stts);
+    this.ctts = ctts != null ? copy(ctts) : null;
+    fixedSampleSize = readUnsignedIntToInt(this.stsz, Atom.FULL_HEADER_SIZE);
+    chunkCount = readUnsignedIntToInt(this.chunkOffsets, Atom.FULL_HEADER_SIZE);
+    Assertions.checkState(readInt(this.stsc, Atom.FULL_HEADER_SIZE + 4) == 1,
+        "first_chunk must be 1");
+    stss = stss != null ? copy(stss) : null;
+    int synchronizationSampleCount = stss != null
+        ? readUnsignedIntToInt(stss, Atom.FULL_HEADER_SIZE) : 0;
+    // Ignore empty stss boxes, which causes all samples to be treated as sync samples.
+    this.stss = synchronizationSampleCount > 0 ? stss : null;
+    this.synchronizationSampleCount = synchronizationSampleCount;
+
+    // Record the state at the start of each window.
+    int windowCount = (sampleCount + WINDOW_SIZE - 1) / WINDOW_SIZE;
+    windowStartStates = new DecodingState[windowCount];
+    windowStartTimestampsUs = new long[windowCount];
+    DecodingState state = new DecodingState();
+    for (int i = 0; i < sampleCount; i++) {
+      boolean isWindowStart = i % WINDOW_SIZE == 0;
+      if (isWindowStart) {
+        windowStartStates[i / WINDOW_SIZE] = new DecodingState(state);
+      }
+      state.decodeNextSample();
+      if (isWindowStart) {
+        windowStartTimestampsUs[i / WINDOW_SIZE] = Util.scaleLargeTimestamp(state.sampleTimestamp,
+            C.MICROS_PER_SECOND, timescale);
+      }
+    }
+    durationTimeUnits = state.timestampTimeUnits;
+  }
+
+  /**
+   * Returns the timestamp of a sample in the track's timescale.
+   *
+   * @param sampleIndex The index of the sample.
+   */
+  public long getTimestamp(int sampleIndex) {
+    Window window = getWindow(sampleIndex);
+    return window.timestamps[sampleIndex - window.firstSampleIndex];
+  }
+
+  // TrackSampleTable implementation.
+
+  @Override
+  public long getOffset(int sampleIndex) {
+    Window window = getWindow(sampleIndex);
+    return window.offsets[sampleIndex - window.firstSampleIndex];
+  }
+
+  @Override
+  public int getSize(int sampleIndex) {
+    Window window = getWindow(sampleIndex);
+    return window.sizes[sampleIndex - window.firstSampleIndex];
+  }
+
+  @Override
+  public long getTimestampUs(int sampleIndex) {
+    Window window = getWindow(sampleIndex);
+    return window.timestampsUs[sampleIndex - window.firstSampleIndex];
+  }
+
+  @Override
+  public int getFlags(int sampleIndex) {
+    Window window = getWindow(sampleIndex);
+    return window.flags[sampleIndex - window.firstSampleIndex];
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
+    // Frames are not reordered past synchronization samples so this works in practice.
+    Window window = getWindow(getWindowIndex(timeUs) * WINDOW_SIZE);
+    int index = Util.binarySearchFloor(window.timestampsUs, timeUs, true, false);
+    if (index < 0) {
+      return C.INDEX_UNSET;
+    }
+    int sampleIndex = window.firstSampleIndex + index;
+    if (stss == null) {
+      return sampleIndex;
+    }
+    int entryIndex = getFirstSynchronizationSampleEntryIndex(sampleIndex + 1) - 1;
+    return entryIndex >= 0 ? getSynchronizationSampleIndex(entryIndex) : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    Window window = getWindow(getWindowIndex(timeUs) * WINDOW_SIZE);
+    int sampleIndex = window.firstSampleIndex
+        + Util.binarySearchCeil(window.timestampsUs, timeUs, true, false);
+    if (stss == null) {
+      return sampleIndex < sampleCount ? sampleIndex : C.INDEX_UNSET;
+    }
+    int entryIndex = getFirstSynchronizationSampleEntryIndex(sampleIndex);
+    return entryIndex < synchronizationSampleCount ? getSynchronizationSampleIndex(entryIndex)
+        : C.INDEX_UNSET;
+  }
+
+  // Internal methods.
+
+  private int getWindowIndex(long timeUs) {
+    return Util.binarySearchFloor(windowStartTimestampsUs, timeUs, true, true);
+  }
+
+  private Window getWindow(int sampleIndex) {
+    int windowIndex = sampleIndex / WINDOW_SIZE;
+    Window window = this.window;
+    if (window == null || window.index != windowIndex) {
+      window = decodeWindow(windowIndex);
+      this.window = window;
+    }
+    return window;
+  }
+
+  private synchronized Window decodeWindow(int windowIndex) {
+    int firstSampleIndex = windowIndex * WINDOW_SIZE;
+    Window window = new Window(windowIndex, firstSampleIndex,
+        Math.min(WINDOW_SIZE, sampleCount - firstSampleIndex));
+    DecodingState state = new DecodingState(windowStartStates[windowIndex]);
+    int nextSynchronizationSampleEntryIndex = C.INDEX_UNSET;
+    int nextSynchronizationSampleIndex = C.INDEX_UNSET;
+    if (stss != null) {
+      nextSynchronizationSampleEntryIndex = getFirstSynchronizationSampleEntryIndex(
+          firstSampleIndex);
+      if (nextSynchronizationSampleEntryIndex < synchronizationSampleCount) {
+        nextSynchronizationSampleIndex =
+            getSynchronizationSampleIndex(nextSynchronizationSampleEntryIndex);
+      }
+    }
+    for (int i = 0; i < window.sizes.length; i++) {
+      state.decodeNextSample();
+      window.offsets[i] = state.sampleOffset;
+      window.sizes[i] = state.sampleSize;
+      window.timestamps[i] = state.sampleTimestamp;
+      window.timestampsUs[i] = Util.scaleLargeTimestamp(state.sampleTimestamp,
+          C.MICROS_PER_SECOND, timescale);
+      // All samples are synchronization samples if the stss is not present.
+      window.flags[i] = stss == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      if (firstSampleIndex + i == nextSynchronizationSampleIndex) {
+        window.flags[i] = C.BUFFER_FLAG_KEY_FRAME;
+        nextSynchronizationSampleEntryIndex++;
+        if (nextSynchronizationSampleEntryIndex < synchronizationSampleCount) {
+          nextSynchronizationSampleIndex =
+              getSynchronizationSampleIndex(nextSynchronizationSampleEntryIndex);
+        }
+      }
+    }
+    return window;
+  }
+
+  /**
+   * Returns the index of the first stss entry whose sample index is greater than or equal to
+   * {@code sampleIndex}, or {@link #synchronizationSampleCount} if there isn't one.
+   */
+  private synchronized int getFirstSynchronizationSampleEntryIndex(int sampleIndex) {
+    int low = 0;
+    int high = synchronizationSampleCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getSynchronizationSampleIndex(middle) < sampleIndex) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private synchronized int getSynchronizationSampleIndex(int entryIndex) {
+    return readUnsignedIntToInt(stss, Atom.FULL_HEADER_SIZE + 4 + 4 * entryIndex) - 1;
+  }
+
+  private static int getMaximumSampleSize(ParsableByteArray stsz) {
+    stsz.setPosition(Atom.FULL_HEADER_SIZE);
+    int fixedSampleSize = stsz.readUnsignedIntToInt();
+    int sampleCount = stsz.readUnsignedIntToInt();
+    if (fixedSampleSize != 0) {
+      return fixedSampleSize;
+    }
+    int maximumSize = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      maximumSize = Math.max(maximumSize, stsz.readUnsignedIntToInt());
+    }
+    return maximumSize;
+  }
+
+  private static ParsableByteArray copy(ParsableByteArray data) {
+    return new ParsableByteArray(data.data, data.limit());
+  }
+
+  private static int readInt(ParsableByteArray data, int position) {
+    data.setPosition(position);
+    return data.readInt();
+  }
+
+  private static int readUnsignedIntToInt(ParsableByteArray data, int position) {
+    data.setPosition(position);
+    return data.readUnsignedIntToInt();
+  }
+
+  /**
+   * The properties of a window of samples.
+   */
+  private static final class Window {
+
+    public final int index;
+    public final int firstSampleIndex;
+    public final long[] offsets;
+    public final int[] sizes;
+    public final long[] timestamps;
+    public final long[] timestampsUs;
+    public final int[] flags;
+
+    public Window(int index, int firstSampleIndex, int length) {
+      this.index = index;
+      this.firstSampleIndex = firstSampleIndex;
+      offsets = new long[length];
+      sizes = new int[length];
+      timestamps = new long[length];
+      timestampsUs = new long[length];
+      flags = new int[length];
+    }
+
+  }
+
+  /**
+   * The state of decoding samples from the sample table boxes, which mirrors that of
+   * {@link AtomParsers#parseStbl}.
+   */
+  private final class DecodingState {
+
+    // The properties of the most recently decoded sample.
+    public long sampleOffset;
+    public int sampleSize;
+    public long sampleTimestamp;
+
+    public long timestampTimeUnits;
+
+    private int sampleIndex;
+
+    private int chunkIndex;
+    private long offset;
+    private int remainingSamplesInChunk;
+    private int samplesPerChunk;
+    private int stscPosition;
+    private int nextSamplesPerChunkChangeIndex;
+    private int remainingSamplesPerChunkChanges;
+
+    private int sttsPosition;
+    private int remainingTimestampDeltaChanges;
+    private int remainingSamplesAtTimestampDelta;
+    private int timestampDeltaInTimeUnits;
+
+    private int cttsPosition;
+    private int remainingTimestampOffsetChanges;
+    private int remainingSamplesAtTimestampOffset;
+    private int timestampOffset;
+
+    /**
+     * Creates the state for decoding the first sample.
+     */
+    public DecodingState() {
+      chunkIndex = C.INDEX_UNSET;
+      remainingSamplesPerChunkChanges = readUnsignedIntToInt(stsc, Atom.FULL_HEADER_SIZE);
+      // The position of the samples_per_chunk field of the first entry.
+      stscPosition = Atom.FULL_HEADER_SIZE + 8;
+
+      remainingTimestampDeltaChanges = readUnsignedIntToInt(stts, Atom.FULL_HEADER_SIZE) - 1;
+      remainingSamplesAtTimestampDelta = readUnsignedIntToInt(stts, Atom.FULL_HEADER_SIZE + 4);
+      timestampDeltaInTimeUnits = readUnsignedIntToInt(stts, Atom.FULL_HEADER_SIZE + 8);
+      sttsPosition = Atom.FULL_HEADER_SIZE + 12;
+
+      if (ctts != null) {
+        remainingTimestampOffsetChanges = readUnsignedIntToInt(ctts, Atom.FULL_HEADER_SIZE);
+        cttsPosition = Atom.FULL_HEADER_SIZE + 4;
+      }
+    }
+
+    /**
+     * Creates a copy of another state.
+     */
+    public DecodingState(DecodingState other) {
+      sampleIndex = other.sampleIndex;
+      chunkIndex = other.chunkIndex;
+      offset = other.offset;
+      remainingSamplesInChunk = other.remainingSamplesInChunk;
+      samplesPerChunk = other.samplesPerChunk;
+      stscPosition = other.stscPosition;
+      nextSamplesPerChunkChangeIndex = other.nextSamplesPerChunkChangeIndex;
+      remainingSamplesPerChunkChanges = other.remainingSamplesPerChunkChanges;
+      timestampTimeUnits = other.timestampTimeUnits;
+      sttsPosition = other.sttsPosition;
+      remainingTimestampDeltaChanges = other.remainingTimestampDeltaChanges;
+      remainingSamplesAtTimestampDelta = other.remainingSamplesAtTimestampDelta;
+      timestampDeltaInTimeUnits = other.timestampDeltaInTimeUnits;
+      cttsPosition = other.cttsPosition;
+      remainingTimestampOffsetChanges = other.remainingTimestampOffsetChanges;
+      remainingSamplesAtTimestampOffset = other.remainingSamplesAtTimestampOffset;
+      timestampOffset = other.timestampOffset;
+    }
+
+    /**
+     * Decodes the properties of the next sample.
+     */
+    public void decodeNextSample() {
+      // Advance to the next chunk if necessary.
+      while (remainingSamplesInChunk == 0) {
+        moveToNextChunk();
+      }
+
+      // Add on the timestamp offset if ctts is present.
+      if (ctts != null) {
+        while (remainingSamplesAtTimestampOffset == 0 && remainingTimestampOffsetChanges > 0) {
+          remainingSamplesAtTimestampOffset = readUnsignedIntToInt(ctts, cttsPosition);
+          // Decode sample offsets as signed integers, as in AtomParsers.parseStbl.
+          timestampOffset = readInt(ctts, cttsPosition + 4);
+          cttsPosition += 8;
+          remainingTimestampOffsetChanges--;
+        }
+        remainingSamplesAtTimestampOffset--;
+      }
+
+      sampleOffset = offset;
+      sampleSize = fixedSampleSize != 0 ? fixedSampleSize
+          : readUnsignedIntToInt(stsz, Atom.FULL_HEADER_SIZE + 8 + 4 * sampleIndex);
+      sampleTimestamp = timestampTimeUnits + timestampOffset;
+
+      // Add on the duration of this sample.
+      timestampTimeUnits += timestampDeltaInTimeUnits;
+      remainingSamplesAtTimestampDelta--;
+      if (remainingSamplesAtTimestampDelta == 0 && remainingTimestampDeltaChanges > 0) {
+        remainingSamplesAtTimestampDelta = readUnsignedIntToInt(stts, sttsPosition);
+        timestampDeltaInTimeUnits = readUnsignedIntToInt(stts, sttsPosition + 4);
+        sttsPosition += 8;
+        remainingTimestampDeltaChanges--;
+      }
+
+      offset += sampleSize;
+      remainingSamplesInChunk--;
+      sampleIndex++;
+    }
+
+    private void moveToNextChunk() {
+      Assertions.checkState(++chunkIndex < chunkCount);
+      if (chunkOffsetsAreLongs) {
+        chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE + 4 + 8 * chunkIndex);
+        offset = chunkOffsets.readUnsignedLongToLong();
+      } else {
+        chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE + 4 + 4 * chunkIndex);
+        offset = chunkOffsets.readUnsignedInt();
+      }
+      if (chunkIndex == nextSamplesPerChunkChangeIndex) {
+        samplesPerChunk = readUnsignedIntToInt(stsc, stscPosition);
+        // Skip sample_description_index.
+        nextSamplesPerChunkChangeIndex = --remainingSamplesPerChunkChanges > 0
+            ? (readUnsignedIntToInt(stsc, stscPosition + 8) - 1) : C.INDEX_UNSET;
+        stscPosition += 12;
+      }
+      remainingSamplesInChunk = samplesPerChunk;
+    }
+
+  }
+
+}
@@ -15,15 +15,21 @@
  */
 package com.google.android.exoplayer2.extractor.ogg;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Used to seek in an Ogg stream.
+ * <p>
+ * The granule positions and byte ranges of pages read while seeking are kept in an index, which is
+ * used to narrow the range searched by later seeks. Seeking to the same position again, or to one
+ * within an indexed page, requires no further seeks of the input.
  */
 /* package */ final class DefaultOggSeeker implements OggSeeker {
 
@@ -39,6 +45,7 @@ import java.io.IOException;
   private static final int STATE_IDLE = 3;
 
   private final OggPageHeader pageHeader = new OggPageHeader();
+  private final PageIndex pageIndex = new PageIndex();
   private final long startPosition;
   private final long endPosition;
   private final StreamReader streamReader;
@@ -111,6 +118,23 @@ import java.io.IOException;
     targetGranule = queriedGranule;
     state = STATE_SEEK;
     resetSeeking();
+    // Narrow the search to the range between the indexed pages around the target.
+    synchronized (pageIndex) {
+      int index = pageIndex.getLastIndexAtOrBefore(targetGranule);
+      if (index != C.INDEX_UNSET) {
+        start = pageIndex.getEndPosition(index);
+        startGranule = pageIndex.getGranule(index);
+      }
+      if (index + 1 < pageIndex.size()) {
+        end = pageIndex.getStartPosition(index + 1);
+        endGranule = pageIndex.getGranule(index + 1);
+      }
+      if (index != C.INDEX_UNSET
+          && (targetGranule - startGranule <= MATCH_RANGE || start == end)) {
+        // The target page is close enough to skip to from the end of the indexed page before it.
+        end = start;
+      }
+    }
     return targetGranule;
   }
 
@@ -145,7 +169,7 @@ import java.io.IOException;
   public long getNextSeekPosition(long targetGranule, ExtractorInput input)
       throws IOException, InterruptedException {
     if (start == end) {
-      return -(startGranule + 2);
+      return input.getPosition() == start ? -(startGranule + 2) : start;
     }
 
     long initialPosition = input.getPosition();
@@ -161,6 +185,7 @@ import java.io.IOException;
 
     long granuleDistance = targetGranule - pageHeader.granulePosition;
     int pageSize = pageHeader.headerSize + pageHeader.bodySize;
+    addPageToIndex(input.getPosition());
     if (granuleDistance < 0 || granuleDistance > MATCH_RANGE) {
       if (granuleDistance < 0) {
         end = initialPosition;
@@ -193,17 +218,58 @@ import java.io.IOException;
     return -(pageHeader.granulePosition + 2);
   }
 
-  private long getEstimatedPosition(long position, long granuleDistance, long offset) {
-    position += (granuleDistance * (endPosition - startPosition) / totalGranules) - offset;
-    if (position < startPosition) {
-      position = startPosition;
+  private long getEstimatedPosition(long granule, long offset) {
+    if (granule == 0) {
+      // Seeks to granule 0 always start from the beginning of the payload.
+      return startPosition;
+    }
+    long lowPosition = startPosition;
+    long lowGranule = 0;
+    long highPosition = endPosition;
+    long highGranule = totalGranules;
+    synchronized (pageIndex) {
+      int index = pageIndex.getLastIndexAtOrBefore(granule);
+      if (index != C.INDEX_UNSET) {
+        lowPosition = pageIndex.getEndPosition(index);
+        lowGranule = pageIndex.getGranule(index);
+      }
+      if (index + 1 < pageIndex.size()) {
+        highPosition = pageIndex.getStartPosition(index + 1);
+        highGranule = pageIndex.getGranule(index + 1);
+      }
+      if (index != C.INDEX_UNSET && (granule - lowGranule <= MATCH_RANGE
+          || highPosition <= lowPosition || highGranule <= lowGranule)) {
+        // The target page can be skipped to from the end of the indexed page before it.
+        return lowPosition;
+      }
     }
-    if (position >= endPosition) {
-      position = endPosition - 1;
+    long position = lowPosition
+        + ((granule - lowGranule) * (highPosition - lowPosition) / (highGranule - lowGranule))
+        - offset;
+    if (position < lowPosition) {
+      position = lowPosition;
+    }
+    if (position >= highPosition) {
+      position = highPosition - 1;
     }
     return position;
   }
 
+  /**
+   * Adds the page whose header is held in {@link #pageHeader} to the index, if it has a granule
+   * position.
+   *
+   * @param position The position of the start of the page.
+   */
+  private void addPageToIndex(long position) {
+    if (pageHeader.granulePosition >= 0) {
+      synchronized (pageIndex) {
+        pageIndex.add(pageHeader.granulePosition, position,
+            position + pageHeader.headerSize + pageHeader.bodySize);
+      }
+    }
+  }
+
   private class OggSeekMap implements SeekMap {
 
     @Override
@@ -218,7 +284,7 @@ import java.io.IOException;
         return startPosition;
       }
       queriedGranule = streamReader.convertTimeToGranule(timeUs);
-      return getEstimatedPosition(startPosition, queriedGranule, DEFAULT_OFFSET);
+      return getEstimatedPosition(queriedGranule, DEFAULT_OFFSET);
     }
 
     @Override
@@ -298,6 +364,7 @@ import java.io.IOException;
     pageHeader.reset();
     while ((pageHeader.type & 0x04) != 0x04 && input.getPosition() < endPosition) {
       pageHeader.populate(input, false);
+      addPageToIndex(input.getPosition());
       input.skipFully(pageHeader.headerSize + pageHeader.bodySize);
     }
     return pageHeader.granulePosition;
@@ -320,15 +387,105 @@ import java.io.IOException;
   long skipToPageOfGranule(ExtractorInput input, long targetGranule, long currentGranule)
       throws IOException, InterruptedException {
     pageHeader.populate(input, false);
+    addPageToIndex(input.getPosition());
     while (pageHeader.granulePosition < targetGranule) {
       input.skipFully(pageHeader.headerSize + pageHeader.bodySize);
       // Store in a member field to be able to resume after IOExceptions.
       currentGranule = pageHeader.granulePosition;
       // Peek next header.
       pageHeader.populate(input, false);
+      addPageToIndex(input.getPosition());
     }
     input.resetPeekPosition();
     return currentGranule;
   }
 
+  /**
+   * The granule positions and byte ranges of pages, sorted by position. The granule positions of
+   * pages must not decrease with their positions, so pages that are inconsistent with those already
+   * in the index are ignored.
+   */
+  private static final class PageIndex {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private long[] granules;
+    private long[] startPositions;
+    private long[] endPositions;
+    private int size;
+
+    public PageIndex() {
+      granules = new long[INITIAL_CAPACITY];
+      startPositions = new long[INITIAL_CAPACITY];
+      endPositions = new long[INITIAL_CAPACITY];
+    }
+
+    public void add(long granule, long startPosition, long endPosition) {
+      // Find the index of the first page that doesn't start before the one being added.
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (startPositions[mid] < startPosition) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      int index = low;
+      if ((index < size && (startPositions[index] == startPosition || granules[index] < granule))
+          || (index > 0 && granules[index - 1] > granule)) {
+        // The page is already indexed, or is inconsistent with the pages around it.
+        return;
+      }
+      if (size == granules.length) {
+        granules = Arrays.copyOf(granules, size * 2);
+        startPositions = Arrays.copyOf(startPositions, size * 2);
+        endPositions = Arrays.copyOf(endPositions, size * 2);
+      }
+      System.arraycopy(granules, index, granules, index + 1, size - index);
+      System.arraycopy(startPositions, index, startPositions, index + 1, size - index);
+      System.arraycopy(endPositions, index, endPositions, index + 1, size - index);
+      granules[index] = granule;
+      startPositions[index] = startPosition;
+      endPositions[index] = endPosition;
+      size++;
+    }
+
+    /**
+     * Returns the index of the last page whose granule position is at or before {@code granule},
+     * or {@link C#INDEX_UNSET} if there is none.
+     */
+    public int getLastIndexAtOrBefore(long granule) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (granules[mid] <= granule) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public long getGranule(int index) {
+      return granules[index];
+    }
+
+    public long getStartPosition(int index) {
+      return startPositions[index];
+    }
+
+    public long getEndPosition(int index) {
+      return endPositions[index];
+    }
+
+  }
+
 }
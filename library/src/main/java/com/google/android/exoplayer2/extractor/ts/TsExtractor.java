@@ -18,7 +18,6 @@ package com.google.android.exoplayer2.extractor.ts;
 import android.util.Log;
 import android.util.SparseArray;
 import android.util.SparseBooleanArray;
-import android.util.SparseIntArray;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.DummyTrackOutput;
 import com.google.android.exoplayer2.extractor.Extractor;
@@ -32,6 +31,7 @@ import com.google.android.exoplayer2.util.ParsableBitArray;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Facilitates the extraction of data from the MPEG-2 TS container format.
@@ -79,14 +79,16 @@ public final class TsExtractor implements Extractor {
   private static final long E_AC3_FORMAT_IDENTIFIER = Util.getIntegerCodeForString("EAC3");
   private static final long HEVC_FORMAT_IDENTIFIER = Util.getIntegerCodeForString("HEVC");
 
-  private static final int BUFFER_PACKET_COUNT = 5; // Should be at least 2
+  private static final int SNIFF_PACKET_COUNT = 5;
+  private static final int SNIFF_SIZE = TS_PACKET_SIZE * SNIFF_PACKET_COUNT;
+  private static final int BUFFER_PACKET_COUNT = 50; // Should be at least SNIFF_PACKET_COUNT
   private static final int BUFFER_SIZE = TS_PACKET_SIZE * BUFFER_PACKET_COUNT;
+  private static final int MAX_PID_COUNT = 1 << 13;
 
   private final TimestampAdjuster timestampAdjuster;
   private final int workaroundFlags;
   private final ParsableByteArray tsPacketBuffer;
-  private final ParsableBitArray tsScratch;
-  private final SparseIntArray continuityCounters;
+  private final int[] continuityCounters; // Indexed by pid
   /* package */ final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
   /* package */ final SparseBooleanArray trackIds;
 
@@ -107,12 +109,12 @@ public final class TsExtractor implements Extractor {
     this.timestampAdjuster = timestampAdjuster;
     this.workaroundFlags = workaroundFlags;
     tsPacketBuffer = new ParsableByteArray(BUFFER_SIZE);
-    tsScratch = new ParsableBitArray(new byte[3]);
     tsPayloadReaders = new SparseArray<>();
     tsPayloadReaders.put(TS_PAT_PID, new PatReader());
     trackIds = new SparseBooleanArray();
     nextEmbeddedTrackId = BASE_EMBEDDED_TRACK_ID;
-    continuityCounters = new SparseIntArray();
+    continuityCounters = new int[MAX_PID_COUNT];
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
   }
 
   // Extractor implementation.
@@ -120,10 +122,10 @@ public final class TsExtractor implements Extractor {
   @Override
   public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
     byte[] buffer = tsPacketBuffer.data;
-    input.peekFully(buffer, 0, BUFFER_SIZE);
+    input.peekFully(buffer, 0, SNIFF_SIZE);
     for (int j = 0; j < TS_PACKET_SIZE; j++) {
       for (int i = 0; true; i++) {
-        if (i == BUFFER_PACKET_COUNT) {
+        if (i == SNIFF_PACKET_COUNT) {
           input.skipFully(j);
           return true;
         }
@@ -148,7 +150,7 @@ public final class TsExtractor implements Extractor {
       tsPayloadReaders.valueAt(i).seek();
     }
     tsPacketBuffer.reset();
-    continuityCounters.clear();
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
   }
 
   @Override
@@ -160,9 +162,9 @@ public final class TsExtractor implements Extractor {
   public int read(ExtractorInput input, PositionHolder seekPosition)
       throws IOException, InterruptedException {
     byte[] data = tsPacketBuffer.data;
-    // Shift bytes to the start of the buffer if there isn't enough space left at the end
-    if (BUFFER_SIZE - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
-      int bytesLeft = tsPacketBuffer.bytesLeft();
+    // Move any partial packet left over from the previous read to the start of the buffer.
+    int bytesLeft = tsPacketBuffer.bytesLeft();
+    if (tsPacketBuffer.getPosition() > 0 && bytesLeft < TS_PACKET_SIZE) {
       if (bytesLeft > 0) {
         System.arraycopy(data, tsPacketBuffer.getPosition(), data, 0, bytesLeft);
       }
@@ -178,71 +180,84 @@ public final class TsExtractor implements Extractor {
       tsPacketBuffer.setLimit(limit + read);
     }
 
-    // Note: see ISO/IEC 13818-1, section 2.4.3.2 for detailed information on the format of
-    // the header.
+    // Consume every complete packet in the buffer.
     final int limit = tsPacketBuffer.limit();
     int position = tsPacketBuffer.getPosition();
-    while (position < limit && data[position] != TS_SYNC_BYTE) {
-      position++;
+    while (true) {
+      while (position < limit && data[position] != TS_SYNC_BYTE) {
+        position++;
+      }
+      int endOfPacket = position + TS_PACKET_SIZE;
+      if (endOfPacket > limit) {
+        break;
+      }
+      consumePacket(data, position, endOfPacket, limit);
+      position = endOfPacket;
     }
     tsPacketBuffer.setPosition(position);
+    return RESULT_CONTINUE;
+  }
 
-    int endOfPacket = position + TS_PACKET_SIZE;
-    if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
-    }
+  // Internals.
 
-    tsPacketBuffer.skipBytes(1);
-    tsPacketBuffer.readBytes(tsScratch, 3);
-    if (tsScratch.readBit()) { // transport_error_indicator
+  /**
+   * Consumes a single TS packet.
+   *
+   * @param data The buffer holding the packet, which is {@link #tsPacketBuffer}'s data.
+   * @param position The position of the packet's sync byte in {@code data}.
+   * @param endOfPacket The position immediately following the packet in {@code data}.
+   * @param limit The limit of {@link #tsPacketBuffer}.
+   */
+  private void consumePacket(byte[] data, int position, int endOfPacket, int limit) {
+    // Note: see ISO/IEC 13818-1, section 2.4.3.2 for detailed information on the format of
+    // the header.
+    int headerByte1 = data[position + 1] & 0xFF;
+    int headerByte2 = data[position + 2] & 0xFF;
+    int headerByte3 = data[position + 3] & 0xFF;
+    if ((headerByte1 & 0x80) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
-      tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
-    boolean payloadUnitStartIndicator = tsScratch.readBit();
-    tsScratch.skipBits(1); // transport_priority
-    int pid = tsScratch.readBits(13);
-    tsScratch.skipBits(2); // transport_scrambling_control
-    boolean adaptationFieldExists = tsScratch.readBit();
-    boolean payloadExists = tsScratch.readBit();
+    boolean payloadUnitStartIndicator = (headerByte1 & 0x40) != 0;
+    // transport_priority (1)
+    int pid = ((headerByte1 & 0x1F) << 8) | headerByte2;
+    // transport_scrambling_control (2)
+    boolean adaptationFieldExists = (headerByte3 & 0x20) != 0;
+    boolean payloadExists = (headerByte3 & 0x10) != 0;
     boolean discontinuityFound = false;
-    int continuityCounter = tsScratch.readBits(4);
-    int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-    continuityCounters.put(pid, continuityCounter);
+    int continuityCounter = headerByte3 & 0x0F;
+    int previousCounter = continuityCounters[pid];
+    continuityCounters[pid] = continuityCounter;
     if (previousCounter == continuityCounter) {
       // Duplicate packet found.
-      tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
-    } else if (continuityCounter != (previousCounter + 1) % 16) {
+      return;
+    } else if (previousCounter != C.INDEX_UNSET
+        && continuityCounter != ((previousCounter + 1) & 0x0F)) {
       discontinuityFound = true;
     }
 
+    if (!payloadExists) {
+      return;
+    }
+    TsPayloadReader payloadReader = tsPayloadReaders.get(pid);
+    if (payloadReader == null) {
+      return;
+    }
+    if (discontinuityFound) {
+      payloadReader.seek();
+    }
+    int payloadPosition = position + 4;
     // Skip the adaptation field.
     if (adaptationFieldExists) {
-      int adaptationFieldLength = tsPacketBuffer.readUnsignedByte();
-      tsPacketBuffer.skipBytes(adaptationFieldLength);
+      payloadPosition += 1 + (data[payloadPosition] & 0xFF);
     }
-
-    // Read the payload.
-    if (payloadExists) {
-      TsPayloadReader payloadReader = tsPayloadReaders.get(pid);
-      if (payloadReader != null) {
-        if (discontinuityFound) {
-          payloadReader.seek();
-        }
-        tsPacketBuffer.setLimit(endOfPacket);
-        payloadReader.consume(tsPacketBuffer, payloadUnitStartIndicator, output);
-        Assertions.checkState(tsPacketBuffer.getPosition() <= endOfPacket);
-        tsPacketBuffer.setLimit(limit);
-      }
-    }
-
-    tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
+    tsPacketBuffer.setPosition(payloadPosition);
+    tsPacketBuffer.setLimit(endOfPacket);
+    payloadReader.consume(tsPacketBuffer, payloadUnitStartIndicator, output);
+    Assertions.checkState(tsPacketBuffer.getPosition() <= endOfPacket);
+    tsPacketBuffer.setLimit(limit);
   }
 
-  // Internals.
-
   /**
    * Parses TS packet payload data.
    */
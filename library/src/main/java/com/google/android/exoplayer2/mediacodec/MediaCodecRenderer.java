@@ -31,6 +31,7 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.decoder.DecoderCounters;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.drm.DrmSession;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
@@ -177,6 +178,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private MediaCodec codec;
   private DrmSession<FrameworkMediaCrypto> drmSession;
   private DrmSession<FrameworkMediaCrypto> pendingDrmSession;
+  private DrmSession<FrameworkMediaCrypto> earlyDrmSession;
   private boolean codecIsAdaptive;
   private boolean codecNeedsDiscardToSpsWorkaround;
   private boolean codecNeedsFlushWorkaround;
@@ -380,6 +382,11 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     decoderCounters = new DecoderCounters();
   }
 
+  @Override
+  protected void onStreamChanged(Format[] formats) throws ExoPlaybackException {
+    maybeAcquireDrmSessionEarly(formats);
+  }
+
   @Override
   protected void onPositionReset(long positionUs, boolean joining) throws ExoPlaybackException {
     inputStreamEnded = false;
@@ -407,6 +414,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         } finally {
           drmSession = null;
           pendingDrmSession = null;
+          releaseEarlyDrmSession();
         }
       }
     }
@@ -731,6 +739,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         pendingDrmSession = null;
       }
     }
+    // The renderer now holds its own reference to any session required by the format.
+    releaseEarlyDrmSession();
 
     if (pendingDrmSession == drmSession && codec != null
         && canReconfigureCodec(codec, codecIsAdaptive, oldFormat, format)) {
@@ -750,6 +760,43 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     }
   }
 
+  /**
+   * Acquires a {@link DrmSession} for the formats of a new stream if they carry DRM initialization
+   * data, as is the case when it's declared in a manifest. This allows the license request to
+   * proceed in parallel with loading of the stream, rather than starting once the first format has
+   * been read from it. The session is released once the renderer has acquired its own session for
+   * the format read from the stream.
+   *
+   * @param formats The formats of the new stream.
+   */
+  private void maybeAcquireDrmSessionEarly(Format[] formats) {
+    if (drmSessionManager == null) {
+      return;
+    }
+    DrmInitData drmInitData = null;
+    for (Format streamFormat : formats) {
+      if (streamFormat.drmInitData != null) {
+        drmInitData = streamFormat.drmInitData;
+        break;
+      }
+    }
+    if (drmInitData == null
+        || Util.areEqual(drmInitData, format == null ? null : format.drmInitData)) {
+      // There's nothing to acquire, or the renderer already holds a session for the data.
+      return;
+    }
+    releaseEarlyDrmSession();
+    earlyDrmSession = drmSessionManager.acquireSession(Looper.myLooper(), drmInitData);
+  }
+
+  private void releaseEarlyDrmSession() {
+    if (earlyDrmSession != null) {
+      DrmSession<FrameworkMediaCrypto> session = earlyDrmSession;
+      earlyDrmSession = null;
+      drmSessionManager.releaseSession(session);
+    }
+  }
+
   /**
    * Called when the output format of the {@link MediaCodec} changes.
    * <p>
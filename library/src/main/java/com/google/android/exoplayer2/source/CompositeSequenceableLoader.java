@@ -18,14 +18,37 @@ package com.google.android.exoplayer2.source;
 import com.google.android.exoplayer2.C;
 
 /**
- * A {@link SequenceableLoader} that encapsulates multiple other {@link SequenceableLoader}s.
+ * A {@link SequenceableLoader} that encapsulates multiple other {@link SequenceableLoader}s. The
+ * order in which they are given opportunities to load is decided by a {@link LoadSchedulingPolicy}.
+ * Loaders that are not loading are only given an opportunity to start a load while fewer than
+ * {@link LoadSchedulingPolicy#getMaxConcurrentLoads()} of the loaders are loading.
  */
 public final class CompositeSequenceableLoader implements SequenceableLoader {
 
   private final SequenceableLoader[] loaders;
+  private final LoadSchedulingPolicy policy;
+  private final long[] nextLoadPositionsUs;
+  private final boolean[] selectable;
 
+  /**
+   * Constructs an instance that uses {@link EarliestDeadlineLoadSchedulingPolicy}.
+   *
+   * @param loaders The loaders to encapsulate.
+   */
   public CompositeSequenceableLoader(SequenceableLoader[] loaders) {
+    this(loaders, EarliestDeadlineLoadSchedulingPolicy.INSTANCE);
+  }
+
+  /**
+   * @param loaders The loaders to encapsulate.
+   * @param policy The {@link LoadSchedulingPolicy} that decides which loader is given the next
+   *     opportunity to load.
+   */
+  public CompositeSequenceableLoader(SequenceableLoader[] loaders, LoadSchedulingPolicy policy) {
     this.loaders = loaders;
+    this.policy = policy;
+    nextLoadPositionsUs = new long[loaders.length];
+    selectable = new boolean[loaders.length];
   }
 
   @Override
@@ -40,19 +63,46 @@ public final class CompositeSequenceableLoader implements SequenceableLoader {
     return nextLoadPositionUs == Long.MAX_VALUE ? C.TIME_END_OF_SOURCE : nextLoadPositionUs;
   }
 
+  @Override
+  public boolean isLoading() {
+    for (SequenceableLoader loader : loaders) {
+      if (loader.isLoading()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public boolean continueLoading(long positionUs) {
     boolean madeProgress = false;
     boolean madeProgressThisIteration;
+    int maxConcurrentLoads = policy.getMaxConcurrentLoads();
     do {
       madeProgressThisIteration = false;
-      long nextLoadPositionUs = getNextLoadPositionUs();
-      if (nextLoadPositionUs == C.TIME_END_OF_SOURCE) {
-        break;
+      int loadingCount = 0;
+      for (int i = 0; i < loaders.length; i++) {
+        nextLoadPositionsUs[i] = loaders[i].getNextLoadPositionUs();
+        selectable[i] = nextLoadPositionsUs[i] != C.TIME_END_OF_SOURCE;
+        if (loaders[i].isLoading()) {
+          loadingCount++;
+        }
+      }
+      if (loadingCount >= maxConcurrentLoads) {
+        holdBackIdleLoaders();
       }
-      for (SequenceableLoader loader : loaders) {
-        if (loader.getNextLoadPositionUs() == nextLoadPositionUs) {
-          madeProgressThisIteration |= loader.continueLoading(positionUs);
+      int loaderIndex;
+      while ((loaderIndex = policy.selectLoader(nextLoadPositionsUs, selectable, positionUs))
+          != C.INDEX_UNSET) {
+        selectable[loaderIndex] = false;
+        boolean wasLoading = loaders[loaderIndex].isLoading();
+        if (loaders[loaderIndex].continueLoading(positionUs)) {
+          policy.onLoaderProgressed(loaderIndex);
+          madeProgressThisIteration = true;
+        }
+        if (!wasLoading && loaders[loaderIndex].isLoading()
+            && ++loadingCount >= maxConcurrentLoads) {
+          holdBackIdleLoaders();
         }
       }
       madeProgress |= madeProgressThisIteration;
@@ -60,4 +110,14 @@ public final class CompositeSequenceableLoader implements SequenceableLoader {
     return madeProgress;
   }
 
+  private void holdBackIdleLoaders() {
+    // Loaders that are already loading remain selectable, since they may need to be told to
+    // continue their current load.
+    for (int i = 0; i < loaders.length; i++) {
+      if (!loaders[i].isLoading()) {
+        selectable[i] = false;
+      }
+    }
+  }
+
 }
@@ -37,8 +37,10 @@ public final class ConcatenatingMediaSource implements MediaSource {
   private final Object[] manifests;
   private final Map<MediaPeriod, Integer> sourceIndexByMediaPeriod;
   private final boolean[] duplicateFlags;
+  private final int[] nextDuplicateIndices;
 
   private Listener listener;
+  private int pendingTimelineCount;
   private ConcatenatedTimeline timeline;
 
   /**
@@ -50,7 +52,10 @@ public final class ConcatenatingMediaSource implements MediaSource {
     timelines = new Timeline[mediaSources.length];
     manifests = new Object[mediaSources.length];
     sourceIndexByMediaPeriod = new HashMap<>();
-    duplicateFlags = buildDuplicateFlags(mediaSources);
+    duplicateFlags = new boolean[mediaSources.length];
+    nextDuplicateIndices = new int[mediaSources.length];
+    buildDuplicateIndices(mediaSources, duplicateFlags, nextDuplicateIndices);
+    pendingTimelineCount = mediaSources.length;
   }
 
   @Override
@@ -107,38 +112,39 @@ public final class ConcatenatingMediaSource implements MediaSource {
 
   private void handleSourceInfoRefreshed(int sourceFirstIndex, Timeline sourceTimeline,
       Object sourceManifest) {
-    // Set the timeline and manifest.
-    timelines[sourceFirstIndex] = sourceTimeline;
-    manifests[sourceFirstIndex] = sourceManifest;
-    // Also set the timeline and manifest for any duplicate entries of the same source.
-    for (int i = sourceFirstIndex + 1; i < mediaSources.length; i++) {
-      if (mediaSources[i] == mediaSources[sourceFirstIndex]) {
-        timelines[i] = sourceTimeline;
-        manifests[i] = sourceManifest;
+    // Set the timeline and manifest, and also for any duplicate entries of the same source.
+    for (int i = sourceFirstIndex; i != C.INDEX_UNSET; i = nextDuplicateIndices[i]) {
+      if (timelines[i] == null) {
+        pendingTimelineCount--;
       }
+      timelines[i] = sourceTimeline;
+      manifests[i] = sourceManifest;
     }
-    for (Timeline timeline : timelines) {
-      if (timeline == null) {
-        // Don't invoke the listener until all sources have timelines.
-        return;
-      }
+    if (pendingTimelineCount > 0) {
+      // Don't invoke the listener until all sources have timelines.
+      return;
     }
     timeline = new ConcatenatedTimeline(timelines.clone());
     listener.onSourceInfoRefreshed(timeline, manifests.clone());
   }
 
-  private static boolean[] buildDuplicateFlags(MediaSource[] mediaSources) {
-    boolean[] duplicateFlags = new boolean[mediaSources.length];
-    IdentityHashMap<MediaSource, Void> sources = new IdentityHashMap<>(mediaSources.length);
+  /**
+   * Flags entries whose source is also present at a lower index, and links each entry to the next
+   * entry of the same source (or {@link C#INDEX_UNSET} if there is none), so that the entries of a
+   * source can be updated without scanning the whole concatenation.
+   */
+  private static void buildDuplicateIndices(MediaSource[] mediaSources, boolean[] duplicateFlags,
+      int[] nextDuplicateIndices) {
+    IdentityHashMap<MediaSource, Integer> lastIndices = new IdentityHashMap<>(mediaSources.length);
     for (int i = 0; i < mediaSources.length; i++) {
       MediaSource source = mediaSources[i];
-      if (!sources.containsKey(source)) {
-        sources.put(source, null);
-      } else {
+      Integer lastIndex = lastIndices.put(source, i);
+      if (lastIndex != null) {
         duplicateFlags[i] = true;
+        nextDuplicateIndices[lastIndex] = i;
       }
+      nextDuplicateIndices[i] = C.INDEX_UNSET;
     }
-    return duplicateFlags;
   }
 
   /**
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * A {@link LoadSchedulingPolicy} that gives loading opportunities to the loaders whose buffered
+ * media will run out first, which are those with the earliest next load position. Loaders further
+ * ahead wait until the others have caught up, which keeps the buffers of all loaders in
+ * approximate synchronization. The number of concurrent loads is not limited.
+ */
+public final class EarliestDeadlineLoadSchedulingPolicy implements LoadSchedulingPolicy {
+
+  /**
+   * The stateless shared instance.
+   */
+  public static final EarliestDeadlineLoadSchedulingPolicy INSTANCE =
+      new EarliestDeadlineLoadSchedulingPolicy();
+
+  /**
+   * A factory that returns the stateless shared instance.
+   */
+  public static final LoadSchedulingPolicy.Factory FACTORY = new LoadSchedulingPolicy.Factory() {
+    @Override
+    public LoadSchedulingPolicy createPolicy(int[] trackTypes) {
+      return INSTANCE;
+    }
+  };
+
+  private EarliestDeadlineLoadSchedulingPolicy() {}
+
+  @Override
+  public int getMaxConcurrentLoads() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int selectLoader(long[] nextLoadPositionsUs, boolean[] selectable,
+      long playbackPositionUs) {
+    long earliestNextLoadPositionUs = Long.MAX_VALUE;
+    for (long nextLoadPositionUs : nextLoadPositionsUs) {
+      if (nextLoadPositionUs != C.TIME_END_OF_SOURCE) {
+        earliestNextLoadPositionUs = Math.min(earliestNextLoadPositionUs, nextLoadPositionUs);
+      }
+    }
+    for (int i = 0; i < nextLoadPositionsUs.length; i++) {
+      if (selectable[i] && nextLoadPositionsUs[i] == earliestNextLoadPositionUs) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  @Override
+  public void onLoaderProgressed(int loaderIndex) {
+    // Do nothing.
+  }
+
+}
@@ -22,6 +22,7 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.extractor.DefaultTrackOutput;
 import com.google.android.exoplayer2.extractor.DefaultTrackOutput.UpstreamFormatChangedListener;
 import com.google.android.exoplayer2.extractor.Extractor;
@@ -36,6 +37,7 @@ import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.Loadable;
+import com.google.android.exoplayer2.upstream.SlicingAllocator;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.ConditionVariable;
 import com.google.android.exoplayer2.util.Util;
@@ -63,6 +65,7 @@ import java.util.Arrays;
   private final MediaSource.Listener sourceListener;
   private final Callback callback;
   private final Allocator allocator;
+  private final Allocator sparseTrackAllocator;
   private final Loader loader;
   private final ExtractorHolder extractorHolder;
   private final ConditionVariable loadCondition;
@@ -82,6 +85,7 @@ import java.util.Arrays;
 
   private long lastSeekPositionUs;
   private long pendingResetPositionUs;
+  private long backBufferDurationUs;
 
   private int extractedSamplesCountAtStartOfLoad;
   private boolean loadingFinished;
@@ -96,11 +100,13 @@ import java.util.Arrays;
    * @param sourceListener A listener to notify when the timeline has been loaded.
    * @param callback A callback to receive updates from the period.
    * @param allocator An {@link Allocator} from which to obtain media buffer allocations.
+   * @param preferredExtractorClass The class of an extractor to sniff before the others, such as
+   *     the one that read the same media previously, or null.
    */
   public ExtractorMediaPeriod(Uri uri, DataSource dataSource, Extractor[] extractors,
       int minLoadableRetryCount, Handler eventHandler,
       ExtractorMediaSource.EventListener eventListener, MediaSource.Listener sourceListener,
-      Callback callback, Allocator allocator) {
+      Callback callback, Allocator allocator, Class<? extends Extractor> preferredExtractorClass) {
     this.uri = uri;
     this.dataSource = dataSource;
     this.minLoadableRetryCount = minLoadableRetryCount;
@@ -109,8 +115,10 @@ import java.util.Arrays;
     this.sourceListener = sourceListener;
     this.callback = callback;
     this.allocator = allocator;
+    sparseTrackAllocator = new SlicingAllocator(allocator,
+        DefaultTrackOutput.SPARSE_TRACK_ALLOCATION_SLICE_COUNT);
     loader = new Loader("Loader:ExtractorMediaPeriod");
-    extractorHolder = new ExtractorHolder(extractors, this);
+    extractorHolder = new ExtractorHolder(extractors, this, preferredExtractorClass);
     loadCondition = new ConditionVariable();
 
     pendingResetPositionUs = C.TIME_UNSET;
@@ -120,6 +128,14 @@ import java.util.Arrays;
     startLoading();
   }
 
+  /**
+   * Returns the class of the extractor selected to read the media, or null if it hasn't been
+   * selected yet.
+   */
+  public Class<? extends Extractor> getSelectedExtractorClass() {
+    return extractorHolder.getSelectedExtractorClass();
+  }
+
   public void release() {
     final ExtractorHolder extractorHolder = this.extractorHolder;
     loader.release(new Runnable() {
@@ -219,6 +235,11 @@ import java.util.Arrays;
     return getBufferedPositionUs();
   }
 
+  @Override
+  public boolean isLoading() {
+    return loader.isLoading();
+  }
+
   @Override
   public long readDiscontinuity() {
     if (notifyReset) {
@@ -250,7 +271,7 @@ import java.util.Arrays;
     boolean seekInsideBuffer = !isPendingReset();
     for (int i = 0; seekInsideBuffer && i < sampleQueues.length; i++) {
       if (trackEnabledStates[i]) {
-        seekInsideBuffer = sampleQueues[i].skipToKeyframeBefore(positionUs);
+        seekInsideBuffer = sampleQueues[i].seekToKeyframeBefore(positionUs);
       }
     }
     // If we failed to seek within the sample queues, we need to restart.
@@ -269,6 +290,14 @@ import java.util.Arrays;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    this.backBufferDurationUs = backBufferDurationUs;
+    for (DefaultTrackOutput sampleQueue : sampleQueues) {
+      sampleQueue.setBackBufferDurationUs(backBufferDurationUs);
+    }
+  }
+
   // SampleStream methods.
 
   /* package */ boolean isReady(int track) {
@@ -335,8 +364,9 @@ import java.util.Arrays;
   @Override
   public TrackOutput track(int id) {
     sampleQueues = Arrays.copyOf(sampleQueues, sampleQueues.length + 1);
-    DefaultTrackOutput sampleQueue = new DefaultTrackOutput(allocator);
+    DefaultTrackOutput sampleQueue = new DefaultTrackOutput(allocator, sparseTrackAllocator);
     sampleQueue.setUpstreamFormatChangeListener(this);
+    sampleQueue.setBackBufferDurationUs(backBufferDurationUs);
     sampleQueues[sampleQueues.length - 1] = sampleQueue;
     return sampleQueue;
   }
@@ -565,7 +595,7 @@ import java.util.Arrays;
             length += position;
           }
           input = new DefaultExtractorInput(dataSource, position, length);
-          Extractor extractor = extractorHolder.selectExtractor(input);
+          Extractor extractor = extractorHolder.selectExtractor(input, uri);
           if (pendingExtractorSeek) {
             extractor.seek(position);
             pendingExtractorSeek = false;
@@ -594,22 +624,33 @@ import java.util.Arrays;
 
   /**
    * Stores a list of extractors and a selected extractor when the format has been detected.
+   * <p>
+   * Extractors that are likely to read the input are sniffed first. These are the extractor
+   * previously selected by the same {@link ExtractorMediaSource}, followed by those matching the
+   * file extension of the URI. Sniffing is otherwise unchanged, so the hints only affect how
+   * quickly an extractor is selected. Every sniff peeks from the start of the same
+   * {@link ExtractorInput}, which buffers peeked data, so the prefix is only read once.
    */
-  private static final class ExtractorHolder {
+  /* package */ static final class ExtractorHolder {
 
     private final Extractor[] extractors;
     private final ExtractorOutput extractorOutput;
+    private final Class<? extends Extractor> preferredExtractorClass;
     private Extractor extractor;
+    private volatile Class<? extends Extractor> selectedExtractorClass;
 
     /**
      * Creates a holder that will select an extractor and initialize it using the specified output.
      *
      * @param extractors One or more extractors to choose from.
      * @param extractorOutput The output that will be used to initialize the selected extractor.
+     * @param preferredExtractorClass The class of an extractor to sniff first, or null.
      */
-    public ExtractorHolder(Extractor[] extractors, ExtractorOutput extractorOutput) {
+    public ExtractorHolder(Extractor[] extractors, ExtractorOutput extractorOutput,
+        Class<? extends Extractor> preferredExtractorClass) {
       this.extractors = extractors;
       this.extractorOutput = extractorOutput;
+      this.preferredExtractorClass = preferredExtractorClass;
     }
 
     /**
@@ -617,18 +658,19 @@ import java.util.Arrays;
      * later calls.
      *
      * @param input The {@link ExtractorInput} from which data should be read.
+     * @param uri The {@link Uri} from which {@code input} is read.
      * @return An initialized extractor for reading {@code input}.
      * @throws ExtractorMediaSource.UnrecognizedInputFormatException Thrown if the input format
      *     could not be detected.
      * @throws IOException Thrown if the input could not be read.
      * @throws InterruptedException Thrown if the thread was interrupted.
      */
-    public Extractor selectExtractor(ExtractorInput input)
+    public Extractor selectExtractor(ExtractorInput input, Uri uri)
         throws IOException, InterruptedException {
       if (extractor != null) {
         return extractor;
       }
-      for (Extractor extractor : extractors) {
+      for (Extractor extractor : getSniffingOrder(uri.getLastPathSegment())) {
         try {
           if (extractor.sniff(input)) {
             this.extractor = extractor;
@@ -643,10 +685,19 @@ import java.util.Arrays;
       if (extractor == null) {
         throw new ExtractorMediaSource.UnrecognizedInputFormatException(extractors);
       }
+      selectedExtractorClass = extractor.getClass();
       extractor.init(extractorOutput);
       return extractor;
     }
 
+    /**
+     * Returns the class of the selected extractor, or null if no extractor has been selected. May
+     * be called from any thread.
+     */
+    public Class<? extends Extractor> getSelectedExtractorClass() {
+      return selectedExtractorClass;
+    }
+
     public void release() {
       if (extractor != null) {
         extractor.release();
@@ -654,6 +705,51 @@ import java.util.Arrays;
       }
     }
 
+    /**
+     * Returns {@link #extractors} in the order in which they should be sniffed. An instance of the
+     * preferred extractor class comes first, followed by any extractors matching the file
+     * extension as given by {@link DefaultExtractorsFactory#getHintedExtractorClasses(String)},
+     * followed by the remaining extractors in their original order.
+     *
+     * @param fileName The name of the file being read, or null if unknown.
+     */
+    /* package */ Extractor[] getSniffingOrder(String fileName) {
+      Class<?>[] hintedExtractorClasses =
+          DefaultExtractorsFactory.getHintedExtractorClasses(fileName);
+      if (preferredExtractorClass == null && hintedExtractorClasses.length == 0) {
+        return extractors;
+      }
+      Extractor[] orderedExtractors = new Extractor[extractors.length];
+      int orderedExtractorCount = 0;
+      for (Extractor extractor : extractors) {
+        if (extractor.getClass() == preferredExtractorClass) {
+          orderedExtractors[orderedExtractorCount++] = extractor;
+        }
+      }
+      for (Extractor extractor : extractors) {
+        if (extractor.getClass() != preferredExtractorClass
+            && isInstanceOfAny(extractor, hintedExtractorClasses)) {
+          orderedExtractors[orderedExtractorCount++] = extractor;
+        }
+      }
+      for (Extractor extractor : extractors) {
+        if (extractor.getClass() != preferredExtractorClass
+            && !isInstanceOfAny(extractor, hintedExtractorClasses)) {
+          orderedExtractors[orderedExtractorCount++] = extractor;
+        }
+      }
+      return orderedExtractors;
+    }
+
+    private static boolean isInstanceOfAny(Extractor extractor, Class<?>[] extractorClasses) {
+      for (Class<?> extractorClass : extractorClasses) {
+        if (extractorClass.isInstance(extractor)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
   }
 
 }
@@ -97,6 +97,8 @@ public final class ExtractorMediaSource implements MediaSource, MediaSource.List
   private MediaSource.Listener sourceListener;
   private Timeline timeline;
   private boolean timelineHasDuration;
+  // The class of the extractor selected by a released period, which is sniffed first by later ones.
+  private Class<? extends Extractor> selectedExtractorClass;
 
   /**
    * @param uri The {@link Uri} of the media stream.
@@ -153,12 +155,16 @@ public final class ExtractorMediaSource implements MediaSource, MediaSource.List
     Assertions.checkArgument(index == 0);
     return new ExtractorMediaPeriod(uri, dataSourceFactory.createDataSource(),
         extractorsFactory.createExtractors(), minLoadableRetryCount, eventHandler, eventListener,
-        this, callback, allocator);
+        this, callback, allocator, selectedExtractorClass);
   }
 
   @Override
   public void releasePeriod(MediaPeriod mediaPeriod) {
-    ((ExtractorMediaPeriod) mediaPeriod).release();
+    ExtractorMediaPeriod extractorMediaPeriod = (ExtractorMediaPeriod) mediaPeriod;
+    if (extractorMediaPeriod.getSelectedExtractorClass() != null) {
+      selectedExtractorClass = extractorMediaPeriod.getSelectedExtractorClass();
+    }
+    extractorMediaPeriod.release();
   }
 
   @Override
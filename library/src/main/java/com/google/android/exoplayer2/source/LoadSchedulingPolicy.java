@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * Decides which of the {@link SequenceableLoader}s combined by a
+ * {@link CompositeSequenceableLoader} should be given the next opportunity to start a load.
+ */
+public interface LoadSchedulingPolicy {
+
+  /**
+   * Factory for {@link LoadSchedulingPolicy} instances.
+   */
+  interface Factory {
+
+    /**
+     * Creates a new policy for a set of loaders.
+     *
+     * @param trackTypes The track type of each loader. One of the {@link C} {@code TRACK_TYPE_*}
+     *     constants, or {@link C#TRACK_TYPE_UNKNOWN} if the type is not known.
+     * @return A new policy.
+     */
+    LoadSchedulingPolicy createPolicy(int[] trackTypes);
+
+  }
+
+  /**
+   * Returns the maximum number of loaders that may be loading at the same time. Once this many
+   * loaders are loading, loaders that are not loading are held back until one of the loads
+   * finishes.
+   */
+  int getMaxConcurrentLoads();
+
+  /**
+   * Selects the loader that should be given the next opportunity to start a load.
+   *
+   * @param nextLoadPositionsUs The next load position of each loader, in microseconds, or
+   *     {@link C#TIME_END_OF_SOURCE} for loaders that have finished loading.
+   * @param selectable Whether each loader may be selected. A loader is not selectable if it has
+   *     finished loading, if it has already been given an opportunity to load during the current
+   *     round, or if it is not loading and {@link #getMaxConcurrentLoads()} loaders are.
+   * @param playbackPositionUs The current playback position, in microseconds.
+   * @return The index of the selected loader, or {@link C#INDEX_UNSET} if no further loader should
+   *     be given an opportunity to load during the current round.
+   */
+  int selectLoader(long[] nextLoadPositionsUs, boolean[] selectable, long playbackPositionUs);
+
+  /**
+   * Called when a loader selected by {@link #selectLoader(long[], boolean[], long)} made progress.
+   *
+   * @param loaderIndex The index of the loader.
+   */
+  void onLoaderProgressed(int loaderIndex);
+
+}
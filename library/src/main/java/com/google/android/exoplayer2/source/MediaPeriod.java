@@ -122,4 +122,16 @@ public interface MediaPeriod extends SequenceableLoader {
    */
   long seekToUs(long positionUs);
 
+  /**
+   * Sets the duration of media behind the playback position that the period should retain after it
+   * has been read, so that seeks back into it can be performed without reloading the media.
+   * <p>
+   * This method may be called before the period has completed preparation. Periods that are unable
+   * to seek within their buffers may ignore the call.
+   *
+   * @param backBufferDurationUs The duration of media to retain, in microseconds. Zero if media
+   *     should be discarded once it has been read.
+   */
+  void setBackBufferDurationUs(long backBufferDurationUs);
+
 }
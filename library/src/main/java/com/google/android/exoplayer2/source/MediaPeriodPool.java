@@ -0,0 +1,522 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * A pool of prepared {@link MediaPeriod}s, which allows playback of recently played media to start
+ * from media that's still buffered in memory, rather than from the network.
+ * <p>
+ * {@link MediaSource}s are wrapped using {@link #wrap(MediaSource)} before being passed to the
+ * player, and the player is created with the {@link LoadControl} returned by
+ * {@link #getLoadControl()}. When the player releases a period of a wrapped source, for example
+ * because a different source has been set, the period is kept in the pool together with the media
+ * that it has buffered, and its source is kept prepared. If a wrapper of the same source instance
+ * is later passed to the player, the player is given the pooled period, which is already prepared
+ * and which seeks within its buffered media where possible.
+ * <p>
+ * Media buffered by pooled periods is held in allocations obtained from the player's
+ * {@link DefaultAllocator}. The pool counts the bytes held by pooled periods, and releases pooled
+ * periods in least recently used order whenever they exceed the pool's budget, or when the number
+ * of pooled periods exceeds the pool's maximum. Pooled periods are also released whenever the
+ * player decides whether to continue loading and the allocator has reached its target buffer size,
+ * so that pooled media never prevents the player from loading.
+ * <p>
+ * A pool must only be used with a single player, whose renderers must not change. Its methods other
+ * than {@link #wrap(MediaSource)} and {@link #getLoadControl()} are called by the player on its
+ * playback thread, except for {@link #release()}, which must only be called once the player has
+ * been released.
+ */
+public final class MediaPeriodPool {
+
+  private final DefaultAllocator allocator;
+  private final int maxBytes;
+  private final int maxPeriodCount;
+  private final LoadControl loadControl;
+  private final IdentityHashMap<MediaSource, SourceEntry> sourceEntries;
+  // Ordered from least to most recently released.
+  private final ArrayList<PooledMediaPeriod> pooledPeriods;
+
+  /**
+   * @param loadControl The {@link LoadControl} to be used by the player.
+   * @param allocator The {@link DefaultAllocator} returned by {@code loadControl}'s
+   *     {@link LoadControl#getAllocator()}.
+   * @param maxBytes The number of bytes held by pooled periods above which they are released.
+   * @param maxPeriodCount The maximum number of pooled periods.
+   */
+  public MediaPeriodPool(LoadControl loadControl, DefaultAllocator allocator, int maxBytes,
+      int maxPeriodCount) {
+    Assertions.checkArgument(loadControl.getAllocator() == allocator);
+    Assertions.checkArgument(maxPeriodCount >= 0);
+    this.allocator = allocator;
+    this.maxBytes = maxBytes;
+    this.maxPeriodCount = maxPeriodCount;
+    this.loadControl = new PoolingLoadControl(loadControl);
+    sourceEntries = new IdentityHashMap<>();
+    pooledPeriods = new ArrayList<>();
+  }
+
+  /**
+   * Returns the {@link LoadControl} to be passed to the player. It behaves as the
+   * {@link LoadControl} passed to the constructor, except that it releases pooled periods when
+   * their media would otherwise prevent the player from loading.
+   */
+  public LoadControl getLoadControl() {
+    return loadControl;
+  }
+
+  /**
+   * Wraps a {@link MediaSource} so that its periods are pooled when released by the player.
+   * Wrappers of the same {@link MediaSource} instance share pooled periods, and so must not be
+   * passed to the player at the same time.
+   *
+   * @param mediaSource The {@link MediaSource} to wrap.
+   * @return The wrapping {@link MediaSource}, to be passed to the player.
+   */
+  public MediaSource wrap(MediaSource mediaSource) {
+    return new PooledMediaSource(mediaSource);
+  }
+
+  /**
+   * Releases all pooled periods, and the sources that were kept prepared for them.
+   */
+  public void release() {
+    while (!pooledPeriods.isEmpty()) {
+      releasePooledPeriod(pooledPeriods.remove(0));
+    }
+  }
+
+  /**
+   * Returns the number of pooled periods.
+   */
+  public int getPooledPeriodCount() {
+    return pooledPeriods.size();
+  }
+
+  /**
+   * Returns the number of bytes held by pooled periods.
+   */
+  public int getPooledBytes() {
+    int pooledBytes = 0;
+    for (int i = 0; i < pooledPeriods.size(); i++) {
+      pooledBytes += pooledPeriods.get(i).periodAllocator.getTotalBytesAllocated();
+    }
+    return pooledBytes;
+  }
+
+  // Internal methods.
+
+  /**
+   * Releases pooled periods in least recently used order while the pool is over its budget.
+   *
+   * @param makeRoomForLoading Whether pooled periods should also be released while the allocator
+   *     has reached its target buffer size. The target is only meaningful while tracks are
+   *     selected, so this should only be set when the player decides whether to continue loading.
+   */
+  private void maybeEvict(boolean makeRoomForLoading) {
+    while (!pooledPeriods.isEmpty() && (pooledPeriods.size() > maxPeriodCount
+        || getPooledBytes() > maxBytes
+        || (makeRoomForLoading && allocator.isTargetBufferSizeReached()))) {
+      releasePooledPeriod(pooledPeriods.remove(0));
+    }
+  }
+
+  private void releasePooledPeriod(PooledMediaPeriod period) {
+    SourceEntry sourceEntry = period.sourceEntry;
+    sourceEntry.mediaSource.releasePeriod(period.mediaPeriod);
+    sourceEntry.periodCount--;
+    maybeReleaseSource(sourceEntry);
+  }
+
+  private void maybeReleaseSource(SourceEntry sourceEntry) {
+    if (sourceEntry.listener == null && sourceEntry.periodCount == 0) {
+      sourceEntries.remove(sourceEntry.mediaSource);
+      sourceEntry.mediaSource.releaseSource();
+    }
+  }
+
+  private static boolean isSameSelection(TrackSelection selection, TrackSelection other) {
+    if (selection == null || other == null || selection.getTrackGroup() != other.getTrackGroup()
+        || selection.length() != other.length()) {
+      return false;
+    }
+    for (int i = 0; i < selection.length(); i++) {
+      if (selection.getIndexInTrackGroup(i) != other.getIndexInTrackGroup(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The state of a wrapped {@link MediaSource} that's prepared.
+   */
+  private static final class SourceEntry implements MediaSource.Listener {
+
+    public final MediaSource mediaSource;
+
+    public MediaSource.Listener listener;
+    public int periodCount;
+
+    private Timeline timeline;
+    private Object manifest;
+
+    public SourceEntry(MediaSource mediaSource) {
+      this.mediaSource = mediaSource;
+    }
+
+    public void setListener(MediaSource.Listener listener) {
+      this.listener = listener;
+      if (listener != null && timeline != null) {
+        listener.onSourceInfoRefreshed(timeline, manifest);
+      }
+    }
+
+    @Override
+    public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+      this.timeline = timeline;
+      this.manifest = manifest;
+      if (listener != null) {
+        listener.onSourceInfoRefreshed(timeline, manifest);
+      }
+    }
+
+  }
+
+  private final class PooledMediaSource implements MediaSource {
+
+    private final MediaSource mediaSource;
+
+    private SourceEntry sourceEntry;
+
+    public PooledMediaSource(MediaSource mediaSource) {
+      this.mediaSource = mediaSource;
+    }
+
+    @Override
+    public void prepareSource(Listener listener) {
+      sourceEntry = sourceEntries.get(mediaSource);
+      if (sourceEntry == null) {
+        sourceEntry = new SourceEntry(mediaSource);
+        sourceEntries.put(mediaSource, sourceEntry);
+        sourceEntry.setListener(listener);
+        mediaSource.prepareSource(sourceEntry);
+      } else {
+        // The source is already prepared, because periods of it are pooled.
+        Assertions.checkState(sourceEntry.listener == null);
+        sourceEntry.setListener(listener);
+      }
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
+      mediaSource.maybeThrowSourceInfoRefreshError();
+    }
+
+    @Override
+    public MediaPeriod createPeriod(int index, MediaPeriod.Callback callback, Allocator allocator,
+        long positionUs) {
+      for (int i = pooledPeriods.size() - 1; i >= 0; i--) {
+        PooledMediaPeriod period = pooledPeriods.get(i);
+        if (period.sourceEntry == sourceEntry && period.index == index
+            && period.periodAllocator.upstream == allocator) {
+          pooledPeriods.remove(i);
+          period.reuse(callback);
+          return period;
+        }
+      }
+      PeriodAllocator periodAllocator = new PeriodAllocator(allocator);
+      PooledMediaPeriod period = new PooledMediaPeriod(sourceEntry, index, periodAllocator,
+          callback);
+      period.mediaPeriod = mediaSource.createPeriod(index, period, periodAllocator, positionUs);
+      sourceEntry.periodCount++;
+      return period;
+    }
+
+    @Override
+    public void releasePeriod(MediaPeriod mediaPeriod) {
+      PooledMediaPeriod period = (PooledMediaPeriod) mediaPeriod;
+      period.callback = null;
+      pooledPeriods.add(period);
+      maybeEvict(false);
+    }
+
+    @Override
+    public void releaseSource() {
+      sourceEntry.setListener(null);
+      maybeReleaseSource(sourceEntry);
+      sourceEntry = null;
+    }
+
+  }
+
+  /**
+   * Wraps a {@link MediaPeriod}, keeping the streams that were last selected enabled while it's
+   * pooled so that their buffered media is retained.
+   */
+  private final class PooledMediaPeriod implements MediaPeriod, MediaPeriod.Callback {
+
+    public final SourceEntry sourceEntry;
+    public final int index;
+    public final PeriodAllocator periodAllocator;
+
+    public MediaPeriod mediaPeriod;
+    public Callback callback;
+
+    private boolean prepared;
+    private boolean reused;
+    private TrackSelection[] enabledSelections;
+    private SampleStream[] enabledStreams;
+
+    public PooledMediaPeriod(SourceEntry sourceEntry, int index, PeriodAllocator periodAllocator,
+        Callback callback) {
+      this.sourceEntry = sourceEntry;
+      this.index = index;
+      this.periodAllocator = periodAllocator;
+      this.callback = callback;
+    }
+
+    public void reuse(Callback callback) {
+      this.callback = callback;
+      reused = true;
+      if (prepared) {
+        callback.onPrepared(this);
+      }
+    }
+
+    // MediaPeriod implementation.
+
+    @Override
+    public void maybeThrowPrepareError() throws IOException {
+      mediaPeriod.maybeThrowPrepareError();
+    }
+
+    @Override
+    public TrackGroupArray getTrackGroups() {
+      return mediaPeriod.getTrackGroups();
+    }
+
+    @Override
+    public long selectTracks(TrackSelection[] selections, boolean[] mayRetainStreamFlags,
+        SampleStream[] streams, boolean[] streamResetFlags, long positionUs) {
+      boolean reused = this.reused;
+      this.reused = false;
+      if (reused && enabledStreams != null) {
+        // The player doesn't know about the streams that were enabled before the period was
+        // pooled. Retain those whose selection is unchanged, and have the others disabled.
+        mayRetainStreamFlags = mayRetainStreamFlags.clone();
+        for (int i = 0; i < streams.length; i++) {
+          if (streams[i] == null && enabledStreams[i] != null) {
+            streams[i] = enabledStreams[i];
+            mayRetainStreamFlags[i] = isSameSelection(enabledSelections[i], selections[i]);
+          }
+        }
+      }
+      positionUs = mediaPeriod.selectTracks(selections, mayRetainStreamFlags, streams,
+          streamResetFlags, positionUs);
+      if (reused) {
+        // Move to the requested position, within the retained media if possible.
+        positionUs = mediaPeriod.seekToUs(positionUs);
+      }
+      enabledSelections = selections.clone();
+      enabledStreams = streams.clone();
+      return positionUs;
+    }
+
+    @Override
+    public long readDiscontinuity() {
+      return mediaPeriod.readDiscontinuity();
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return mediaPeriod.getBufferedPositionUs();
+    }
+
+    @Override
+    public long seekToUs(long positionUs) {
+      return mediaPeriod.seekToUs(positionUs);
+    }
+
+    @Override
+    public void setBackBufferDurationUs(long backBufferDurationUs) {
+      mediaPeriod.setBackBufferDurationUs(backBufferDurationUs);
+    }
+
+    @Override
+    public long getNextLoadPositionUs() {
+      return mediaPeriod.getNextLoadPositionUs();
+    }
+
+    @Override
+    public boolean isLoading() {
+      return mediaPeriod.isLoading();
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      return mediaPeriod.continueLoading(positionUs);
+    }
+
+    // MediaPeriod.Callback implementation.
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      prepared = true;
+      if (callback != null) {
+        callback.onPrepared(this);
+      }
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {
+      if (callback != null) {
+        callback.onContinueLoadingRequested(this);
+      }
+    }
+
+  }
+
+  /**
+   * An {@link Allocator} through which a period obtains its allocations, which counts the bytes
+   * that the period holds.
+   */
+  private static final class PeriodAllocator implements Allocator {
+
+    public final Allocator upstream;
+
+    private int allocatedCount;
+
+    public PeriodAllocator(Allocator upstream) {
+      this.upstream = upstream;
+    }
+
+    @Override
+    public Allocation allocate() {
+      Allocation allocation = upstream.allocate();
+      synchronized (this) {
+        allocatedCount++;
+      }
+      return allocation;
+    }
+
+    @Override
+    public void release(Allocation allocation) {
+      upstream.release(allocation);
+      synchronized (this) {
+        allocatedCount--;
+      }
+    }
+
+    @Override
+    public void release(Allocation[] allocations) {
+      upstream.release(allocations);
+      synchronized (this) {
+        allocatedCount -= allocations.length;
+      }
+    }
+
+    @Override
+    public void trim() {
+      upstream.trim();
+    }
+
+    @Override
+    public synchronized int getTotalBytesAllocated() {
+      return allocatedCount * upstream.getIndividualAllocationLength();
+    }
+
+    @Override
+    public int getIndividualAllocationLength() {
+      return upstream.getIndividualAllocationLength();
+    }
+
+    @Override
+    public void onBackBufferSizeChanged(int bytesDelta) {
+      upstream.onBackBufferSizeChanged(bytesDelta);
+    }
+
+    @Override
+    public boolean isBackBufferFull() {
+      return upstream.isBackBufferFull();
+    }
+
+  }
+
+  /**
+   * A {@link LoadControl} that releases pooled periods before each decision about whether to
+   * continue loading, if the pool is over its budget or the allocator has reached its target.
+   */
+  private final class PoolingLoadControl implements LoadControl {
+
+    private final LoadControl loadControl;
+
+    public PoolingLoadControl(LoadControl loadControl) {
+      this.loadControl = loadControl;
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+        TrackSelectionArray trackSelections) {
+      loadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onTracksDisabled() {
+      loadControl.onTracksDisabled();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+      return allocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+      return loadControl.getBackBufferDurationUs();
+    }
+
+    @Override
+    public long getPrepareAheadDurationUs() {
+      return loadControl.getPrepareAheadDurationUs();
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+      return loadControl.shouldStartPlayback(bufferedDurationUs, rebuffering);
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs) {
+      maybeEvict(true);
+      return loadControl.shouldContinueLoading(bufferedDurationUs);
+    }
+
+  }
+
+}
@@ -124,6 +124,11 @@ import java.util.IdentityHashMap;
     return sequenceableLoader.getNextLoadPositionUs();
   }
 
+  @Override
+  public boolean isLoading() {
+    return sequenceableLoader.isLoading();
+  }
+
   @Override
   public long readDiscontinuity() {
     long positionUs = enabledPeriods[0].readDiscontinuity();
@@ -168,6 +173,13 @@ import java.util.IdentityHashMap;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    for (MediaPeriod period : periods) {
+      period.setBackBufferDurationUs(backBufferDurationUs);
+    }
+  }
+
   // MediaPeriod.Callback implementation
 
   @Override
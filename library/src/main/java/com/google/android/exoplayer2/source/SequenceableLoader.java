@@ -40,6 +40,11 @@ public interface SequenceableLoader {
    */
   long getNextLoadPositionUs();
 
+  /**
+   * Returns whether the loader is currently loading.
+   */
+  boolean isLoading();
+
   /**
    * Attempts to continue loading.
    *
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.upstream.Loader.Loadable;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
@@ -60,7 +61,7 @@ import java.util.Arrays;
 
   public SingleSampleMediaPeriod(Uri uri, DataSource.Factory dataSourceFactory, Format format,
       int minLoadableRetryCount, Handler eventHandler, EventListener eventListener,
-      int eventSourceId) {
+      int eventSourceId, LoaderThreadPool loaderThreadPool) {
     this.uri = uri;
     this.dataSourceFactory = dataSourceFactory;
     this.format = format;
@@ -70,7 +71,7 @@ import java.util.Arrays;
     this.eventSourceId = eventSourceId;
     tracks = new TrackGroupArray(new TrackGroup(format));
     sampleStreams = new ArrayList<>();
-    loader = new Loader("Loader:SingleSampleMediaPeriod");
+    loader = new Loader(loaderThreadPool, LoaderThreadPool.PRIORITY_DEFAULT);
     sampleData = new byte[INITIAL_SAMPLE_SIZE];
   }
 
@@ -126,6 +127,11 @@ import java.util.Arrays;
     return loadingFinished || loader.isLoading() ? C.TIME_END_OF_SOURCE : 0;
   }
 
+  @Override
+  public boolean isLoading() {
+    return loader.isLoading();
+  }
+
   @Override
   public long getBufferedPositionUs() {
     return loadingFinished ? C.TIME_END_OF_SOURCE : 0;
@@ -139,6 +145,11 @@ import java.util.Arrays;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    // Do nothing. The sample is always retained in full.
+  }
+
   // Loader.Callback implementation.
 
   @Override
@@ -264,7 +275,9 @@ import java.util.Arrays;
         int result = 0;
         while (result != C.RESULT_END_OF_INPUT) {
           sampleSize += result;
-          if (sampleSize == sampleData.length) {
+          if (sampleData == null) {
+            sampleData = new byte[INITIAL_SAMPLE_SIZE];
+          } else if (sampleSize == sampleData.length) {
             sampleData = Arrays.copyOf(sampleData, sampleData.length * 2);
           }
           result = dataSource.read(sampleData, sampleSize, sampleData.length - sampleSize);
@@ -22,6 +22,7 @@ import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.MediaPeriod.Callback;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
 
@@ -57,6 +58,7 @@ public final class SingleSampleMediaSource implements MediaSource {
   private final Handler eventHandler;
   private final EventListener eventListener;
   private final int eventSourceId;
+  private final LoaderThreadPool loaderThreadPool;
   private final Timeline timeline;
 
   public SingleSampleMediaSource(Uri uri, DataSource.Factory dataSourceFactory, Format format,
@@ -72,6 +74,13 @@ public final class SingleSampleMediaSource implements MediaSource {
   public SingleSampleMediaSource(Uri uri, DataSource.Factory dataSourceFactory, Format format,
       long durationUs, int minLoadableRetryCount, Handler eventHandler, EventListener eventListener,
       int eventSourceId) {
+    this(uri, dataSourceFactory, format, durationUs, minLoadableRetryCount, eventHandler,
+        eventListener, eventSourceId, LoaderThreadPool.getSharedInstance());
+  }
+
+  public SingleSampleMediaSource(Uri uri, DataSource.Factory dataSourceFactory, Format format,
+      long durationUs, int minLoadableRetryCount, Handler eventHandler, EventListener eventListener,
+      int eventSourceId, LoaderThreadPool loaderThreadPool) {
     this.uri = uri;
     this.dataSourceFactory = dataSourceFactory;
     this.format = format;
@@ -79,6 +88,7 @@ public final class SingleSampleMediaSource implements MediaSource {
     this.eventHandler = eventHandler;
     this.eventListener = eventListener;
     this.eventSourceId = eventSourceId;
+    this.loaderThreadPool = loaderThreadPool;
     timeline = new SinglePeriodTimeline(durationUs, true);
   }
 
@@ -99,7 +109,7 @@ public final class SingleSampleMediaSource implements MediaSource {
       long positionUs) {
     Assertions.checkArgument(index == 0);
     MediaPeriod mediaPeriod = new SingleSampleMediaPeriod(uri, dataSourceFactory, format,
-        minLoadableRetryCount, eventHandler, eventListener, eventSourceId);
+        minLoadableRetryCount, eventHandler, eventListener, eventSourceId, loaderThreadPool);
     callback.onPrepared(mediaPeriod);
     return mediaPeriod;
   }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * A {@link LoadSchedulingPolicy} that shares loading opportunities between loaders in proportion
+ * to weights assigned by track type, so that loaders of one type cannot starve those of another.
+ * <p>
+ * Each loader is credited with the number of loads it has started, divided by its weight. The
+ * selectable loader with the lowest credit is selected, with ties broken by earliest next load
+ * position. To bound the difference in buffered duration between loaders, a loader is only
+ * selected if its next load position is no more than a maximum lead ahead of the earliest one.
+ * <p>
+ * The number of concurrent loads is limited, so that loaders compete for the available slots and
+ * the weights decide which of them starts loading when a slot frees up.
+ */
+public final class WeightedFairLoadSchedulingPolicy implements LoadSchedulingPolicy {
+
+  /**
+   * Factory for {@link WeightedFairLoadSchedulingPolicy} instances.
+   */
+  public static final class Factory implements LoadSchedulingPolicy.Factory {
+
+    private final int audioWeight;
+    private final int videoWeight;
+    private final int otherWeight;
+    private final long maxLeadUs;
+    private final int maxConcurrentLoads;
+
+    /**
+     * Constructs a factory using {@link #DEFAULT_AUDIO_WEIGHT}, {@link #DEFAULT_VIDEO_WEIGHT},
+     * {@link #DEFAULT_OTHER_WEIGHT}, {@link #DEFAULT_MAX_LEAD_MS} and
+     * {@link #DEFAULT_MAX_CONCURRENT_LOADS}.
+     */
+    public Factory() {
+      this(DEFAULT_AUDIO_WEIGHT, DEFAULT_VIDEO_WEIGHT, DEFAULT_OTHER_WEIGHT, DEFAULT_MAX_LEAD_MS,
+          DEFAULT_MAX_CONCURRENT_LOADS);
+    }
+
+    /**
+     * @param audioWeight The weight of audio loaders.
+     * @param videoWeight The weight of video loaders.
+     * @param otherWeight The weight of all other loaders.
+     * @param maxLeadMs The maximum duration by which the next load position of a selected loader
+     *     may be ahead of the earliest next load position, in milliseconds.
+     * @param maxConcurrentLoads The maximum number of loaders that may be loading at the same time.
+     */
+    public Factory(int audioWeight, int videoWeight, int otherWeight, long maxLeadMs,
+        int maxConcurrentLoads) {
+      Assertions.checkArgument(audioWeight > 0 && videoWeight > 0 && otherWeight > 0);
+      Assertions.checkArgument(maxConcurrentLoads > 0);
+      this.audioWeight = audioWeight;
+      this.videoWeight = videoWeight;
+      this.otherWeight = otherWeight;
+      this.maxLeadUs = maxLeadMs * 1000;
+      this.maxConcurrentLoads = maxConcurrentLoads;
+    }
+
+    @Override
+    public LoadSchedulingPolicy createPolicy(int[] trackTypes) {
+      int[] weights = new int[trackTypes.length];
+      for (int i = 0; i < trackTypes.length; i++) {
+        switch (trackTypes[i]) {
+          case C.TRACK_TYPE_AUDIO:
+            weights[i] = audioWeight;
+            break;
+          case C.TRACK_TYPE_VIDEO:
+            weights[i] = videoWeight;
+            break;
+          default:
+            weights[i] = otherWeight;
+            break;
+        }
+      }
+      return new WeightedFairLoadSchedulingPolicy(weights, maxLeadUs, maxConcurrentLoads);
+    }
+
+  }
+
+  /**
+   * The default weight of audio loaders.
+   */
+  public static final int DEFAULT_AUDIO_WEIGHT = 2;
+  /**
+   * The default weight of video loaders.
+   */
+  public static final int DEFAULT_VIDEO_WEIGHT = 1;
+  /**
+   * The default weight of all other loaders.
+   */
+  public static final int DEFAULT_OTHER_WEIGHT = 1;
+  /**
+   * The default maximum lead of a selected loader over the earliest next load position.
+   */
+  public static final long DEFAULT_MAX_LEAD_MS = 10000;
+  /**
+   * The default maximum number of loaders that may be loading at the same time.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_LOADS = 1;
+
+  private final int[] weights;
+  private final long maxLeadUs;
+  private final int maxConcurrentLoads;
+  private final long[] progressCounts;
+
+  /**
+   * @param weights The weight of each loader.
+   * @param maxLeadUs The maximum duration by which the next load position of a selected loader may
+   *     be ahead of the earliest next load position, in microseconds.
+   * @param maxConcurrentLoads The maximum number of loaders that may be loading at the same time.
+   */
+  public WeightedFairLoadSchedulingPolicy(int[] weights, long maxLeadUs, int maxConcurrentLoads) {
+    this.weights = weights;
+    this.maxLeadUs = maxLeadUs;
+    this.maxConcurrentLoads = maxConcurrentLoads;
+    progressCounts = new long[weights.length];
+  }
+
+  @Override
+  public int getMaxConcurrentLoads() {
+    return maxConcurrentLoads;
+  }
+
+  @Override
+  public int selectLoader(long[] nextLoadPositionsUs, boolean[] selectable,
+      long playbackPositionUs) {
+    long earliestNextLoadPositionUs = Long.MAX_VALUE;
+    for (long nextLoadPositionUs : nextLoadPositionsUs) {
+      if (nextLoadPositionUs != C.TIME_END_OF_SOURCE) {
+        earliestNextLoadPositionUs = Math.min(earliestNextLoadPositionUs, nextLoadPositionUs);
+      }
+    }
+    int selectedIndex = C.INDEX_UNSET;
+    for (int i = 0; i < nextLoadPositionsUs.length; i++) {
+      if (!selectable[i] || nextLoadPositionsUs[i] - earliestNextLoadPositionUs > maxLeadUs) {
+        continue;
+      }
+      if (selectedIndex == C.INDEX_UNSET) {
+        selectedIndex = i;
+        continue;
+      }
+      // Compare progressCounts[i] / weights[i] with that of the selected loader.
+      long credit = progressCounts[i] * weights[selectedIndex];
+      long selectedCredit = progressCounts[selectedIndex] * weights[i];
+      if (credit < selectedCredit || (credit == selectedCredit
+          && nextLoadPositionsUs[i] < nextLoadPositionsUs[selectedIndex])) {
+        selectedIndex = i;
+      }
+    }
+    return selectedIndex;
+  }
+
+  @Override
+  public void onLoaderProgressed(int loaderIndex) {
+    progressCounts[loaderIndex]++;
+  }
+
+}
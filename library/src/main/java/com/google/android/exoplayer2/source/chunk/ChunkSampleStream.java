@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.source.SampleStream;
 import com.google.android.exoplayer2.source.SequenceableLoader;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
 import java.util.Collections;
@@ -56,6 +57,8 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
   private boolean loadingFinished;
 
   /**
+   * Constructs an instance whose chunks are loaded on {@link LoaderThreadPool#getSharedInstance()}.
+   *
    * @param trackType The type of the track. One of the {@link C} {@code TRACK_TYPE_*} constants.
    * @param chunkSource A {@link ChunkSource} from which chunks to load are obtained.
    * @param callback An {@link Callback} for the stream.
@@ -68,12 +71,33 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
   public ChunkSampleStream(int trackType, T chunkSource,
       SequenceableLoader.Callback<ChunkSampleStream<T>> callback, Allocator allocator,
       long positionUs, int minLoadableRetryCount, EventDispatcher eventDispatcher) {
+    this(trackType, chunkSource, callback, allocator, positionUs, minLoadableRetryCount,
+        eventDispatcher, LoaderThreadPool.getSharedInstance());
+  }
+
+  /**
+   * @param trackType The type of the track. One of the {@link C} {@code TRACK_TYPE_*} constants.
+   * @param chunkSource A {@link ChunkSource} from which chunks to load are obtained.
+   * @param callback An {@link Callback} for the stream.
+   * @param allocator An {@link Allocator} from which allocations can be obtained.
+   * @param positionUs The position from which to start loading media.
+   * @param minLoadableRetryCount The minimum number of times that the source should retry a load
+   *     before propagating an error.
+   * @param eventDispatcher A dispatcher to notify of events.
+   * @param loaderThreadPool The {@link LoaderThreadPool} on which chunks are loaded.
+   */
+  public ChunkSampleStream(int trackType, T chunkSource,
+      SequenceableLoader.Callback<ChunkSampleStream<T>> callback, Allocator allocator,
+      long positionUs, int minLoadableRetryCount, EventDispatcher eventDispatcher,
+      LoaderThreadPool loaderThreadPool) {
     this.trackType = trackType;
     this.chunkSource = chunkSource;
     this.callback = callback;
     this.eventDispatcher = eventDispatcher;
     this.minLoadableRetryCount = minLoadableRetryCount;
-    loader = new Loader("Loader:ChunkSampleStream");
+    // Chunk loads never block, so can share threads with the loads of other streams.
+    loader = new Loader(loaderThreadPool, trackType == C.TRACK_TYPE_VIDEO
+        ? LoaderThreadPool.PRIORITY_DEFAULT : LoaderThreadPool.PRIORITY_HIGH);
     nextChunkHolder = new ChunkHolder();
     mediaChunks = new LinkedList<>();
     readOnlyMediaChunks = Collections.unmodifiableList(mediaChunks);
@@ -82,6 +106,13 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
     pendingResetPositionUs = positionUs;
   }
 
+  /**
+   * Returns the type of the track. One of the {@link C} {@code TRACK_TYPE_*} constants.
+   */
+  public int getTrackType() {
+    return trackType;
+  }
+
   /**
    * Returns the {@link ChunkSource} used by this stream.
    *
@@ -122,13 +153,10 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
   public void seekToUs(long positionUs) {
     lastSeekPositionUs = positionUs;
     // If we're not pending a reset, see if we can seek within the sample queue.
-    boolean seekInsideBuffer = !isPendingReset() && sampleQueue.skipToKeyframeBefore(positionUs);
+    boolean seekInsideBuffer = !isPendingReset() && sampleQueue.seekToKeyframeBefore(positionUs);
     if (seekInsideBuffer) {
-      // We succeeded. All we need to do is discard any chunks that we've moved past.
-      while (mediaChunks.size() > 1
-          && mediaChunks.get(1).getFirstSampleIndex() <= sampleQueue.getReadIndex()) {
-        mediaChunks.removeFirst();
-      }
+      // We succeeded. All we need to do is discard any chunks that are no longer held.
+      discardDownstreamMediaChunks();
     } else {
       // We failed, and need to restart.
       pendingResetPositionUs = positionUs;
@@ -142,6 +170,16 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
     }
   }
 
+  /**
+   * Sets the duration of media behind the playback position that should be retained, so that seeks
+   * back into it can be performed without reloading the media.
+   *
+   * @param backBufferDurationUs The duration of media to retain, in microseconds.
+   */
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    sampleQueue.setBackBufferDurationUs(backBufferDurationUs);
+  }
+
   /**
    * Releases the stream.
    * <p>
@@ -173,12 +211,8 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
       return C.RESULT_NOTHING_READ;
     }
 
-    while (mediaChunks.size() > 1
-        && mediaChunks.get(1).getFirstSampleIndex() <= sampleQueue.getReadIndex()) {
-      mediaChunks.removeFirst();
-    }
-    BaseMediaChunk currentChunk = mediaChunks.getFirst();
-
+    discardDownstreamMediaChunks();
+    BaseMediaChunk currentChunk = mediaChunks.get(getCurrentMediaChunkIndex());
     Format trackFormat = currentChunk.trackFormat;
     if (!trackFormat.equals(downstreamTrackFormat)) {
       eventDispatcher.downstreamFormatChanged(trackType, trackFormat,
@@ -222,7 +256,8 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
       IOException error) {
     long bytesLoaded = loadable.bytesLoaded();
     boolean isMediaChunk = isMediaChunk(loadable);
-    boolean cancelable = !isMediaChunk || bytesLoaded == 0 || mediaChunks.size() > 1;
+    boolean cancelable = !isMediaChunk || bytesLoaded == 0
+        || mediaChunks.getLast().getFirstSampleIndex() > sampleQueue.getReadIndex();
     boolean canceled = false;
     if (chunkSource.onChunkLoadError(loadable, cancelable, error)) {
       canceled = true;
@@ -293,6 +328,11 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
     }
   }
 
+  @Override
+  public boolean isLoading() {
+    return loader.isLoading();
+  }
+
   // Internal methods
 
   // TODO[REFACTOR]: Call maybeDiscardUpstream for DASH and SmoothStreaming.
@@ -303,8 +343,41 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
    * @param positionUs The current playback position in microseconds.
    */
   private void maybeDiscardUpstream(long positionUs) {
-    int queueSize = chunkSource.getPreferredQueueSize(positionUs, readOnlyMediaChunks);
-    discardUpstreamMediaChunks(Math.max(1, queueSize));
+    // Chunks held only as a back-buffer are not part of the queue that the source should consider.
+    int currentChunkIndex = getCurrentMediaChunkIndex();
+    int queueSize = chunkSource.getPreferredQueueSize(positionUs,
+        readOnlyMediaChunks.subList(currentChunkIndex, readOnlyMediaChunks.size()));
+    discardUpstreamMediaChunks(currentChunkIndex + Math.max(1, queueSize));
+  }
+
+  /**
+   * Returns the index in {@link #mediaChunks} of the chunk from which samples are currently being
+   * read. Chunks before it are held only because their samples are being retained as a
+   * back-buffer.
+   */
+  private int getCurrentMediaChunkIndex() {
+    int readIndex = sampleQueue.getReadIndex();
+    int currentChunkIndex = 0;
+    int chunkIndex = 0;
+    for (BaseMediaChunk mediaChunk : mediaChunks) {
+      if (mediaChunk.getFirstSampleIndex() > readIndex) {
+        break;
+      }
+      currentChunkIndex = chunkIndex++;
+    }
+    return currentChunkIndex;
+  }
+
+  /**
+   * Discards media chunks from the front of the queue whose samples are no longer held by the
+   * sample queue.
+   */
+  private void discardDownstreamMediaChunks() {
+    int firstSampleIndex = sampleQueue.getFirstIndex();
+    while (mediaChunks.size() > 1
+        && mediaChunks.get(1).getFirstSampleIndex() <= firstSampleIndex) {
+      mediaChunks.removeFirst();
+    }
   }
 
   private boolean isMediaChunk(Chunk chunk) {
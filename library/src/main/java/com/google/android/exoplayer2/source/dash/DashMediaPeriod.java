@@ -19,6 +19,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoader;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.SampleStream;
 import com.google.android.exoplayer2.source.SequenceableLoader;
@@ -32,6 +33,7 @@ import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,10 +52,13 @@ import java.util.List;
   private final LoaderErrorThrower manifestLoaderErrorThrower;
   private final Callback callback;
   private final Allocator allocator;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
+  private final LoaderThreadPool loaderThreadPool;
   private final TrackGroupArray trackGroups;
 
   private ChunkSampleStream<DashChunkSource>[] sampleStreams;
   private CompositeSequenceableLoader sequenceableLoader;
+  private long backBufferDurationUs;
   private DashManifest manifest;
   private int index;
   private Period period;
@@ -61,7 +66,9 @@ import java.util.List;
   public DashMediaPeriod(int id, DashManifest manifest, int index,
       DashChunkSource.Factory chunkSourceFactory,  int minLoadableRetryCount,
       EventDispatcher eventDispatcher, long elapsedRealtimeOffset,
-      LoaderErrorThrower manifestLoaderErrorThrower, Callback callback, Allocator allocator) {
+      LoaderErrorThrower manifestLoaderErrorThrower, Callback callback, Allocator allocator,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory,
+      LoaderThreadPool loaderThreadPool) {
     this.id = id;
     this.manifest = manifest;
     this.index = index;
@@ -72,8 +79,10 @@ import java.util.List;
     this.manifestLoaderErrorThrower = manifestLoaderErrorThrower;
     this.callback = callback;
     this.allocator = allocator;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
+    this.loaderThreadPool = loaderThreadPool;
     sampleStreams = newSampleStreamArray(0);
-    sequenceableLoader = new CompositeSequenceableLoader(sampleStreams);
+    sequenceableLoader = buildSequenceableLoader();
     period = manifest.getPeriod(index);
     trackGroups = buildTrackGroups(period);
     callback.onPrepared(this);
@@ -131,7 +140,7 @@ import java.util.List;
     }
     sampleStreams = newSampleStreamArray(sampleStreamsList.size());
     sampleStreamsList.toArray(sampleStreams);
-    sequenceableLoader = new CompositeSequenceableLoader(sampleStreams);
+    sequenceableLoader = buildSequenceableLoader();
     return positionUs;
   }
 
@@ -145,6 +154,11 @@ import java.util.List;
     return sequenceableLoader.getNextLoadPositionUs();
   }
 
+  @Override
+  public boolean isLoading() {
+    return sequenceableLoader.isLoading();
+  }
+
   @Override
   public long readDiscontinuity() {
     return C.TIME_UNSET;
@@ -170,6 +184,14 @@ import java.util.List;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    this.backBufferDurationUs = backBufferDurationUs;
+    for (ChunkSampleStream<DashChunkSource> sampleStream : sampleStreams) {
+      sampleStream.setBackBufferDurationUs(backBufferDurationUs);
+    }
+  }
+
   // SequenceableLoader.Callback implementation.
 
   @Override
@@ -200,8 +222,20 @@ import java.util.List;
     DashChunkSource chunkSource = chunkSourceFactory.createDashChunkSource(
         manifestLoaderErrorThrower, manifest, index, adaptationSetIndex, selection,
         elapsedRealtimeOffset);
-    return new ChunkSampleStream<>(adaptationSet.type, chunkSource, this, allocator, positionUs,
-        minLoadableRetryCount, eventDispatcher);
+    ChunkSampleStream<DashChunkSource> sampleStream = new ChunkSampleStream<>(adaptationSet.type,
+        chunkSource, this, allocator, positionUs, minLoadableRetryCount, eventDispatcher,
+        loaderThreadPool);
+    sampleStream.setBackBufferDurationUs(backBufferDurationUs);
+    return sampleStream;
+  }
+
+  private CompositeSequenceableLoader buildSequenceableLoader() {
+    int[] trackTypes = new int[sampleStreams.length];
+    for (int i = 0; i < sampleStreams.length; i++) {
+      trackTypes[i] = sampleStreams[i].getTrackType();
+    }
+    return new CompositeSequenceableLoader(sampleStreams,
+        loadSchedulingPolicyFactory.createPolicy(trackTypes));
   }
 
   @SuppressWarnings("unchecked")
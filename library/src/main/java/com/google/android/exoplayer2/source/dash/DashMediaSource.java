@@ -25,6 +25,8 @@ import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.EarliestDeadlineLoadSchedulingPolicy;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaPeriod.Callback;
 import com.google.android.exoplayer2.source.MediaSource;
@@ -35,6 +37,7 @@ import com.google.android.exoplayer2.source.dash.manifest.UtcTimingElement;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -84,6 +87,8 @@ public final class DashMediaSource implements MediaSource {
 
   private final DataSource.Factory manifestDataSourceFactory;
   private final DashChunkSource.Factory chunkSourceFactory;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
+  private final LoaderThreadPool loaderThreadPool;
   private final int minLoadableRetryCount;
   private final long livePresentationDelayMs;
   private final EventDispatcher eventDispatcher;
@@ -119,11 +124,33 @@ public final class DashMediaSource implements MediaSource {
       DashChunkSource.Factory chunkSourceFactory, int minLoadableRetryCount,
       long livePresentationDelayMs, Handler eventHandler,
       AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, manifestDataSourceFactory, chunkSourceFactory,
+        EarliestDeadlineLoadSchedulingPolicy.FACTORY, minLoadableRetryCount,
+        livePresentationDelayMs, eventHandler, eventListener);
+  }
+
+  public DashMediaSource(Uri manifestUri, DataSource.Factory manifestDataSourceFactory,
+      DashChunkSource.Factory chunkSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      long livePresentationDelayMs, Handler eventHandler,
+      AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, manifestDataSourceFactory, chunkSourceFactory, loadSchedulingPolicyFactory,
+        minLoadableRetryCount, livePresentationDelayMs, eventHandler, eventListener,
+        LoaderThreadPool.getSharedInstance());
+  }
+
+  public DashMediaSource(Uri manifestUri, DataSource.Factory manifestDataSourceFactory,
+      DashChunkSource.Factory chunkSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      long livePresentationDelayMs, Handler eventHandler,
+      AdaptiveMediaSourceEventListener eventListener, LoaderThreadPool loaderThreadPool) {
     this.manifestUri = manifestUri;
     this.manifestDataSourceFactory = manifestDataSourceFactory;
     this.chunkSourceFactory = chunkSourceFactory;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
     this.livePresentationDelayMs = livePresentationDelayMs;
+    this.loaderThreadPool = loaderThreadPool;
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     manifestParser = new DashManifestParser(generateContentId());
     manifestCallback = new ManifestCallback();
@@ -160,7 +187,7 @@ public final class DashMediaSource implements MediaSource {
   public void prepareSource(MediaSource.Listener listener) {
     sourceListener = listener;
     dataSource = manifestDataSourceFactory.createDataSource();
-    loader = new Loader("Loader:DashMediaSource");
+    loader = new Loader(loaderThreadPool, LoaderThreadPool.PRIORITY_HIGH);
     handler = new Handler();
     startLoadingManifest();
   }
@@ -175,7 +202,7 @@ public final class DashMediaSource implements MediaSource {
       long positionUs) {
     DashMediaPeriod mediaPeriod = new DashMediaPeriod(firstPeriodId + index, manifest, index,
         chunkSourceFactory, minLoadableRetryCount, eventDispatcher, elapsedRealtimeOffsetMs, loader,
-        callback, allocator);
+        callback, allocator, loadSchedulingPolicyFactory, loaderThreadPool);
     periodsById.put(mediaPeriod.id, mediaPeriod);
     return mediaPeriod;
   }
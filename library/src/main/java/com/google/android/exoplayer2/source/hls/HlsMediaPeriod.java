@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoader;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.SampleStream;
@@ -38,6 +39,7 @@ import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -62,6 +64,7 @@ import java.util.List;
   private final Handler continueLoadingHandler;
   private final Loader manifestFetcher;
   private final long preparePositionUs;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
 
   private int pendingPrepareCount;
   private HlsPlaylist playlist;
@@ -77,7 +80,8 @@ import java.util.List;
   public HlsMediaPeriod(Uri manifestUri, DataSource.Factory dataSourceFactory,
       int minLoadableRetryCount, EventDispatcher eventDispatcher,
       MediaSource.Listener sourceListener, final Callback callback, Allocator allocator,
-      long positionUs) {
+      long positionUs, LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory,
+      LoaderThreadPool loaderThreadPool) {
     this.dataSourceFactory = dataSourceFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
     this.eventDispatcher = eventDispatcher;
@@ -88,8 +92,9 @@ import java.util.List;
     timestampAdjusterProvider = new TimestampAdjusterProvider();
     manifestParser = new HlsPlaylistParser();
     continueLoadingHandler = new Handler();
-    manifestFetcher = new Loader("Loader:ManifestFetcher");
+    manifestFetcher = new Loader(loaderThreadPool, LoaderThreadPool.PRIORITY_HIGH);
     preparePositionUs = positionUs;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
     continueLoadingRunnable = new Runnable() {
       @Override
       public void run() {
@@ -179,7 +184,12 @@ import java.util.List;
     // Update the local state.
     enabledSampleStreamWrappers = new HlsSampleStreamWrapper[enabledSampleStreamWrapperList.size()];
     enabledSampleStreamWrapperList.toArray(enabledSampleStreamWrappers);
-    sequenceableLoader = new CompositeSequenceableLoader(enabledSampleStreamWrappers);
+    int[] trackTypes = new int[enabledSampleStreamWrappers.length];
+    for (int i = 0; i < enabledSampleStreamWrappers.length; i++) {
+      trackTypes[i] = enabledSampleStreamWrappers[i].getTrackType();
+    }
+    sequenceableLoader = new CompositeSequenceableLoader(enabledSampleStreamWrappers,
+        loadSchedulingPolicyFactory.createPolicy(trackTypes));
     if (seenFirstTrackSelection && selectedNewTracks) {
       seekToUs(positionUs);
       // We'll need to reset renderers consuming from all streams due to the seek.
@@ -203,6 +213,11 @@ import java.util.List;
     return sequenceableLoader.getNextLoadPositionUs();
   }
 
+  @Override
+  public boolean isLoading() {
+    return sequenceableLoader.isLoading();
+  }
+
   @Override
   public long readDiscontinuity() {
     return C.TIME_UNSET;
@@ -231,6 +246,11 @@ import java.util.List;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    // Do nothing. Seeks always reload media, so there's no benefit to retaining a back-buffer.
+  }
+
   // Loader.Callback implementation.
 
   @Override
@@ -20,12 +20,15 @@ import android.os.Handler;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.EarliestDeadlineLoadSchedulingPolicy;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaPeriod.Callback;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.SinglePeriodTimeline;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.util.Assertions;
 
 /**
@@ -40,7 +43,9 @@ public final class HlsMediaSource implements MediaSource {
 
   private final Uri manifestUri;
   private final DataSource.Factory dataSourceFactory;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
   private final int minLoadableRetryCount;
+  private final LoaderThreadPool loaderThreadPool;
   private final EventDispatcher eventDispatcher;
 
   private MediaSource.Listener sourceListener;
@@ -54,9 +59,26 @@ public final class HlsMediaSource implements MediaSource {
   public HlsMediaSource(Uri manifestUri, DataSource.Factory dataSourceFactory,
       int minLoadableRetryCount, Handler eventHandler,
       AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, dataSourceFactory, EarliestDeadlineLoadSchedulingPolicy.FACTORY,
+        minLoadableRetryCount, eventHandler, eventListener);
+  }
+
+  public HlsMediaSource(Uri manifestUri, DataSource.Factory dataSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      Handler eventHandler, AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, dataSourceFactory, loadSchedulingPolicyFactory, minLoadableRetryCount,
+        eventHandler, eventListener, LoaderThreadPool.getSharedInstance());
+  }
+
+  public HlsMediaSource(Uri manifestUri, DataSource.Factory dataSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      Handler eventHandler, AdaptiveMediaSourceEventListener eventListener,
+      LoaderThreadPool loaderThreadPool) {
     this.manifestUri = manifestUri;
     this.dataSourceFactory = dataSourceFactory;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
+    this.loaderThreadPool = loaderThreadPool;
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
   }
 
@@ -77,7 +99,8 @@ public final class HlsMediaSource implements MediaSource {
       long positionUs) {
     Assertions.checkArgument(index == 0);
     return new HlsMediaPeriod(manifestUri, dataSourceFactory, minLoadableRetryCount,
-        eventDispatcher, sourceListener, callback, allocator, positionUs);
+        eventDispatcher, sourceListener, callback, allocator, positionUs,
+        loadSchedulingPolicyFactory, loaderThreadPool);
   }
 
   @Override
@@ -33,6 +33,7 @@ import com.google.android.exoplayer2.source.chunk.Chunk;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.SlicingAllocator;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import java.io.IOException;
@@ -72,6 +73,7 @@ import java.util.LinkedList;
   private final Callback callback;
   private final HlsChunkSource chunkSource;
   private final Allocator allocator;
+  private final Allocator sparseTrackAllocator;
   private final Format muxedAudioFormat;
   private final Format muxedCaptionFormat;
   private final int minLoadableRetryCount;
@@ -121,6 +123,8 @@ import java.util.LinkedList;
     this.callback = callback;
     this.chunkSource = chunkSource;
     this.allocator = allocator;
+    sparseTrackAllocator = new SlicingAllocator(allocator,
+        DefaultTrackOutput.SPARSE_TRACK_ALLOCATION_SLICE_COUNT);
     this.muxedAudioFormat = muxedAudioFormat;
     this.muxedCaptionFormat = muxedCaptionFormat;
     this.minLoadableRetryCount = minLoadableRetryCount;
@@ -141,6 +145,14 @@ import java.util.LinkedList;
     maybeThrowError();
   }
 
+  /**
+   * Returns the type of the tracks exposed by the wrapper. One of the {@link C}
+   * {@code TRACK_TYPE_*} constants.
+   */
+  public int getTrackType() {
+    return trackType;
+  }
+
   public long getDurationUs() {
     return chunkSource.getDurationUs();
   }
@@ -353,6 +365,11 @@ import java.util.LinkedList;
     }
   }
 
+  @Override
+  public boolean isLoading() {
+    return loader.isLoading();
+  }
+
   // Loader.Callback implementation.
 
   @Override
@@ -444,7 +461,7 @@ import java.util.LinkedList;
     if (sampleQueues.indexOfKey(id) >= 0) {
       return sampleQueues.get(id);
     }
-    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator);
+    DefaultTrackOutput trackOutput = new DefaultTrackOutput(allocator, sparseTrackAllocator);
     trackOutput.setUpstreamFormatChangeListener(this);
     trackOutput.sourceId(upstreamChunkUid);
     sampleQueues.put(id, trackOutput);
@@ -20,6 +20,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.mp4.TrackEncryptionBox;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoader;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.SampleStream;
 import com.google.android.exoplayer2.source.SequenceableLoader;
@@ -31,6 +32,7 @@ import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifest.
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -48,22 +50,29 @@ import java.util.ArrayList;
   private final EventDispatcher eventDispatcher;
   private final Callback callback;
   private final Allocator allocator;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
+  private final LoaderThreadPool loaderThreadPool;
   private final TrackGroupArray trackGroups;
   private final TrackEncryptionBox[] trackEncryptionBoxes;
 
   private SsManifest manifest;
   private ChunkSampleStream<SsChunkSource>[] sampleStreams;
   private CompositeSequenceableLoader sequenceableLoader;
+  private long backBufferDurationUs;
 
   public SsMediaPeriod(SsManifest manifest, SsChunkSource.Factory chunkSourceFactory,
       int minLoadableRetryCount, EventDispatcher eventDispatcher,
-      LoaderErrorThrower manifestLoaderErrorThrower, Callback callback, Allocator allocator) {
+      LoaderErrorThrower manifestLoaderErrorThrower, Callback callback, Allocator allocator,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory,
+      LoaderThreadPool loaderThreadPool) {
     this.chunkSourceFactory = chunkSourceFactory;
     this.manifestLoaderErrorThrower = manifestLoaderErrorThrower;
     this.minLoadableRetryCount = minLoadableRetryCount;
     this.eventDispatcher = eventDispatcher;
     this.callback = callback;
     this.allocator = allocator;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
+    this.loaderThreadPool = loaderThreadPool;
 
     trackGroups = buildTrackGroups(manifest);
     ProtectionElement protectionElement = manifest.protectionElement;
@@ -76,7 +85,7 @@ import java.util.ArrayList;
     }
     this.manifest = manifest;
     sampleStreams = newSampleStreamArray(0);
-    sequenceableLoader = new CompositeSequenceableLoader(sampleStreams);
+    sequenceableLoader = buildSequenceableLoader();
     callback.onPrepared(this);
   }
 
@@ -128,7 +137,7 @@ import java.util.ArrayList;
     }
     sampleStreams = newSampleStreamArray(sampleStreamsList.size());
     sampleStreamsList.toArray(sampleStreams);
-    sequenceableLoader = new CompositeSequenceableLoader(sampleStreams);
+    sequenceableLoader = buildSequenceableLoader();
     return positionUs;
   }
 
@@ -142,6 +151,11 @@ import java.util.ArrayList;
     return sequenceableLoader.getNextLoadPositionUs();
   }
 
+  @Override
+  public boolean isLoading() {
+    return sequenceableLoader.isLoading();
+  }
+
   @Override
   public long readDiscontinuity() {
     return C.TIME_UNSET;
@@ -167,6 +181,14 @@ import java.util.ArrayList;
     return positionUs;
   }
 
+  @Override
+  public void setBackBufferDurationUs(long backBufferDurationUs) {
+    this.backBufferDurationUs = backBufferDurationUs;
+    for (ChunkSampleStream<SsChunkSource> sampleStream : sampleStreams) {
+      sampleStream.setBackBufferDurationUs(backBufferDurationUs);
+    }
+  }
+
   // SequenceableLoader.Callback implementation
 
   @Override
@@ -181,8 +203,11 @@ import java.util.ArrayList;
     int streamElementIndex = trackGroups.indexOf(selection.getTrackGroup());
     SsChunkSource chunkSource = chunkSourceFactory.createChunkSource(manifestLoaderErrorThrower,
         manifest, streamElementIndex, selection, trackEncryptionBoxes);
-    return new ChunkSampleStream<>(manifest.streamElements[streamElementIndex].type, chunkSource,
-        this, allocator, positionUs, minLoadableRetryCount, eventDispatcher);
+    ChunkSampleStream<SsChunkSource> sampleStream = new ChunkSampleStream<>(
+        manifest.streamElements[streamElementIndex].type, chunkSource, this, allocator, positionUs,
+        minLoadableRetryCount, eventDispatcher, loaderThreadPool);
+    sampleStream.setBackBufferDurationUs(backBufferDurationUs);
+    return sampleStream;
   }
 
   private static TrackGroupArray buildTrackGroups(SsManifest manifest) {
@@ -193,6 +218,15 @@ import java.util.ArrayList;
     return new TrackGroupArray(trackGroups);
   }
 
+  private CompositeSequenceableLoader buildSequenceableLoader() {
+    int[] trackTypes = new int[sampleStreams.length];
+    for (int i = 0; i < sampleStreams.length; i++) {
+      trackTypes[i] = sampleStreams[i].getTrackType();
+    }
+    return new CompositeSequenceableLoader(sampleStreams,
+        loadSchedulingPolicyFactory.createPolicy(trackTypes));
+  }
+
   @SuppressWarnings("unchecked")
   private static ChunkSampleStream<SsChunkSource>[] newSampleStreamArray(int length) {
     return new ChunkSampleStream[length];
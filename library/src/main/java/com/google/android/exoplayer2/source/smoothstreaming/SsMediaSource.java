@@ -23,6 +23,8 @@ import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener;
 import com.google.android.exoplayer2.source.AdaptiveMediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.EarliestDeadlineLoadSchedulingPolicy;
+import com.google.android.exoplayer2.source.LoadSchedulingPolicy;
 import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaPeriod.Callback;
 import com.google.android.exoplayer2.source.MediaSource;
@@ -33,6 +35,7 @@ import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifestP
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.Loader;
+import com.google.android.exoplayer2.upstream.LoaderThreadPool;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -67,6 +70,8 @@ public final class SsMediaSource implements MediaSource,
   private final Uri manifestUri;
   private final DataSource.Factory dataSourceFactory;
   private final SsChunkSource.Factory chunkSourceFactory;
+  private final LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory;
+  private final LoaderThreadPool loaderThreadPool;
   private final int minLoadableRetryCount;
   private final long livePresentationDelayMs;
   private final EventDispatcher eventDispatcher;
@@ -94,12 +99,34 @@ public final class SsMediaSource implements MediaSource,
       SsChunkSource.Factory chunkSourceFactory, int minLoadableRetryCount,
       long livePresentationDelayMs, Handler eventHandler,
       AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, dataSourceFactory, chunkSourceFactory,
+        EarliestDeadlineLoadSchedulingPolicy.FACTORY, minLoadableRetryCount,
+        livePresentationDelayMs, eventHandler, eventListener);
+  }
+
+  public SsMediaSource(Uri manifestUri, DataSource.Factory dataSourceFactory,
+      SsChunkSource.Factory chunkSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      long livePresentationDelayMs, Handler eventHandler,
+      AdaptiveMediaSourceEventListener eventListener) {
+    this(manifestUri, dataSourceFactory, chunkSourceFactory, loadSchedulingPolicyFactory,
+        minLoadableRetryCount, livePresentationDelayMs, eventHandler, eventListener,
+        LoaderThreadPool.getSharedInstance());
+  }
+
+  public SsMediaSource(Uri manifestUri, DataSource.Factory dataSourceFactory,
+      SsChunkSource.Factory chunkSourceFactory,
+      LoadSchedulingPolicy.Factory loadSchedulingPolicyFactory, int minLoadableRetryCount,
+      long livePresentationDelayMs, Handler eventHandler,
+      AdaptiveMediaSourceEventListener eventListener, LoaderThreadPool loaderThreadPool) {
     this.manifestUri = Util.toLowerInvariant(manifestUri.getLastPathSegment()).equals("manifest")
         ? manifestUri : Uri.withAppendedPath(manifestUri, "Manifest");
     this.dataSourceFactory = dataSourceFactory;
     this.chunkSourceFactory = chunkSourceFactory;
+    this.loadSchedulingPolicyFactory = loadSchedulingPolicyFactory;
     this.minLoadableRetryCount = minLoadableRetryCount;
     this.livePresentationDelayMs = livePresentationDelayMs;
+    this.loaderThreadPool = loaderThreadPool;
     this.eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     manifestParser = new SsManifestParser();
     mediaPeriods = new ArrayList<>();
@@ -111,7 +138,7 @@ public final class SsMediaSource implements MediaSource,
   public void prepareSource(MediaSource.Listener listener) {
     sourceListener = listener;
     manifestDataSource = dataSourceFactory.createDataSource();
-    manifestLoader = new Loader("Loader:Manifest");
+    manifestLoader = new Loader(loaderThreadPool, LoaderThreadPool.PRIORITY_HIGH);
     manifestRefreshHandler = new Handler();
     startLoadingManifest();
   }
@@ -126,7 +153,8 @@ public final class SsMediaSource implements MediaSource,
       long positionUs) {
     Assertions.checkArgument(index == 0);
     SsMediaPeriod period = new SsMediaPeriod(manifest, chunkSourceFactory, minLoadableRetryCount,
-        eventDispatcher, manifestLoader, callback, allocator);
+        eventDispatcher, manifestLoader, callback, allocator, loadSchedulingPolicyFactory,
+        loaderThreadPool);
     mediaPeriods.add(period);
     return period;
   }
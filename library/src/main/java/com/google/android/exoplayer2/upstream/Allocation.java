@@ -15,8 +15,10 @@
  */
 package com.google.android.exoplayer2.upstream;
 
+import java.nio.ByteBuffer;
+
 /**
- * An allocation within a byte array.
+ * An allocation within a byte array, or within a direct {@link ByteBuffer}.
  * <p>
  * The allocation's length is obtained by calling {@link Allocator#getIndividualAllocationLength()}
  * on the {@link Allocator} from which it was obtained.
@@ -24,11 +26,28 @@ package com.google.android.exoplayer2.upstream;
 public final class Allocation {
 
   /**
-   * The array containing the allocated space. The allocated space might not be at the start of the
-   * array, and so {@link #translateOffset(int)} method must be used when indexing into it.
+   * The array containing the allocated space, or null if the allocation is backed by
+   * {@link #directData}. The allocated space might not be at the start of the array, and so
+   * {@link #translateOffset(int)} method must be used when indexing into it.
    */
   public final byte[] data;
 
+  /**
+   * The direct buffer containing the allocated space, or null if the allocation is backed by
+   * {@link #data}. The allocated space might not be at the start of the buffer, and so
+   * {@link #translateOffset(int)} method must be used when indexing into it.
+   * <p>
+   * The buffer may be shared with other allocations. Its position and limit must not be modified.
+   * Callers should instead access the allocated space through a {@link ByteBuffer#duplicate()}.
+   */
+  public final ByteBuffer directData;
+
+  /**
+   * The object that created the allocation, for allocators that need to find it again when the
+   * allocation is released. May be null.
+   */
+  /* package */ final Object owner;
+
   private final int offset;
 
   /**
@@ -36,15 +55,43 @@ public final class Allocation {
    * @param offset The offset of the allocated space within the array.
    */
   public Allocation(byte[] data, int offset) {
+    this(data, null, offset, null);
+  }
+
+  /**
+   * @param directData The direct buffer containing the allocated space.
+   * @param offset The offset of the allocated space within the buffer.
+   */
+  public Allocation(ByteBuffer directData, int offset) {
+    this(null, directData, offset, null);
+  }
+
+  /**
+   * @param data The array containing the allocated space, or null.
+   * @param directData The direct buffer containing the allocated space, or null.
+   * @param offset The offset of the allocated space within the array or buffer.
+   * @param owner The object that created the allocation. May be null.
+   */
+  /* package */ Allocation(byte[] data, ByteBuffer directData, int offset, Object owner) {
     this.data = data;
+    this.directData = directData;
     this.offset = offset;
+    this.owner = owner;
+  }
+
+  /**
+   * Returns whether the allocated space is held in {@link #directData} rather than {@link #data}.
+   */
+  public boolean isDirect() {
+    return directData != null;
   }
 
   /**
-   * Translates a zero-based offset into the allocation to the corresponding {@link #data} offset.
+   * Translates a zero-based offset into the allocation to the corresponding {@link #data} or
+   * {@link #directData} offset.
    *
    * @param offset The zero-based offset to translate.
-   * @return The corresponding offset in {@link #data}.
+   * @return The corresponding offset in {@link #data} or {@link #directData}.
    */
   public int translateOffset(int offset) {
     return this.offset + offset;
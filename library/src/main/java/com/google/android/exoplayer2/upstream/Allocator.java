@@ -60,4 +60,19 @@ public interface Allocator {
    */
   int getIndividualAllocationLength();
 
+  /**
+   * Notifies the allocator of a change in the number of allocated bytes that hold only media
+   * retained behind the playback position as a back-buffer.
+   *
+   * @param bytesDelta The change in the number of bytes. Negative if back-buffer media was
+   *     discarded, or if the playback position moved backwards into it.
+   */
+  void onBackBufferSizeChanged(int bytesDelta);
+
+  /**
+   * Returns whether the allocated bytes holding back-buffer media have reached the allocator's
+   * budget for them, in which case retained media should be discarded.
+   */
+  boolean isBackBufferFull();
+
 }
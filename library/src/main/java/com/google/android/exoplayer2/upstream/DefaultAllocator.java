@@ -15,22 +15,34 @@
  */
 package com.google.android.exoplayer2.upstream;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * Default implementation of {@link Allocator}.
+ * <p>
+ * By default {@link Allocation}s are backed by byte arrays on the Java heap. An instance can instead
+ * be configured to back its {@link Allocation}s with direct {@link ByteBuffer}s, which keeps
+ * buffered media off the heap and avoids garbage collection pauses caused by large numbers of
+ * short-lived arrays. Each direct buffer holds a single {@link Allocation}, so that its memory can
+ * be reclaimed as soon as the {@link Allocation} is discarded by {@link #trim()}.
  */
 public final class DefaultAllocator implements Allocator {
 
   private static final int AVAILABLE_EXTRA_CAPACITY = 100;
 
   private final int individualAllocationSize;
+  private final boolean useDirectMemory;
   private final byte[] initialAllocationBlock;
+  private final ByteBuffer initialDirectAllocationBlock;
   private final Allocation[] singleAllocationReleaseHolder;
 
   private int targetBufferSize;
+  private int targetBackBufferSize;
+  private int backBufferBytes;
   private int allocatedCount;
   private int availableCount;
   private Allocation[] availableAllocations;
@@ -53,23 +65,64 @@ public final class DefaultAllocator implements Allocator {
    * @param initialAllocationCount The number of allocations to create up front.
    */
   public DefaultAllocator(int individualAllocationSize, int initialAllocationCount) {
+    this(individualAllocationSize, initialAllocationCount, false);
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front.
+   * <p>
+   * Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front.
+   * @param useDirectMemory Whether {@link Allocation}s should be backed by direct
+   *     {@link ByteBuffer}s rather than by byte arrays. If true then
+   *     {@link Allocation#directData} is set on each {@link Allocation} obtained from this instance.
+   */
+  public DefaultAllocator(int individualAllocationSize, int initialAllocationCount,
+      boolean useDirectMemory) {
     Assertions.checkArgument(individualAllocationSize > 0);
     Assertions.checkArgument(initialAllocationCount >= 0);
     this.individualAllocationSize = individualAllocationSize;
+    this.useDirectMemory = useDirectMemory;
     this.availableCount = initialAllocationCount;
     this.availableAllocations = new Allocation[initialAllocationCount + AVAILABLE_EXTRA_CAPACITY];
-    if (initialAllocationCount > 0) {
+    if (initialAllocationCount > 0 && useDirectMemory) {
+      initialAllocationBlock = null;
+      initialDirectAllocationBlock =
+          ByteBuffer.allocateDirect(initialAllocationCount * individualAllocationSize);
+      for (int i = 0; i < initialAllocationCount; i++) {
+        int allocationOffset = i * individualAllocationSize;
+        availableAllocations[i] = new Allocation(initialDirectAllocationBlock, allocationOffset);
+      }
+    } else if (initialAllocationCount > 0) {
       initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
+      initialDirectAllocationBlock = null;
       for (int i = 0; i < initialAllocationCount; i++) {
         int allocationOffset = i * individualAllocationSize;
         availableAllocations[i] = new Allocation(initialAllocationBlock, allocationOffset);
       }
     } else {
       initialAllocationBlock = null;
+      initialDirectAllocationBlock = null;
     }
     singleAllocationReleaseHolder = new Allocation[1];
+    targetBackBufferSize = C.LENGTH_UNSET;
   }
 
+  /**
+   * Returns whether {@link Allocation}s obtained from this instance are backed by direct memory.
+   */
+  public boolean usesDirectMemory() {
+    return useDirectMemory;
+  }
+
+  /**
+   * Sets the number of bytes that the allocator should retain for future use. This includes any
+   * budget set by {@link #setTargetBackBufferSize(int)}.
+   *
+   * @param targetBufferSize The target buffer size in bytes.
+   */
   public synchronized void setTargetBufferSize(int targetBufferSize) {
     boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
     this.targetBufferSize = targetBufferSize;
@@ -78,6 +131,35 @@ public final class DefaultAllocator implements Allocator {
     }
   }
 
+  /**
+   * Sets the budget for allocated bytes holding back-buffer media, beyond which
+   * {@link #isBackBufferFull()} returns true.
+   *
+   * @param targetBackBufferSize The budget in bytes, or {@link C#LENGTH_UNSET} if the back-buffer
+   *     should only be limited by its duration.
+   */
+  public synchronized void setTargetBackBufferSize(int targetBackBufferSize) {
+    this.targetBackBufferSize = targetBackBufferSize;
+  }
+
+  /**
+   * Returns the number of allocated bytes holding back-buffer media, as reported by
+   * {@link #onBackBufferSizeChanged(int)}.
+   */
+  public synchronized int getTotalBackBufferBytes() {
+    return backBufferBytes;
+  }
+
+  /**
+   * Returns whether the allocated bytes that do not hold back-buffer media have reached the target
+   * buffer size, excluding the budget set by {@link #setTargetBackBufferSize(int)}.
+   */
+  public synchronized boolean isTargetBufferSizeReached() {
+    int targetForwardBufferSize = targetBufferSize
+        - (targetBackBufferSize == C.LENGTH_UNSET ? 0 : targetBackBufferSize);
+    return getTotalBytesAllocated() - backBufferBytes >= targetForwardBufferSize;
+  }
+
   @Override
   public synchronized Allocation allocate() {
     allocatedCount++;
@@ -85,6 +167,8 @@ public final class DefaultAllocator implements Allocator {
     if (availableCount > 0) {
       allocation = availableAllocations[--availableCount];
       availableAllocations[availableCount] = null;
+    } else if (useDirectMemory) {
+      allocation = new Allocation(ByteBuffer.allocateDirect(individualAllocationSize), 0);
     } else {
       allocation = new Allocation(new byte[individualAllocationSize], 0);
     }
@@ -105,8 +189,13 @@ public final class DefaultAllocator implements Allocator {
     }
     for (Allocation allocation : allocations) {
       // Weak sanity check that the allocation probably originated from this pool.
-      Assertions.checkArgument(allocation.data == initialAllocationBlock
-          || allocation.data.length == individualAllocationSize);
+      if (useDirectMemory) {
+        Assertions.checkArgument(allocation.directData == initialDirectAllocationBlock
+            || allocation.directData.capacity() == individualAllocationSize);
+      } else {
+        Assertions.checkArgument(allocation.data == initialAllocationBlock
+            || allocation.data.length == individualAllocationSize);
+      }
       availableAllocations[availableCount++] = allocation;
     }
     allocatedCount -= allocations.length;
@@ -123,7 +212,7 @@ public final class DefaultAllocator implements Allocator {
       return;
     }
 
-    if (initialAllocationBlock != null) {
+    if (initialAllocationBlock != null || initialDirectAllocationBlock != null) {
       // Some allocations are backed by an initial block. We need to make sure that we hold onto all
       // such allocations. Re-order the available allocations so that the ones backed by the initial
       // block come first.
@@ -131,11 +220,11 @@ public final class DefaultAllocator implements Allocator {
       int highIndex = availableCount - 1;
       while (lowIndex <= highIndex) {
         Allocation lowAllocation = availableAllocations[lowIndex];
-        if (lowAllocation.data == initialAllocationBlock) {
+        if (isInitialAllocation(lowAllocation)) {
           lowIndex++;
         } else {
           Allocation highAllocation = availableAllocations[highIndex];
-          if (highAllocation.data != initialAllocationBlock) {
+          if (!isInitialAllocation(highAllocation)) {
             highIndex--;
           } else {
             availableAllocations[lowIndex++] = highAllocation;
@@ -166,4 +255,19 @@ public final class DefaultAllocator implements Allocator {
     return individualAllocationSize;
   }
 
+  @Override
+  public synchronized void onBackBufferSizeChanged(int bytesDelta) {
+    backBufferBytes += bytesDelta;
+  }
+
+  @Override
+  public synchronized boolean isBackBufferFull() {
+    return targetBackBufferSize != C.LENGTH_UNSET && backBufferBytes >= targetBackBufferSize;
+  }
+
+  private boolean isInitialAllocation(Allocation allocation) {
+    return useDirectMemory ? allocation.directData == initialDirectAllocationBlock
+        : allocation.data == initialAllocationBlock;
+  }
+
 }
@@ -131,6 +131,8 @@ public final class Loader implements LoaderErrorThrower {
   private static final int MSG_FATAL_ERROR = 4;
 
   private final ExecutorService downloadExecutorService;
+  private final LoaderThreadPool threadPool;
+  private final int priority;
 
   private LoadTask<? extends Loadable> currentTask;
   private IOException fatalError;
@@ -140,6 +142,22 @@ public final class Loader implements LoaderErrorThrower {
    */
   public Loader(String threadName) {
     this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    threadPool = null;
+    priority = LoaderThreadPool.PRIORITY_DEFAULT;
+  }
+
+  /**
+   * Constructs an instance whose loads run on a {@link LoaderThreadPool} that may be shared with
+   * other instances. As for an instance with its own thread, at most one load is active at a time.
+   *
+   * @param threadPool The {@link LoaderThreadPool} on which loads should run.
+   * @param priority The priority of this loader's loads within the pool. One of the
+   *     {@link LoaderThreadPool} {@code PRIORITY_*} constants, or another value.
+   */
+  public Loader(LoaderThreadPool threadPool, int priority) {
+    this.threadPool = threadPool;
+    this.priority = priority;
+    downloadExecutorService = null;
   }
 
   /**
@@ -195,8 +213,17 @@ public final class Loader implements LoaderErrorThrower {
    *     {@link Loadable#load()} is no longer running.
    */
   public void release(Runnable postLoadAction) {
-    if (currentTask != null) {
-      currentTask.cancel(true);
+    LoadTask<? extends Loadable> task = currentTask;
+    if (task != null) {
+      task.cancel(true);
+    }
+    if (threadPool != null) {
+      // The pool's threads are shared, so the action must be run after the load exits rather than
+      // being queued behind it.
+      if (postLoadAction != null && (task == null || !task.runAfterLoad(postLoadAction))) {
+        threadPool.execute(postLoadAction, priority);
+      }
+      return;
     }
     if (postLoadAction != null) {
       downloadExecutorService.submit(postLoadAction);
@@ -239,6 +266,10 @@ public final class Loader implements LoaderErrorThrower {
     private volatile Thread executorThread;
     private volatile boolean released;
 
+    // Used only when running on a LoaderThreadPool. Guarded by this.
+    private boolean submitted;
+    private Runnable postLoadAction;
+
     public LoadTask(Looper looper, T loadable, Loader.Callback<T> callback,
         int defaultMinRetryCount, long startTimeMs) {
       super(looper);
@@ -274,8 +305,10 @@ public final class Loader implements LoaderErrorThrower {
         }
       } else {
         loadable.cancelLoad();
-        if (executorThread != null) {
-          executorThread.interrupt();
+        synchronized (this) {
+          if (executorThread != null) {
+            executorThread.interrupt();
+          }
         }
       }
       if (released) {
@@ -285,8 +318,44 @@ public final class Loader implements LoaderErrorThrower {
       }
     }
 
+    /**
+     * Arranges for an action to be run on the pool thread once {@link Loadable#load()} has exited,
+     * if the task has been submitted to the pool and has not yet finished running.
+     *
+     * @param action The action to run.
+     * @return Whether the action will be run. If false, the caller is responsible for running it.
+     */
+    public synchronized boolean runAfterLoad(Runnable action) {
+      if (!submitted || threadPool.remove(this)) {
+        return false;
+      }
+      postLoadAction = action;
+      return true;
+    }
+
     @Override
     public void run() {
+      try {
+        runInternal();
+      } finally {
+        if (threadPool != null) {
+          Runnable action;
+          synchronized (this) {
+            // The thread will go on to run other tasks, so must not be interrupted on their behalf.
+            executorThread = null;
+            Thread.interrupted();
+            submitted = false;
+            action = postLoadAction;
+            postLoadAction = null;
+          }
+          if (action != null) {
+            action.run();
+          }
+        }
+      }
+    }
+
+    private void runInternal() {
       try {
         executorThread = Thread.currentThread();
         if (!loadable.isLoadCanceled()) {
@@ -369,7 +438,14 @@ public final class Loader implements LoaderErrorThrower {
 
     private void submitToExecutor() {
       currentError = null;
-      downloadExecutorService.submit(currentTask);
+      if (threadPool != null) {
+        synchronized (this) {
+          submitted = true;
+        }
+        threadPool.execute(this, priority);
+      } else {
+        downloadExecutorService.submit(currentTask);
+      }
     }
 
     private void finish() {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of threads that can be shared between {@link Loader}s.
+ * <p>
+ * Loads are started in order of decreasing priority, and in submission order for loads of equal
+ * priority. Threads are created on demand up to the maximum thread count, and exit after being idle
+ * for a short period.
+ * <p>
+ * Since a thread is occupied for the entire duration of each load, a pool should only be shared
+ * between {@link Loader}s whose loads complete without blocking for long periods. In particular a
+ * load must never block waiting for another load that may be queued behind it in the same pool.
+ * {@link Loader}s whose loads may block should be created with their own thread using
+ * {@link Loader#Loader(String)}.
+ */
+public final class LoaderThreadPool {
+
+  /**
+   * Priority for loads that have no particular urgency.
+   */
+  public static final int PRIORITY_DEFAULT = 0;
+  /**
+   * Priority for small loads that should not wait behind loads of {@link #PRIORITY_DEFAULT}, such
+   * as manifest and audio loads.
+   */
+  public static final int PRIORITY_HIGH = 1;
+
+  /**
+   * The default maximum number of threads in the shared instance.
+   */
+  public static final int DEFAULT_MAX_THREAD_COUNT = 4;
+
+  private static final long KEEP_ALIVE_TIME_MS = 10000;
+
+  private static LoaderThreadPool sharedInstance;
+
+  private final ThreadPoolExecutor executor;
+  private final PriorityBlockingQueue<Runnable> queue;
+  private final AtomicLong sequenceNumber;
+
+  /**
+   * Returns an instance shared by the library's {@link Loader}s whose loads do not block, creating
+   * it with {@link #DEFAULT_MAX_THREAD_COUNT} threads if necessary.
+   */
+  public static synchronized LoaderThreadPool getSharedInstance() {
+    if (sharedInstance == null) {
+      sharedInstance = new LoaderThreadPool("Loader:Shared", DEFAULT_MAX_THREAD_COUNT);
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * @param threadNamePrefix A prefix for the names of the pool's threads.
+   * @param maxThreadCount The maximum number of threads, which is also the maximum number of loads
+   *     that can run concurrently.
+   */
+  public LoaderThreadPool(final String threadNamePrefix, int maxThreadCount) {
+    Assertions.checkArgument(maxThreadCount > 0);
+    queue = new PriorityBlockingQueue<>();
+    sequenceNumber = new AtomicLong();
+    executor = new ThreadPoolExecutor(maxThreadCount * 10, maxThreadCount * 10, KEEP_ALIVE_TIME_MS,
+        TimeUnit.MILLISECONDS, queue, new ThreadFactory() {
+          private final AtomicInteger threadCount = new AtomicInteger();
+          @Override
+          public Thread newThread(Runnable r) {
+            return new Thread(r, threadNamePrefix + "-" + threadCount.incrementAndGet());
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queues a task for execution.
+   *
+   * @param task The task.
+   * @param priority The priority of the task. Higher priority tasks are started first.
+   */
+  public void execute(Runnable task, int priority) {
+    executor.execute(new PrioritizedTask(task, priority, sequenceNumber.getAndIncrement()));
+  }
+
+  /**
+   * Removes a task that has not yet started from the queue.
+   *
+   * @param task The task.
+   * @return Whether the task was removed. False if it has already started, or was never queued.
+   */
+  public boolean remove(Runnable task) {
+    for (Runnable queuedTask : queue) {
+      if (((PrioritizedTask) queuedTask).task == task) {
+        return executor.remove(queuedTask);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of threads currently in the pool.
+   */
+  public int getThreadCount() {
+    return executor.getPoolSize();
+  }
+
+  /**
+   * Returns the maximum number of threads in the pool.
+   */
+  public int getMaxThreadCount() {
+    return executor.getMaximumPoolSize();
+  }
+
+  private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+    public final Runnable task;
+    private final int priority;
+    private final long sequenceNumber;
+
+    public PrioritizedTask(Runnable task, int priority, long sequenceNumber) {
+      this.task = task;
+      this.priority = priority;
+      this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public void run() {
+      task.run();
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return sequenceNumber < other.sequenceNumber ? -1
+          : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+    }
+
+  }
+
+}
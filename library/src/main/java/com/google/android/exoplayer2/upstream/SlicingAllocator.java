@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * An {@link Allocator} that slices {@link Allocation}s obtained from an upstream {@link Allocator}
+ * into a number of smaller {@link Allocation}s.
+ * <p>
+ * A single instance can be shared between several consumers that each hold little data, such as
+ * the sample queues of text and metadata tracks, so that they pack into the same upstream
+ * {@link Allocation}s rather than each holding a full size one. An upstream {@link Allocation} is
+ * returned as soon as all of the slices within it have been released.
+ */
+public final class SlicingAllocator implements Allocator {
+
+  private final Allocator upstream;
+  private final int sliceCount;
+  private final int individualAllocationLength;
+
+  private int allocatedCount;
+  // The head of a doubly linked list of blocks that have at least one slice available.
+  private Block firstAvailableBlock;
+
+  /**
+   * @param upstream The {@link Allocator} from which {@link Allocation}s to be sliced are obtained.
+   * @param sliceCount The number of slices into which each upstream {@link Allocation} is divided.
+   *     If the upstream allocation length is smaller than this value then it is divided into
+   *     single byte slices.
+   */
+  public SlicingAllocator(Allocator upstream, int sliceCount) {
+    Assertions.checkArgument(sliceCount > 0);
+    int upstreamAllocationLength = upstream.getIndividualAllocationLength();
+    this.upstream = upstream;
+    this.sliceCount = Math.min(sliceCount, upstreamAllocationLength);
+    individualAllocationLength = upstreamAllocationLength / this.sliceCount;
+  }
+
+  @Override
+  public synchronized Allocation allocate() {
+    Block block = firstAvailableBlock;
+    if (block == null) {
+      block = new Block(upstream.allocate());
+      linkAvailableBlock(block);
+    }
+    allocatedCount++;
+    Allocation slice = block.availableSlices[--block.availableCount];
+    block.availableSlices[block.availableCount] = null;
+    if (block.availableCount == 0) {
+      unlinkAvailableBlock(block);
+    }
+    return slice;
+  }
+
+  @Override
+  public synchronized void release(Allocation allocation) {
+    // Sanity check that the allocation originated from this instance.
+    Assertions.checkArgument(allocation.owner instanceof Block
+        && ((Block) allocation.owner).getAllocator() == this);
+    Block block = (Block) allocation.owner;
+    block.availableSlices[block.availableCount++] = allocation;
+    allocatedCount--;
+    if (block.availableCount == 1) {
+      linkAvailableBlock(block);
+    }
+    if (block.availableCount == sliceCount) {
+      // All of the slices have been released, so the upstream allocation can be returned.
+      unlinkAvailableBlock(block);
+      upstream.release(block.allocation);
+    }
+  }
+
+  @Override
+  public synchronized void release(Allocation[] allocations) {
+    for (Allocation allocation : allocations) {
+      release(allocation);
+    }
+  }
+
+  @Override
+  public void trim() {
+    // Upstream allocations are returned eagerly, so there's nothing to trim locally.
+    upstream.trim();
+  }
+
+  @Override
+  public synchronized int getTotalBytesAllocated() {
+    return allocatedCount * individualAllocationLength;
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return individualAllocationLength;
+  }
+
+  @Override
+  public void onBackBufferSizeChanged(int bytesDelta) {
+    upstream.onBackBufferSizeChanged(bytesDelta);
+  }
+
+  @Override
+  public boolean isBackBufferFull() {
+    return upstream.isBackBufferFull();
+  }
+
+  private void linkAvailableBlock(Block block) {
+    block.next = firstAvailableBlock;
+    if (firstAvailableBlock != null) {
+      firstAvailableBlock.previous = block;
+    }
+    firstAvailableBlock = block;
+  }
+
+  private void unlinkAvailableBlock(Block block) {
+    if (block.previous != null) {
+      block.previous.next = block.next;
+    } else {
+      firstAvailableBlock = block.next;
+    }
+    if (block.next != null) {
+      block.next.previous = block.previous;
+    }
+    block.previous = null;
+    block.next = null;
+  }
+
+  /**
+   * An upstream {@link Allocation} and the slices within it that are available. Each slice holds a
+   * reference to its block, so that it can be returned without a lookup.
+   */
+  private final class Block {
+
+    public final Allocation allocation;
+    public final Allocation[] availableSlices;
+
+    public int availableCount;
+    public Block previous;
+    public Block next;
+
+    public Block(Allocation allocation) {
+      this.allocation = allocation;
+      availableSlices = new Allocation[sliceCount];
+      for (int i = 0; i < sliceCount; i++) {
+        int sliceOffset = allocation.translateOffset(i * individualAllocationLength);
+        availableSlices[i] = new Allocation(allocation.data, allocation.directData, sliceOffset,
+            this);
+      }
+      availableCount = sliceCount;
+    }
+
+    public SlicingAllocator getAllocator() {
+      return SlicingAllocator.this;
+    }
+
+  }
+
+}
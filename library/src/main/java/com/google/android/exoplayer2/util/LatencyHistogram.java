@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+/**
+ * A histogram of non-negative durations with a fixed number of buckets, to which values can be
+ * recorded without allocation.
+ * <p>
+ * Values smaller than 8 are recorded exactly. Larger values are recorded in buckets whose width is
+ * an eighth of the power of two below them, so percentiles have a relative error of at most 12.5%.
+ * Values of 2^35 or more fall into the highest bucket.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_SHIFT = 31;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_SHIFT + 2);
+
+  private final long[] counts;
+
+  private long totalCount;
+  private long totalValue;
+  private long maxValue;
+
+  public LatencyHistogram() {
+    counts = new long[BUCKET_COUNT];
+  }
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   *
+   * @param value The value to record.
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    counts[getBucketIndex(value)]++;
+    totalCount++;
+    totalValue += value;
+    maxValue = Math.max(maxValue, value);
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getCount() {
+    return totalCount;
+  }
+
+  /**
+   * Returns the largest recorded value, or 0 if no values have been recorded.
+   */
+  public long getMax() {
+    return maxValue;
+  }
+
+  /**
+   * Returns the mean of the recorded values, or 0 if no values have been recorded.
+   */
+  public long getMean() {
+    return totalCount == 0 ? 0 : totalValue / totalCount;
+  }
+
+  /**
+   * Returns an upper bound for the value at a given percentile of the recorded values.
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return An upper bound for the value at the percentile, which is never larger than
+   *     {@link #getMax()}, or 0 if no values have been recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long targetCount = Math.max(1, (long) Math.ceil(totalCount * percentile / 100));
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts[i];
+      if (count >= targetCount) {
+        // The highest bucket is unbounded.
+        return i == BUCKET_COUNT - 1 ? maxValue : Math.min(getBucketUpperBound(i), maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+  /**
+   * Adds the values recorded by another histogram to this one.
+   *
+   * @param other The histogram whose values should be added.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    totalValue += other.totalValue;
+    maxValue = Math.max(maxValue, other.maxValue);
+  }
+
+  /**
+   * Returns a copy of this histogram.
+   */
+  public LatencyHistogram copy() {
+    LatencyHistogram copy = new LatencyHistogram();
+    copy.add(this);
+    return copy;
+  }
+
+  /**
+   * Removes all recorded values.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = 0;
+    }
+    totalCount = 0;
+    totalValue = 0;
+    maxValue = 0;
+  }
+
+  private static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    if (shift > MAX_SHIFT) {
+      return BUCKET_COUNT - 1;
+    }
+    int subBucketIndex = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT * (shift + 1) + subBucketIndex;
+  }
+
+  private static long getBucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long subBucketIndex = index % SUB_BUCKET_COUNT;
+    return ((SUB_BUCKET_COUNT + subBucketIndex + 1) << shift) - 1;
+  }
+
+}
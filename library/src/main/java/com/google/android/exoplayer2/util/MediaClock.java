@@ -25,4 +25,9 @@ public interface MediaClock {
    */
   long getPositionUs();
 
+  /**
+   * Returns the speed at which the media position advances, relative to real time.
+   */
+  float getPlaybackSpeed();
+
 }
@@ -26,6 +26,12 @@ public final class NalUnitUtil {
 
   private static final String TAG = "NalUnitUtil";
 
+  /**
+   * The minimum length of data for which {@link #findNalUnit(byte[], int, int, boolean[])} scans a
+   * word at a time.
+   */
+  private static final int MIN_WORD_SCAN_LENGTH = 64;
+
   /**
    * Holds data parsed from a sequence parameter set NAL unit.
    */
@@ -399,23 +405,12 @@ public final class NalUnitUtil {
       }
     }
 
-    int limit = endOffset - 1;
-    // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
-    // the third byte.
-    for (int i = startOffset + 2; i < limit; i += 3) {
-      if ((data[i] & 0xFE) != 0) {
-        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
-        // loop advance the index by three.
-      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
-        if (prefixFlags != null) {
-          clearPrefixFlags(prefixFlags);
-        }
-        return i - 2;
-      } else {
-        // There isn't a NAL prefix here, but there might be at the next position. We should
-        // only skip forward by one. The loop will skip forward by three, so subtract two here.
-        i -= 2;
+    int nalUnitOffset = findNalUnitPrefix(data, startOffset, endOffset);
+    if (nalUnitOffset != endOffset) {
+      if (prefixFlags != null) {
+        clearPrefixFlags(prefixFlags);
       }
+      return nalUnitOffset;
     }
 
     if (prefixFlags != null) {
@@ -445,6 +440,69 @@ public final class NalUnitUtil {
     prefixFlags[2] = false;
   }
 
+  /**
+   * Returns the offset of the first NAL unit start code prefix whose three bytes are within
+   * {@code data} from {@code startOffset} (inclusive) to {@code endOffset - 1} (exclusive), or
+   * {@code endOffset} if there isn't one.
+   * <p>
+   * Long ranges are scanned eight bytes at a time, by testing each word for a pair of adjacent zero
+   * bytes, or for a zero last byte that may pair with the first byte of the next word. Only words
+   * that pass the test are checked byte by byte.
+   */
+  private static int findNalUnitPrefix(byte[] data, int startOffset, int endOffset) {
+    int offset = startOffset;
+    if (endOffset - startOffset >= MIN_WORD_SCAN_LENGTH) {
+      int wordLimit = endOffset - 8;
+      for (; offset <= wordLimit; offset += 8) {
+        long word = readWord(data, offset);
+        // Sets the high bit of each zero byte. The high bit of a 0x01 byte that precedes a zero byte
+        // may also be set, which can only cause an unnecessary byte by byte check.
+        long zeroBytes = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+        if ((zeroBytes & ((zeroBytes << 8) | 0x80L)) != 0) {
+          int checkEndOffset = Math.min(endOffset, offset + 11);
+          int nalUnitOffset = findNalUnitPrefixBytewise(data, offset, checkEndOffset);
+          if (nalUnitOffset != checkEndOffset) {
+            return nalUnitOffset;
+          }
+        }
+      }
+    }
+    return findNalUnitPrefixBytewise(data, offset, endOffset);
+  }
+
+  /**
+   * Returns the eight bytes of {@code data} from {@code offset} as a big-endian long.
+   */
+  private static long readWord(byte[] data, int offset) {
+    return ((data[offset] & 0xFFL) << 56)
+        | ((data[offset + 1] & 0xFFL) << 48)
+        | ((data[offset + 2] & 0xFFL) << 40)
+        | ((data[offset + 3] & 0xFFL) << 32)
+        | ((data[offset + 4] & 0xFFL) << 24)
+        | ((data[offset + 5] & 0xFFL) << 16)
+        | ((data[offset + 6] & 0xFFL) << 8)
+        | (data[offset + 7] & 0xFFL);
+  }
+
+  private static int findNalUnitPrefixBytewise(byte[] data, int startOffset, int endOffset) {
+    int limit = endOffset - 1;
+    // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
+    // the third byte.
+    for (int i = startOffset + 2; i < limit; i += 3) {
+      if ((data[i] & 0xFE) != 0) {
+        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
+        // loop advance the index by three.
+      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
+        return i - 2;
+      } else {
+        // There isn't a NAL prefix here, but there might be at the next position. We should
+        // only skip forward by one. The loop will skip forward by three, so subtract two here.
+        i -= 2;
+      }
+    }
+    return endOffset;
+  }
+
   private static int findNextUnescapeIndex(byte[] bytes, int offset, int limit) {
     for (int i = offset; i < limit - 2; i++) {
       if (bytes[i] == 0x00 && bytes[i + 1] == 0x00 && bytes[i + 2] == 0x03) {
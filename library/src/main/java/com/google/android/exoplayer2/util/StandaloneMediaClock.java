@@ -69,6 +69,11 @@ public final class StandaloneMediaClock implements MediaClock {
     return started ? elapsedRealtimeMinus(deltaUs) : positionUs;
   }
 
+  @Override
+  public float getPlaybackSpeed() {
+    return 1.0f;
+  }
+
   private long elapsedRealtimeMinus(long toSubtractUs) {
     return SystemClock.elapsedRealtime() * 1000 - toSubtractUs;
   }